@@ -2,10 +2,12 @@ package com.suifeng.sfchain.configcenter.config;
 
 import com.suifeng.sfchain.config.SfChainLoggingProperties;
 import com.suifeng.sfchain.configcenter.logging.AICallLogRouteContext;
+import com.suifeng.sfchain.core.logging.TokenUsageAggregator;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionStore;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadGateway;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
@@ -25,12 +27,17 @@ public class AICallLogPersistenceConfiguration {
     @ConditionalOnBean(name = "fileAICallLogIngestionStore")
     public AICallLogUploadGateway localIngestionUploadGateway(
             SfChainLoggingProperties loggingProperties,
-            AICallLogIngestionStore ingestionStore) {
+            AICallLogIngestionStore ingestionStore,
+            ObjectProvider<TokenUsageAggregator> tokenUsageAggregatorProvider) {
         log.info("配置中心AI日志持久化已启用: store={}", ingestionStore.getClass().getSimpleName());
+        TokenUsageAggregator tokenUsageAggregator = tokenUsageAggregatorProvider.getIfAvailable();
         return callLog -> {
             AICallLogRouteContext.RouteKey routeKey = AICallLogRouteContext.current();
             String tenantId = routeKey == null ? CONFIG_CENTER_TENANT_ID : routeKey.getTenantId();
             String appId = routeKey == null ? CONFIG_CENTER_APP_ID : routeKey.getAppId();
+            if (tokenUsageAggregator != null) {
+                tokenUsageAggregator.record(tenantId, appId, callLog);
+            }
             ingestionStore.saveBatch(
                     tenantId,
                     appId,
@@ -5,7 +5,9 @@ import com.suifeng.sfchain.config.SfChainIngestionProperties;
 import com.suifeng.sfchain.config.SfChainLoggingProperties;
 import com.suifeng.sfchain.configcenter.logging.AICallLogRouteContext;
 import com.suifeng.sfchain.core.logging.AICallLogManager;
+import com.suifeng.sfchain.core.logging.TokenUsageAggregator;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionStore;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogRollupStore;
 import com.suifeng.sfchain.core.logging.ingestion.ContractAllowlistGuardService;
 import com.suifeng.sfchain.core.logging.ingestion.FileAICallLogIngestionStore;
 import com.suifeng.sfchain.core.logging.ingestion.IngestionContractHealthTracker;
@@ -38,13 +40,18 @@ public class IngestionApiConfiguration {
     public AICallLogManager aiCallLogManager(
             SfChainLoggingProperties loggingProperties,
             ObjectProvider<AICallLogUploadGateway> uploadGatewayProvider,
-            ObjectProvider<AICallLogIngestionStore> ingestionStoreProvider) {
+            ObjectProvider<AICallLogIngestionStore> ingestionStoreProvider,
+            ObjectProvider<TokenUsageAggregator> tokenUsageAggregatorProvider) {
         AICallLogUploadGateway uploadGateway = uploadGatewayProvider.getIfAvailable(() -> {
             AICallLogIngestionStore ingestionStore = ingestionStoreProvider.getIfAvailable(() -> AICallLogIngestionStore.NO_OP);
+            TokenUsageAggregator tokenUsageAggregator = tokenUsageAggregatorProvider.getIfAvailable();
             return callLog -> {
                 AICallLogRouteContext.RouteKey routeKey = AICallLogRouteContext.current();
                 String tenantId = routeKey == null ? CONFIG_CENTER_TENANT_ID : routeKey.getTenantId();
                 String appId = routeKey == null ? CONFIG_CENTER_APP_ID : routeKey.getAppId();
+                if (tokenUsageAggregator != null) {
+                    tokenUsageAggregator.record(tenantId, appId, callLog);
+                }
                 ingestionStore.saveBatch(
                         tenantId,
                         appId,
@@ -55,6 +62,12 @@ public class IngestionApiConfiguration {
         return new AICallLogManager(loggingProperties, uploadGateway);
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public TokenUsageAggregator tokenUsageAggregator() {
+        return new TokenUsageAggregator();
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public MinuteWindowQuotaService minuteWindowQuotaService(SfChainIngestionProperties properties) {
@@ -72,9 +85,18 @@ public class IngestionApiConfiguration {
     @ConditionalOnMissingBean
     public AICallLogIngestionStore fileAICallLogIngestionStore(
             ObjectMapper objectMapper,
-            SfChainIngestionProperties properties) {
+            SfChainIngestionProperties properties,
+            ObjectProvider<AICallLogRollupStore> rollupStoreProvider) {
         log.info("接入日志文件存储已启用: dir={}", properties.getFilePersistenceDir());
-        return new FileAICallLogIngestionStore(objectMapper, properties);
+        return new FileAICallLogIngestionStore(objectMapper, properties, rollupStoreProvider.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "sf-chain.ingestion", name = "rollup-enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnMissingBean
+    public AICallLogRollupStore aiCallLogRollupStore(SfChainIngestionProperties properties) {
+        log.info("接入日志统计汇总已启用: dir={}", properties.getRollupDir());
+        return new AICallLogRollupStore(properties);
     }
 
     @Bean
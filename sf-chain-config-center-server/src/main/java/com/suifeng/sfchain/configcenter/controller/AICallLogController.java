@@ -7,9 +7,14 @@ import com.suifeng.sfchain.configcenter.repository.TenantRepository;
 import com.suifeng.sfchain.core.logging.AICallLog;
 import com.suifeng.sfchain.core.logging.AICallLogManager;
 import com.suifeng.sfchain.core.logging.AICallLogSummary;
+import com.suifeng.sfchain.core.logging.TokenUsageAggregator;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionQuery;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionRecord;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionSearchPage;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionStore;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogRollupStore;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -38,19 +43,26 @@ public class AICallLogController {
     private static final String CONFIG_CENTER_TENANT_ID = "__config_center__";
     private static final String CONFIG_CENTER_APP_ID = "__config_center__";
     private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_FILTER_LIMIT = 2000;
 
     private final AICallLogManager logManager;
     private final AICallLogIngestionStore ingestionStore;
+    private final AICallLogRollupStore rollupStore;
+    private final TokenUsageAggregator tokenUsageAggregator;
     private final TenantRepository tenantRepository;
     private final AppRepository appRepository;
 
     public AICallLogController(
             ObjectProvider<AICallLogManager> logManagerProvider,
             ObjectProvider<AICallLogIngestionStore> ingestionStoreProvider,
+            ObjectProvider<AICallLogRollupStore> rollupStoreProvider,
+            ObjectProvider<TokenUsageAggregator> tokenUsageAggregatorProvider,
             TenantRepository tenantRepository,
             AppRepository appRepository) {
         this.logManager = logManagerProvider.getIfAvailable();
         this.ingestionStore = ingestionStoreProvider.getIfAvailable();
+        this.rollupStore = rollupStoreProvider.getIfAvailable();
+        this.tokenUsageAggregator = tokenUsageAggregatorProvider.getIfAvailable();
         this.tenantRepository = tenantRepository;
         this.appRepository = appRepository;
     }
@@ -87,23 +99,31 @@ public class AICallLogController {
             @PathVariable String callId,
             @RequestParam(required = false) String tenantId,
             @RequestParam(required = false) String appId) {
+        AICallLog inMemory = null;
         if (!hasScope(tenantId, appId) && logManager != null) {
-            AICallLog log = logManager.getFullLog(callId);
-            if (log != null) {
-                return fullLogToMap(log);
+            inMemory = logManager.getFullLog(callId);
+            if (inMemory != null && hasContent(inMemory)) {
+                return fullLogToMap(inMemory);
             }
         }
-        for (AICallLogIngestionRecord record : loadPersistedRecords(2000, tenantId, appId)) {
-            if (record == null || record.getItem() == null) {
-                continue;
-            }
-            if (Objects.equals(defaultString(record.getItem().getCallId(), "UNKNOWN"), callId)) {
+        // 流式接入的日志在内存中只有元数据，详情内容以存储中的完整记录为准
+        AICallLogIngestionQuery query = AICallLogIngestionQuery.builder().callId(callId).limit(1).build();
+        for (AICallLogIngestionRecord record : searchPersistedRecords(query, tenantId, appId)) {
+            if (record != null && record.getItem() != null) {
                 return recordToFullMap(record);
             }
         }
+        if (inMemory != null) {
+            return fullLogToMap(inMemory);
+        }
         return withFullFields(defaultSummary("NOT_FOUND"));
     }
 
+    private static boolean hasContent(AICallLog log) {
+        return log.getPrompt() != null || log.getInput() != null
+                || log.getRawResponse() != null || log.getOutput() != null;
+    }
+
     @GetMapping("/operation/{operationType}")
     public List<Map<String, Object>> getByOperation(
             @PathVariable String operationType,
@@ -117,8 +137,12 @@ public class AICallLogController {
                 return inMemory;
             }
         }
-        return loadPersistedSummaries(2000, tenantId, appId).stream()
-                .filter(it -> Objects.equals(String.valueOf(it.get("operationType")), operationType))
+        AICallLogIngestionQuery query = AICallLogIngestionQuery.builder()
+                .operationType(operationType)
+                .limit(MAX_FILTER_LIMIT)
+                .build();
+        return searchPersistedRecords(query, tenantId, appId).stream()
+                .map(this::recordToSummaryMap)
                 .collect(Collectors.toList());
     }
 
@@ -135,26 +159,66 @@ public class AICallLogController {
                 return inMemory;
             }
         }
-        return loadPersistedSummaries(2000, tenantId, appId).stream()
-                .filter(it -> Objects.equals(String.valueOf(it.get("modelName")), modelName))
+        AICallLogIngestionQuery query = AICallLogIngestionQuery.builder()
+                .modelName(modelName)
+                .limit(MAX_FILTER_LIMIT)
+                .build();
+        return searchPersistedRecords(query, tenantId, appId).stream()
+                .map(this::recordToSummaryMap)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 持久化日志索引查询：条件组合取交集，按写入顺序倒序，使用nextCursor翻页
+     */
+    @GetMapping("/search")
+    public Map<String, Object> search(
+            @RequestParam String tenantId,
+            @RequestParam String appId,
+            @RequestParam(required = false) String callId,
+            @RequestParam(required = false) String operationType,
+            @RequestParam(required = false) String modelName,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (ingestionStore == null || !hasScope(tenantId, appId)) {
+            result.put("records", List.of());
+            result.put("nextCursor", null);
+            result.put("hasMore", false);
+            return result;
+        }
+        AICallLogIngestionSearchPage page = ingestionStore.search(tenantId, appId, AICallLogIngestionQuery.builder()
+                .callId(blankToNull(callId))
+                .operationType(blankToNull(operationType))
+                .modelName(blankToNull(modelName))
+                .status(blankToNull(status))
+                .from(from)
+                .to(to)
+                .cursor(cursor)
+                .limit(Math.max(1, Math.min(limit, MAX_FILTER_LIMIT)))
+                .build());
+        result.put("records", page.getRecords().stream().map(this::recordToSummaryMap).collect(Collectors.toList()));
+        result.put("nextCursor", page.getNextCursor());
+        result.put("hasMore", page.isHasMore());
+        return result;
+    }
+
     @GetMapping("/statistics")
     public Map<String, Object> getStatistics(
             @RequestParam(required = false) String tenantId,
-            @RequestParam(required = false) String appId) {
-        if (!hasScope(tenantId, appId) && logManager != null) {
-            AICallLogManager.LogStatistics stats = logManager.getStatistics();
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("totalCalls", stats.getTotalCalls());
-            result.put("successfulCalls", stats.getSuccessCalls());
-            result.put("failedCalls", Math.max(0L, stats.getTotalCalls() - stats.getSuccessCalls()));
-            result.put("totalTokensUsed", 0);
-            result.put("averageResponseTime", Math.round(stats.getAverageDuration()));
-            result.put("callsByOperation", stats.getOperationCounts() == null ? Map.of() : stats.getOperationCounts());
-            result.put("callsByModel", stats.getModelCounts() == null ? Map.of() : stats.getModelCounts());
-            return result;
+            @RequestParam(required = false) String appId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        boolean windowed = from != null || to != null;
+        if (!hasScope(tenantId, appId) && !windowed && logManager != null) {
+            return statisticsToMap(logManager.getStatistics());
+        }
+        if (rollupStore != null) {
+            // 持久化统计走预聚合汇总，窗口长度不影响查询成本
+            return statisticsToMap(rollupStore.statistics(tenantId, appId, from, to));
         }
 
         List<Map<String, Object>> summaries = getAllLogSummaries(tenantId, appId);
@@ -184,14 +248,75 @@ public class AICallLogController {
                         Collectors.counting()
                 ));
 
+        Map<String, Long> tokensByOperation = summaries.stream()
+                .collect(Collectors.groupingBy(
+                        it -> String.valueOf(it.get("operationType")),
+                        LinkedHashMap::new,
+                        Collectors.summingLong(it -> toLong(it.get("totalTokens")))
+                ));
+
+        Map<String, Long> tokensByModel = summaries.stream()
+                .collect(Collectors.groupingBy(
+                        it -> String.valueOf(it.get("modelName")),
+                        LinkedHashMap::new,
+                        Collectors.summingLong(it -> toLong(it.get("totalTokens")))
+                ));
+
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("totalCalls", totalCalls);
         result.put("successfulCalls", successfulCalls);
         result.put("failedCalls", failedCalls);
-        result.put("totalTokensUsed", 0);
+        result.put("totalTokensUsed", summaries.stream().mapToLong(it -> toLong(it.get("totalTokens"))).sum());
+        result.put("promptTokensUsed", summaries.stream().mapToLong(it -> toLong(it.get("promptTokens"))).sum());
+        result.put("completionTokensUsed", summaries.stream().mapToLong(it -> toLong(it.get("completionTokens"))).sum());
+        result.put("totalCost", summaries.stream().mapToDouble(it -> toDouble(it.get("cost"))).sum());
         result.put("averageResponseTime", averageResponseTime);
         result.put("callsByOperation", callsByOperation);
         result.put("callsByModel", callsByModel);
+        result.put("tokensByOperation", tokensByOperation);
+        result.put("tokensByModel", tokensByModel);
+        return result;
+    }
+
+    /**
+     * 累计token用量（不受内存日志淘汰与查询条数限制），指定租户应用时只返回该应用
+     */
+    @GetMapping("/token-usage")
+    public Object getTokenUsage(
+            @RequestParam(required = false) String tenantId,
+            @RequestParam(required = false) String appId) {
+        if (tokenUsageAggregator == null) {
+            return List.of();
+        }
+        if (hasScope(tenantId, appId)) {
+            return tokenUsageAggregator.report(tenantId, appId);
+        }
+        return tokenUsageAggregator.reports();
+    }
+
+    private static Map<String, Object> statisticsToMap(AICallLogManager.LogStatistics stats) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalCalls", stats.getTotalCalls());
+        result.put("successfulCalls", stats.getSuccessCalls());
+        result.put("failedCalls", stats.getFailedCalls());
+        result.put("totalTokensUsed", stats.getTotalTokens());
+        result.put("promptTokensUsed", stats.getTotalPromptTokens());
+        result.put("completionTokensUsed", stats.getTotalCompletionTokens());
+        result.put("totalCost", stats.getTotalCost());
+        result.put("averageResponseTime", Math.round(stats.getAverageDuration()));
+        result.put("callsByOperation", stats.getOperationCounts() == null ? Map.of() : stats.getOperationCounts());
+        result.put("callsByModel", stats.getModelCounts() == null ? Map.of() : stats.getModelCounts());
+        result.put("tokensByOperation", tokensByGroup(stats.getOperationStatistics()));
+        result.put("tokensByModel", tokensByGroup(stats.getModelStatistics()));
+        result.put("latencyHistogram", stats.getLatencyHistogram() == null ? Map.of() : stats.getLatencyHistogram());
+        return result;
+    }
+
+    private static Map<String, Long> tokensByGroup(Map<String, AICallLogManager.GroupStatistics> statistics) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (statistics != null) {
+            statistics.forEach((key, value) -> result.put(key, value.getTotalTokens()));
+        }
         return result;
     }
 
@@ -251,6 +376,20 @@ public class AICallLogController {
         }
     }
 
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value == null) {
+            return 0D;
+        }
+        try {
+            return Double.parseDouble(Objects.toString(value));
+        } catch (NumberFormatException ex) {
+            return 0D;
+        }
+    }
+
     private Map<String, Object> summaryToMap(AICallLogSummary summary) {
         Map<String, Object> item = new LinkedHashMap<>();
         item.put("callId", summary.getCallId());
@@ -260,6 +399,11 @@ public class AICallLogController {
         item.put("duration", summary.getDuration());
         item.put("status", summary.getStatus() == null ? "FAILED" : summary.getStatus().name());
         item.put("errorMessage", summary.getErrorMessage());
+        item.put("promptTokens", summary.getPromptTokens());
+        item.put("completionTokens", summary.getCompletionTokens());
+        item.put("totalTokens", summary.getTotalTokens());
+        item.put("cost", summary.getCost());
+        item.put("cacheHit", summary.isCacheHit());
         item.put("frequency", summary.getFrequency());
         item.put("lastAccessTime", summary.getLastAccessTime() == null ? LocalDateTime.now() : summary.getLastAccessTime());
         if (summary.getRequestParams() != null) {
@@ -291,20 +435,7 @@ public class AICallLogController {
         if (hasScope(tenantId, appId)) {
             records.addAll(ingestionStore.query(tenantId, appId, limit));
         } else {
-            Set<String> appKeys = new LinkedHashSet<>();
-            appKeys.add(CONFIG_CENTER_TENANT_ID + ":" + CONFIG_CENTER_APP_ID);
-
-            Set<String> activeTenants = tenantRepository.findAll().stream()
-                    .filter(TenantEntity::isActive)
-                    .map(TenantEntity::getTenantId)
-                    .collect(Collectors.toSet());
-            for (AppEntity app : appRepository.findAll()) {
-                if (!app.isActive() || !activeTenants.contains(app.getTenantId())) {
-                    continue;
-                }
-                appKeys.add(app.getTenantId() + ":" + app.getAppId());
-            }
-
+            Set<String> appKeys = persistedAppKeys();
             int perAppLimit = Math.max(20, limit / Math.max(appKeys.size(), 1));
             for (String key : appKeys) {
                 String[] parts = key.split(":", 2);
@@ -314,12 +445,61 @@ public class AICallLogController {
                 records.addAll(ingestionStore.query(parts[0], parts[1], perAppLimit));
             }
         }
+        return newestFirst(records, limit);
+    }
+
+    /**
+     * 通过存储的二级索引查询；未指定租户应用时逐个应用查询后按接入时间合并
+     */
+    private List<AICallLogIngestionRecord> searchPersistedRecords(AICallLogIngestionQuery query, String tenantId, String appId) {
+        if (ingestionStore == null) {
+            return List.of();
+        }
+        if (hasScope(tenantId, appId)) {
+            return ingestionStore.search(tenantId, appId, query).getRecords();
+        }
+        List<AICallLogIngestionRecord> records = new ArrayList<>();
+        for (String key : persistedAppKeys()) {
+            String[] parts = key.split(":", 2);
+            if (parts.length != 2) {
+                continue;
+            }
+            records.addAll(ingestionStore.search(parts[0], parts[1], query).getRecords());
+            if (query.getCallId() != null && !records.isEmpty()) {
+                break;
+            }
+        }
+        return newestFirst(records, query.getLimit());
+    }
+
+    private Set<String> persistedAppKeys() {
+        Set<String> appKeys = new LinkedHashSet<>();
+        appKeys.add(CONFIG_CENTER_TENANT_ID + ":" + CONFIG_CENTER_APP_ID);
+
+        Set<String> activeTenants = tenantRepository.findAll().stream()
+                .filter(TenantEntity::isActive)
+                .map(TenantEntity::getTenantId)
+                .collect(Collectors.toSet());
+        for (AppEntity app : appRepository.findAll()) {
+            if (!app.isActive() || !activeTenants.contains(app.getTenantId())) {
+                continue;
+            }
+            appKeys.add(app.getTenantId() + ":" + app.getAppId());
+        }
+        return appKeys;
+    }
+
+    private static List<AICallLogIngestionRecord> newestFirst(List<AICallLogIngestionRecord> records, int limit) {
         return records.stream()
                 .sorted(Comparator.comparing(AICallLogIngestionRecord::getIngestedAt, Comparator.nullsLast(Comparator.reverseOrder())))
                 .limit(limit)
                 .collect(Collectors.toList());
     }
 
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
     private Map<String, Object> recordToSummaryMap(AICallLogIngestionRecord record) {
         Map<String, Object> full = recordToFullMap(record);
         full.remove("input");
@@ -358,6 +538,10 @@ public class AICallLogController {
         item.put("duration", record.getItem().getDuration());
         item.put("status", defaultString(record.getItem().getStatus(), "FAILED"));
         item.put("errorMessage", record.getItem().getErrorMessage());
+        item.put("promptTokens", record.getItem().getPromptTokens());
+        item.put("completionTokens", record.getItem().getCompletionTokens());
+        item.put("totalTokens", record.getItem().getTotalTokens());
+        item.put("cost", record.getItem().getCost());
         item.put("frequency", 1);
         item.put("lastAccessTime", record.getIngestedAt() == null ? LocalDateTime.now() : record.getIngestedAt());
         item.put("input", record.getItem().getInput());
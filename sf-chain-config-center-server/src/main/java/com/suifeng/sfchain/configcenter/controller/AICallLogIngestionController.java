@@ -1,16 +1,23 @@
 package com.suifeng.sfchain.configcenter.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suifeng.sfchain.config.SfChainIngestionProperties;
 import com.suifeng.sfchain.configcenter.dto.ApiKeyDtos;
 import com.suifeng.sfchain.configcenter.logging.AICallLogRouteContext;
 import com.suifeng.sfchain.configcenter.service.ControlPlaneService;
 import com.suifeng.sfchain.core.logging.AICallLog;
 import com.suifeng.sfchain.core.logging.AICallLogManager;
+import com.suifeng.sfchain.core.logging.TokenUsageAggregator;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionPage;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogBinaryBatchReader;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionItemReader;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionRecord;
+import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionStreamReader;
 import com.suifeng.sfchain.core.logging.ingestion.AICallLogIngestionStore;
 import com.suifeng.sfchain.core.logging.ingestion.IngestionContractHealthTracker;
 import com.suifeng.sfchain.core.logging.ingestion.MinuteWindowQuotaService;
+import com.suifeng.sfchain.core.logging.upload.AICallLogBinaryBatchWriter;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -26,12 +33,19 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
 
 @RestController
 @RequiredArgsConstructor
@@ -45,6 +59,8 @@ public class AICallLogIngestionController {
     private final AICallLogIngestionStore ingestionStore;
     private final IngestionContractHealthTracker contractHealthTracker;
     private final ControlPlaneService controlPlaneService;
+    private final TokenUsageAggregator tokenUsageAggregator;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/batch")
     public ResponseEntity<Map<String, Object>> ingestBatch(
@@ -95,6 +111,132 @@ public class AICallLogIngestionController {
         ));
     }
 
+    /**
+     * 流式接入：请求体为NDJSON、条目JSON数组或二进制批量格式（application/x-sf-log-batch），支持Content-Encoding: gzip；
+     * 逐条校验与计配额，条目原始JSON直接写入存储，元数据同时进入内存日志视图与统计，单个请求的内存占用与条目数无关。
+     * 请求头X-SF-BATCH-SIZE声明条数时先检查剩余配额能否容纳整批，不足则整批返回429；配额始终按实际写入的条目逐条扣减。
+     * 配额耗尽或存储繁忙时停止读取，返回429/503；响应中的processed为已处理（写入或校验拒绝）的前缀条数，
+     * 客户端只需重试其后的条目，非2xx响应同样携带该值以避免重复写入
+     */
+    @PostMapping("/stream")
+    public ResponseEntity<Map<String, Object>> ingestStream(
+            @RequestHeader(value = "X-SF-API-KEY", required = false) String apiKey,
+            @RequestHeader(value = "X-SF-CONTRACT-VERSION", required = false) String headerContractVersion,
+            @RequestHeader(value = "Content-Encoding", required = false) String contentEncoding,
+            @RequestHeader(value = "X-SF-BATCH-SIZE", required = false) Integer declaredBatchSize,
+            @RequestParam(required = false) String tenantId,
+            @RequestParam(required = false) String appId,
+            @RequestParam(required = false) String contractVersion,
+            HttpServletRequest httpRequest) throws IOException {
+        if (isBlank(tenantId) || isBlank(appId)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "tenantId and appId are required"));
+        }
+        if (!isApiKeyValid(apiKey) && !isTenantApiKeyValid(apiKey, tenantId, appId)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "invalid api key"));
+        }
+        String resolvedVersion = resolveContractVersion(contractVersion, headerContractVersion);
+        if (!isContractVersionSupported(resolvedVersion)) {
+            contractHealthTracker.recordContractRejected();
+            return ResponseEntity.badRequest().body(Map.of("message", "unsupported contract version"));
+        }
+
+        // 声明条数时先整批检查剩余配额（不扣减），请求中途中止或条目少于声明时不会多扣
+        int declared = declaredBatchSize == null ? 0 : Math.max(declaredBatchSize, 0);
+        if (declared > 0 && !quotaService.hasCapacity(tenantId, appId, declared)) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("accepted", 0);
+            result.put("rejected", 0);
+            result.put("processed", 0);
+            result.put("message", "quota exceeded");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(result);
+        }
+
+        int accepted = 0;
+        int rejected = 0;
+        String firstError = null;
+        boolean quotaExceeded = false;
+        boolean storageBusy = false;
+        HttpStatus failure = null;
+        try (AICallLogIngestionItemReader reader = itemReader(httpRequest, contentEncoding)) {
+            AICallLogIngestionItemReader.Item item;
+            while ((item = reader.next()) != null) {
+                if (!item.isAccepted()) {
+                    rejected++;
+                    firstError = firstError == null ? item.getError() : firstError;
+                    continue;
+                }
+                if (!quotaService.tryAcquire(tenantId, appId, 1)) {
+                    quotaExceeded = true;
+                    break;
+                }
+                if (!ingestionStore.saveRaw(tenantId, appId, item.getJson(), item.getMetadata())) {
+                    storageBusy = true;
+                    break;
+                }
+                // 原始条目已写入存储，内存视图只收元数据（不含内容字段），避免经上报通道再写一次
+                AICallLog callLog = toAICallLog(item.getMetadata());
+                tokenUsageAggregator.record(tenantId, appId, callLog);
+                logManager.addPersistedLog(callLog);
+                accepted++;
+            }
+        } catch (AICallLogIngestionItemReader.ItemTooLargeException e) {
+            failure = HttpStatus.PAYLOAD_TOO_LARGE;
+            firstError = "item too large";
+        } catch (JsonProcessingException e) {
+            failure = HttpStatus.BAD_REQUEST;
+            firstError = "malformed body: " + e.getOriginalMessage();
+        } catch (ZipException | EOFException e) {
+            failure = HttpStatus.BAD_REQUEST;
+            firstError = "malformed gzip body";
+        }
+        if (accepted > 0) {
+            contractHealthTracker.recordAccepted();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accepted", accepted);
+        result.put("rejected", rejected);
+        result.put("processed", accepted + rejected);
+        result.put("contractVersion", resolvedVersion);
+        result.put("tenantId", tenantId);
+        result.put("appId", appId);
+        if (quotaExceeded) {
+            result.put("message", "quota exceeded");
+        } else if (storageBusy) {
+            result.put("message", "storage busy");
+        } else if (firstError != null) {
+            result.put("message", firstError);
+        }
+        if (failure != null) {
+            return ResponseEntity.status(failure).body(result);
+        }
+        // 未读完请求体时不能返回2xx，否则客户端会把剩余条目当作已上报
+        if (quotaExceeded) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(result);
+        }
+        if (storageBusy) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result);
+        }
+        if (accepted == 0 && rejected == 0) {
+            result.put("message", "items must not be empty");
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    private AICallLogIngestionItemReader itemReader(HttpServletRequest request, String contentEncoding) throws IOException {
+        InputStream body = request.getInputStream();
+        if (contentEncoding != null && contentEncoding.trim().equalsIgnoreCase("gzip")) {
+            body = new GZIPInputStream(body, 8192);
+        }
+        int maxItemBytes = ingestionProperties.getStreamMaxItemBytes();
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith(AICallLogBinaryBatchWriter.CONTENT_TYPE)) {
+            return new AICallLogBinaryBatchReader(objectMapper, body, maxItemBytes);
+        }
+        return new AICallLogIngestionStreamReader(objectMapper, body, maxItemBytes);
+    }
+
     @GetMapping("/records")
     public ResponseEntity<?> queryRecords(
             @RequestHeader(value = "X-SF-API-KEY", required = false) String apiKey,
@@ -166,7 +308,10 @@ public class AICallLogIngestionController {
     }
 
     private String resolveContractVersion(AICallLogUploadBatchRequest request, String headerContractVersion) {
-        String fromBody = request == null ? null : request.getContractVersion();
+        return resolveContractVersion(request == null ? null : request.getContractVersion(), headerContractVersion);
+    }
+
+    private String resolveContractVersion(String fromBody, String headerContractVersion) {
         if (!isBlank(fromBody)) {
             return fromBody.trim();
         }
@@ -230,6 +375,10 @@ public class AICallLogIngestionController {
                 .rawResponse(item.getRawResponse())
                 .output(item.getOutput())
                 .errorMessage(item.getErrorMessage())
+                .promptTokens(item.getPromptTokens())
+                .completionTokens(item.getCompletionTokens())
+                .totalTokens(item.getTotalTokens())
+                .cost(item.getCost())
                 .frequency(1)
                 .lastAccessTime(now)
                 .build();
@@ -5,6 +5,7 @@ import com.suifeng.sfchain.configcenter.dto.AppDtos;
 import com.suifeng.sfchain.configcenter.dto.ConfigDtos;
 import com.suifeng.sfchain.configcenter.dto.TenantDtos;
 import com.suifeng.sfchain.configcenter.service.ControlPlaneService;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -140,6 +141,11 @@ public class ControlPlaneController {
         return controlPlaneService.upsertOperationConfig(tenantId, appId, request);
     }
 
+    @GetMapping("${sf-chain.path.api-prefix:/sf-chain}/control/tenants/{tenantId}/apps/{appId}/execution-stats")
+    public ConfigDtos.ExecutionStatsView executionStats(@PathVariable String tenantId, @PathVariable String appId) {
+        return controlPlaneService.getExecutionStats(tenantId, appId);
+    }
+
     @PostMapping("${sf-chain.path.api-prefix:/sf-chain}/control/template/preview")
     public ConfigDtos.PromptTemplatePreviewResponse previewPromptTemplate(
             @RequestBody ConfigDtos.PromptTemplatePreviewRequest request) {
@@ -173,6 +179,16 @@ public class ControlPlaneController {
         return controlPlaneService.syncOperationCatalog(tenantId, appId, apiKey, instanceId, request);
     }
 
+    @PostMapping("/v1/metrics/execution-stats")
+    public ConfigDtos.ExecutionStatsReportResponse reportExecutionStats(
+            @RequestParam String tenantId,
+            @RequestParam String appId,
+            @RequestHeader(name = "X-SF-API-KEY") String apiKey,
+            @RequestHeader(name = "X-SF-INSTANCE-ID", required = false) String instanceId,
+            @RequestBody(required = false) ExecutionStatsReport report) {
+        return controlPlaneService.reportExecutionStats(tenantId, appId, apiKey, instanceId, report);
+    }
+
     @PostMapping("/v1/auth/token/validate")
     public ApiKeyDtos.ValidateApiKeyResponse validateApiKey(@RequestBody ApiKeyDtos.ValidateApiKeyRequest request) {
         return controlPlaneService.validateApiKey(request);
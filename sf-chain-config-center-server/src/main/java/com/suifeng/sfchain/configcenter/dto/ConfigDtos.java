@@ -1,5 +1,6 @@
 package com.suifeng.sfchain.configcenter.dto;
 
+import com.suifeng.sfchain.core.metrics.LatencySummary;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -136,4 +137,34 @@ public final class ConfigDtos {
         private String errorExpression;
         private String errorMessage;
     }
+
+    @Data
+    public static class ExecutionStatsReportResponse {
+        private String tenantId;
+        private String appId;
+        private String instanceId;
+        private int operations;
+        private int models;
+        private LocalDateTime receivedAt;
+    }
+
+    @Data
+    public static class ExecutionStatsView {
+        private String tenantId;
+        private String appId;
+        private int instanceCount;
+        private LocalDateTime mergedAt;
+        private Map<String, ExecutionStatsSummary> operations;
+        private Map<String, ExecutionStatsSummary> models;
+    }
+
+    @Data
+    public static class ExecutionStatsSummary {
+        private long totalExecutions;
+        private long successfulExecutions;
+        private long failedExecutions;
+        private double successRate;
+        private LatencySummary latency;
+        private Map<String, LatencySummary> windows;
+    }
 }
@@ -20,6 +20,7 @@ import com.suifeng.sfchain.configcenter.logging.AICallLogRouteContext;
 import com.suifeng.sfchain.core.AIService;
 import com.suifeng.sfchain.core.BaseAIOperation;
 import com.suifeng.sfchain.core.PromptTemplateEngine;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
 import com.suifeng.sfchain.core.openai.OpenAIModelConfig;
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
 import com.suifeng.sfchain.operations.ModelValidationOperation.ValidationRequest;
@@ -63,6 +64,7 @@ public class ControlPlaneService {
     private final TenantRepository tenantRepository;
     private final AppRepository appRepository;
     private final InMemoryAgentHeartbeatStore heartbeatStore;
+    private final InMemoryExecutionStatsStore executionStatsStore;
     private final ApiKeyRepository apiKeyRepository;
     private final TenantModelConfigRepository tenantModelConfigRepository;
     private final TenantOperationConfigRepository tenantOperationConfigRepository;
@@ -585,6 +587,42 @@ public class ControlPlaneService {
         return response;
     }
 
+    @Transactional(readOnly = true)
+    public ConfigDtos.ExecutionStatsReportResponse reportExecutionStats(
+            String tenantId,
+            String appId,
+            String apiKey,
+            String instanceId,
+            ExecutionStatsReport report) {
+        String normalizedTenantId = normalizeRequired(tenantId, "tenantId");
+        String normalizedAppId = normalizeRequired(appId, "appId");
+        String normalizedApiKey = normalizeRequired(apiKey, "apiKey");
+        ApiKeyDtos.ValidateApiKeyResponse keyCheck = validateBySecret(normalizedApiKey, normalizedTenantId, normalizedAppId);
+        if (!keyCheck.isValid()) {
+            throw new IllegalArgumentException("api key invalid: " + keyCheck.getMessage());
+        }
+        assertTenantActive(normalizedTenantId);
+        assertAppActive(normalizedTenantId, normalizedAppId);
+        String normalizedInstanceId = normalizeInstanceId(instanceId, normalizedAppId);
+        heartbeatStore.touch(normalizedTenantId, normalizedAppId, normalizedInstanceId, "execution-stats");
+
+        ExecutionStatsReport safeReport = report == null ? new ExecutionStatsReport() : report;
+        executionStatsStore.save(normalizedTenantId, normalizedAppId, normalizedInstanceId, safeReport);
+
+        ConfigDtos.ExecutionStatsReportResponse response = new ConfigDtos.ExecutionStatsReportResponse();
+        response.setTenantId(normalizedTenantId);
+        response.setAppId(normalizedAppId);
+        response.setInstanceId(normalizedInstanceId);
+        response.setOperations(safeReport.getOperations() == null ? 0 : safeReport.getOperations().size());
+        response.setModels(safeReport.getModels() == null ? 0 : safeReport.getModels().size());
+        response.setReceivedAt(LocalDateTime.now());
+        return response;
+    }
+
+    public ConfigDtos.ExecutionStatsView getExecutionStats(String tenantId, String appId) {
+        return executionStatsStore.merge(normalizeRequired(tenantId, "tenantId"), normalizeRequired(appId, "appId"));
+    }
+
     @Transactional(readOnly = true)
     public List<Map<String, Object>> listOperationConfigs(String tenantId, String appId) {
         assertTenantActive(tenantId);
@@ -754,6 +792,11 @@ public class ControlPlaneService {
             payload.put("supportJsonOutput", toBoolean(config.get("supportJsonOutput"), false));
             payload.put("supportThinking", toBoolean(config.get("supportThinking"), false));
             payload.put("description", normalizeOptional(toString(config.get("description"))));
+            payload.put("requestsPerMinute", toInteger(config.get("requestsPerMinute")));
+            payload.put("tokensPerMinute", toInteger(config.get("tokensPerMinute")));
+            payload.put("rateLimitQueueSize", toInteger(config.get("rateLimitQueueSize")));
+            payload.put("rateLimitMaxWaitMs", toInteger(config.get("rateLimitMaxWaitMs")));
+            payload.put("operationWeights", toIntegerMap(config.get("operationWeights")));
             Object headers = config.get("additionalHeaders");
             payload.put("additionalHeaders", headers instanceof Map ? headers : Map.of());
             result.put(modelName, payload);
@@ -782,6 +825,15 @@ public class ControlPlaneService {
             payload.put("promptMode", promptMode == null ? "LOCAL_ONLY" : promptMode);
             payload.put("promptTemplate", normalizeOptional(toString(config.get("promptTemplate"))));
             payload.put("promptStrictRender", toBoolean(config.get("promptStrictRender"), false));
+            payload.put("cacheEnabled", toBoolean(config.get("cacheEnabled"), false));
+            payload.put("cacheTtlSeconds", toInteger(config.get("cacheTtlSeconds")));
+            payload.put("coalesceRequests", toBoolean(config.get("coalesceRequests"), false));
+            payload.put("routingStrategy", normalizeOptional(toString(config.get("routingStrategy"))));
+            payload.put("routes", toModelRoutes(config.get("routes")));
+            payload.put("failoverEnabled", toBoolean(config.get("failoverEnabled"), true));
+            payload.put("hedgeEnabled", toBoolean(config.get("hedgeEnabled"), false));
+            payload.put("hedgeBudgetPercent", toInteger(config.get("hedgeBudgetPercent")));
+            payload.put("hedgeModel", normalizeOptional(toString(config.get("hedgeModel"))));
             result.put(operationType, payload);
         }
         return result;
@@ -800,6 +852,42 @@ public class ControlPlaneService {
         return result;
     }
 
+    private static List<Map<String, Object>> toModelRoutes(Object value) {
+        if (!(value instanceof List<?> list)) {
+            return List.of();
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> route)) {
+                continue;
+            }
+            String modelName = normalizeOptional(toString(route.get("modelName")));
+            if (modelName == null) {
+                continue;
+            }
+            Integer weight = toInteger(route.get("weight"));
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("modelName", modelName);
+            payload.put("weight", weight == null ? 1 : weight);
+            result.add(payload);
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> toIntegerMap(Object value) {
+        if (!(value instanceof Map<?, ?> map)) {
+            return Map.of();
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Integer number = toInteger(entry.getValue());
+            if (entry.getKey() != null && number != null) {
+                result.put(String.valueOf(entry.getKey()), number);
+            }
+        }
+        return result;
+    }
+
     private static Integer toInteger(Object value) {
         if (value instanceof Number) {
             return ((Number) value).intValue();
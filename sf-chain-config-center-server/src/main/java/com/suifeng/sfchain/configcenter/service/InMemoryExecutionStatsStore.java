@@ -0,0 +1,105 @@
+package com.suifeng.sfchain.configcenter.service;
+
+import com.suifeng.sfchain.configcenter.dto.ConfigDtos;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsSnapshot;
+import com.suifeng.sfchain.core.metrics.LatencySummary;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 各实例上报的执行统计快照，按实例保留最新一份，查询时跨实例合并直方图
+ */
+@Component
+public class InMemoryExecutionStatsStore {
+
+    private static final int RETENTION_SECONDS = 3600;
+    private final ConcurrentMap<String, ReportRecord> records = new ConcurrentHashMap<>();
+
+    public void save(String tenantId, String appId, String instanceId, ExecutionStatsReport report) {
+        ReportRecord record = new ReportRecord();
+        record.tenantId = tenantId;
+        record.appId = appId;
+        record.report = report;
+        record.receivedAt = LocalDateTime.now();
+        records.put(tenantId + "|" + appId + "|" + instanceId, record);
+    }
+
+    public ConfigDtos.ExecutionStatsView merge(String tenantId, String appId) {
+        LocalDateTime retentionCutoff = LocalDateTime.now().minusSeconds(RETENTION_SECONDS);
+        Map<String, ExecutionStatsSnapshot> operations = new TreeMap<>();
+        Map<String, ExecutionStatsSnapshot> models = new TreeMap<>();
+        int instanceCount = 0;
+        for (Map.Entry<String, ReportRecord> entry : records.entrySet()) {
+            ReportRecord record = entry.getValue();
+            if (record.receivedAt.isBefore(retentionCutoff)) {
+                records.remove(entry.getKey(), record);
+                continue;
+            }
+            if (!tenantId.equals(record.tenantId) || !appId.equals(record.appId)) {
+                continue;
+            }
+            instanceCount++;
+            mergeInto(operations, record.report.getOperations());
+            mergeInto(models, record.report.getModels());
+        }
+
+        ConfigDtos.ExecutionStatsView view = new ConfigDtos.ExecutionStatsView();
+        view.setTenantId(tenantId);
+        view.setAppId(appId);
+        view.setInstanceCount(instanceCount);
+        view.setMergedAt(LocalDateTime.now());
+        view.setOperations(summarize(operations));
+        view.setModels(summarize(models));
+        return view;
+    }
+
+    private static void mergeInto(Map<String, ExecutionStatsSnapshot> target, Map<String, ExecutionStatsSnapshot> source) {
+        if (source == null) {
+            return;
+        }
+        source.forEach((key, snapshot) -> {
+            if (key != null && snapshot != null) {
+                target.merge(key, snapshot, ExecutionStatsSnapshot::merge);
+            }
+        });
+    }
+
+    private static Map<String, ConfigDtos.ExecutionStatsSummary> summarize(Map<String, ExecutionStatsSnapshot> snapshots) {
+        Map<String, ConfigDtos.ExecutionStatsSummary> result = new LinkedHashMap<>();
+        snapshots.forEach((key, snapshot) -> {
+            ConfigDtos.ExecutionStatsSummary summary = new ConfigDtos.ExecutionStatsSummary();
+            summary.setTotalExecutions(snapshot.getTotalExecutions());
+            summary.setSuccessfulExecutions(snapshot.getSuccessfulExecutions());
+            summary.setFailedExecutions(snapshot.getFailedExecutions());
+            summary.setSuccessRate(snapshot.getTotalExecutions() > 0
+                    ? (double) snapshot.getSuccessfulExecutions() / snapshot.getTotalExecutions()
+                    : 0.0);
+            summary.setLatency(snapshot.getHistogram() == null ? null : snapshot.getHistogram().summarize());
+            Map<String, LatencySummary> windows = new LinkedHashMap<>();
+            if (snapshot.getWindows() != null) {
+                snapshot.getWindows().forEach((window, histogram) -> {
+                    if (histogram != null) {
+                        windows.put(window, histogram.summarize());
+                    }
+                });
+            }
+            summary.setWindows(windows);
+            result.put(key, summary);
+        });
+        return result;
+    }
+
+    private static final class ReportRecord {
+        private String tenantId;
+        private String appId;
+        private ExecutionStatsReport report;
+        private LocalDateTime receivedAt;
+    }
+}
@@ -131,4 +131,9 @@ public class SfChainConfigSyncProperties {
      * 鏄惁鍦ㄥ惎鍔ㄦ椂涓婃姤鏈湴鎿嶄綔鑺傜偣鐩綍鍒伴厤缃腑蹇?
      */
     private boolean operationCatalogSyncEnabled = true;
+
+    /**
+     * 是否随同步周期上报执行耗时直方图快照到配置中心
+     */
+    private boolean executionStatsUploadEnabled = true;
 }
@@ -5,6 +5,7 @@ import com.suifeng.sfchain.config.remote.GovernanceSyncApplier;
 import com.suifeng.sfchain.config.remote.RemoteConfigClient;
 import com.suifeng.sfchain.config.remote.RemoteConfigSyncService;
 import com.suifeng.sfchain.core.AIOperationRegistry;
+import com.suifeng.sfchain.core.AIService;
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
@@ -41,14 +42,16 @@ public class SfChainRemoteConfigAutoConfiguration {
             OpenAIModelFactory modelFactory,
             AIOperationRegistry operationRegistry,
             ObjectMapper objectMapper,
-            ObjectProvider<GovernanceSyncApplier> governanceSyncApplierProvider) {
+            ObjectProvider<GovernanceSyncApplier> governanceSyncApplierProvider,
+            ObjectProvider<AIService> aiServiceProvider) {
         return new RemoteConfigSyncService(
                 remoteConfigClient,
                 syncProperties,
                 modelFactory,
                 operationRegistry,
                 objectMapper,
-                governanceSyncApplierProvider.getIfAvailable()
+                governanceSyncApplierProvider.getIfAvailable(),
+                aiServiceProvider.getIfAvailable()
         );
     }
 
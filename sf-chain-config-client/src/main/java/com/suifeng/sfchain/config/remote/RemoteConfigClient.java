@@ -2,6 +2,7 @@ package com.suifeng.sfchain.config.remote;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suifeng.sfchain.config.SfChainServerProperties;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 
@@ -211,6 +212,23 @@ public class RemoteConfigClient {
         postJson(requestUrl, payload, "鎿嶄綔鑺傜偣鐩綍涓婃姤澶辫触");
     }
 
+    public void pushExecutionStats(ExecutionStatsReport report) throws IOException, InterruptedException {
+        if (!StringUtils.hasText(serverProperties.getBaseUrl())) {
+            throw new IllegalStateException("sf-chain.server.base-url not configured");
+        }
+        if (!StringUtils.hasText(serverProperties.getApiKey())) {
+            throw new IllegalStateException("sf-chain.server.api-key not configured");
+        }
+        String requestUrl = trimTrailingSlash(serverProperties.getBaseUrl())
+                + "/v1/metrics/execution-stats?tenantId=" + encode(serverProperties.getTenantId())
+                + "&appId=" + encode(serverProperties.getAppId());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("capturedAt", report.getCapturedAt());
+        payload.put("operations", report.getOperations());
+        payload.put("models", report.getModels());
+        postJson(requestUrl, payload, "execution stats upload failed");
+    }
+
     private String buildSnapshotUrl(String currentVersion) {
         StringBuilder url = new StringBuilder(trimTrailingSlash(serverProperties.getBaseUrl()))
                 .append("/v1/config/snapshot?")
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.suifeng.sfchain.annotation.AIOp;
 import com.suifeng.sfchain.config.SfChainConfigSyncProperties;
 import com.suifeng.sfchain.core.AIOperationRegistry;
+import com.suifeng.sfchain.core.AIService;
 import com.suifeng.sfchain.core.BaseAIOperation;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
 import com.suifeng.sfchain.core.openai.OpenAIModelConfig;
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
 import lombok.extern.slf4j.Slf4j;
@@ -48,6 +50,7 @@ public class RemoteConfigSyncService {
     private final GovernanceSyncApplier governanceSyncApplier;
     private final GovernanceSyncStateStore stateStore;
     private final GovernanceLeaseManager leaseManager;
+    private final AIService aiService;
     private final ConcurrentMap<String, GovernanceFinalizeRecord> finalizedReleaseStates = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, GovernanceFinalizeTask> pendingFinalizations = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
@@ -78,7 +81,19 @@ public class RemoteConfigSyncService {
             AIOperationRegistry operationRegistry,
             ObjectMapper objectMapper,
             GovernanceSyncApplier governanceSyncApplier) {
+        this(remoteConfigClient, syncProperties, modelFactory, operationRegistry, objectMapper, governanceSyncApplier, null);
+    }
+
+    public RemoteConfigSyncService(
+            RemoteConfigClient remoteConfigClient,
+            SfChainConfigSyncProperties syncProperties,
+            OpenAIModelFactory modelFactory,
+            AIOperationRegistry operationRegistry,
+            ObjectMapper objectMapper,
+            GovernanceSyncApplier governanceSyncApplier,
+            AIService aiService) {
         this.remoteConfigClient = remoteConfigClient;
+        this.aiService = aiService;
         this.syncProperties = syncProperties;
         this.modelFactory = modelFactory;
         this.operationRegistry = operationRegistry;
@@ -142,6 +157,7 @@ public class RemoteConfigSyncService {
         }
         try {
             syncOperationCatalogIfNeeded();
+            pushExecutionStatsIfEnabled();
             if (leaseAcquired) {
                 reconcileFinalizeState();
                 flushPendingFinalizations();
@@ -226,6 +242,24 @@ public class RemoteConfigSyncService {
         }
     }
 
+    private void pushExecutionStatsIfEnabled() {
+        if (aiService == null || !syncProperties.isExecutionStatsUploadEnabled()) {
+            return;
+        }
+        ExecutionStatsReport report = aiService.exportExecutionStats();
+        if (report.getOperations().isEmpty() && report.getModels().isEmpty()) {
+            return;
+        }
+        try {
+            remoteConfigClient.pushExecutionStats(report);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            // 统计上报失败不影响配置同步
+            log.debug("执行统计上报失败: {}", ex.getMessage());
+        }
+    }
+
     private List<RemoteConfigClient.OperationCatalogItem> buildOperationCatalog() {
         List<String> operationTypes = new ArrayList<>(operationRegistry.getAllOperations());
         operationTypes.sort(String::compareTo);
@@ -68,4 +68,37 @@ public @interface AIOp {
      * 默认温度参数
      */
     double defaultTemperature() default 0.7;
+
+    /**
+     * 是否缓存解析成功的结果
+     * 相同模型、请求参数与提示词的调用直接返回缓存结果，不再请求模型；适用于输出稳定的分类、抽取类操作
+     */
+    boolean cacheEnabled() default false;
+
+    /**
+     * 结果缓存时长（秒）
+     */
+    int cacheTtlSeconds() default 600;
+
+    /**
+     * 是否合并相同的在途请求
+     * 并发的相同请求只调用一次模型并共享同一个结果对象（流式调用共享同一个上游流）
+     */
+    boolean coalesceRequests() default false;
+
+    /**
+     * 是否启用对冲请求
+     * 调用超过该操作近期耗时的p95仍未返回时，再发出一个相同请求，先返回的结果生效、另一个被取消；适用于延迟敏感的操作
+     */
+    boolean hedgeEnabled() default false;
+
+    /**
+     * 对冲预算：对冲请求最多占调用数的百分比
+     */
+    int hedgeBudgetPercent() default 5;
+
+    /**
+     * 对冲请求使用的模型，为空时与主请求使用同一模型
+     */
+    String hedgeModel() default "";
 }
\ No newline at end of file
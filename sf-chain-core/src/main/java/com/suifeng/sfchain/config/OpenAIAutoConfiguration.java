@@ -3,8 +3,12 @@ package com.suifeng.sfchain.config;
 import com.suifeng.sfchain.core.AIModel;
 import com.suifeng.sfchain.core.openai.OpenAIModelConfig;
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
+import com.suifeng.sfchain.core.openai.transport.JdkOpenAIHttpTransport;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpTransport;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpTransportConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -33,15 +37,33 @@ public class OpenAIAutoConfiguration {
     private final OpenAIModelsConfig openAIModelsConfig;
     private final SfChainOpenAIProperties openAIProperties;
     
+    /**
+     * 创建共享的HTTP传输层（按端点复用连接池）
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OpenAIHttpTransport openAIHttpTransport() {
+        return new JdkOpenAIHttpTransport(OpenAIHttpTransportConfig.builder()
+            .connectTimeoutMs(openAIProperties.getConnectTimeoutMs())
+            .http2Enabled(openAIProperties.isHttp2Enabled())
+            .poolSize(openAIProperties.getPoolSize())
+            .acquireTimeoutMs(openAIProperties.getPoolAcquireTimeoutMs())
+            .keepAliveSeconds(openAIProperties.getKeepAliveSeconds())
+            .idleEvictSeconds(openAIProperties.getPoolIdleEvictSeconds())
+            .ioThreads(openAIProperties.getIoThreads())
+            .build());
+    }
+    
     /**
      * 创建OpenAI模型工厂
      */
     @Bean
     @Primary
-    public OpenAIModelFactory openAIModelFactory() {
+    public OpenAIModelFactory openAIModelFactory(OpenAIHttpTransport openAIHttpTransport) {
         OpenAIModelFactory factory = new OpenAIModelFactory(
             openAIProperties.getConnectTimeoutMs(),
-            openAIProperties.getReadTimeoutMs()
+            openAIProperties.getReadTimeoutMs(),
+            openAIHttpTransport
         );
         
         // 注册配置文件中的模型
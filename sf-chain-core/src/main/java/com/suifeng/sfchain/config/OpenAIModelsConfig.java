@@ -91,6 +91,46 @@ public class OpenAIModelsConfig {
          */
         private Boolean enabled = true;
         
+        /**
+         * 流式输出时是否请求用量统计
+         */
+        private Boolean streamUsage = true;
+        
+        /**
+         * 提示词单价(每1000 token)
+         */
+        private Double promptPricePer1kTokens;
+        
+        /**
+         * 生成内容单价(每1000 token)
+         */
+        private Double completionPricePer1kTokens;
+        
+        /**
+         * 每分钟请求数上限(RPM)
+         */
+        private Integer requestsPerMinute;
+        
+        /**
+         * 每分钟token数上限(TPM)
+         */
+        private Integer tokensPerMinute;
+        
+        /**
+         * 限流等待队列长度
+         */
+        private Integer rateLimitQueueSize;
+        
+        /**
+         * 限流最大排队时间(毫秒)
+         */
+        private Integer rateLimitMaxWaitMs;
+        
+        /**
+         * 限流排队时各操作的权重
+         */
+        private Map<String, Integer> operationWeights = new HashMap<>();
+        
         /**
          * 转换为OpenAIModelConfig
          */
@@ -108,6 +148,14 @@ public class OpenAIModelsConfig {
                 .description(description)
                 .provider(provider)
                 .enabled(enabled)
+                .streamUsage(streamUsage)
+                .promptPricePer1kTokens(promptPricePer1kTokens)
+                .completionPricePer1kTokens(completionPricePer1kTokens)
+                .requestsPerMinute(requestsPerMinute)
+                .tokensPerMinute(tokensPerMinute)
+                .rateLimitQueueSize(rateLimitQueueSize)
+                .rateLimitMaxWaitMs(rateLimitMaxWaitMs)
+                .operationWeights(operationWeights)
                 .build();
         }
     }
@@ -4,10 +4,16 @@ import com.suifeng.sfchain.core.AIOperationRegistry;
 import com.suifeng.sfchain.core.AIService;
 import com.suifeng.sfchain.core.ModelRegistry;
 import com.suifeng.sfchain.core.PromptTemplateEngine;
+import com.suifeng.sfchain.core.cache.AIRequestCoalescer;
+import com.suifeng.sfchain.core.cache.AIResponseCache;
+import com.suifeng.sfchain.core.execution.OperationExecutionDispatcher;
 import com.suifeng.sfchain.core.logging.AICallLogAspect;
 import com.suifeng.sfchain.core.logging.AICallLogManager;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadGateway;
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
+import com.suifeng.sfchain.core.resilience.AIRequestHedger;
+import com.suifeng.sfchain.core.resilience.OperationResilienceExecutor;
+import com.suifeng.sfchain.core.routing.AIModelRouter;
 import com.suifeng.sfchain.operations.JSONRepairOperation;
 import com.suifeng.sfchain.operations.ModelValidationOperation;
 import com.suifeng.sfchain.persistence.context.ChatContextService;
@@ -29,7 +35,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @AutoConfiguration
 @EnableConfigurationProperties({
         SfChainFeaturesProperties.class,
-        SfChainLoggingProperties.class
+        SfChainLoggingProperties.class,
+        SfChainResilienceProperties.class,
+        SfChainExecutionProperties.class,
+        SfChainCacheProperties.class
 })
 @ConditionalOnProperty(prefix = "sf-chain", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class SfChainAutoConfiguration {
@@ -84,6 +93,48 @@ public class SfChainAutoConfiguration {
         return new PromptTemplateEngine(objectMapper);
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public OperationResilienceExecutor operationResilienceExecutor(SfChainResilienceProperties resilienceProperties) {
+        log.info("初始化SF-Chain 调用容错执行器");
+        return new OperationResilienceExecutor(resilienceProperties);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public AIRequestHedger aiRequestHedger(SfChainResilienceProperties resilienceProperties,
+                                           ObjectProvider<AIService> aiServiceProvider) {
+        return new AIRequestHedger(resilienceProperties, operationType -> {
+            AIService aiService = aiServiceProvider.getIfAvailable();
+            return aiService == null ? null : aiService.getRecentUpstreamLatency(operationType);
+        });
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AIResponseCache aiResponseCache(SfChainCacheProperties cacheProperties, ObjectMapper objectMapper) {
+        log.info("初始化SF-Chain 响应缓存");
+        return new AIResponseCache(cacheProperties, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AIRequestCoalescer aiRequestCoalescer() {
+        return new AIRequestCoalescer();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AIModelRouter aiModelRouter() {
+        return new AIModelRouter();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public OperationExecutionDispatcher operationExecutionDispatcher(SfChainExecutionProperties executionProperties) {
+        return new OperationExecutionDispatcher(executionProperties);
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public JSONRepairOperation jsonRepairOperation() {
@@ -0,0 +1,40 @@
+package com.suifeng.sfchain.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * SF-Chain 响应缓存配置
+ * 是否缓存及缓存时长按操作配置（@AIOp.cacheEnabled / OperationConfig.cacheEnabled），这里只配置缓存容量与磁盘层
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sf-chain.cache")
+public class SfChainCacheProperties {
+
+    /**
+     * 是否启用响应缓存（总开关）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 堆内缓存最大占用（字节，按序列化后的结果大小估算）
+     */
+    private long maxHeapBytes = 64L * 1024 * 1024;
+
+    /**
+     * 是否启用本地磁盘缓存层
+     */
+    private boolean diskEnabled = false;
+
+    /**
+     * 磁盘缓存目录
+     */
+    private String diskDir = ".sf-chain/response-cache";
+
+    /**
+     * 磁盘缓存最大占用（字节）
+     */
+    private long diskMaxBytes = 512L * 1024 * 1024;
+}
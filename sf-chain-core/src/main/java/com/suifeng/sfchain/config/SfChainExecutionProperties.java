@@ -0,0 +1,63 @@
+package com.suifeng.sfchain.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SF-Chain 异步与批量执行配置
+ * executeAsync / executeBatch 使用独立执行器，不再占用JVM共享的ForkJoin公共池
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sf-chain.execution")
+public class SfChainExecutionProperties {
+
+    /**
+     * 执行器模式：AUTO（JDK21及以上使用虚拟线程，否则使用有界线程池）、VIRTUAL、PLATFORM
+     */
+    private ExecutorMode mode = ExecutorMode.AUTO;
+
+    /**
+     * 已不再使用：有界线程池按需创建线程直到maxPoolSize，空闲超过keepAliveSeconds后回收
+     */
+    @Deprecated
+    private int corePoolSize = 16;
+
+    /**
+     * 有界线程池最大线程数，即PLATFORM模式下同时执行的调用上限
+     */
+    private int maxPoolSize = 64;
+
+    /**
+     * 有界线程池任务队列容量，仅在maxPoolSize个线程都忙时排队，队列满时拒绝提交
+     */
+    private int queueCapacity = 2000;
+
+    /**
+     * 空闲线程存活时间（秒）
+     */
+    private int keepAliveSeconds = 60;
+
+    /**
+     * 线程名前缀
+     */
+    private String threadNamePrefix = "sf-chain-exec-";
+
+    /**
+     * 单个操作默认最大并发数，小于等于0表示不限制
+     */
+    private int defaultOperationConcurrency = 32;
+
+    /**
+     * 按操作类型覆盖最大并发数
+     */
+    private Map<String, Integer> operationConcurrency = new LinkedHashMap<>();
+
+    public enum ExecutorMode {
+        AUTO, VIRTUAL, PLATFORM
+    }
+}
@@ -28,6 +28,11 @@ public class SfChainIngestionProperties {
      */
     private int maxBatchSize = 500;
 
+    /**
+     * 流式接入（NDJSON/JSON数组）单条最大字节数
+     */
+    private int streamMaxItemBytes = 1024 * 1024;
+
     /**
      * 是否要求tenantId与appId必须传入
      */
@@ -102,4 +107,88 @@ public class SfChainIngestionProperties {
      * 是否要求新白名单与当前白名单存在交集
      */
     private boolean requireCurrentVersionOverlap = true;
+
+    /**
+     * 是否启用组提交写入（请求线程只入队，后台线程批量落盘）
+     */
+    private boolean groupCommitEnabled = true;
+
+    /**
+     * 组提交待写队列容量（条），队列满时丢弃并计数
+     */
+    private int groupCommitQueueCapacity = 100000;
+
+    /**
+     * 组提交单批最大条数
+     */
+    private int groupCommitMaxBatchSize = 1000;
+
+    /**
+     * 组提交刷盘策略
+     */
+    private FsyncPolicy groupCommitFsyncPolicy = FsyncPolicy.INTERVAL;
+
+    /**
+     * INTERVAL策略下的刷盘间隔（毫秒）
+     */
+    private long groupCommitFsyncIntervalMs = 1000;
+
+    /**
+     * 组提交同时保持打开的文件数上限
+     */
+    private int groupCommitMaxOpenFiles = 256;
+
+    /**
+     * 单个分段最大字节数（未压缩），超过后滚动到新分段；0表示不按大小滚动
+     */
+    private long segmentMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 是否按小时滚动分段（yyyyMMddHH-N.jsonl）；关闭时除按大小滚动外，分段最长使用一天后滚动，保证能按保留期清理
+     */
+    private boolean segmentHourlyRollover = true;
+
+    /**
+     * 是否在后台将已封存分段压缩为gzip
+     */
+    private boolean segmentCompressionEnabled = true;
+
+    /**
+     * 是否启用统计汇总（按分钟/小时/天预聚合，长时间窗口统计不再扫描原始日志）
+     */
+    private boolean rollupEnabled = true;
+
+    /**
+     * 汇总文件目录
+     */
+    private String rollupDir = ".sf-chain/ingestion-rollups";
+
+    /**
+     * 内存中的分钟汇总落盘间隔（秒）
+     */
+    private int rollupFlushIntervalSeconds = 10;
+
+    /**
+     * 分钟汇总保留天数，超出后统计窗口边界按小时对齐
+     */
+    private int rollupMinuteRetentionDays = 2;
+
+    /**
+     * 小时汇总保留天数，超出后统计窗口边界按天对齐
+     */
+    private int rollupHourRetentionDays = 60;
+
+    /**
+     * 天汇总保留天数
+     */
+    private int rollupDayRetentionDays = 730;
+
+    public enum FsyncPolicy {
+        /** 不主动刷盘，由操作系统回写 */
+        NONE,
+        /** 按固定间隔刷盘 */
+        INTERVAL,
+        /** 每批写入后刷盘 */
+        BATCH
+    }
 }
@@ -28,7 +28,17 @@ public class SfChainLoggingProperties {
     private String uploadEndpoint = "/v1/logs/ai-calls/batch";
 
     /**
-     * 上报周期（秒）
+     * 流式上报接口路径（二进制批量格式）
+     */
+    private String uploadStreamEndpoint = "/v1/logs/ai-calls/stream";
+
+    /**
+     * 上报格式；BINARY在配置中心不支持时自动回退为JSON
+     */
+    private UploadFormat uploadFormat = UploadFormat.BINARY;
+
+    /**
+     * 上报周期（秒），即日志在未攒满一批时的最长等待时间
      */
     private int uploadIntervalSeconds = 3;
 
@@ -38,10 +48,40 @@ public class SfChainLoggingProperties {
     private int queueCapacity = 10000;
 
     /**
-     * 批量上报大小
+     * 批量上报大小（自适应调整的初始值）
      */
     private int batchSize = 200;
 
+    /**
+     * 自适应批量大小下限
+     */
+    private int uploadMinBatchSize = 20;
+
+    /**
+     * 自适应批量大小上限
+     */
+    private int uploadMaxBatchSize = 1000;
+
+    /**
+     * 同时在途的上报批次数上限
+     */
+    private int uploadMaxConcurrency = 4;
+
+    /**
+     * 上报目标响应时间（毫秒），超过后缩小批量
+     */
+    private long uploadTargetLatencyMs = 1000;
+
+    /**
+     * 重试退避基准时间（毫秒），按失败次数指数增长并加随机抖动
+     */
+    private long uploadBackoffBaseMs = 200;
+
+    /**
+     * 重试退避最大时间（毫秒）
+     */
+    private long uploadBackoffMaxMs = 30000;
+
     /**
      * 失败重试次数
      */
@@ -56,4 +96,31 @@ public class SfChainLoggingProperties {
      * 是否上报输入输出内容
      */
     private boolean uploadContent = true;
+
+    /**
+     * 是否启用本地落盘缓冲（内存队列溢出与配置中心不可用时写入磁盘，恢复后按序重放）
+     */
+    private boolean spillEnabled = false;
+
+    /**
+     * 落盘缓冲目录
+     */
+    private String spillDir = ".sf-chain/upload-spool";
+
+    /**
+     * 落盘分段大小（字节）
+     */
+    private long spillSegmentBytes = 16L * 1024 * 1024;
+
+    /**
+     * 落盘缓冲最大占用（字节），超出后新日志丢弃
+     */
+    private long spillMaxBytes = 512L * 1024 * 1024;
+
+    public enum UploadFormat {
+        /** JSON批量请求体 */
+        JSON,
+        /** gzip压缩的二进制批量格式，逐条流式编码 */
+        BINARY
+    }
 }
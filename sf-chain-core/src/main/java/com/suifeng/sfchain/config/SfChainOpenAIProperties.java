@@ -21,4 +21,35 @@ public class SfChainOpenAIProperties {
      * 读取超时（毫秒）
      */
     private int readTimeoutMs = 300000;
+
+    /**
+     * 是否优先使用HTTP/2
+     */
+    private boolean http2Enabled = true;
+
+    /**
+     * 每个端点连接池大小（HTTP/2下为最大并发流数）
+     * 以并发许可实现，连接本身由JDK HttpClient管理；连接池指标中的availablePermits为剩余许可，不是空闲连接数
+     */
+    private int poolSize = 64;
+
+    /**
+     * 获取连接最大等待时间（毫秒）
+     */
+    private long poolAcquireTimeoutMs = 30000;
+
+    /**
+     * 空闲连接保活时间（秒）
+     */
+    private int keepAliveSeconds = 300;
+
+    /**
+     * 端点连接池空闲淘汰时间（秒）
+     */
+    private int poolIdleEvictSeconds = 1800;
+
+    /**
+     * HTTP异步I/O线程数，0表示使用JDK HttpClient默认执行器
+     */
+    private int ioThreads = 0;
 }
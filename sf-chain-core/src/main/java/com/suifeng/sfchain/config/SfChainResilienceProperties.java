@@ -0,0 +1,51 @@
+package com.suifeng.sfchain.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * SF-Chain 调用容错配置
+ * 超时时间与重试次数按操作配置（OperationConfig.timeoutSeconds / retryCount），这里只配置退避与对冲策略；
+ * 两者默认均为0：不额外限制超时（沿用传输层读取超时），也不重试，需按操作显式开启
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "sf-chain.resilience")
+public class SfChainResilienceProperties {
+
+    /**
+     * 是否启用超时与重试
+     */
+    private boolean enabled = true;
+
+    /**
+     * 首次重试退避基准时间（毫秒）
+     */
+    private long retryBaseDelayMs = 200;
+
+    /**
+     * 单次退避最大时间（毫秒）
+     */
+    private long retryMaxDelayMs = 10000;
+
+    /**
+     * 是否遵循上游返回的 Retry-After 响应头
+     */
+    private boolean honorRetryAfter = true;
+
+    /**
+     * 启用对冲的操作至少积累多少个耗时样本后才开始对冲
+     */
+    private int hedgeMinSamples = 50;
+
+    /**
+     * 对冲延迟下限（毫秒），p95很小时避免几乎每次都对冲
+     */
+    private long hedgeMinDelayMs = 50;
+
+    /**
+     * 对冲预算可累积的最大请求数，限制空闲后的突发对冲
+     */
+    private int hedgeMaxBurst = 10;
+}
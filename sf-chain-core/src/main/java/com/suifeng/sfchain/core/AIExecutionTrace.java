@@ -0,0 +1,84 @@
+package com.suifeng.sfchain.core;
+
+/**
+ * 描述: 单次AI操作执行的线程级记录
+ * AIService调用操作前开启，BaseAIOperation在同一线程内写入实际发出请求的模型与上游耗时，
+ * 执行统计据此归到真正处理请求的模型，而不是路由前映射的模型；上游耗时不含缓存命中与本地限流排队，
+ * 本地限流排队时间单独记录，从执行耗时中扣除（排队情况见限流器统计）
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public final class AIExecutionTrace implements AutoCloseable {
+
+    private static final ThreadLocal<AIExecutionTrace> HOLDER = new ThreadLocal<>();
+
+    private final AIExecutionTrace previous;
+    /** 实际发出请求的模型（失败时为最后尝试的模型；命中缓存时为映射的首选模型），合并到在途请求时为null */
+    private String servedModel;
+    /** 上游请求耗时（毫秒，不含本地限流排队），未发出请求或请求失败时为-1 */
+    private long upstreamMs = -1;
+    /** 本地限流排队时间（毫秒） */
+    private long queueWaitMs;
+
+    private AIExecutionTrace(AIExecutionTrace previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * 开启记录，关闭时恢复外层记录（操作内嵌套调用其他操作时各自独立）
+     */
+    public static AIExecutionTrace begin() {
+        AIExecutionTrace trace = new AIExecutionTrace(HOLDER.get());
+        HOLDER.set(trace);
+        return trace;
+    }
+
+    /**
+     * 当前线程的记录，未开启时返回null
+     */
+    public static AIExecutionTrace current() {
+        return HOLDER.get();
+    }
+
+    static void recordServedModel(String modelName) {
+        AIExecutionTrace trace = HOLDER.get();
+        if (trace != null) {
+            trace.servedModel = modelName;
+        }
+    }
+
+    static void recordUpstreamLatency(long latencyMs) {
+        AIExecutionTrace trace = HOLDER.get();
+        if (trace != null) {
+            trace.upstreamMs = Math.max(latencyMs, 0);
+        }
+    }
+
+    static void recordQueueWait(long waitedMs) {
+        AIExecutionTrace trace = HOLDER.get();
+        if (trace != null) {
+            trace.queueWaitMs = Math.max(waitedMs, 0);
+        }
+    }
+
+    public String getServedModel() {
+        return servedModel;
+    }
+
+    public long getUpstreamMs() {
+        return upstreamMs;
+    }
+
+    public long getQueueWaitMs() {
+        return queueWaitMs;
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            HOLDER.remove();
+        } else {
+            HOLDER.set(previous);
+        }
+    }
+}
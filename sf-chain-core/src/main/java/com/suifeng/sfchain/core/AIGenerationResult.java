@@ -0,0 +1,29 @@
+package com.suifeng.sfchain.core;
+
+import lombok.Value;
+
+/**
+ * 描述: 模型生成结果，包含文本与token用量
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+public class AIGenerationResult {
+
+    /** 生成的文本 */
+    String content;
+
+    /** token用量，模型未返回时为null */
+    TokenUsage usage;
+
+    /** 本地限流排队时间（毫秒），不含上游响应时间 */
+    long queueWaitMs;
+
+    public static AIGenerationResult of(String content, TokenUsage usage) {
+        return new AIGenerationResult(content, usage, 0);
+    }
+
+    public static AIGenerationResult of(String content, TokenUsage usage, long queueWaitMs) {
+        return new AIGenerationResult(content, usage, queueWaitMs);
+    }
+}
@@ -24,6 +24,15 @@ public interface AIModel {
      */
     String generate(String prompt);
     
+    /**
+     * 生成文本响应并返回token用量
+     * @param prompt 提示词
+     * @return 生成结果，不支持用量统计的模型用量为null
+     */
+    default AIGenerationResult generateWithUsage(String prompt) {
+        return AIGenerationResult.of(generate(prompt), null);
+    }
+    
     /**
      * 生成指定类型的响应
      * @param prompt 提示词
@@ -146,10 +146,35 @@ public class AIOperationRegistry {
         private double temperature = 0.7;
         private boolean requireJsonOutput = true;
         private boolean supportThinking = false;
-        private int timeoutSeconds = 30;
-        private int retryCount = 2;
+        /** 单次调用超时（秒），0表示不额外限制，沿用传输层读取超时 */
+        private int timeoutSeconds = 0;
+        /** 可重试错误的重试次数，0表示不重试；需按操作显式开启 */
+        private int retryCount = 0;
         private String promptMode = "LOCAL_ONLY";
         private String promptTemplate;
         private boolean promptStrictRender = false;
+        private boolean cacheEnabled = false;
+        private int cacheTtlSeconds = 0;
+        private boolean coalesceRequests = false;
+        /** 路由策略：WEIGHTED / LEAST_OUTSTANDING / EWMA_LATENCY，配置了routes时生效 */
+        private String routingStrategy;
+        /** 候选模型及权重，非空时替代单一的模型映射 */
+        private List<ModelRoute> routes;
+        /** 连接失败、5xx或429时是否切换到下一个候选模型 */
+        private boolean failoverEnabled = true;
+        private boolean hedgeEnabled = false;
+        private int hedgeBudgetPercent = 0;
+        /** 对冲请求使用的模型，为空时使用注解配置或与主请求相同 */
+        private String hedgeModel;
+    }
+
+    /**
+     * 路由候选模型
+     */
+    @Setter
+    @Getter
+    public static class ModelRoute {
+        private String modelName;
+        private int weight = 1;
     }
 }
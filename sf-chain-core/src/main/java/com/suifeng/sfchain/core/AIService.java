@@ -1,16 +1,38 @@
 package com.suifeng.sfchain.core;
 
+import com.suifeng.sfchain.core.cache.AIRequestCoalescer;
+import com.suifeng.sfchain.core.cache.AIRequestCoalescingStats;
+import com.suifeng.sfchain.core.cache.AIResponseCache;
+import com.suifeng.sfchain.core.cache.AIResponseCacheStats;
+import com.suifeng.sfchain.core.execution.ExecutionDispatcherStats;
+import com.suifeng.sfchain.core.execution.OperationExecutionDispatcher;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsReport;
+import com.suifeng.sfchain.core.metrics.ExecutionStatsSnapshot;
+import com.suifeng.sfchain.core.metrics.LatencyHistogram;
+import com.suifeng.sfchain.core.metrics.LatencySummary;
+import com.suifeng.sfchain.core.metrics.SlidingWindowHistogram;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimitStats;
+import com.suifeng.sfchain.core.resilience.AIRequestHedger;
+import com.suifeng.sfchain.core.resilience.AIRequestHedgingStats;
+import com.suifeng.sfchain.core.resilience.OperationResilienceExecutor;
+import com.suifeng.sfchain.core.resilience.OperationResilienceStats;
+import com.suifeng.sfchain.core.routing.AIModelRouter;
+import com.suifeng.sfchain.core.routing.ModelRouteStats;
 import com.suifeng.sfchain.persistence.context.ChatContextService;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import javax.annotation.Resource;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 描述: AI服务类 - 新框架版本
@@ -29,11 +51,47 @@ public class AIService {
     @Resource
     private ChatContextService chatContextService;
 
+    @Autowired(required = false)
+    private OperationResilienceExecutor resilienceExecutor;
+
+    @Autowired(required = false)
+    private OperationExecutionDispatcher executionDispatcher;
+
+    @Autowired(required = false)
+    private AIResponseCache responseCache;
+
+    @Autowired(required = false)
+    private AIRequestCoalescer requestCoalescer;
+
+    @Autowired(required = false)
+    private AIModelRouter modelRouter;
+
+    @Autowired(required = false)
+    private AIRequestHedger requestHedger;
+
+    @Autowired(required = false)
+    private ModelRegistry modelRegistry;
+
+    /**
+     * 未注入调度器时（非Spring环境）按默认配置创建的调度器
+     */
+    private volatile OperationExecutionDispatcher fallbackDispatcher;
+
     /**
      * 操作执行统计
      */
     private final Map<String, ExecutionStats> executionStats = new ConcurrentHashMap<>();
 
+    /**
+     * 模型执行统计
+     */
+    private final Map<String, ExecutionStats> modelExecutionStats = new ConcurrentHashMap<>();
+
+    /**
+     * 操作近5分钟的上游请求耗时（只含实际发出的成功请求，不含缓存命中与本地限流排队），供对冲延迟使用
+     */
+    private final Map<String, SlidingWindowHistogram> upstreamLatency = new ConcurrentHashMap<>();
+
     /**
      * 执行AI操作
      *
@@ -68,6 +126,8 @@ public class AIService {
     @SuppressWarnings("unchecked")
     public <INPUT, OUTPUT> OUTPUT execute(String operationType, INPUT input, String modelName, String sessionId) {
         long startTime = System.currentTimeMillis();
+        // 模型统计归到实际发出请求的模型（由操作执行时写入），命中缓存或未发出请求时不计入模型统计
+        AIExecutionTrace trace = AIExecutionTrace.begin();
 
         try {
             // 获取操作实例
@@ -92,7 +152,11 @@ public class AIService {
             }
 
             // 记录执行统计
-            recordExecution(operationType, true, System.currentTimeMillis() - startTime);
+            recordExecution(operationType, trace.getServedModel(), true, executionMillis(startTime, trace));
+            if (trace.getUpstreamMs() >= 0) {
+                upstreamLatency.computeIfAbsent(operationType, k -> new SlidingWindowHistogram(60_000L, 5))
+                        .record(trace.getUpstreamMs(), System.currentTimeMillis());
+            }
 
             log.debug("AI操作执行成功: {} - 耗时: {}ms", operationType, System.currentTimeMillis() - startTime);
 
@@ -100,10 +164,12 @@ public class AIService {
 
         } catch (Exception e) {
             // 记录执行统计
-            recordExecution(operationType, false, System.currentTimeMillis() - startTime);
+            recordExecution(operationType, trace.getServedModel(), false, executionMillis(startTime, trace));
 
             log.error("AI操作执行失败: {} - {}", operationType, e.getMessage(), e);
             throw new RuntimeException("AI操作执行失败: " + e.getMessage(), e);
+        } finally {
+            trace.close();
         }
     }
 
@@ -201,7 +267,7 @@ public class AIService {
      */
     @SuppressWarnings("unchecked")
     public <INPUT, OUTPUT> CompletableFuture<OUTPUT> executeAsync(String operationType, INPUT input, String modelName, String sessionId) {
-        return CompletableFuture.supplyAsync(() -> execute(operationType, input, modelName, sessionId));
+        return dispatcher().submit(operationType, () -> this.<INPUT, OUTPUT>execute(operationType, input, modelName, sessionId));
     }
 
     /**
@@ -294,9 +360,14 @@ public class AIService {
      * @return 执行结果列表
      */
     public <INPUT, OUTPUT> List<OUTPUT> executeBatch(String operationType, List<INPUT> inputs, String modelName) {
-        return inputs.parallelStream()
-                .map(input -> this.<INPUT, OUTPUT>execute(operationType, input, modelName))
-                .toList();
+        try {
+            return this.<INPUT, OUTPUT>executeBatchAsync(operationType, inputs, modelName).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -390,6 +461,29 @@ public class AIService {
         return executionStats.getOrDefault(operationType, new ExecutionStats());
     }
 
+    /**
+     * 获取操作近5分钟的耗时分位
+     *
+     * @param operationType 操作类型
+     * @return 耗时分位摘要，尚无执行记录时返回null
+     */
+    public LatencySummary getRecentLatency(String operationType) {
+        ExecutionStats stats = executionStats.get(operationType);
+        return stats == null ? null : stats.getRecentLatency();
+    }
+
+    /**
+     * 获取操作近5分钟上游请求的耗时分位（对冲请求据此确定对冲延迟）
+     * 只统计实际发往模型的成功请求，不含缓存命中、合并到在途请求的调用与本地限流排队时间
+     *
+     * @param operationType 操作类型
+     * @return 耗时分位摘要，尚无上游请求时返回null
+     */
+    public LatencySummary getRecentUpstreamLatency(String operationType) {
+        SlidingWindowHistogram window = upstreamLatency.get(operationType);
+        return window == null ? null : window.snapshot(System.currentTimeMillis()).summarize();
+    }
+
     /**
      * 获取所有操作的执行统计
      *
@@ -399,23 +493,150 @@ public class AIService {
         return Map.copyOf(executionStats);
     }
 
+    /**
+     * 获取模型执行统计
+     *
+     * @param modelName 模型名称
+     * @return 执行统计
+     */
+    public ExecutionStats getModelExecutionStats(String modelName) {
+        return modelExecutionStats.getOrDefault(modelName, new ExecutionStats());
+    }
+
+    /**
+     * 获取所有模型的执行统计
+     *
+     * @return 执行统计映射
+     */
+    public Map<String, ExecutionStats> getAllModelExecutionStats() {
+        return Map.copyOf(modelExecutionStats);
+    }
+
+    /**
+     * 导出可上报配置中心的执行统计快照
+     *
+     * @return 按操作与模型的直方图快照
+     */
+    public ExecutionStatsReport exportExecutionStats() {
+        ExecutionStatsReport report = new ExecutionStatsReport();
+        long now = System.currentTimeMillis();
+        report.setCapturedAt(now);
+        executionStats.forEach((operationType, stats) -> report.getOperations().put(operationType, stats.snapshot(now)));
+        modelExecutionStats.forEach((model, stats) -> report.getModels().put(model, stats.snapshot(now)));
+        return report;
+    }
+
+    /**
+     * 获取所有操作的超时与重试统计
+     *
+     * @return 容错统计映射
+     */
+    public Map<String, OperationResilienceStats> getAllResilienceStats() {
+        return resilienceExecutor == null ? Map.of() : resilienceExecutor.getStats();
+    }
+
+    /**
+     * 获取所有操作的响应缓存命中统计
+     *
+     * @return 缓存统计映射
+     */
+    public Map<String, AIResponseCacheStats> getAllResponseCacheStats() {
+        return responseCache == null ? Map.of() : responseCache.getStats();
+    }
+
+    /**
+     * 获取所有操作的在途请求合并统计
+     *
+     * @return 合并统计映射
+     */
+    public Map<String, AIRequestCoalescingStats> getAllCoalescingStats() {
+        return requestCoalescer == null ? Map.of() : requestCoalescer.getStats();
+    }
+
+    /**
+     * 获取多模型路由中各模型的在途数、EWMA时延与故障切换统计
+     *
+     * @return 模型路由统计映射
+     */
+    public Map<String, ModelRouteStats> getAllModelRouteStats() {
+        return modelRouter == null ? Map.of() : modelRouter.getStats();
+    }
+
+    /**
+     * 获取所有操作的对冲请求统计
+     *
+     * @return 对冲统计映射
+     */
+    public Map<String, AIRequestHedgingStats> getAllHedgingStats() {
+        return requestHedger == null ? Map.of() : requestHedger.getStats();
+    }
+
+    /**
+     * 获取各模型的本地RPM/TPM限流统计（排队等待时间与上游响应时延分开统计）
+     *
+     * @return 限流统计映射
+     */
+    public Map<String, ModelRateLimitStats> getAllModelRateLimitStats() {
+        return modelRegistry == null ? Map.of() : modelRegistry.getRateLimitStats();
+    }
+
+    /**
+     * 获取异步与批量执行的并发与排队统计
+     *
+     * @return 调度器统计
+     */
+    public ExecutionDispatcherStats getExecutionDispatcherStats() {
+        return dispatcher().getStats();
+    }
+
+    private OperationExecutionDispatcher dispatcher() {
+        if (executionDispatcher != null) {
+            return executionDispatcher;
+        }
+        OperationExecutionDispatcher dispatcher = fallbackDispatcher;
+        if (dispatcher == null) {
+            synchronized (this) {
+                dispatcher = fallbackDispatcher;
+                if (dispatcher == null) {
+                    dispatcher = new OperationExecutionDispatcher(null);
+                    fallbackDispatcher = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
     /**
      * 清空执行统计
      */
     public void clearExecutionStats() {
         executionStats.clear();
+        modelExecutionStats.clear();
+        upstreamLatency.clear();
+    }
+
+    /**
+     * 执行耗时，扣除本地限流排队时间（排队时间由限流器单独统计）
+     */
+    private static long executionMillis(long startTime, AIExecutionTrace trace) {
+        return Math.max(0, System.currentTimeMillis() - startTime - trace.getQueueWaitMs());
     }
 
     /**
      * 记录执行统计
      *
      * @param operationType 操作类型
+     * @param modelName 实际使用的模型，未知时为null
      * @param success 是否成功
      * @param duration 执行时长
      */
-    private void recordExecution(String operationType, boolean success, long duration) {
+    private void recordExecution(String operationType, String modelName, boolean success, long duration) {
         executionStats.computeIfAbsent(operationType, k -> new ExecutionStats())
                 .record(success, duration);
+        if (modelName != null) {
+            modelExecutionStats.computeIfAbsent(modelName, k -> new ExecutionStats())
+                    .record(success, duration);
+        }
     }
 
     /**
@@ -482,39 +703,110 @@ public class AIService {
 
     /**
      * 执行统计类
+     * 计数与耗时直方图均为无锁累加，分位数按直方图估算（相对误差不超过1/16）
      */
     public static class ExecutionStats {
-        private long totalExecutions = 0;
-        @Getter
-        private long successfulExecutions = 0;
-        @Getter
-        private long failedExecutions = 0;
-        @Getter
-        private long totalDuration = 0;
-        private long minDuration = Long.MAX_VALUE;
-        private long maxDuration = 0;
-
-        public synchronized void record(boolean success, long duration) {
-            totalExecutions++;
+        /** 滑动窗口名称 */
+        private static final String[] WINDOW_NAMES = {"1m", "5m", "1h"};
+
+        private final LongAdder totalExecutions = new LongAdder();
+        private final LongAdder successfulExecutions = new LongAdder();
+        private final LongAdder failedExecutions = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final SlidingWindowHistogram[] windows = {
+                new SlidingWindowHistogram(10_000L, 6),
+                new SlidingWindowHistogram(60_000L, 5),
+                new SlidingWindowHistogram(300_000L, 12)
+        };
+
+        public void record(boolean success, long duration) {
+            totalExecutions.increment();
             if (success) {
-                successfulExecutions++;
+                successfulExecutions.increment();
             } else {
-                failedExecutions++;
+                failedExecutions.increment();
+            }
+
+            long now = System.currentTimeMillis();
+            histogram.record(duration);
+            for (SlidingWindowHistogram window : windows) {
+                window.record(duration, now);
             }
+        }
+
+        public long getTotalExecutions() {
+            return totalExecutions.sum();
+        }
+
+        public long getSuccessfulExecutions() {
+            return successfulExecutions.sum();
+        }
+
+        public long getFailedExecutions() {
+            return failedExecutions.sum();
+        }
 
-            totalDuration += duration;
-            minDuration = Math.min(minDuration, duration);
-            maxDuration = Math.max(maxDuration, duration);
+        public long getTotalDuration() {
+            return histogram.getSum();
         }
 
         public double getSuccessRate() {
-            return totalExecutions > 0 ? (double) successfulExecutions / totalExecutions : 0.0;
+            long total = getTotalExecutions();
+            return total > 0 ? (double) getSuccessfulExecutions() / total : 0.0;
         }
 
         public double getAverageDuration() {
-            return totalExecutions > 0 ? (double) totalDuration / totalExecutions : 0.0;
+            long count = histogram.getCount();
+            return count > 0 ? (double) histogram.getSum() / count : 0.0;
         }
 
-        public long getMinDuration() { return minDuration == Long.MAX_VALUE ? 0 : minDuration; }
+        public long getMinDuration() {
+            return histogram.getMin();
+        }
+
+        public long getMaxDuration() {
+            return histogram.getMax();
+        }
+
+        /**
+         * 累计耗时分位（p50/p95/p99）
+         */
+        public LatencySummary getLatency() {
+            return histogram.snapshot().summarize();
+        }
+
+        /**
+         * 近5分钟耗时分位
+         */
+        public LatencySummary getRecentLatency() {
+            return windows[1].snapshot(System.currentTimeMillis()).summarize();
+        }
+
+        /**
+         * 滑动窗口耗时分位 - 窗口名(1m/5m/1h) -> 分位摘要
+         */
+        public Map<String, LatencySummary> getWindows() {
+            long now = System.currentTimeMillis();
+            Map<String, LatencySummary> result = new LinkedHashMap<>();
+            for (int i = 0; i < windows.length; i++) {
+                result.put(WINDOW_NAMES[i], windows[i].snapshot(now).summarize());
+            }
+            return result;
+        }
+
+        /**
+         * 生成可合并的快照
+         */
+        public ExecutionStatsSnapshot snapshot(long nowMillis) {
+            ExecutionStatsSnapshot snapshot = new ExecutionStatsSnapshot();
+            snapshot.setTotalExecutions(getTotalExecutions());
+            snapshot.setSuccessfulExecutions(getSuccessfulExecutions());
+            snapshot.setFailedExecutions(getFailedExecutions());
+            snapshot.setHistogram(histogram.snapshot());
+            for (int i = 0; i < windows.length; i++) {
+                snapshot.getWindows().put(WINDOW_NAMES[i], windows[i].snapshot(nowMillis));
+            }
+            return snapshot;
+        }
     }
-}
\ No newline at end of file
+}
@@ -2,11 +2,17 @@ package com.suifeng.sfchain.core;
 
 import com.alibaba.fastjson2.JSONObject;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suifeng.sfchain.annotation.AIOp;
+import com.suifeng.sfchain.core.cache.AIRequestCoalescer;
+import com.suifeng.sfchain.core.cache.AIResponseCache;
 import com.suifeng.sfchain.core.logging.AICallLog;
 import com.suifeng.sfchain.core.logging.AICallLogManager;
 import com.suifeng.sfchain.core.openai.OpenAICompatibleModel;
+import com.suifeng.sfchain.core.resilience.AIRequestHedger;
+import com.suifeng.sfchain.core.resilience.OperationResilienceExecutor;
+import com.suifeng.sfchain.core.routing.AIModelRouter;
 import com.suifeng.sfchain.persistence.context.ChatContextService;
 import com.suifeng.sfchain.persistence.context.ChatMessage;
 import lombok.Getter;
@@ -17,13 +23,22 @@ import reactor.core.publisher.Flux;
 import javax.annotation.PostConstruct;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.suifeng.sfchain.constants.AIOperationConstant.JSON_REPAIR_OP;
 
@@ -54,8 +69,33 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
     @Autowired(required = false)
     private PromptTemplateEngine promptTemplateEngine;
 
+    @Autowired(required = false)
+    private OperationResilienceExecutor resilienceExecutor;
+
+    @Autowired(required = false)
+    private AIResponseCache responseCache;
+
+    @Autowired(required = false)
+    private AIRequestCoalescer requestCoalescer;
+
+    @Autowired(required = false)
+    private AIModelRouter modelRouter;
+
+    @Autowired(required = false)
+    private AIRequestHedger requestHedger;
+
     private boolean runtimeReady;
 
+    /**
+     * 输出的完整泛型类型（用于从响应缓存还原结果）
+     */
+    private Type outputGenericType;
+
+    /**
+     * 模板 input 绑定器（按输入类型缓存属性访问器）
+     */
+    private PromptInputBinder promptInputBinder;
+
     /**
      * 操作的注解信息
      * -- GETTER --
@@ -114,6 +154,7 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
 
                 // 安全地获取输出类型
                 Type outputTypeArg = typeArguments[1];
+                this.outputGenericType = outputTypeArg;
                 if (outputTypeArg instanceof Class) {
                     this.outputType = (Class) outputTypeArg;
                 } else if (outputTypeArg instanceof ParameterizedType) {
@@ -130,6 +171,10 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
             return;
         }
 
+        // 预构建输入类型的模板属性访问器
+        promptInputBinder = new PromptInputBinder(objectMapper);
+        promptInputBinder.prepare(inputType);
+
         // 注册到操作注册中心
         operationRegistry.registerOperation(annotation.value(), this);
 
@@ -182,6 +227,8 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
         LocalDateTime startTime = LocalDateTime.now();
         AtomicLong startMillis = new AtomicLong(System.currentTimeMillis());
         AtomicReference<StringBuilder> responseBuilder = new AtomicReference<>(new StringBuilder());
+        AtomicReference<TokenUsage> streamUsage = new AtomicReference<>();
+        AtomicLong streamQueueWait = new AtomicLong();
 
         AICallLog.AICallLogBuilder logBuilder = AICallLog.builder()
                 .callId(callId)
@@ -200,17 +247,18 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                 return Flux.error(error);
             }
 
-            // 获取模型
-            AIModel model = getModel(modelName);
+            // 获取操作配置
+            AIOperationRegistry.OperationConfig config = operationRegistry.getOperationConfig(annotation.value());
+
+            // 获取模型（配置了多模型路由时为按策略排序的候选列表）
+            RoutePlan plan = resolveRoutePlan(modelName, config);
+            AIModel model = plan.primary();
             logBuilder.modelName(model.getName());
 
             // 构建带上下文的提示词
             String prompt = buildPromptWithContext(input, sessionId);
             logBuilder.prompt(prompt);
 
-            // 获取操作配置
-            AIOperationRegistry.OperationConfig config = operationRegistry.getOperationConfig(annotation.value());
-
             // 合并配置
             Integer finalMaxTokens = config.getMaxTokens() > 0 ? Integer.valueOf(config.getMaxTokens()) :
                     (annotation.defaultMaxTokens() > 0 ? annotation.defaultMaxTokens() : null);
@@ -229,12 +277,28 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
             logBuilder.requestParams(requestParams);
 
             // 调用模型的流式生成方法
-            if (model instanceof OpenAICompatibleModel openAIModel) {
+            if (plan.models.stream().anyMatch(OpenAICompatibleModel.class::isInstance)) {
+                AtomicReference<AIModel> servedModel = new AtomicReference<>(model);
+                // 本地限流排队时间（故障切换时累加），成功、失败与取消日志都带上
+                LongConsumer queueWait = waitedMs -> logBuilder.queueWaitMs(streamQueueWait.addAndGet(waitedMs));
+                Supplier<Flux<String>> upstream = () -> streamWithFailover(config, plan, 0, new ArrayList<>(), null,
+                        logBuilder, servedModel, (openAIModel, timeout) -> finalThinking
+                        ? openAIModel.generateStreamWithThinking(prompt, finalMaxTokens, finalTemperature, timeout, streamUsage::set, annotation.value(), queueWait)
+                        : openAIModel.generateStream(prompt, finalMaxTokens, finalTemperature, finalJsonOutput, timeout, streamUsage::set, annotation.value(), queueWait));
+
+                // 相同的在途流式请求共享同一个上游，只由创建上游的调用记录日志
                 Flux<String> resultFlux;
-                if (finalThinking) {
-                    resultFlux = openAIModel.generateStreamWithThinking(prompt, finalMaxTokens, finalTemperature);
+                if (shouldCoalesce(config)) {
+                    String key = "stream\n" + AIResponseCache.key(annotation.value(), plan.mappingKey, prompt,
+                            finalMaxTokens, finalTemperature, finalJsonOutput, finalThinking);
+                    AIRequestCoalescer.SharedStream shared = requestCoalescer.shareStream(annotation.value(), key, upstream);
+                    if (!shared.isLeader()) {
+                        log.debug("流式AI操作合并到在途请求: {}", annotation.value());
+                        return shared.getFlux();
+                    }
+                    resultFlux = shared.getFlux();
                 } else {
-                    resultFlux = openAIModel.generateStream(prompt, finalMaxTokens, finalTemperature, finalJsonOutput);
+                    resultFlux = upstream.get();
                 }
 
                 // 包装Flux以添加日志记录
@@ -247,6 +311,7 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                             // 流式完成时记录成功日志
                             long duration = System.currentTimeMillis() - startMillis.get();
                             String fullResponse = responseBuilder.get().toString();
+                            applyUsage(logBuilder, servedModel.get(), streamUsage.get());
 
                             AICallLog successLog = logBuilder
                                     .status(AICallLog.CallStatus.SUCCESS)
@@ -267,6 +332,7 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                             // 流式被取消时记录日志
                             long duration = System.currentTimeMillis() - startMillis.get();
                             String partialResponse = responseBuilder.get().toString();
+                            applyUsage(logBuilder, servedModel.get(), streamUsage.get());
 
                             AICallLog cancelLog = logBuilder
                                     .status(AICallLog.CallStatus.FAILED)
@@ -352,19 +418,22 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                 .modelName(modelName)
                 .frequency(1)
                 .lastAccessTime(startTime);
+        // 合并到在途请求时为true（由实际调用模型的一方置回false），失败日志只由实际调用方记录一次
+        boolean[] follower = new boolean[1];
 
         try {
-            // 获取模型
-            AIModel model = getModel(modelName);
+            // 获取操作配置
+            AIOperationRegistry.OperationConfig config = operationRegistry.getOperationConfig(annotation.value());
+
+            // 获取模型（配置了多模型路由时为按策略排序的候选列表）
+            RoutePlan plan = resolveRoutePlan(modelName, config);
+            AIModel model = plan.primary();
             logBuilder.modelName(model.getName());
 
             // 构建提示词（带上下文支持）
             String prompt = buildPromptWithContext(input, sessionId);
             logBuilder.prompt(prompt);
 
-            // 获取操作配置
-            AIOperationRegistry.OperationConfig config = operationRegistry.getOperationConfig(annotation.value());
-
             // 合并配置
             Integer finalMaxTokens = config.getMaxTokens() > 0 ? Integer.valueOf(config.getMaxTokens()) : (annotation.defaultMaxTokens() > 0 ? annotation.defaultMaxTokens() : null);
             Double finalTemperature = config.getTemperature() >= 0 ? Double.valueOf(config.getTemperature()) : (annotation.defaultTemperature() >= 0 ? annotation.defaultTemperature() : null);
@@ -380,36 +449,93 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                     .build();
             logBuilder.requestParams(requestParams);
 
-            // 调用AI模型
-            String response;
-            if (model instanceof OpenAICompatibleModel openAIModel) {
-                if (finalThinking) {
-                    response = openAIModel.generateWithThinking(prompt, finalMaxTokens, finalTemperature);
-                } else {
-                    response = openAIModel.generate(prompt, finalMaxTokens, finalTemperature, finalJsonOutput);
+            // 精确匹配的响应缓存：命中时不再调用模型
+            String cacheKey = resolveCacheKey(config, plan, prompt, finalMaxTokens, finalTemperature, finalJsonOutput, finalThinking);
+            if (cacheKey != null) {
+                OUTPUT cached = responseCache.get(annotation.value(), cacheKey, outputJavaType());
+                if (cached != null) {
+                    log.debug("AI操作命中响应缓存: {}", annotation.value());
+                    // 缓存命中同样计入调用日志与统计，未调用模型，token与费用记为0
+                    AICallLog callLog = logBuilder
+                            .status(AICallLog.CallStatus.SUCCESS)
+                            .duration(System.currentTimeMillis() - startMillis)
+                            .output(cached)
+                            .cacheHit(true)
+                            .promptTokens(0)
+                            .completionTokens(0)
+                            .totalTokens(0)
+                            .cost(0.0)
+                            .build();
+                    logManager.addLog(callLog);
+                    AIExecutionTrace.recordServedModel(model.getName());
+                    return cached;
                 }
-            } else {
-                response = model.generate(prompt);
             }
 
-            logBuilder.rawResponse(response);
-
-            // 解析响应
-            OUTPUT result = parseResponse(response, input);
-
-            // 记录成功日志
-            long duration = System.currentTimeMillis() - startMillis;
-            AICallLog log = logBuilder
-                    .status(AICallLog.CallStatus.SUCCESS)
-                    .duration(duration)
-                    .output(result)
-                    .build();
+            Supplier<OUTPUT> invocation = () -> {
+                follower[0] = false;
+                // 调用AI模型（按操作配置施加超时与重试，可重试错误时切换候选模型）
+                AIModel[] servedModel = new AIModel[1];
+                BiFunction<AIModel, Duration, AIGenerationResult> call = (candidate, timeout) -> {
+                    if (candidate instanceof OpenAICompatibleModel openAIModel) {
+                        return finalThinking
+                                ? openAIModel.generateResultWithThinking(prompt, finalMaxTokens, finalTemperature, timeout, annotation.value())
+                                : openAIModel.generateResult(prompt, finalMaxTokens, finalTemperature, finalJsonOutput, timeout, annotation.value());
+                    }
+                    return candidate.generateWithUsage(prompt);
+                };
+                long upstreamStart = System.nanoTime();
+                AIGenerationResult generation = shouldHedge(config)
+                        ? generateWithHedging(config, plan, logBuilder, servedModel, call)
+                        : generateWithFailover(config, plan, logBuilder, servedModel, call);
+                AIExecutionTrace.recordUpstreamLatency(
+                        (System.nanoTime() - upstreamStart) / 1_000_000L - generation.getQueueWaitMs());
+
+                String response = generation.getContent();
+                logBuilder.rawResponse(response);
+                applyUsage(logBuilder, servedModel[0], generation.getUsage());
+                AIExecutionTrace.recordServedModel(servedModel[0].getName());
+                if (generation.getQueueWaitMs() > 0) {
+                    logBuilder.queueWaitMs(generation.getQueueWaitMs());
+                    AIExecutionTrace.recordQueueWait(generation.getQueueWaitMs());
+                }
 
-            logManager.addLog(log);
+                // 解析响应
+                OUTPUT result = parseResponse(response, input);
+                if (cacheKey != null) {
+                    int ttlSeconds = config.getCacheTtlSeconds() > 0 ? config.getCacheTtlSeconds() : annotation.cacheTtlSeconds();
+                    responseCache.put(annotation.value(), cacheKey, result, Duration.ofSeconds(ttlSeconds));
+                }
 
-            return result;
+                // 记录成功日志
+                long duration = System.currentTimeMillis() - startMillis;
+                AICallLog log = logBuilder
+                        .status(AICallLog.CallStatus.SUCCESS)
+                        .duration(duration)
+                        .output(result)
+                        .build();
+
+                logManager.addLog(log);
+
+                return result;
+            };
+
+            // 相同的在途请求只调用一次模型，合并的调用方共享结果且不重复记录日志
+            if (shouldCoalesce(config)) {
+                follower[0] = true;
+                String key = cacheKey != null ? cacheKey : AIResponseCache.key(annotation.value(), plan.mappingKey, prompt,
+                        finalMaxTokens, finalTemperature, finalJsonOutput, finalThinking);
+                return requestCoalescer.execute(annotation.value(), key, invocation);
+            }
+            return invocation.get();
 
         } catch (Exception e) {
+            if (follower[0]) {
+                // 在途请求的失败已由实际调用模型的一方记录，合并的调用方只传播异常
+                log.debug("合并的AI操作随在途请求失败: {} - {}", annotation.value(), e.getMessage());
+                throw new RuntimeException("AI操作执行失败: " + e.getMessage(), e);
+            }
+
             // 记录失败日志
             long duration = System.currentTimeMillis() - startMillis;
             AICallLog callLog = logBuilder
@@ -419,12 +545,238 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
                     .build();
 
             logManager.addLog(callLog);
+            AIExecutionTrace.recordServedModel(callLog.getModelName());
 
             log.error("执行AI操作失败: {} - {}", annotation.value(), e.getMessage(), e);
             throw new RuntimeException("AI操作执行失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 将token用量及估算费用写入日志
+     */
+    private void applyUsage(AICallLog.AICallLogBuilder logBuilder, AIModel model, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        logBuilder.promptTokens(usage.getPromptTokens())
+                .completionTokens(usage.getCompletionTokens())
+                .totalTokens(usage.resolveTotalTokens());
+        if (model instanceof OpenAICompatibleModel openAIModel) {
+            logBuilder.cost(openAIModel.getConfig().estimateCost(usage));
+        }
+    }
+
+    /**
+     * 操作启用缓存时返回缓存键，否则返回null；按路由前的映射计键，多模型路由时各候选模型共享缓存
+     */
+    private String resolveCacheKey(AIOperationRegistry.OperationConfig config, RoutePlan plan, String prompt,
+                                   Integer maxTokens, Double temperature, Boolean jsonOutput, boolean thinking) {
+        if (responseCache == null || !responseCache.isEnabled()
+                || !(config.isCacheEnabled() || annotation.cacheEnabled())) {
+            return null;
+        }
+        return AIResponseCache.key(annotation.value(), plan.mappingKey, prompt, maxTokens, temperature, jsonOutput, thinking);
+    }
+
+    private boolean shouldCoalesce(AIOperationRegistry.OperationConfig config) {
+        return requestCoalescer != null && (config.isCoalesceRequests() || annotation.coalesceRequests());
+    }
+
+    private JavaType outputJavaType() {
+        if (outputGenericType != null) {
+            return objectMapper.getTypeFactory().constructType(outputGenericType);
+        }
+        return objectMapper.getTypeFactory().constructType(outputType);
+    }
+
+    /**
+     * 解析本次调用的候选模型：显式指定模型或未配置路由时只有一个模型
+     */
+    private RoutePlan resolveRoutePlan(String modelName, AIOperationRegistry.OperationConfig config) {
+        List<AIOperationRegistry.ModelRoute> routes = modelName == null && modelRouter != null
+                ? availableRoutes(config) : List.of();
+        if (routes.isEmpty()) {
+            AIModel model = getModel(modelName);
+            return new RoutePlan(List.of(model), null, model.getName());
+        }
+        String strategy = AIModelRouter.normalizeStrategy(config.getRoutingStrategy());
+        List<AIModel> models = new ArrayList<>(routes.size());
+        for (String candidate : modelRouter.plan(routes, strategy)) {
+            models.add(modelRegistry.getModel(candidate));
+        }
+        String mappingKey = "routes:" + routes.stream()
+                .map(AIOperationRegistry.ModelRoute::getModelName)
+                .collect(Collectors.joining(","));
+        return new RoutePlan(models, strategy, mappingKey);
+    }
+
+    /**
+     * 配置中权重为正且已注册的候选模型（按名称去重）
+     */
+    private List<AIOperationRegistry.ModelRoute> availableRoutes(AIOperationRegistry.OperationConfig config) {
+        if (config.getRoutes() == null || config.getRoutes().isEmpty() || modelRegistry == null) {
+            return List.of();
+        }
+        Map<String, AIOperationRegistry.ModelRoute> routes = new LinkedHashMap<>();
+        for (AIOperationRegistry.ModelRoute route : config.getRoutes()) {
+            String name = route == null ? null : trimToNull(route.getModelName());
+            if (name != null && route.getWeight() > 0 && modelRegistry.isModelRegistered(name)) {
+                AIOperationRegistry.ModelRoute normalized = new AIOperationRegistry.ModelRoute();
+                normalized.setModelName(name);
+                normalized.setWeight(route.getWeight());
+                routes.putIfAbsent(name, normalized);
+            }
+        }
+        return List.copyOf(routes.values());
+    }
+
+    /**
+     * 依次尝试候选模型，连接失败、5xx或429（重试耗尽后）切换到下一个
+     */
+    private AIGenerationResult generateWithFailover(AIOperationRegistry.OperationConfig config, RoutePlan plan,
+                                                    AICallLog.AICallLogBuilder logBuilder, AIModel[] servedModel,
+                                                    BiFunction<AIModel, Duration, AIGenerationResult> call) {
+        List<String> attempted = new ArrayList<>(plan.models.size());
+        String failoverReason = null;
+        for (int i = 0; ; i++) {
+            AIModel candidate = plan.models.get(i);
+            attempted.add(candidate.getName());
+            logBuilder.modelName(candidate.getName());
+            plan.recordTo(logBuilder, attempted, failoverReason);
+            AIModelRouter.Ticket ticket = plan.isRouted() ? modelRouter.begin(candidate.getName()) : null;
+            try {
+                AIGenerationResult generation = executeWithResilience(config, timeout -> call.apply(candidate, timeout));
+                if (ticket != null) {
+                    ticket.success();
+                }
+                servedModel[0] = candidate;
+                return generation;
+            } catch (RuntimeException e) {
+                // 对冲落败被取消（线程中断）不是模型故障，不计入惩罚也不切换
+                if (OperationResilienceExecutor.isCancellation(e)) {
+                    if (ticket != null) {
+                        ticket.release();
+                    }
+                    throw e;
+                }
+                boolean failover = plan.canFailover(config, i, e);
+                if (ticket != null) {
+                    ticket.failure(failover);
+                }
+                if (!failover) {
+                    throw e;
+                }
+                failoverReason = e.getMessage();
+                log.warn("AI操作切换模型: {} - {} -> {}, 原因: {}", annotation.value(), candidate.getName(),
+                        plan.models.get(i + 1).getName(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean shouldHedge(AIOperationRegistry.OperationConfig config) {
+        return requestHedger != null && (config.isHedgeEnabled() || annotation.hedgeEnabled());
+    }
+
+    /**
+     * 对冲调用：主请求按路由与故障切换执行，对冲请求发往对冲模型（未配置时为主选模型）。
+     * 两个请求在不同线程上并发执行，各自记录到独立的日志构建器，胜出者的模型与路由信息再写回本次日志
+     */
+    private AIGenerationResult generateWithHedging(AIOperationRegistry.OperationConfig config, RoutePlan plan,
+                                                   AICallLog.AICallLogBuilder logBuilder, AIModel[] servedModel,
+                                                   BiFunction<AIModel, Duration, AIGenerationResult> call) {
+        AIModel hedgeModel = resolveHedgeModel(config, plan);
+        int budgetPercent = config.getHedgeBudgetPercent() > 0 ? config.getHedgeBudgetPercent() : annotation.hedgeBudgetPercent();
+        HedgeAttempt winner = requestHedger.execute(annotation.value(), budgetPercent, hedge -> {
+            AICallLog.AICallLogBuilder trace = AICallLog.builder();
+            AIModel[] served = new AIModel[1];
+            AIGenerationResult generation;
+            if (hedge) {
+                generation = executeWithResilience(config, timeout -> call.apply(hedgeModel, timeout));
+                served[0] = hedgeModel;
+            } else {
+                generation = generateWithFailover(config, plan, trace, served, call);
+            }
+            return new HedgeAttempt(served[0], trace.build().getRouting(), generation);
+        });
+        servedModel[0] = winner.model;
+        logBuilder.modelName(winner.model.getName());
+        logBuilder.routing(winner.routing);
+        return winner.generation;
+    }
+
+    private AIModel resolveHedgeModel(AIOperationRegistry.OperationConfig config, RoutePlan plan) {
+        String name = trimToNull(config.getHedgeModel());
+        if (name == null) {
+            name = trimToNull(annotation.hedgeModel());
+        }
+        if (name == null || !modelRegistry.isModelRegistered(name)) {
+            return plan.primary();
+        }
+        return modelRegistry.getModel(name);
+    }
+
+    /**
+     * 流式调用的故障切换：只在尚未输出任何数据块时切换到下一个候选模型，
+     * 路由统计中的响应时延取首个数据块到达的时间
+     */
+    private Flux<String> streamWithFailover(AIOperationRegistry.OperationConfig config, RoutePlan plan, int index,
+                                            List<String> attempted, String failoverReason,
+                                            AICallLog.AICallLogBuilder logBuilder, AtomicReference<AIModel> servedModel,
+                                            BiFunction<OpenAICompatibleModel, Duration, Flux<String>> call) {
+        return Flux.defer(() -> {
+            AIModel candidate = plan.models.get(index);
+            if (!(candidate instanceof OpenAICompatibleModel openAIModel)) {
+                if (index + 1 < plan.models.size()) {
+                    return streamWithFailover(config, plan, index + 1, attempted, failoverReason, logBuilder, servedModel, call);
+                }
+                return Flux.error(new UnsupportedOperationException("模型不支持流式输出: " + candidate.getName()));
+            }
+            attempted.add(candidate.getName());
+            logBuilder.modelName(candidate.getName());
+            plan.recordTo(logBuilder, attempted, failoverReason);
+            servedModel.set(candidate);
+            AIModelRouter.Ticket ticket = plan.isRouted() ? modelRouter.begin(candidate.getName()) : null;
+            AtomicBoolean emitted = new AtomicBoolean();
+            Flux<String> flux = executeStreamWithResilience(config, timeout -> call.apply(openAIModel, timeout))
+                    .doOnNext(chunk -> {
+                        if (emitted.compareAndSet(false, true) && ticket != null) {
+                            ticket.observeLatency();
+                        }
+                    });
+            if (ticket != null) {
+                flux = flux.doOnComplete(ticket::release).doOnCancel(ticket::release);
+            }
+            return flux.onErrorResume(e -> {
+                boolean failover = !emitted.get() && plan.canFailover(config, index, e);
+                if (ticket != null) {
+                    ticket.failure(failover);
+                }
+                if (!failover) {
+                    return Flux.error(e);
+                }
+                log.warn("流式AI操作切换模型: {} - {} -> {}, 原因: {}", annotation.value(), candidate.getName(),
+                        plan.models.get(index + 1).getName(), e.getMessage());
+                return streamWithFailover(config, plan, index + 1, attempted, e.getMessage(), logBuilder, servedModel, call);
+            });
+        });
+    }
+
+    private <T> T executeWithResilience(AIOperationRegistry.OperationConfig config, Function<Duration, T> call) {
+        if (resilienceExecutor == null) {
+            return call.apply(null);
+        }
+        return resilienceExecutor.execute(annotation.value(), config, call);
+    }
+
+    private Flux<String> executeStreamWithResilience(AIOperationRegistry.OperationConfig config,
+                                                     Function<Duration, Flux<String>> call) {
+        if (resilienceExecutor == null) {
+            return call.apply(null);
+        }
+        return resilienceExecutor.executeStream(annotation.value(), config, call);
+    }
+
     /**
      * 构建带上下文的提示词
      *
@@ -515,8 +867,7 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
             String localPrompt,
             boolean strictRender) {
         Map<String, Object> context = new HashMap<>();
-        Map<String, Object> inputContext = objectMapper.convertValue(input, Map.class);
-        Map<String, Object> safeInputContext = inputContext == null ? new HashMap<>() : new HashMap<>(inputContext);
+        Map<String, Object> safeInputContext = promptInputBinder().bindInput(input);
         Map<String, Object> promptInputExtensions = buildPromptInputExtensions(input);
         Map<String, Object> safePromptInputExtensions = promptInputExtensions == null ? Map.of() : promptInputExtensions;
         mergePromptInputExtensionsIntoInput(safeInputContext, safePromptInputExtensions);
@@ -532,14 +883,22 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
     @SuppressWarnings("unchecked")
     public Map<String, Object> buildPromptInputForPreview(Object rawInput) {
         INPUT typedInput = objectMapper.convertValue(rawInput, inputType);
-        Map<String, Object> inputContext = objectMapper.convertValue(typedInput, Map.class);
-        Map<String, Object> safeInputContext = inputContext == null ? new HashMap<>() : new HashMap<>(inputContext);
+        Map<String, Object> safeInputContext = promptInputBinder().bindInput(typedInput);
         Map<String, Object> promptInputExtensions = buildPromptInputExtensions(typedInput);
         Map<String, Object> safePromptInputExtensions = promptInputExtensions == null ? Map.of() : promptInputExtensions;
         mergePromptInputExtensionsIntoInput(safeInputContext, safePromptInputExtensions);
         return safeInputContext;
     }
 
+    private PromptInputBinder promptInputBinder() {
+        PromptInputBinder binder = promptInputBinder;
+        if (binder == null) {
+            binder = new PromptInputBinder(objectMapper);
+            promptInputBinder = binder;
+        }
+        return binder;
+    }
+
     private void mergePromptInputExtensionsIntoInput(Map<String, Object> inputContext, Map<String, Object> promptInputExtensions) {
         for (Map.Entry<String, Object> entry : promptInputExtensions.entrySet()) {
             inputContext.putIfAbsent(entry.getKey(), entry.getValue());
@@ -782,17 +1141,9 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
      * @return 模型实例
      */
     private AIModel getModel(String modelName) {
-        if (modelName == null) {
-            // 使用注册中心配置的模型
-            modelName = operationRegistry.getModelForOperation(annotation.value());
-        }
+        modelName = resolveModelName(modelName);
 
         if (modelName == null) {
-            // 使用注解中的默认模型
-            modelName = annotation.defaultModel();
-        }
-
-        if (modelName == null || modelName.isEmpty()) {
             throw new IllegalStateException("未配置模型: " + annotation.value());
         }
 
@@ -804,6 +1155,26 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
         return model;
     }
 
+    /**
+     * 解析实际使用的模型名称
+     *
+     * @param modelName 指定的模型名称，为null时依次使用注册中心配置与注解默认模型
+     * @return 模型名称，未配置时返回null
+     */
+    public String resolveModelName(String modelName) {
+        if (modelName == null) {
+            // 使用注册中心配置的模型
+            modelName = operationRegistry.getModelForOperation(annotation.value());
+        }
+
+        if (modelName == null) {
+            // 使用注解中的默认模型
+            modelName = annotation.defaultModel();
+        }
+
+        return modelName == null || modelName.isEmpty() ? null : modelName;
+    }
+
     /**
      * 获取操作类型
      *
@@ -840,4 +1211,60 @@ public abstract class BaseAIOperation<INPUT, OUTPUT> {
     public String[] getSupportedModels() {
         return annotation.supportedModels();
     }
+
+    /**
+     * 对冲执行中一个请求的结果
+     */
+    private static final class HedgeAttempt {
+        private final AIModel model;
+        private final AICallLog.RoutingInfo routing;
+        private final AIGenerationResult generation;
+
+        private HedgeAttempt(AIModel model, AICallLog.RoutingInfo routing, AIGenerationResult generation) {
+            this.model = model;
+            this.routing = routing;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 本次调用的候选模型，首个为主选；strategy为null表示未启用多模型路由
+     */
+    private static final class RoutePlan {
+        private final List<AIModel> models;
+        private final String strategy;
+        /** 路由前的操作-模型映射：未路由时为映射的模型名，路由时为按配置顺序排列的候选集合，与本次随机选中的主选无关 */
+        private final String mappingKey;
+
+        private RoutePlan(List<AIModel> models, String strategy, String mappingKey) {
+            this.models = models;
+            this.strategy = strategy;
+            this.mappingKey = mappingKey;
+        }
+
+        private AIModel primary() {
+            return models.get(0);
+        }
+
+        private boolean isRouted() {
+            return strategy != null;
+        }
+
+        private boolean canFailover(AIOperationRegistry.OperationConfig config, int index, Throwable error) {
+            return isRouted() && config.isFailoverEnabled() && index + 1 < models.size()
+                    && OperationResilienceExecutor.isRetryable(error);
+        }
+
+        private void recordTo(AICallLog.AICallLogBuilder logBuilder, List<String> attempted, String failoverReason) {
+            if (!isRouted()) {
+                return;
+            }
+            logBuilder.routing(AICallLog.RoutingInfo.builder()
+                    .strategy(strategy)
+                    .candidates(models.stream().map(AIModel::getName).toList())
+                    .attemptedModels(List.copyOf(attempted))
+                    .failoverReason(failoverReason)
+                    .build());
+        }
+    }
 }
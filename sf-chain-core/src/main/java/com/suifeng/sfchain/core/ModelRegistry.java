@@ -1,11 +1,13 @@
 package com.suifeng.sfchain.core;
 
 import com.suifeng.sfchain.core.openai.OpenAIModelFactory;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimitStats;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,6 +53,14 @@ public class ModelRegistry {
         return modelFactory.getRegisteredModelNames();
     }
     
+    /**
+     * 获取配置了RPM/TPM限额的模型的限流统计
+     * @return 模型名称 -> 限流统计
+     */
+    public Map<String, ModelRateLimitStats> getRateLimitStats() {
+        return modelFactory.getRateLimitStats();
+    }
+    
     /**
      * 获取可用的模型列表
      * @return 可用模型列表
@@ -0,0 +1,456 @@
+package com.suifeng.sfchain.core;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 描述: 提示词模板的 input 绑定层
+ * 按类型缓存基于Jackson元数据的属性访问器（属性名、忽略、包含规则与Jackson一致），
+ * 以惰性Map视图暴露POJO，模板只读取实际用到的属性，不再对整个输入做 convertValue；
+ * 带自定义序列化、类型信息、any-getter等无法等价表达的类型回退为 convertValue
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+final class PromptInputBinder {
+
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, BeanAccessor> accessors = new ConcurrentHashMap<>();
+
+    PromptInputBinder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 预先构建类型的访问器（在操作初始化时调用）
+     */
+    void prepare(Class<?> type) {
+        if (type != null && !isPassThrough(type) && !Map.class.isAssignableFrom(type)
+                && !Collection.class.isAssignableFrom(type) && !type.isArray()) {
+            accessorFor(type);
+        }
+    }
+
+    /**
+     * 将输入对象绑定为模板中的 input 对象，返回可追加扩展字段的Map
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> bindInput(Object input) {
+        if (input == null) {
+            return new HashMap<>();
+        }
+        Object bound = bindValue(input);
+        if (bound instanceof Map) {
+            return new OverlayMap((Map<String, Object>) bound);
+        }
+        // 与 convertValue(input, Map.class) 保持一致：非对象输入按原方式转换（包括其异常）
+        Map<String, Object> converted = objectMapper.convertValue(input, Map.class);
+        return converted == null ? new HashMap<>() : new HashMap<>(converted);
+    }
+
+    /**
+     * 将任意值转换为模板可读的结构：标量原样返回，POJO/Map/集合返回惰性视图，其余交给Jackson转换
+     */
+    Object bindValue(Object value) {
+        if (value == null || isPassThrough(value.getClass())) {
+            return value;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            for (Object key : map.keySet()) {
+                if (!(key instanceof String)) {
+                    return objectMapper.convertValue(value, Object.class);
+                }
+            }
+            return new MapView(map);
+        }
+        if (value instanceof List) {
+            return new ListView((List<?>) value);
+        }
+        if (value instanceof Collection) {
+            return new ListView(new ArrayList<>((Collection<?>) value));
+        }
+        if (value instanceof Object[]) {
+            return new ListView(Arrays.asList((Object[]) value));
+        }
+        BeanAccessor accessor = accessorFor(value.getClass());
+        if (accessor != BeanAccessor.UNSUPPORTED) {
+            return new BeanView(accessor, value);
+        }
+        return objectMapper.convertValue(value, Object.class);
+    }
+
+    /**
+     * Jackson 转换前后类型不变的标量
+     */
+    private static boolean isPassThrough(Class<?> type) {
+        return type == String.class || type == Boolean.class || type == Integer.class || type == Long.class
+                || type == Double.class || type == Float.class || type == BigDecimal.class || type == BigInteger.class;
+    }
+
+    private BeanAccessor accessorFor(Class<?> type) {
+        BeanAccessor accessor = accessors.get(type);
+        if (accessor == null) {
+            accessor = accessors.computeIfAbsent(type, this::createAccessor);
+        }
+        return accessor;
+    }
+
+    private BeanAccessor createAccessor(Class<?> type) {
+        try {
+            SerializationConfig config = objectMapper.getSerializationConfig();
+            if (config.getActiveView() != null || type.isEnum() || type.isPrimitive()) {
+                return BeanAccessor.UNSUPPORTED;
+            }
+            JavaType javaType = config.constructType(type);
+            JsonSerializer<Object> serializer = objectMapper.getSerializerProviderInstance().findValueSerializer(javaType);
+            if (serializer == null || serializer.getClass() != BeanSerializer.class || serializer.usesObjectId()) {
+                return BeanAccessor.UNSUPPORTED;
+            }
+            if (objectMapper.getSerializerFactory().createTypeSerializer(config, javaType) != null) {
+                return BeanAccessor.UNSUPPORTED;
+            }
+            BeanDescription description = config.introspect(javaType);
+            if (description.findAnyGetter() != null || description.getObjectIdInfo() != null
+                    || config.getAnnotationIntrospector().findFilterId(description.getClassInfo()) != null) {
+                return BeanAccessor.UNSUPPORTED;
+            }
+            JsonInclude.Value classInclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(type));
+
+            Map<String, BeanProperty> properties = new LinkedHashMap<>();
+            Iterator<PropertyWriter> writers = serializer.properties();
+            while (writers.hasNext()) {
+                PropertyWriter writer = writers.next();
+                if (writer.getClass() != BeanPropertyWriter.class) {
+                    return BeanAccessor.UNSUPPORTED;
+                }
+                AnnotatedMember member = writer.getMember();
+                if (member == null || member.hasAnnotation(JsonSerialize.class) || member.hasAnnotation(JsonFormat.class)
+                        || member.hasAnnotation(JsonRawValue.class) || member.hasAnnotation(JsonUnwrapped.class)
+                        || member.hasAnnotation(JsonView.class)) {
+                    return BeanAccessor.UNSUPPORTED;
+                }
+                JsonInclude.Value inclusion = classInclusion.withOverrides(findPropertyInclusion(description, writer.getName()));
+                JsonInclude.Include valueInclusion = inclusion.getValueInclusion();
+                JsonInclude.Include contentInclusion = inclusion.getContentInclusion();
+                if (!isSupportedInclusion(valueInclusion)
+                        || (contentInclusion != JsonInclude.Include.USE_DEFAULTS && contentInclusion != JsonInclude.Include.ALWAYS)) {
+                    return BeanAccessor.UNSUPPORTED;
+                }
+                properties.put(writer.getName(), new BeanProperty(
+                        writer.getName(), createGetter((BeanPropertyWriter) writer, config), valueInclusion));
+            }
+            return new BeanAccessor(properties);
+        } catch (Exception ex) {
+            log.debug("无法为类型构建提示词输入访问器，回退为Jackson转换: {} - {}", type.getName(), ex.getMessage());
+            return BeanAccessor.UNSUPPORTED;
+        }
+    }
+
+    private JsonInclude.Value findPropertyInclusion(BeanDescription description, String name) {
+        return description.findProperties().stream()
+                .filter(property -> name.equals(property.getName()))
+                .findFirst()
+                .map(property -> property.findInclusion())
+                .orElse(JsonInclude.Value.empty());
+    }
+
+    private static boolean isSupportedInclusion(JsonInclude.Include inclusion) {
+        return inclusion == null
+                || inclusion == JsonInclude.Include.USE_DEFAULTS
+                || inclusion == JsonInclude.Include.ALWAYS
+                || inclusion == JsonInclude.Include.NON_NULL
+                || inclusion == JsonInclude.Include.NON_ABSENT
+                || inclusion == JsonInclude.Include.NON_EMPTY;
+    }
+
+    /**
+     * 将getter/字段转换为MethodHandle，避免每次读取走反射
+     */
+    private static PropertyGetter createGetter(BeanPropertyWriter writer, SerializationConfig config) {
+        AnnotatedMember member = writer.getMember();
+        try {
+            member.fixAccess(config.isEnabled(MapperFeature.OVERRIDE_PUBLIC_ACCESS_MODIFIERS));
+            MethodHandle handle;
+            if (member instanceof AnnotatedMethod) {
+                Method method = ((AnnotatedMethod) member).getAnnotated();
+                handle = MethodHandles.lookup().unreflect(method);
+            } else if (member instanceof AnnotatedField) {
+                Field field = ((AnnotatedField) member).getAnnotated();
+                handle = MethodHandles.lookup().unreflectGetter(field);
+            } else {
+                return writer::get;
+            }
+            MethodHandle getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+            return bean -> {
+                try {
+                    return getter.invokeExact(bean);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            };
+        } catch (IllegalAccessException | RuntimeException ex) {
+            return writer::get;
+        }
+    }
+
+    private static boolean isExcluded(JsonInclude.Include inclusion, Object value) {
+        if (inclusion == null) {
+            return false;
+        }
+        switch (inclusion) {
+            case NON_NULL:
+                return value == null;
+            case NON_ABSENT:
+                return value == null || (value instanceof Optional && ((Optional<?>) value).isEmpty());
+            case NON_EMPTY:
+                return value == null
+                        || (value instanceof Optional && ((Optional<?>) value).isEmpty())
+                        || (value instanceof CharSequence && ((CharSequence) value).length() == 0)
+                        || (value instanceof Collection && ((Collection<?>) value).isEmpty())
+                        || (value instanceof Map && ((Map<?, ?>) value).isEmpty())
+                        || (value.getClass().isArray() && Array.getLength(value) == 0);
+            default:
+                return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PropertyGetter {
+        Object get(Object bean) throws Exception;
+    }
+
+    private static final class BeanProperty {
+        private final String name;
+        private final PropertyGetter getter;
+        private final JsonInclude.Include inclusion;
+
+        private BeanProperty(String name, PropertyGetter getter, JsonInclude.Include inclusion) {
+            this.name = name;
+            this.getter = getter;
+            this.inclusion = inclusion;
+        }
+
+        private Object read(Object bean) {
+            try {
+                return getter.get(bean);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("读取属性失败: " + name + ", err=" + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class BeanAccessor {
+        private static final BeanAccessor UNSUPPORTED = new BeanAccessor(Map.of());
+
+        private final Map<String, BeanProperty> properties;
+
+        private BeanAccessor(Map<String, BeanProperty> properties) {
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * POJO的惰性只读Map视图，属性在首次读取时取值并缓存
+     */
+    private final class BeanView extends AbstractMap<String, Object> {
+        private final BeanAccessor accessor;
+        private final Object bean;
+        private final Map<String, Object> resolved = new HashMap<>();
+        private Set<Entry<String, Object>> entries;
+
+        private BeanView(BeanAccessor accessor, Object bean) {
+            this.accessor = accessor;
+            this.bean = bean;
+        }
+
+        @Override
+        public Object get(Object key) {
+            BeanProperty property = accessor.properties.get(key);
+            if (property == null) {
+                return null;
+            }
+            return resolve(property);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            BeanProperty property = accessor.properties.get(key);
+            return property != null && !isExcluded(property.inclusion, property.read(bean));
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (entries == null) {
+                Map<String, Object> materialized = new LinkedHashMap<>();
+                for (BeanProperty property : accessor.properties.values()) {
+                    if (!isExcluded(property.inclusion, property.read(bean))) {
+                        materialized.put(property.name, resolve(property));
+                    }
+                }
+                entries = Collections.unmodifiableMap(materialized).entrySet();
+            }
+            return entries;
+        }
+
+        private Object resolve(BeanProperty property) {
+            if (resolved.containsKey(property.name)) {
+                return resolved.get(property.name);
+            }
+            Object raw = property.read(bean);
+            Object value = isExcluded(property.inclusion, raw) ? null : bindValue(raw);
+            resolved.put(property.name, value);
+            return value;
+        }
+    }
+
+    /**
+     * 字符串键Map的惰性只读视图
+     */
+    private final class MapView extends AbstractMap<String, Object> {
+        private final Map<?, ?> source;
+        private Set<Entry<String, Object>> entries;
+
+        private MapView(Map<?, ?> source) {
+            this.source = source;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return bindValue(source.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return source.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (entries == null) {
+                Map<String, Object> materialized = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : source.entrySet()) {
+                    materialized.put((String) entry.getKey(), bindValue(entry.getValue()));
+                }
+                entries = Collections.unmodifiableMap(materialized).entrySet();
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * 集合/数组的惰性只读List视图，元素在读取时转换
+     */
+    private final class ListView extends AbstractList<Object> {
+        private final List<?> source;
+        private final Object[] resolved;
+
+        private ListView(List<?> source) {
+            this.source = source;
+            this.resolved = new Object[source.size()];
+        }
+
+        @Override
+        public Object get(int index) {
+            Object value = resolved[index];
+            if (value == null) {
+                value = bindValue(source.get(index));
+                resolved[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return resolved.length;
+        }
+    }
+
+    /**
+     * 顶层 input：在只读视图之上叠加扩展字段，语义与 HashMap 复制后 putIfAbsent 一致
+     */
+    private static final class OverlayMap extends AbstractMap<String, Object> {
+        private final Map<String, Object> base;
+        private final Map<String, Object> overrides = new LinkedHashMap<>();
+
+        private OverlayMap(Map<String, Object> base) {
+            this.base = base;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (overrides.containsKey(key)) {
+                return overrides.get(key);
+            }
+            return base.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return overrides.containsKey(key) || base.containsKey(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object previous = get(key);
+            overrides.put(key, value);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> merged = new LinkedHashMap<>(base);
+            merged.putAll(overrides);
+            return merged.entrySet();
+        }
+    }
+}
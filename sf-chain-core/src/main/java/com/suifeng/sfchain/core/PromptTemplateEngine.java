@@ -5,10 +5,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.expression.AccessException;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.TypedValue;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
 
@@ -29,94 +31,172 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * 描述: 提示词模板引擎
+ * 模板首次使用时编译为不可变语法树（文本/表达式/if/each节点，SpEL表达式预解析），按模板内容缓存，渲染时单遍输出
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
 @Component
 public class PromptTemplateEngine {
     private static final Pattern TEMPLATE_PLACEHOLDER = Pattern.compile("\\{\\{\\s*(.+?)\\s*}}");
+    private static final Pattern FN_REFERENCE = Pattern.compile("\\bfn\\.");
     private static final ExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
+    private static final List<PropertyAccessor> PROPERTY_ACCESSORS = List.of(
+            new NullSafeMapAccessor(), new MapAccessor(), new ReflectivePropertyAccessor());
     private static final String BLOCK_IF_OPEN = "{{#if ";
     private static final String BLOCK_EACH_OPEN = "{{#each ";
     private static final String BLOCK_IF_CLOSE = "{{/if}}";
     private static final String BLOCK_EACH_CLOSE = "{{/each}}";
     private static final String BLOCK_ELSE = "{{else}}";
-    private final ObjectMapper objectMapper;
+    private static final int DEFAULT_CACHE_CAPACITY = 256;
+    private static final int EXPRESSION_SIZE_HINT = 16;
+    private final PromptFunctions functions;
+    private final int cacheCapacity;
+    private final Map<String, CachedTemplate> templateCache = new ConcurrentHashMap<>();
 
     public PromptTemplateEngine(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+        this(objectMapper, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @param cacheCapacity 编译结果缓存的最大模板数，0表示不缓存
+     */
+    public PromptTemplateEngine(ObjectMapper objectMapper, int cacheCapacity) {
+        this.functions = new PromptFunctions(objectMapper);
+        this.cacheCapacity = Math.max(0, cacheCapacity);
     }
 
     public String render(String template, Map<String, Object> context, boolean strictRender) {
         Map<String, Object> runtimeContext = new HashMap<>(context == null ? Map.of() : context);
-        runtimeContext.putIfAbsent("fn", new PromptFunctions(objectMapper));
-        return renderTemplateBlocks(template == null ? "" : template, runtimeContext, strictRender);
+        runtimeContext.putIfAbsent("fn", functions);
+        return compile(template == null ? "" : template).render(runtimeContext, strictRender);
+    }
+
+    /**
+     * 当前缓存的已编译模板数
+     */
+    public int getCachedTemplateCount() {
+        return templateCache.size();
+    }
+
+    private CompiledTemplate compile(String template) {
+        CachedTemplate cached = templateCache.get(template);
+        if (cached != null) {
+            cached.lastAccessNanos = System.nanoTime();
+            return cached.template;
+        }
+        CompiledTemplate compiled = new CompiledTemplate(compileNodes(template));
+        if (cacheCapacity > 0) {
+            if (templateCache.size() >= cacheCapacity) {
+                evictLeastRecentlyUsed();
+            }
+            templateCache.put(template, new CachedTemplate(compiled));
+        }
+        return compiled;
     }
 
-    private String renderTemplateBlocks(String template, Map<String, Object> context, boolean strictRender) {
-        StringBuilder output = new StringBuilder();
+    private void evictLeastRecentlyUsed() {
+        String eldestKey = null;
+        long eldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<String, CachedTemplate> entry : templateCache.entrySet()) {
+            long access = entry.getValue().lastAccessNanos;
+            if (eldestKey == null || access - eldestAccess < 0) {
+                eldestKey = entry.getKey();
+                eldestAccess = access;
+            }
+        }
+        if (eldestKey != null) {
+            templateCache.remove(eldestKey);
+        }
+    }
+
+    private List<TemplateNode> compileNodes(String template) {
+        List<TemplateNode> nodes = new ArrayList<>();
         int cursor = 0;
         while (cursor < template.length()) {
             int blockStart = findNextBlockStart(template, cursor);
             if (blockStart < 0) {
-                output.append(renderTemplateExpressions(template.substring(cursor), context, strictRender));
+                compileText(template.substring(cursor), nodes);
                 break;
             }
-            output.append(renderTemplateExpressions(template.substring(cursor, blockStart), context, strictRender));
+            compileText(template.substring(cursor, blockStart), nodes);
             BlockHeader header = parseBlockHeader(template, blockStart);
             BlockMatch match = findBlockMatch(template, header);
-            String renderedBlock = renderBlock(header, match, context, strictRender);
-            output.append(renderedBlock);
+            CompiledExpression expression = compileExpression(header.expression);
+            if ("if".equals(header.type)) {
+                nodes.add(new IfNode(expression, compileBranch(match.trueContent), compileBranch(match.falseContent)));
+            } else {
+                nodes.add(new EachNode(expression, compileBranch(match.trueContent)));
+            }
             cursor = match.closeEnd;
         }
-        return output.toString();
+        return List.copyOf(nodes);
     }
 
-    private String renderBlock(BlockHeader header, BlockMatch match, Map<String, Object> context, boolean strictRender) {
-        Object evaluated = evaluateExpression(context, header.expression, strictRender);
-        if ("if".equals(header.type)) {
-            boolean condition = toBoolean(evaluated);
-            String selected = condition ? match.trueContent : match.falseContent;
-            return renderTemplateBlocks(selected, context, strictRender);
-        }
-        List<?> items = toIterable(evaluated);
-        if (items.isEmpty()) {
-            return "";
-        }
-        StringBuilder output = new StringBuilder();
-        for (int i = 0; i < items.size(); i++) {
-            Object item = items.get(i);
-            Map<String, Object> child = new HashMap<>(context);
-            child.put("item", item);
-            child.put("this", item);
-            child.put("index", i);
-            output.append(renderTemplateBlocks(match.trueContent, child, strictRender));
+    /**
+     * 分支内的语法错误推迟到该分支实际渲染时抛出，与未编译时的行为保持一致
+     */
+    private List<TemplateNode> compileBranch(String content) {
+        try {
+            return compileNodes(content);
+        } catch (IllegalArgumentException ex) {
+            return List.of(new ErrorNode(ex));
         }
-        return output.toString();
     }
 
-    private String renderTemplateExpressions(String text, Map<String, Object> context, boolean strictRender) {
-        EvaluationContext evaluationContext = createEvaluationContext(context);
+    private void compileText(String text, List<TemplateNode> nodes) {
+        if (text.isEmpty()) {
+            return;
+        }
         Matcher matcher = TEMPLATE_PLACEHOLDER.matcher(text);
-        StringBuffer rendered = new StringBuffer();
+        StringBuilder literal = new StringBuilder();
+        int cursor = 0;
         while (matcher.find()) {
+            literal.append(text, cursor, matcher.start());
+            cursor = matcher.end();
             String expression = matcher.group(1).trim();
             if (expression.startsWith("#") || expression.startsWith("/") || "else".equals(expression)) {
-                matcher.appendReplacement(rendered, Matcher.quoteReplacement(matcher.group(0)));
+                literal.append(matcher.group(0));
                 continue;
             }
-            Object value = evaluateExpression(evaluationContext, expression, strictRender);
-            if (value == null) {
-                if (strictRender) {
-                    throw new TemplateRenderException("EXPRESSION_NULL", expression, "模板表达式结果为空: " + expression);
-                }
-                matcher.appendReplacement(rendered, "");
-                continue;
+            if (literal.length() > 0) {
+                nodes.add(new LiteralNode(literal.toString()));
+                literal.setLength(0);
             }
-            matcher.appendReplacement(rendered, Matcher.quoteReplacement(String.valueOf(value)));
+            nodes.add(new ExpressionNode(compileExpression(expression)));
+        }
+        literal.append(text, cursor, text.length());
+        if (literal.length() > 0) {
+            nodes.add(new LiteralNode(literal.toString()));
         }
-        matcher.appendTail(rendered);
-        return rendered.toString();
+    }
+
+    private CompiledExpression compileExpression(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return new CompiledExpression(expression, null, null, null);
+        }
+        String normalized = expression.trim();
+        Expression primary = null;
+        RuntimeException parseError = null;
+        try {
+            primary = EXPRESSION_PARSER.parseExpression(normalized);
+        } catch (RuntimeException ex) {
+            parseError = ex;
+        }
+        Expression fallback = null;
+        if (normalized.contains("fn.")) {
+            try {
+                fallback = EXPRESSION_PARSER.parseExpression(FN_REFERENCE.matcher(normalized).replaceAll("#fn."));
+            } catch (RuntimeException ignored) {
+                // 回退表达式不可用时保持原始表达式的错误行为
+            }
+        }
+        return new CompiledExpression(expression, primary, parseError, fallback);
     }
 
     private int findNextBlockStart(String template, int from) {
@@ -231,49 +311,6 @@ public class PromptTemplateEngine {
         return min;
     }
 
-    private EvaluationContext createEvaluationContext(Map<String, Object> context) {
-        StandardEvaluationContext evaluationContext = new StandardEvaluationContext(context);
-        evaluationContext.addPropertyAccessor(new NullSafeMapAccessor());
-        evaluationContext.addPropertyAccessor(new MapAccessor());
-        if (context != null) {
-            for (Map.Entry<String, Object> entry : context.entrySet()) {
-                evaluationContext.setVariable(entry.getKey(), entry.getValue());
-            }
-        }
-        return evaluationContext;
-    }
-
-    private Object evaluateExpression(Map<String, Object> context, String expression, boolean strictRender) {
-        return evaluateExpression(createEvaluationContext(context), expression, strictRender);
-    }
-
-    private Object evaluateExpression(EvaluationContext evaluationContext, String expression, boolean strictRender) {
-        if (expression == null || expression.trim().isEmpty()) {
-            return null;
-        }
-        String normalized = expression.trim();
-        try {
-            return EXPRESSION_PARSER.parseExpression(normalized).getValue(evaluationContext);
-        } catch (Exception ex) {
-            if (normalized.contains("fn.")) {
-                String fallbackExpr = normalized.replaceAll("\\bfn\\.", "#fn.");
-                try {
-                    return EXPRESSION_PARSER.parseExpression(fallbackExpr).getValue(evaluationContext);
-                } catch (Exception ignored) {
-                    // keep original exception behavior below
-                }
-            }
-            if (!strictRender) {
-                return null;
-            }
-            throw new TemplateRenderException(
-                    "EXPRESSION_PARSE_ERROR",
-                    expression,
-                    "模板表达式解析失败: " + expression + ", err=" + ex.getMessage(),
-                    ex);
-        }
-    }
-
     private boolean toBoolean(Object value) {
         if (value == null) {
             return false;
@@ -326,6 +363,234 @@ public class PromptTemplateEngine {
         return Collections.singletonList(value);
     }
 
+    /**
+     * 已编译模板（不可变，可并发渲染）
+     */
+    private static final class CompiledTemplate {
+        private final List<TemplateNode> nodes;
+        private final int sizeHint;
+        private volatile int lastRenderedLength;
+
+        private CompiledTemplate(List<TemplateNode> nodes) {
+            this.nodes = nodes;
+            int hint = 0;
+            for (TemplateNode node : nodes) {
+                hint += node.sizeHint();
+            }
+            this.sizeHint = hint;
+        }
+
+        private String render(Map<String, Object> context, boolean strictRender) {
+            StringBuilder output = new StringBuilder(Math.max(sizeHint, lastRenderedLength));
+            renderNodes(nodes, output, new RenderScope(context), strictRender);
+            lastRenderedLength = output.length();
+            return output.toString();
+        }
+    }
+
+    private static final class CachedTemplate {
+        private final CompiledTemplate template;
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        private CachedTemplate(CompiledTemplate template) {
+            this.template = template;
+        }
+    }
+
+    private static void renderNodes(List<TemplateNode> nodes, StringBuilder output, RenderScope scope, boolean strictRender) {
+        for (TemplateNode node : nodes) {
+            node.render(output, scope, strictRender);
+        }
+    }
+
+    private interface TemplateNode {
+        void render(StringBuilder output, RenderScope scope, boolean strictRender);
+
+        default int sizeHint() {
+            return EXPRESSION_SIZE_HINT;
+        }
+    }
+
+    private static final class LiteralNode implements TemplateNode {
+        private final String text;
+
+        private LiteralNode(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(StringBuilder output, RenderScope scope, boolean strictRender) {
+            output.append(text);
+        }
+
+        @Override
+        public int sizeHint() {
+            return text.length();
+        }
+    }
+
+    private static final class ExpressionNode implements TemplateNode {
+        private final CompiledExpression expression;
+
+        private ExpressionNode(CompiledExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public void render(StringBuilder output, RenderScope scope, boolean strictRender) {
+            Object value = expression.evaluate(scope.evaluationContext(), strictRender);
+            if (value == null) {
+                if (strictRender) {
+                    throw new TemplateRenderException("EXPRESSION_NULL", expression.source, "模板表达式结果为空: " + expression.source);
+                }
+                return;
+            }
+            output.append(value);
+        }
+    }
+
+    private final class IfNode implements TemplateNode {
+        private final CompiledExpression condition;
+        private final List<TemplateNode> trueNodes;
+        private final List<TemplateNode> falseNodes;
+
+        private IfNode(CompiledExpression condition, List<TemplateNode> trueNodes, List<TemplateNode> falseNodes) {
+            this.condition = condition;
+            this.trueNodes = trueNodes;
+            this.falseNodes = falseNodes;
+        }
+
+        @Override
+        public void render(StringBuilder output, RenderScope scope, boolean strictRender) {
+            boolean matched = toBoolean(condition.evaluate(scope.evaluationContext(), strictRender));
+            renderNodes(matched ? trueNodes : falseNodes, output, scope, strictRender);
+        }
+    }
+
+    private final class EachNode implements TemplateNode {
+        private final CompiledExpression items;
+        private final List<TemplateNode> body;
+
+        private EachNode(CompiledExpression items, List<TemplateNode> body) {
+            this.items = items;
+            this.body = body;
+        }
+
+        @Override
+        public void render(StringBuilder output, RenderScope scope, boolean strictRender) {
+            List<?> values = toIterable(items.evaluate(scope.evaluationContext(), strictRender));
+            for (int i = 0; i < values.size(); i++) {
+                Object item = values.get(i);
+                Map<String, Object> child = new HashMap<>(scope.variables);
+                child.put("item", item);
+                child.put("this", item);
+                child.put("index", i);
+                renderNodes(body, output, new RenderScope(child), strictRender);
+            }
+        }
+    }
+
+    private static final class ErrorNode implements TemplateNode {
+        private final IllegalArgumentException error;
+
+        private ErrorNode(IllegalArgumentException error) {
+            this.error = error;
+        }
+
+        @Override
+        public void render(StringBuilder output, RenderScope scope, boolean strictRender) {
+            throw new IllegalArgumentException(error.getMessage(), error);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 0;
+        }
+    }
+
+    /**
+     * 预解析的SpEL表达式，保留原有的 fn. -> #fn. 回退与严格模式语义
+     */
+    private static final class CompiledExpression {
+        private final String source;
+        private final Expression primary;
+        private final RuntimeException parseError;
+        private final Expression fallback;
+
+        private CompiledExpression(String source, Expression primary, RuntimeException parseError, Expression fallback) {
+            this.source = source;
+            this.primary = primary;
+            this.parseError = parseError;
+            this.fallback = fallback;
+        }
+
+        private Object evaluate(EvaluationContext evaluationContext, boolean strictRender) {
+            if (primary == null && parseError == null) {
+                return null;
+            }
+            try {
+                if (parseError != null) {
+                    throw parseError;
+                }
+                return primary.getValue(evaluationContext);
+            } catch (Exception ex) {
+                if (fallback != null) {
+                    try {
+                        return fallback.getValue(evaluationContext);
+                    } catch (Exception ignored) {
+                        // keep original exception behavior below
+                    }
+                }
+                if (!strictRender) {
+                    return null;
+                }
+                throw new TemplateRenderException(
+                        "EXPRESSION_PARSE_ERROR",
+                        source,
+                        "模板表达式解析失败: " + source + ", err=" + ex.getMessage(),
+                        ex);
+            }
+        }
+    }
+
+    /**
+     * 渲染作用域：同一作用域内所有表达式共享一个求值上下文
+     */
+    private static final class RenderScope {
+        private final Map<String, Object> variables;
+        private ScopeEvaluationContext evaluationContext;
+
+        private RenderScope(Map<String, Object> variables) {
+            this.variables = variables;
+        }
+
+        private EvaluationContext evaluationContext() {
+            if (evaluationContext == null) {
+                evaluationContext = new ScopeEvaluationContext(variables);
+            }
+            return evaluationContext;
+        }
+    }
+
+    /**
+     * 以作用域Map为根对象，#变量直接从作用域Map读取，无需逐个 setVariable
+     */
+    private static final class ScopeEvaluationContext extends StandardEvaluationContext {
+        private final Map<String, Object> variables;
+
+        private ScopeEvaluationContext(Map<String, Object> variables) {
+            super(variables);
+            this.variables = variables;
+            setPropertyAccessors(PROPERTY_ACCESSORS);
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            Object assigned = super.lookupVariable(name);
+            return assigned != null ? assigned : variables.get(name);
+        }
+    }
+
     private static final class BlockHeader {
         private final String type;
         private final String expression;
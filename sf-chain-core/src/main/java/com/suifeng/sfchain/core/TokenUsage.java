@@ -0,0 +1,40 @@
+package com.suifeng.sfchain.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 描述: 单次模型调用的token用量
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenUsage {
+
+    /** 提示词token数 */
+    private Integer promptTokens;
+
+    /** 生成内容token数 */
+    private Integer completionTokens;
+
+    /** 总token数 */
+    private Integer totalTokens;
+
+    /**
+     * 总token数，服务端未返回总数时按两部分相加
+     */
+    public Integer resolveTotalTokens() {
+        if (totalTokens != null) {
+            return totalTokens;
+        }
+        if (promptTokens == null && completionTokens == null) {
+            return null;
+        }
+        return (promptTokens == null ? 0 : promptTokens) + (completionTokens == null ? 0 : completionTokens);
+    }
+}
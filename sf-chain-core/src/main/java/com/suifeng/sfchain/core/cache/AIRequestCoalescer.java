@@ -0,0 +1,154 @@
+package com.suifeng.sfchain.core.cache;
+
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 描述: 相同AI请求的在途合并（single-flight）
+ * 同一键（操作、模型、请求参数与提示词，见AIResponseCache.key）的并发调用只有第一个真正执行，
+ * 其余调用等待并共享同一个结果或异常；流式调用共享同一个上游Flux，晚到的订阅者会收到已输出的全部数据块。
+ * 合并的调用方拿到的是同一个结果对象，调用方不应修改它
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class AIRequestCoalescer {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Flux<String>> inFlightStreams = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 执行或加入在途调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operationType, String key, Supplier<T> call) {
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, own);
+        Counters stats = counters(operationType);
+        if (existing != null) {
+            stats.coalescedCalls.increment();
+            return (T) await(existing);
+        }
+        stats.upstreamCalls.increment();
+        try {
+            T result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * 获取或创建共享的流式调用
+     *
+     * @param upstream 创建上游Flux（仅在没有在途流时调用）
+     * @return 共享流；leader为true表示本次调用创建了上游
+     */
+    @SuppressWarnings("unchecked")
+    public SharedStream shareStream(String operationType, String key, Supplier<Flux<String>> upstream) {
+        Counters stats = counters(operationType);
+        boolean[] created = new boolean[1];
+        Flux<String> shared = inFlightStreams.computeIfAbsent(key, ignored -> {
+            created[0] = true;
+            Flux<String>[] holder = new Flux[1];
+            holder[0] = Flux.defer(upstream)
+                    .doFinally(signal -> inFlightStreams.remove(key, holder[0]))
+                    .replay()
+                    .refCount();
+            return holder[0];
+        });
+        if (created[0]) {
+            stats.upstreamCalls.increment();
+        } else {
+            stats.coalescedCalls.increment();
+            stats.coalescedStreams.increment();
+        }
+        return new SharedStream(shared, created[0]);
+    }
+
+    /**
+     * 获取所有操作的合并统计
+     */
+    public Map<String, AIRequestCoalescingStats> getStats() {
+        Map<String, AIRequestCoalescingStats> snapshot = new LinkedHashMap<>();
+        counters.forEach((operationType, stats) -> snapshot.put(operationType, stats.snapshot(operationType)));
+        return snapshot;
+    }
+
+    /**
+     * 获取单个操作的合并统计
+     */
+    public AIRequestCoalescingStats getStats(String operationType) {
+        Counters stats = counters.get(operationType);
+        return stats == null ? new Counters().snapshot(operationType) : stats.snapshot(operationType);
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待合并的AI调用时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private Counters counters(String operationType) {
+        return counters.computeIfAbsent(operationType, key -> new Counters());
+    }
+
+    /**
+     * 共享的流式调用
+     */
+    public static final class SharedStream {
+        private final Flux<String> flux;
+        private final boolean leader;
+
+        private SharedStream(Flux<String> flux, boolean leader) {
+            this.flux = flux;
+            this.leader = leader;
+        }
+
+        public Flux<String> getFlux() {
+            return flux;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder upstreamCalls = new LongAdder();
+        private final LongAdder coalescedCalls = new LongAdder();
+        private final LongAdder coalescedStreams = new LongAdder();
+
+        private AIRequestCoalescingStats snapshot(String operationType) {
+            return AIRequestCoalescingStats.builder()
+                    .operationType(operationType)
+                    .upstreamCalls(upstreamCalls.sum())
+                    .coalescedCalls(coalescedCalls.sum())
+                    .coalescedStreams(coalescedStreams.sum())
+                    .build();
+        }
+    }
+}
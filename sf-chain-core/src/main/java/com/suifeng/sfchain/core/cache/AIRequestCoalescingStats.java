@@ -0,0 +1,21 @@
+package com.suifeng.sfchain.core.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个操作的请求合并统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class AIRequestCoalescingStats {
+    String operationType;
+    /** 实际发出的上游调用次数（含流式） */
+    long upstreamCalls;
+    /** 合并到已有在途调用、未单独请求模型的调用次数 */
+    long coalescedCalls;
+    /** 其中合并到在途流式调用的次数 */
+    long coalescedStreams;
+}
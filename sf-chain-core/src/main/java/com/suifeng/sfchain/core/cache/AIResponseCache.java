@@ -0,0 +1,383 @@
+package com.suifeng.sfchain.core.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suifeng.sfchain.config.SfChainCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 描述: AI操作响应缓存（精确匹配）
+ * 以操作、实际模型、请求参数与渲染后提示词的哈希为键，缓存解析成功的结果（序列化为JSON保存，命中时反序列化出新对象）；
+ * 堆内层按序列化大小做LRU淘汰并带过期时间，可选的磁盘层按文件保存、超出容量时淘汰最久未访问的文件，
+ * 堆内未命中时从磁盘层读取并提升回堆内
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+public class AIResponseCache {
+
+    private static final int DISK_MAGIC = 0x53465243; // SFRC
+    /** 每个堆内条目除结果外的估算开销 */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final SfChainCacheProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /** 访问顺序的LRU，受自身锁保护 */
+    private final LinkedHashMap<String, Entry> heap = new LinkedHashMap<>(256, 0.75f, true);
+    private long heapBytes;
+
+    private final Path diskDir;
+    /** 磁盘文件名 -> 文件大小，访问顺序，受自身锁保护 */
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes;
+
+    public AIResponseCache(SfChainCacheProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties != null ? properties : new SfChainCacheProperties();
+        this.objectMapper = objectMapper;
+        this.diskDir = this.properties.isDiskEnabled() ? openDiskDir(this.properties.getDiskDir()) : null;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 构建缓存键：提示词只保留SHA-256摘要
+     */
+    public static String key(String operationType, String modelName, String prompt,
+                             Integer maxTokens, Double temperature, Boolean jsonOutput, boolean thinking) {
+        return operationType + '\n' + modelName + '\n' + maxTokens + '|' + temperature + '|' + jsonOutput + '|' + thinking
+                + '\n' + sha256(prompt);
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时返回null
+     */
+    public <T> T get(String operationType, String key, JavaType type) {
+        Counters stats = counters(operationType);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (heap) {
+            entry = heap.get(key);
+        }
+        if (entry != null && entry.expiresAt <= now) {
+            // 两层写入时过期时间相同，磁盘层一并失效
+            invalidate(key);
+            stats.expirations.increment();
+            stats.misses.increment();
+            return null;
+        }
+        boolean fromDisk = false;
+        if (entry == null && diskDir != null) {
+            entry = readDisk(operationType, key, now, stats);
+            fromDisk = entry != null;
+        }
+        if (entry == null) {
+            stats.misses.increment();
+            return null;
+        }
+        try {
+            T value = objectMapper.readValue(entry.value, type);
+            if (fromDisk) {
+                putHeap(key, entry);
+                stats.diskHits.increment();
+            }
+            stats.hits.increment();
+            return value;
+        } catch (IOException e) {
+            // 结果类型变化等原因无法还原时视为未命中
+            log.debug("响应缓存反序列化失败, operation={}: {}", operationType, e.getMessage());
+            invalidate(key);
+            stats.misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * 写入解析成功的结果
+     */
+    public void put(String operationType, String key, Object value, Duration ttl) {
+        if (value == null || ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            log.debug("响应缓存序列化失败, operation={}: {}", operationType, e.getMessage());
+            return;
+        }
+        Entry entry = new Entry(operationType, bytes, System.currentTimeMillis() + ttl.toMillis());
+        counters(operationType).puts.increment();
+        putHeap(key, entry);
+        if (diskDir != null) {
+            writeDisk(key, entry);
+        }
+    }
+
+    public void invalidate(String key) {
+        synchronized (heap) {
+            removeHeap(key);
+        }
+        if (diskDir != null) {
+            String name = diskName(key);
+            synchronized (diskIndex) {
+                Long size = diskIndex.remove(name);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            deleteQuietly(diskDir.resolve(name));
+        }
+    }
+
+    public long getHeapBytes() {
+        synchronized (heap) {
+            return heapBytes;
+        }
+    }
+
+    public long getDiskBytes() {
+        synchronized (diskIndex) {
+            return diskBytes;
+        }
+    }
+
+    /**
+     * 获取所有操作的缓存统计
+     */
+    public Map<String, AIResponseCacheStats> getStats() {
+        Map<String, AIResponseCacheStats> snapshot = new LinkedHashMap<>();
+        counters.forEach((operationType, stats) -> snapshot.put(operationType, stats.snapshot(operationType)));
+        return snapshot;
+    }
+
+    /**
+     * 获取单个操作的缓存统计
+     */
+    public AIResponseCacheStats getStats(String operationType) {
+        Counters stats = counters.get(operationType);
+        return stats == null ? new Counters().snapshot(operationType) : stats.snapshot(operationType);
+    }
+
+    private void putHeap(String key, Entry entry) {
+        long size = entry.value.length + key.length() * 2L + ENTRY_OVERHEAD_BYTES;
+        long maxBytes = Math.max(properties.getMaxHeapBytes(), 0);
+        // 单条超过堆内容量的1/8时不进堆内，避免一条大结果冲掉整个缓存
+        if (size > maxBytes / 8) {
+            return;
+        }
+        synchronized (heap) {
+            removeHeap(key);
+            entry.size = size;
+            heap.put(key, entry);
+            heapBytes += size;
+            Iterator<Map.Entry<String, Entry>> iterator = heap.entrySet().iterator();
+            while (heapBytes > maxBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next().getValue();
+                iterator.remove();
+                heapBytes -= eldest.size;
+                counters(eldest.operationType).evictions.increment();
+            }
+        }
+    }
+
+    private void removeHeap(String key) {
+        Entry removed = heap.remove(key);
+        if (removed != null) {
+            heapBytes -= removed.size;
+        }
+    }
+
+    private Entry readDisk(String operationType, String key, long now, Counters stats) {
+        String name = diskName(key);
+        synchronized (diskIndex) {
+            if (diskIndex.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = diskDir.resolve(name);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != DISK_MAGIC) {
+                throw new IOException("bad magic");
+            }
+            long expiresAt = in.readLong();
+            String storedKey = in.readUTF();
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            if (!key.equals(storedKey)) {
+                return null;
+            }
+            if (expiresAt <= now) {
+                stats.expirations.increment();
+                invalidate(key);
+                return null;
+            }
+            return new Entry(operationType, value, expiresAt);
+        } catch (IOException e) {
+            log.debug("读取磁盘响应缓存失败, file={}: {}", name, e.getMessage());
+            invalidate(key);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        String name = diskName(key);
+        Path file = diskDir.resolve(name);
+        long size;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(entry.value.length + key.length() + 32);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(DISK_MAGIC);
+            out.writeLong(entry.expiresAt);
+            out.writeUTF(key);
+            out.writeInt(entry.value.length);
+            out.write(entry.value);
+            Path tmp = diskDir.resolve(name + ".tmp");
+            Files.write(tmp, buffer.toByteArray());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            size = buffer.size();
+        } catch (IOException e) {
+            log.debug("写入磁盘响应缓存失败, file={}: {}", name, e.getMessage());
+            return;
+        }
+        List<String> victims = new ArrayList<>();
+        synchronized (diskIndex) {
+            Long previous = diskIndex.put(name, size);
+            diskBytes += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> iterator = diskIndex.entrySet().iterator();
+            while (diskBytes > properties.getDiskMaxBytes() && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(name)) {
+                    continue;
+                }
+                iterator.remove();
+                diskBytes -= eldest.getValue();
+                victims.add(eldest.getKey());
+            }
+        }
+        if (!victims.isEmpty()) {
+            counters(entry.operationType).evictions.add(victims.size());
+            victims.forEach(victim -> deleteQuietly(diskDir.resolve(victim)));
+        }
+    }
+
+    private Path openDiskDir(String dir) {
+        Path path = Paths.get(dir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(path);
+            try (Stream<Path> files = Files.list(path)) {
+                List<Path> entries = files.sorted((a, b) -> Long.compare(lastModified(a), lastModified(b)))
+                        .collect(Collectors.toList());
+                for (Path file : entries) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        deleteQuietly(file);
+                        continue;
+                    }
+                    long size = Files.size(file);
+                    diskIndex.put(name, size);
+                    diskBytes += size;
+                }
+            }
+            log.info("响应缓存磁盘层已启用, dir={}, entries={}, bytes={}", path, diskIndex.size(), diskBytes);
+            return path;
+        } catch (IOException e) {
+            log.warn("响应缓存磁盘层初始化失败，仅使用堆内缓存: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("删除磁盘响应缓存失败, file={}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String diskName(String key) {
+        return sha256(key);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Counters counters(String operationType) {
+        return counters.computeIfAbsent(operationType, key -> new Counters());
+    }
+
+    private static final class Entry {
+        private final String operationType;
+        private final byte[] value;
+        private final long expiresAt;
+        private long size;
+
+        private Entry(String operationType, byte[] value, long expiresAt) {
+            this.operationType = operationType;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder puts = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder expirations = new LongAdder();
+
+        private AIResponseCacheStats snapshot(String operationType) {
+            return AIResponseCacheStats.builder()
+                    .operationType(operationType)
+                    .hits(hits.sum())
+                    .diskHits(diskHits.sum())
+                    .misses(misses.sum())
+                    .puts(puts.sum())
+                    .evictions(evictions.sum())
+                    .expirations(expirations.sum())
+                    .build();
+        }
+    }
+}
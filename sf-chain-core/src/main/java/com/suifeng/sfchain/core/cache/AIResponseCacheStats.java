@@ -0,0 +1,27 @@
+package com.suifeng.sfchain.core.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个操作的响应缓存统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class AIResponseCacheStats {
+    String operationType;
+    /** 命中次数（含磁盘层命中） */
+    long hits;
+    /** 其中由磁盘层命中的次数 */
+    long diskHits;
+    /** 未命中次数 */
+    long misses;
+    /** 写入次数 */
+    long puts;
+    /** 因容量淘汰的条数（堆内与磁盘） */
+    long evictions;
+    /** 因过期失效的条数 */
+    long expirations;
+}
@@ -0,0 +1,30 @@
+package com.suifeng.sfchain.core.execution;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * 描述: 执行调度器整体统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class ExecutionDispatcherStats {
+    /** 实际使用的执行器模式（VIRTUAL/PLATFORM） */
+    String mode;
+    /** 线程池当前线程数（虚拟线程模式为0） */
+    int poolSize;
+    /** 线程池活跃线程数（虚拟线程模式为0） */
+    int activeThreads;
+    /** 线程池任务队列深度（虚拟线程模式为0） */
+    int poolQueueDepth;
+    /** 各操作等待并发许可的调用总数 */
+    int operationQueueDepth;
+    /** 执行器饱和拒绝总数 */
+    long rejected;
+    /** 按操作类型的统计 */
+    Map<String, OperationExecutionStats> operations;
+}
@@ -0,0 +1,281 @@
+package com.suifeng.sfchain.core.execution;
+
+import com.suifeng.sfchain.config.SfChainExecutionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 描述: AI操作异步/批量执行调度器
+ * 使用独立执行器（虚拟线程或有界线程池）承载阻塞的模型调用，并按操作限制并发：
+ * 超出并发的调用在操作队列中排队，不占用线程，许可释放后按提交顺序继续派发；
+ * 已在调度器线程中执行的调用再提交时（如操作内部调用executeBatch）直接在当前线程执行，避免等待自身占用的线程或许可而死锁
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+public class OperationExecutionDispatcher {
+
+    private static final String MODE_VIRTUAL = "VIRTUAL";
+    private static final String MODE_PLATFORM = "PLATFORM";
+
+    private final SfChainExecutionProperties properties;
+    private final ExecutorService executor;
+    private final String mode;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    /** 标记当前线程正在执行本调度器派发的调用 */
+    private final ThreadLocal<Boolean> dispatching = new ThreadLocal<>();
+
+    public OperationExecutionDispatcher(SfChainExecutionProperties properties) {
+        this.properties = properties != null ? properties : new SfChainExecutionProperties();
+        ExecutorService virtual = this.properties.getMode() == SfChainExecutionProperties.ExecutorMode.PLATFORM
+                ? null : newVirtualThreadExecutor();
+        if (virtual == null && this.properties.getMode() == SfChainExecutionProperties.ExecutorMode.VIRTUAL) {
+            log.warn("当前JDK不支持虚拟线程，回退为有界线程池");
+        }
+        this.executor = virtual != null ? virtual : newPlatformExecutor(this.properties);
+        this.mode = virtual != null ? MODE_VIRTUAL : MODE_PLATFORM;
+        log.info("初始化SF-Chain 执行调度器: mode={}", mode);
+    }
+
+    /**
+     * 提交调用，超出操作并发上限时排队等待
+     */
+    public <T> CompletableFuture<T> submit(String operationType, Supplier<T> call) {
+        Lane lane = lanes.computeIfAbsent(operationType, this::newLane);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        lane.submitted.increment();
+        if (Boolean.TRUE.equals(dispatching.get())) {
+            runInline(lane, call, future);
+            return future;
+        }
+        long enqueuedNanos = System.nanoTime();
+        Runnable task = () -> {
+            lane.queueWaitNanos.add(System.nanoTime() - enqueuedNanos);
+            try {
+                future.complete(call.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (lane.limit <= 0) {
+            dispatch(lane, task, future);
+            return future;
+        }
+        lane.pending.offer(new PendingTask(task, future));
+        lane.updateMaxQueued(lane.queued.incrementAndGet());
+        drain(lane);
+        return future;
+    }
+
+    /**
+     * 嵌套提交在调用方线程直接执行，不再占用线程与并发许可
+     */
+    private <T> void runInline(Lane lane, Supplier<T> call, CompletableFuture<T> future) {
+        try {
+            future.complete(call.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            lane.completed.increment();
+        }
+    }
+
+    /**
+     * 在并发许可内派发排队的调用
+     */
+    private void drain(Lane lane) {
+        while (true) {
+            int current = lane.active.get();
+            if (current >= lane.limit || lane.pending.isEmpty()) {
+                return;
+            }
+            if (!lane.active.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            PendingTask next = lane.pending.poll();
+            if (next == null) {
+                lane.active.decrementAndGet();
+                continue;
+            }
+            lane.queued.decrementAndGet();
+            dispatch(lane, next.task, next.future);
+        }
+    }
+
+    private void dispatch(Lane lane, Runnable task, CompletableFuture<?> future) {
+        if (lane.limit <= 0) {
+            lane.active.incrementAndGet();
+        }
+        try {
+            executor.execute(() -> {
+                dispatching.set(Boolean.TRUE);
+                try {
+                    task.run();
+                } finally {
+                    dispatching.remove();
+                    release(lane);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            lane.rejected.increment();
+            future.completeExceptionally(e);
+            release(lane);
+        }
+    }
+
+    private void release(Lane lane) {
+        lane.completed.increment();
+        lane.active.decrementAndGet();
+        if (lane.limit > 0) {
+            drain(lane);
+        }
+    }
+
+    private Lane newLane(String operationType) {
+        Integer override = properties.getOperationConcurrency() == null
+                ? null : properties.getOperationConcurrency().get(operationType);
+        return new Lane(override != null ? override : properties.getDefaultOperationConcurrency());
+    }
+
+    /**
+     * 实际使用的执行器模式
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * 调度统计快照
+     */
+    public ExecutionDispatcherStats getStats() {
+        Map<String, OperationExecutionStats> operations = new TreeMap<>();
+        int operationQueueDepth = 0;
+        for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+            OperationExecutionStats stats = entry.getValue().snapshot(entry.getKey());
+            operations.put(entry.getKey(), stats);
+            operationQueueDepth += stats.getQueued();
+        }
+        ExecutionDispatcherStats.ExecutionDispatcherStatsBuilder builder = ExecutionDispatcherStats.builder()
+                .mode(mode)
+                .operationQueueDepth(operationQueueDepth)
+                .rejected(rejected.sum())
+                .operations(new LinkedHashMap<>(operations));
+        if (executor instanceof ThreadPoolExecutor pool) {
+            builder.poolSize(pool.getPoolSize())
+                    .activeThreads(pool.getActiveCount())
+                    .poolQueueDepth(pool.getQueue().size());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 关闭执行器，等待已派发的调用结束
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * JDK21及以上通过反射创建虚拟线程执行器（编译目标为17）
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 有界线程池：核心线程数等于最大线程数，线程按需创建直到上限、空闲超时回收；
+     * ThreadPoolExecutor只在队列满后才扩容超出核心数的线程，核心数小于上限时并发会停在核心数
+     */
+    private static ExecutorService newPlatformExecutor(SfChainExecutionProperties properties) {
+        int maxPoolSize = Math.max(1, properties.getMaxPoolSize());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                maxPoolSize,
+                maxPoolSize,
+                Math.max(1, properties.getKeepAliveSeconds()),
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                threadFactory(properties.getThreadNamePrefix()),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        String namePrefix = prefix == null || prefix.isBlank() ? "sf-chain-exec-" : prefix;
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record PendingTask(Runnable task, CompletableFuture<?> future) {
+    }
+
+    private static final class Lane {
+        private final int limit;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger maxQueued = new AtomicInteger();
+        private final ConcurrentLinkedQueue<PendingTask> pending = new ConcurrentLinkedQueue<>();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder queueWaitNanos = new LongAdder();
+
+        private Lane(int limit) {
+            this.limit = Math.max(0, limit);
+        }
+
+        private void updateMaxQueued(int depth) {
+            maxQueued.accumulateAndGet(depth, Math::max);
+        }
+
+        private OperationExecutionStats snapshot(String operationType) {
+            long done = completed.sum();
+            long started = Math.max(0L, done - rejected.sum());
+            return OperationExecutionStats.builder()
+                    .operationType(operationType)
+                    .concurrencyLimit(limit)
+                    .active(Math.max(0, active.get()))
+                    .queued(Math.max(0, queued.get()))
+                    .maxQueued(maxQueued.get())
+                    .submitted(submitted.sum())
+                    .completed(done)
+                    .rejected(rejected.sum())
+                    .averageQueueWaitMs(started > 0 ? queueWaitNanos.sum() / 1_000_000.0 / started : 0.0)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.suifeng.sfchain.core.execution;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个操作在执行调度器中的并发与排队统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class OperationExecutionStats {
+    String operationType;
+    /** 最大并发数（0表示不限制） */
+    int concurrencyLimit;
+    /** 正在执行的调用数 */
+    int active;
+    /** 等待并发许可的调用数（队列深度） */
+    int queued;
+    /** 历史最大队列深度 */
+    int maxQueued;
+    /** 累计提交数 */
+    long submitted;
+    /** 累计完成数（含失败） */
+    long completed;
+    /** 因执行器饱和被拒绝的调用数 */
+    long rejected;
+    /** 平均排队等待时间(毫秒) */
+    double averageQueueWaitMs;
+}
@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -40,6 +41,15 @@ public class AICallLog {
     /** AI请求参数 */
     private AIRequestParams requestParams;
     
+    /** 多模型路由信息(未配置路由时为null) */
+    private RoutingInfo routing;
+    
+    /** 本地限流排队时间(毫秒)，未排队时为null */
+    private Long queueWaitMs;
+    
+    /** 是否由响应缓存直接返回(未调用模型，token与费用为0) */
+    private boolean cacheHit;
+    
     /** 模型原始返回结果 */
     private String rawResponse;
     
@@ -49,6 +59,18 @@ public class AICallLog {
     /** 错误信息(如果有) */
     private String errorMessage;
     
+    /** 提示词token数(模型未返回时为null) */
+    private Integer promptTokens;
+    
+    /** 生成内容token数 */
+    private Integer completionTokens;
+    
+    /** 总token数 */
+    private Integer totalTokens;
+    
+    /** 按模型单价估算的费用(未配置单价时为null) */
+    private Double cost;
+    
     /** 调用频次(用于LFU) */
     private int frequency;
     
@@ -68,4 +90,17 @@ public class AICallLog {
         private Boolean thinking;
         private Map<String, Object> additionalParams;
     }
+    
+    @Data
+    @Builder
+    public static class RoutingInfo {
+        /** 路由策略 */
+        private String strategy;
+        /** 本次调用的候选模型顺序，首个为主选 */
+        private List<String> candidates;
+        /** 实际依次尝试的模型，最后一个为最终使用的模型 */
+        private List<String> attemptedModels;
+        /** 最近一次故障切换的原因 */
+        private String failoverReason;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+package com.suifeng.sfchain.core.logging;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 描述: AI调用日志的二级索引与增量统计
+ * 随日志加入/淘汰增量维护：按时间倒序、按操作、按模型的有序索引，以及计数、耗时分布与token用量，
+ * 查询只遍历结果本身，不再整表扫描排序
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+final class AICallLogIndex implements AICallLogLfuCache.Listener {
+
+    /** 调用时间倒序，同一时间按写入顺序倒序 */
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator
+            .comparing((Entry entry) -> entry.callTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(entry -> entry.sequence, Comparator.reverseOrder());
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> byTime = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Entry>> byOperation = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Entry>> byModel = new ConcurrentHashMap<>();
+
+    private final Counters total = new Counters();
+    private final Map<String, Counters> operationCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counters> modelCounters = new ConcurrentHashMap<>();
+
+    @Override
+    public void onAdded(AICallLog callLog) {
+        Entry entry = new Entry(callLog, sequence.incrementAndGet());
+        Entry previous = entries.put(entry.callId, entry);
+        if (previous != null) {
+            unindex(previous);
+        }
+        byTime.add(entry);
+        if (entry.operationType != null) {
+            byOperation.computeIfAbsent(entry.operationType, key -> newIndex()).add(entry);
+            operationCounters.computeIfAbsent(entry.operationType, key -> new Counters()).add(entry, 1);
+        }
+        if (entry.modelName != null) {
+            byModel.computeIfAbsent(entry.modelName, key -> newIndex()).add(entry);
+            modelCounters.computeIfAbsent(entry.modelName, key -> new Counters()).add(entry, 1);
+        }
+        total.add(entry, 1);
+    }
+
+    @Override
+    public void onRemoved(AICallLog callLog) {
+        String callId = callLog.getCallId();
+        Entry entry = entries.get(callId);
+        if (entry != null && entry.callLog == callLog && entries.remove(callId, entry)) {
+            unindex(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        byTime.remove(entry);
+        if (entry.operationType != null) {
+            NavigableSet<Entry> index = byOperation.get(entry.operationType);
+            if (index != null) {
+                index.remove(entry);
+            }
+            Counters counters = operationCounters.get(entry.operationType);
+            if (counters != null) {
+                counters.add(entry, -1);
+            }
+        }
+        if (entry.modelName != null) {
+            NavigableSet<Entry> index = byModel.get(entry.modelName);
+            if (index != null) {
+                index.remove(entry);
+            }
+            Counters counters = modelCounters.get(entry.modelName);
+            if (counters != null) {
+                counters.add(entry, -1);
+            }
+        }
+        total.add(entry, -1);
+    }
+
+    /**
+     * 按时间倒序遍历全部日志
+     */
+    Iterable<AICallLog> newestFirst() {
+        return logs(byTime);
+    }
+
+    /**
+     * 按时间倒序遍历指定操作的日志
+     */
+    Iterable<AICallLog> newestFirstByOperation(String operationType) {
+        return operationType == null ? Collections.emptyList() : logs(byOperation.get(operationType));
+    }
+
+    /**
+     * 按时间倒序遍历指定模型的日志
+     */
+    Iterable<AICallLog> newestFirstByModel(String modelName) {
+        return modelName == null ? Collections.emptyList() : logs(byModel.get(modelName));
+    }
+
+    AICallLogManager.LogStatistics statistics() {
+        long totalCalls = total.count.sum();
+        long successCalls = total.success.sum();
+        return AICallLogManager.LogStatistics.builder()
+                .totalCalls(totalCalls)
+                .successCalls(successCalls)
+                .failedCalls(Math.max(0L, totalCalls - successCalls))
+                .successRate(totalCalls > 0 ? (double) successCalls / totalCalls : 0.0)
+                .averageDuration(total.averageDuration())
+                .operationCounts(counts(operationCounters))
+                .modelCounts(counts(modelCounters))
+                .latencyHistogram(total.histogram())
+                .totalPromptTokens(total.promptTokens.sum())
+                .totalCompletionTokens(total.completionTokens.sum())
+                .totalTokens(total.totalTokens.sum())
+                .totalCost(total.cost.sum())
+                .operationStatistics(groupStatistics(operationCounters))
+                .modelStatistics(groupStatistics(modelCounters))
+                .build();
+    }
+
+    private static Map<String, Long> counts(Map<String, Counters> counters) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        counters.forEach((key, value) -> {
+            long count = value.count.sum();
+            if (count > 0) {
+                result.put(key, count);
+            }
+        });
+        return result;
+    }
+
+    private static Map<String, AICallLogManager.GroupStatistics> groupStatistics(Map<String, Counters> counters) {
+        Map<String, AICallLogManager.GroupStatistics> result = new LinkedHashMap<>();
+        counters.forEach((key, value) -> {
+            if (value.count.sum() > 0) {
+                result.put(key, value.snapshot());
+            }
+        });
+        return result;
+    }
+
+    private static Iterable<AICallLog> logs(NavigableSet<Entry> index) {
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        Function<Entry, AICallLog> toLog = entry -> entry.callLog;
+        return () -> index.stream().map(toLog).iterator();
+    }
+
+    private static NavigableSet<Entry> newIndex() {
+        return new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    }
+
+    /**
+     * 索引条目，加入时固定排序与统计所用字段，避免日志对象被修改后索引失配
+     */
+    private static final class Entry {
+        private final AICallLog callLog;
+        private final long sequence;
+        private final String callId;
+        private final String operationType;
+        private final String modelName;
+        private final LocalDateTime callTime;
+        private final long duration;
+        private final boolean success;
+        private final long promptTokens;
+        private final long completionTokens;
+        private final long totalTokens;
+        private final double cost;
+
+        private Entry(AICallLog callLog, long sequence) {
+            this.callLog = callLog;
+            this.sequence = sequence;
+            this.callId = callLog.getCallId();
+            this.operationType = callLog.getOperationType();
+            this.modelName = callLog.getModelName();
+            this.callTime = callLog.getCallTime();
+            this.duration = callLog.getDuration();
+            this.success = callLog.getStatus() == AICallLog.CallStatus.SUCCESS;
+            this.promptTokens = callLog.getPromptTokens() == null ? 0L : callLog.getPromptTokens();
+            this.completionTokens = callLog.getCompletionTokens() == null ? 0L : callLog.getCompletionTokens();
+            this.totalTokens = callLog.getTotalTokens() == null
+                    ? promptTokens + completionTokens : callLog.getTotalTokens();
+            this.cost = callLog.getCost() == null ? 0.0 : callLog.getCost();
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder success = new LongAdder();
+        private final LongAdder durationSum = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder totalTokens = new LongAdder();
+        private final DoubleAdder cost = new DoubleAdder();
+        private final LongAdder[] latencyBuckets = new LongAdder[AICallLogLatencyBuckets.COUNT];
+
+        private Counters() {
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        private void add(Entry entry, int delta) {
+            count.add(delta);
+            if (entry.success) {
+                success.add(delta);
+            }
+            durationSum.add(delta * entry.duration);
+            promptTokens.add(delta * entry.promptTokens);
+            completionTokens.add(delta * entry.completionTokens);
+            totalTokens.add(delta * entry.totalTokens);
+            cost.add(delta * entry.cost);
+            latencyBuckets[AICallLogLatencyBuckets.indexOf(entry.duration)].add(delta);
+        }
+
+        private double averageDuration() {
+            long n = count.sum();
+            return n > 0 ? (double) durationSum.sum() / n : 0.0;
+        }
+
+        private Map<String, Long> histogram() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                histogram.put(AICallLogLatencyBuckets.label(i), Math.max(0L, latencyBuckets[i].sum()));
+            }
+            return histogram;
+        }
+
+        private AICallLogManager.GroupStatistics snapshot() {
+            long n = count.sum();
+            long successCalls = success.sum();
+            return AICallLogManager.GroupStatistics.builder()
+                    .totalCalls(n)
+                    .successCalls(successCalls)
+                    .failedCalls(Math.max(0L, n - successCalls))
+                    .averageDuration(averageDuration())
+                    .latencyHistogram(histogram())
+                    .totalPromptTokens(promptTokens.sum())
+                    .totalCompletionTokens(completionTokens.sum())
+                    .totalTokens(totalTokens.sum())
+                    .totalCost(cost.sum())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.suifeng.sfchain.core.logging;
+
+/**
+ * 描述: AI调用耗时分布的固定分桶
+ * 内存统计与持久化汇总共用同一组桶上界，保证两处返回的耗时分布可以直接对比
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public final class AICallLogLatencyBuckets {
+
+    /** 耗时分布桶上界(毫秒)，最后一桶为超过最大上界 */
+    private static final long[] BOUNDS_MS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+    private static final String[] LABELS = labels();
+
+    /** 桶数量（含超过最大上界的最后一桶） */
+    public static final int COUNT = BOUNDS_MS.length + 1;
+
+    private AICallLogLatencyBuckets() {
+    }
+
+    /**
+     * 耗时所在的桶下标
+     */
+    public static int indexOf(long durationMs) {
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            if (durationMs <= BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_MS.length;
+    }
+
+    /**
+     * 桶标签，如 "<=100ms"、">60000ms"
+     */
+    public static String label(int index) {
+        return LABELS[index];
+    }
+
+    private static String[] labels() {
+        String[] labels = new String[BOUNDS_MS.length + 1];
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            labels[i] = "<=" + BOUNDS_MS[i] + "ms";
+        }
+        labels[BOUNDS_MS.length] = ">" + BOUNDS_MS[BOUNDS_MS.length - 1] + "ms";
+        return labels;
+    }
+}
@@ -0,0 +1,348 @@
+package com.suifeng.sfchain.core.logging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 描述: 分段的有界LFU日志缓存
+ * 按callId哈希分段，每段独立加锁维护O(1)的频次桶链表；
+ * 读路径无锁：命中只累加待处理计数并放入读缓冲，由写入或空闲时 tryLock 批量回放到频次结构；
+ * 条目的加入与移除在分段锁内通知监听器，保证同一callId的索引更新有序
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+final class AICallLogLfuCache {
+
+    /** 每段最小容量，容量较小时减少分段以保持淘汰精度 */
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final int MAX_SEGMENTS = 64;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int capacity;
+
+    AICallLogLfuCache(int capacity) {
+        this(capacity, null);
+    }
+
+    AICallLogLfuCache(int capacity, Listener listener) {
+        this.capacity = Math.max(1, capacity);
+        Listener effectiveListener = listener != null ? listener : Listener.NO_OP;
+        int maxSegments = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2)));
+        int segmentCount = 1;
+        while (segmentCount * 2 <= maxSegments && this.capacity / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        int base = this.capacity / segmentCount;
+        int remainder = this.capacity % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(base + (i < remainder ? 1 : 0), effectiveListener);
+        }
+    }
+
+    /**
+     * 写入日志
+     *
+     * @return 写入引起的变更（被替换或被淘汰的日志）
+     */
+    Change put(AICallLog callLog) {
+        return segmentFor(callLog.getCallId()).put(callLog);
+    }
+
+    /**
+     * 读取日志并记录一次访问
+     */
+    AICallLog get(String callId) {
+        if (callId == null) {
+            return null;
+        }
+        return segmentFor(callId).get(callId);
+    }
+
+    /**
+     * 当前所有日志（弱一致快照）
+     */
+    List<AICallLog> values() {
+        List<AICallLog> values = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            for (Node node : segment.nodes.values()) {
+                values.add(node.callLog);
+            }
+        }
+        return values;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.nodes.size();
+        }
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @return 被清除的日志
+     */
+    Collection<AICallLog> clear() {
+        List<AICallLog> removed = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.clear(removed);
+        }
+        return removed;
+    }
+
+    private Segment segmentFor(String callId) {
+        int h = callId == null ? 0 : callId.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * 条目变更监听器，回调在分段锁内执行，实现须轻量且线程安全
+     */
+    interface Listener {
+        Listener NO_OP = new Listener() {
+            @Override
+            public void onAdded(AICallLog callLog) {
+            }
+
+            @Override
+            public void onRemoved(AICallLog callLog) {
+            }
+        };
+
+        void onAdded(AICallLog callLog);
+
+        void onRemoved(AICallLog callLog);
+    }
+
+    /**
+     * 单次写入引起的变更
+     */
+    static final class Change {
+        private static final Change NONE = new Change(null, null);
+
+        /** 相同callId被覆盖的旧日志 */
+        final AICallLog replaced;
+        /** 因容量淘汰的日志 */
+        final AICallLog evicted;
+
+        private Change(AICallLog replaced, AICallLog evicted) {
+            this.replaced = replaced;
+            this.evicted = evicted;
+        }
+    }
+
+    private static final class Segment {
+        private final int capacity;
+        private final Listener listener;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+        private final ConcurrentLinkedQueue<Node> readBuffer = new ConcurrentLinkedQueue<>();
+        /** 频次桶链表哨兵，按频次升序 */
+        private final Bucket head = new Bucket(0);
+
+        private Segment(int capacity, Listener listener) {
+            this.capacity = Math.max(1, capacity);
+            this.listener = listener;
+            head.prev = head;
+            head.next = head;
+        }
+
+        private AICallLog get(String callId) {
+            Node node = nodes.get(callId);
+            if (node == null) {
+                return null;
+            }
+            if (node.pendingHits.getAndIncrement() == 0) {
+                readBuffer.offer(node);
+            }
+            if (lock.tryLock()) {
+                try {
+                    drainReadBuffer();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return node.callLog;
+        }
+
+        private Change put(AICallLog callLog) {
+            String callId = callLog.getCallId();
+            lock.lock();
+            try {
+                drainReadBuffer();
+                Node existing = nodes.get(callId);
+                if (existing != null) {
+                    AICallLog replaced = existing.callLog;
+                    existing.callLog = callLog;
+                    increment(existing, 1);
+                    listener.onRemoved(replaced);
+                    listener.onAdded(callLog);
+                    return new Change(replaced, null);
+                }
+                AICallLog evicted = nodes.size() >= capacity ? evict() : null;
+                Node node = new Node(callId, callLog);
+                nodes.put(callId, node);
+                link(node, head.next.freq == 1 ? head.next : insertBucketAfter(head, 1));
+                callLog.setFrequency(node.freq);
+                listener.onAdded(callLog);
+                return evicted == null ? Change.NONE : new Change(null, evicted);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear(List<AICallLog> removed) {
+            lock.lock();
+            try {
+                for (Node node : nodes.values()) {
+                    node.removed = true;
+                    removed.add(node.callLog);
+                    listener.onRemoved(node.callLog);
+                }
+                nodes.clear();
+                readBuffer.clear();
+                head.next = head;
+                head.prev = head;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 回放读缓冲中的访问计数（需持有锁）
+         */
+        private void drainReadBuffer() {
+            Node node;
+            while ((node = readBuffer.poll()) != null) {
+                int hits = node.pendingHits.getAndSet(0);
+                if (hits > 0 && !node.removed) {
+                    increment(node, hits);
+                }
+            }
+        }
+
+        /**
+         * 淘汰最低频次中最早进入的日志（需持有锁）
+         */
+        private AICallLog evict() {
+            Bucket bucket = head.next;
+            if (bucket == head) {
+                return null;
+            }
+            Node victim = bucket.first;
+            unlink(victim);
+            victim.removed = true;
+            nodes.remove(victim.callId);
+            listener.onRemoved(victim.callLog);
+            return victim.callLog;
+        }
+
+        private void increment(Node node, int hits) {
+            int target = node.freq + hits;
+            if (target < node.freq) {
+                target = Integer.MAX_VALUE;
+            }
+            Bucket current = node.bucket;
+            Bucket next = current.next;
+            while (next != head && next.freq < target) {
+                current = next;
+                next = next.next;
+            }
+            Bucket destination = next != head && next.freq == target ? next : insertBucketAfter(current, target);
+            unlink(node);
+            node.freq = target;
+            link(node, destination);
+            node.callLog.setFrequency(target);
+        }
+
+        private Bucket insertBucketAfter(Bucket previous, int freq) {
+            Bucket bucket = new Bucket(freq);
+            bucket.prev = previous;
+            bucket.next = previous.next;
+            previous.next.prev = bucket;
+            previous.next = bucket;
+            return bucket;
+        }
+
+        private void link(Node node, Bucket bucket) {
+            node.bucket = bucket;
+            node.prev = bucket.last;
+            node.next = null;
+            if (bucket.last == null) {
+                bucket.first = node;
+            } else {
+                bucket.last.next = node;
+            }
+            bucket.last = node;
+        }
+
+        private void unlink(Node node) {
+            Bucket bucket = node.bucket;
+            if (node.prev == null) {
+                bucket.first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                bucket.last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+            if (bucket.first == null) {
+                bucket.prev.next = bucket.next;
+                bucket.next.prev = bucket.prev;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final int freq;
+        private Bucket prev;
+        private Bucket next;
+        private Node first;
+        private Node last;
+
+        private Bucket(int freq) {
+            this.freq = freq;
+        }
+    }
+
+    private static final class Node {
+        private final String callId;
+        private final AtomicInteger pendingHits = new AtomicInteger();
+        private volatile AICallLog callLog;
+        private volatile boolean removed;
+        private int freq = 1;
+        private Bucket bucket;
+        private Node prev;
+        private Node next;
+
+        private Node(String callId, AICallLog callLog) {
+            this.callId = callId;
+            this.callLog = callLog;
+        }
+    }
+}
@@ -33,6 +33,21 @@ public class AICallLogSummary {
     /** 错误信息(如果有) */
     private String errorMessage;
     
+    /** 提示词token数 */
+    private Integer promptTokens;
+    
+    /** 生成内容token数 */
+    private Integer completionTokens;
+    
+    /** 总token数 */
+    private Integer totalTokens;
+    
+    /** 估算费用 */
+    private Double cost;
+    
+    /** 是否由响应缓存直接返回 */
+    private boolean cacheHit;
+    
     /** 调用频次(用于LFU) */
     private int frequency;
     
@@ -42,6 +57,9 @@ public class AICallLogSummary {
     /** AI请求参数摘要 */
     private RequestParamsSummary requestParams;
     
+    /** 多模型路由信息(未配置路由时为null) */
+    private AICallLog.RoutingInfo routing;
+    
     @Data
     @Builder
     public static class RequestParamsSummary {
@@ -73,9 +91,15 @@ public class AICallLogSummary {
                 .duration(fullLog.getDuration())
                 .status(fullLog.getStatus())
                 .errorMessage(fullLog.getErrorMessage())
+                .promptTokens(fullLog.getPromptTokens())
+                .completionTokens(fullLog.getCompletionTokens())
+                .totalTokens(fullLog.getTotalTokens())
+                .cost(fullLog.getCost())
+                .cacheHit(fullLog.isCacheHit())
                 .frequency(fullLog.getFrequency())
                 .lastAccessTime(fullLog.getLastAccessTime())
                 .requestParams(paramsSummary)
+                .routing(fullLog.getRouting())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.suifeng.sfchain.core.logging;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 描述: 按租户/应用累计token用量与费用，并细分到操作与模型
+ * 只做累加，不受内存日志淘汰影响，用于配置中心统计接入日志的累计消耗
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class TokenUsageAggregator {
+
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private final ConcurrentMap<String, ScopeTotals> scopes = new ConcurrentHashMap<>();
+
+    /**
+     * 累计一条调用日志的用量
+     */
+    public void record(String tenantId, String appId, AICallLog callLog) {
+        if (callLog == null) {
+            return;
+        }
+        String tenant = tenantId == null ? UNKNOWN : tenantId;
+        String app = appId == null ? UNKNOWN : appId;
+        ScopeTotals scope = scopes.computeIfAbsent(tenant + "|" + app, key -> new ScopeTotals(tenant, app));
+        scope.total.add(callLog);
+        scope.operations.computeIfAbsent(orUnknown(callLog.getOperationType()), key -> new Totals()).add(callLog);
+        scope.models.computeIfAbsent(orUnknown(callLog.getModelName()), key -> new Totals()).add(callLog);
+    }
+
+    /**
+     * 指定租户应用的累计用量，无记录时返回空报告
+     */
+    public Report report(String tenantId, String appId) {
+        ScopeTotals scope = scopes.get(tenantId + "|" + appId);
+        return scope == null ? new ScopeTotals(tenantId, appId).report() : scope.report();
+    }
+
+    /**
+     * 全部租户应用的累计用量
+     */
+    public List<Report> reports() {
+        List<Report> reports = new ArrayList<>();
+        scopes.values().forEach(scope -> reports.add(scope.report()));
+        reports.sort(Comparator.comparing(Report::getTenantId).thenComparing(Report::getAppId));
+        return reports;
+    }
+
+    public void clear() {
+        scopes.clear();
+    }
+
+    private static String orUnknown(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+
+    private static Map<String, Usage> snapshot(Map<String, Totals> totals) {
+        Map<String, Usage> result = new TreeMap<>();
+        totals.forEach((key, value) -> result.put(key, value.snapshot()));
+        return result;
+    }
+
+    private static final class ScopeTotals {
+        private final String tenantId;
+        private final String appId;
+        private final Totals total = new Totals();
+        private final ConcurrentMap<String, Totals> operations = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Totals> models = new ConcurrentHashMap<>();
+
+        private ScopeTotals(String tenantId, String appId) {
+            this.tenantId = tenantId;
+            this.appId = appId;
+        }
+
+        private Report report() {
+            return Report.builder()
+                    .tenantId(tenantId)
+                    .appId(appId)
+                    .total(total.snapshot())
+                    .operations(snapshot(operations))
+                    .models(snapshot(models))
+                    .build();
+        }
+    }
+
+    private static final class Totals {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder totalTokens = new LongAdder();
+        private final DoubleAdder cost = new DoubleAdder();
+
+        private void add(AICallLog callLog) {
+            long prompt = callLog.getPromptTokens() == null ? 0L : callLog.getPromptTokens();
+            long completion = callLog.getCompletionTokens() == null ? 0L : callLog.getCompletionTokens();
+            calls.increment();
+            promptTokens.add(prompt);
+            completionTokens.add(completion);
+            totalTokens.add(callLog.getTotalTokens() == null ? prompt + completion : callLog.getTotalTokens());
+            if (callLog.getCost() != null) {
+                cost.add(callLog.getCost());
+            }
+        }
+
+        private Usage snapshot() {
+            return Usage.builder()
+                    .calls(calls.sum())
+                    .promptTokens(promptTokens.sum())
+                    .completionTokens(completionTokens.sum())
+                    .totalTokens(totalTokens.sum())
+                    .cost(cost.sum())
+                    .build();
+        }
+    }
+
+    @Value
+    @Builder
+    public static class Usage {
+        long calls;
+        long promptTokens;
+        long completionTokens;
+        long totalTokens;
+        double cost;
+    }
+
+    @Value
+    @Builder
+    public static class Report {
+        String tenantId;
+        String appId;
+        Usage total;
+        /** 按操作类型 */
+        Map<String, Usage> operations;
+        /** 按模型 */
+        Map<String, Usage> models;
+    }
+}
@@ -0,0 +1,356 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suifeng.sfchain.core.logging.upload.AICallLogBinaryBatchWriter;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 二进制批量上报格式读取（格式见 AICallLogBinaryBatchWriter）
+ * 逐条解码为紧凑的条目JSON；input/output经流式解析器复制，不可信的客户端JSON不会原样落盘。
+ * 单条超出上限时内容字段直接跳过，字典与prompt前缀状态照常更新，后续条目不受影响
+ */
+public class AICallLogBinaryBatchReader implements AICallLogIngestionItemReader {
+
+    /** 超限条目读取prompt前缀时的字节上限（每字符最多4字节） */
+    private static final int PROMPT_PREFIX_BYTES = AICallLogBinaryBatchWriter.MAX_SHARED_PROMPT_CHARS * 4 + 4;
+
+    private final ObjectMapper objectMapper;
+    private final CountingInputStream counter;
+    private final DataInputStream in;
+    private final int maxItemBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, String> lastPrompts = new HashMap<>();
+    private boolean finished;
+
+    public AICallLogBinaryBatchReader(ObjectMapper objectMapper, InputStream in, int maxItemBytes) throws IOException {
+        this.objectMapper = objectMapper;
+        this.counter = new CountingInputStream(new BufferedInputStream(new GZIPInputStream(in, 8192)));
+        this.in = new DataInputStream(counter);
+        this.maxItemBytes = Math.max(maxItemBytes, 1);
+        if (this.in.readInt() != AICallLogBinaryBatchWriter.MAGIC) {
+            throw new JsonFormatException("not a binary log batch");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != AICallLogBinaryBatchWriter.VERSION) {
+            throw new JsonFormatException("unsupported binary batch version: " + version);
+        }
+    }
+
+    @Override
+    public Item next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        long length = readVarLong();
+        if (length == 0) {
+            finished = true;
+            return null;
+        }
+        long start = counter.count;
+        boolean oversized = length > maxItemBytes;
+        String callId = readString(oversized);
+        String operationType = readDictionary();
+        String modelName = readDictionary();
+        String status = readDictionary();
+        long callTimeMillis = readVarLong();
+        long duration = unzigzag(readVarLong());
+        int flags = (int) readVarLong();
+        Integer maxTokens = has(flags, AICallLogBinaryBatchWriter.HAS_MAX_TOKENS) ? (int) unzigzag(readVarLong()) : null;
+        Double temperature = has(flags, AICallLogBinaryBatchWriter.HAS_TEMPERATURE) ? in.readDouble() : null;
+        Boolean jsonOutput = has(flags, AICallLogBinaryBatchWriter.HAS_JSON_OUTPUT)
+                ? has(flags, AICallLogBinaryBatchWriter.JSON_OUTPUT_TRUE) : null;
+        Boolean thinking = has(flags, AICallLogBinaryBatchWriter.HAS_THINKING)
+                ? has(flags, AICallLogBinaryBatchWriter.THINKING_TRUE) : null;
+        Integer promptTokens = has(flags, AICallLogBinaryBatchWriter.HAS_PROMPT_TOKENS) ? (int) unzigzag(readVarLong()) : null;
+        Integer completionTokens = has(flags, AICallLogBinaryBatchWriter.HAS_COMPLETION_TOKENS)
+                ? (int) unzigzag(readVarLong()) : null;
+        Integer totalTokens = has(flags, AICallLogBinaryBatchWriter.HAS_TOTAL_TOKENS) ? (int) unzigzag(readVarLong()) : null;
+        Double cost = has(flags, AICallLogBinaryBatchWriter.HAS_COST) ? in.readDouble() : null;
+        String errorMessage = readString(oversized);
+        String prompt = readPrompt(operationType, oversized);
+        String rawResponse = readString(oversized);
+        byte[] input = readBytes(oversized);
+        byte[] output = readBytes(oversized);
+        if (counter.count - start != length) {
+            throw new JsonFormatException("binary batch record length mismatch");
+        }
+        if (oversized) {
+            return Item.rejected("item too large");
+        }
+
+        AICallLogUploadItem metadata = AICallLogUploadItem.builder()
+                .callId(callId)
+                .operationType(operationType)
+                .modelName(modelName)
+                .callTime(callTimeMillis == 0
+                        ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(callTimeMillis - 1), ZoneOffset.UTC))
+                .duration(duration)
+                .status(status)
+                .errorMessage(errorMessage)
+                .maxTokens(maxTokens)
+                .temperature(temperature)
+                .jsonOutput(jsonOutput)
+                .thinking(thinking)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .totalTokens(totalTokens)
+                .cost(cost)
+                .build();
+        buffer.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            writeField(generator, "callId", callId);
+            writeField(generator, "operationType", operationType);
+            writeField(generator, "modelName", modelName);
+            if (metadata.getCallTime() != null) {
+                generator.writeFieldName("callTime");
+                generator.writeObject(metadata.getCallTime());
+            }
+            generator.writeNumberField("duration", duration);
+            writeField(generator, "status", status);
+            writeField(generator, "errorMessage", errorMessage);
+            writeField(generator, "maxTokens", maxTokens);
+            writeField(generator, "temperature", temperature);
+            writeField(generator, "jsonOutput", jsonOutput);
+            writeField(generator, "thinking", thinking);
+            writeField(generator, "promptTokens", promptTokens);
+            writeField(generator, "completionTokens", completionTokens);
+            writeField(generator, "totalTokens", totalTokens);
+            writeField(generator, "cost", cost);
+            writeJsonField(generator, "input", input);
+            writeField(generator, "prompt", prompt);
+            writeField(generator, "rawResponse", rawResponse);
+            writeJsonField(generator, "output", output);
+            generator.writeEndObject();
+        } catch (JsonProcessingException e) {
+            return Item.rejected("invalid item: " + e.getOriginalMessage());
+        }
+        return Item.accepted(buffer.toByteArray(), metadata);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(name);
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * 客户端给出的JSON经解析器逐token复制，且必须恰好是一个值
+     */
+    private void writeJsonField(JsonGenerator generator, String name, byte[] json) throws IOException {
+        if (json == null) {
+            return;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() == null) {
+                throw new JsonFormatException("empty " + name);
+            }
+            generator.writeFieldName(name);
+            generator.copyCurrentStructure(parser);
+            if (parser.nextToken() != null) {
+                throw new JsonFormatException("trailing content in " + name);
+            }
+        }
+    }
+
+    private String readDictionary() throws IOException {
+        long code = readVarLong();
+        if (code == 0) {
+            return null;
+        }
+        if (code == 1) {
+            String value = readString(false);
+            if (value == null) {
+                throw new JsonFormatException("null dictionary entry");
+            }
+            if (dictionary.size() < AICallLogBinaryBatchWriter.MAX_DICTIONARY_SIZE) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+        long index = code - 2;
+        if (index >= dictionary.size()) {
+            throw new JsonFormatException("dictionary index out of range: " + index);
+        }
+        return dictionary.get((int) index);
+    }
+
+    private String readPrompt(String operationType, boolean skipContent) throws IOException {
+        long code = readVarLong();
+        if (code == 0) {
+            return null;
+        }
+        String key = operationType == null ? "" : operationType;
+        String previous = lastPrompts.get(key);
+        long shared = code - 1;
+        if (shared > (previous == null ? 0 : previous.length())) {
+            throw new JsonFormatException("prompt prefix out of range");
+        }
+        String prefix = shared == 0 ? "" : previous.substring(0, (int) shared);
+        String prompt;
+        if (skipContent) {
+            // 只保留前缀共享需要的部分
+            String head = readStringHead();
+            prompt = head == null ? prefix : prefix + head;
+        } else {
+            String suffix = readString(false);
+            prompt = suffix == null ? prefix : prefix + suffix;
+        }
+        if (previous != null || lastPrompts.size() < AICallLogBinaryBatchWriter.MAX_DICTIONARY_SIZE) {
+            lastPrompts.put(key, prompt.length() > AICallLogBinaryBatchWriter.MAX_SHARED_PROMPT_CHARS
+                    ? prompt.substring(0, AICallLogBinaryBatchWriter.MAX_SHARED_PROMPT_CHARS) : prompt);
+        }
+        return skipContent ? null : prompt;
+    }
+
+    /**
+     * 读取字符串开头最多MAX_SHARED_PROMPT_CHARS个完整字符，其余字节跳过
+     */
+    private String readStringHead() throws IOException {
+        long code = readVarLong();
+        if (code == 0) {
+            return null;
+        }
+        long length = code - 1;
+        int head = (int) Math.min(length, PROMPT_PREFIX_BYTES);
+        byte[] bytes = new byte[head];
+        in.readFully(bytes);
+        skipFully(length - head);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (head < length) {
+            // 截断处可能切开多字节字符，去掉最后一个字符
+            value = value.substring(0, Math.max(0, value.length() - 1));
+        }
+        return value.length() > AICallLogBinaryBatchWriter.MAX_SHARED_PROMPT_CHARS
+                ? value.substring(0, AICallLogBinaryBatchWriter.MAX_SHARED_PROMPT_CHARS) : value;
+    }
+
+    private String readString(boolean skip) throws IOException {
+        byte[] bytes = readBytes(skip);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(boolean skip) throws IOException {
+        long code = readVarLong();
+        if (code == 0) {
+            return null;
+        }
+        long length = code - 1;
+        if (skip) {
+            skipFully(length);
+            return null;
+        }
+        if (length > maxItemBytes) {
+            throw new JsonFormatException("binary batch field exceeds record length");
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void skipFully(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("binary batch truncated");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("binary batch truncated");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new JsonFormatException("binary batch varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static boolean has(int flags, int bit) {
+        return (flags & bit) != 0;
+    }
+
+    /**
+     * 二进制批量格式错误（与JSON解析错误同样按请求体格式错误处理）
+     */
+    private static final class JsonFormatException extends JsonProcessingException {
+        private JsonFormatException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 接入日志条目逐条读取（流式接入的请求体解码）
+ */
+public interface AICallLogIngestionItemReader extends Closeable {
+
+    /**
+     * 读取下一条，读完时返回null；单条格式错误时返回被拒绝的条目并继续，
+     * 请求体格式错误或单条超出读取上限时抛出异常
+     */
+    Item next() throws IOException;
+
+    /**
+     * 读取出的单个条目：accepted时json为紧凑的条目JSON，metadata为不含内容字段的条目
+     */
+    final class Item {
+        private final byte[] json;
+        private final AICallLogUploadItem metadata;
+        private final String error;
+
+        private Item(byte[] json, AICallLogUploadItem metadata, String error) {
+            this.json = json;
+            this.metadata = metadata;
+            this.error = error;
+        }
+
+        static Item accepted(byte[] json, AICallLogUploadItem metadata) {
+            return new Item(json, metadata, null);
+        }
+
+        static Item rejected(String error) {
+            return new Item(null, null, error);
+        }
+
+        public boolean isAccepted() {
+            return error == null;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public AICallLogUploadItem getMetadata() {
+            return metadata;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 单条条目超出读取上限
+     */
+    class ItemTooLargeException extends IOException {
+        public ItemTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
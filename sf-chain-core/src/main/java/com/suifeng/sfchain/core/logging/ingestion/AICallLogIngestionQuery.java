@@ -0,0 +1,26 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 接入日志索引查询条件（各条件为空表示不过滤，多个条件取交集）
+ */
+@Value
+@Builder
+public class AICallLogIngestionQuery {
+    String callId;
+    String operationType;
+    String modelName;
+    String status;
+    /** 调用时间下界（含） */
+    LocalDateTime from;
+    /** 调用时间上界（不含） */
+    LocalDateTime to;
+    /** keyset游标：上一页返回的nextCursor，为空时从最新记录开始 */
+    Long cursor;
+    @Builder.Default
+    int limit = 100;
+}
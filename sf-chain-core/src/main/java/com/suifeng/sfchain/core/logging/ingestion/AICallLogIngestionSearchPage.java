@@ -0,0 +1,15 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 接入日志索引查询结果（按写入顺序倒序，nextCursor用于keyset分页）
+ */
+@Value
+public class AICallLogIngestionSearchPage {
+    List<AICallLogIngestionRecord> records;
+    Long nextCursor;
+    boolean hasMore;
+}
@@ -12,6 +12,16 @@ public interface AICallLogIngestionStore {
 
     void saveBatch(String tenantId, String appId, List<AICallLogUploadItem> items);
 
+    /**
+     * 保存一条已序列化的日志条目，itemJson为单个条目的紧凑JSON（不含换行），原样写入存储；
+     * metadata为不含内容字段的同一条目，供索引与统计使用。返回是否已接收。
+     * 默认实现只保存元数据
+     */
+    default boolean saveRaw(String tenantId, String appId, byte[] itemJson, AICallLogUploadItem metadata) {
+        saveBatch(tenantId, appId, List.of(metadata));
+        return true;
+    }
+
     default List<AICallLogIngestionRecord> query(String tenantId, String appId, int limit) {
         return Collections.emptyList();
     }
@@ -20,6 +30,13 @@ public interface AICallLogIngestionStore {
         return new AICallLogIngestionPage(Collections.emptyList(), null, false);
     }
 
+    /**
+     * 按索引条件查询，结果按写入顺序倒序，使用keyset游标翻页
+     */
+    default AICallLogIngestionSearchPage search(String tenantId, String appId, AICallLogIngestionQuery query) {
+        return new AICallLogIngestionSearchPage(Collections.emptyList(), null, false);
+    }
+
     default int purgeExpired() {
         return 0;
     }
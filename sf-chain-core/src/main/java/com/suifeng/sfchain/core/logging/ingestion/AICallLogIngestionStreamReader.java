@@ -0,0 +1,176 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 接入日志条目流式读取
+ * 请求体为NDJSON（每行一个条目）或条目JSON数组；逐条用流式解析器复制为紧凑JSON，只把元数据字段解析成对象，
+ * 内容字段（input/prompt/rawResponse/output）原样复制，单个请求的内存占用只与单条上限有关、与条目总数无关
+ */
+public class AICallLogIngestionStreamReader implements AICallLogIngestionItemReader {
+
+    private static final Set<String> CONTENT_FIELDS = Set.of("input", "prompt", "rawResponse", "output");
+    /** 解析器预读缓冲的余量，单条读取量超过上限加余量时中止整个请求 */
+    private static final int READ_AHEAD_SLACK = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> itemFields;
+    private final LimitedInputStream input;
+    private final JsonParser parser;
+    private final int maxItemBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private boolean started;
+    private boolean array;
+    private boolean finished;
+
+    public AICallLogIngestionStreamReader(ObjectMapper objectMapper, InputStream in, int maxItemBytes) throws IOException {
+        this.objectMapper = objectMapper;
+        this.itemFields = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(AICallLogUploadItem.class))
+                .findProperties()
+                .stream()
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toUnmodifiableSet());
+        this.input = new LimitedInputStream(in);
+        this.parser = objectMapper.getFactory().createParser(input);
+        this.maxItemBytes = Math.max(maxItemBytes, 1);
+    }
+
+    @Override
+    public Item next() throws IOException {
+        JsonToken token = nextItemToken();
+        if (token == null) {
+            return null;
+        }
+        ObjectNode metadata = objectMapper.createObjectNode();
+        input.limit(maxItemBytes + READ_AHEAD_SLACK);
+        try {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return Item.rejected("item must be a JSON object");
+            }
+            buffer.reset();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                generator.writeStartObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (!itemFields.contains(name)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    generator.writeFieldName(name);
+                    if (CONTENT_FIELDS.contains(name)) {
+                        generator.copyCurrentStructure(parser);
+                    } else {
+                        JsonNode value = parser.readValueAsTree();
+                        metadata.set(name, value);
+                        generator.writeTree(value);
+                    }
+                }
+                generator.writeEndObject();
+            }
+        } finally {
+            input.unlimit();
+        }
+        if (buffer.size() > maxItemBytes) {
+            return Item.rejected("item too large");
+        }
+        try {
+            return Item.accepted(buffer.toByteArray(), objectMapper.treeToValue(metadata, AICallLogUploadItem.class));
+        } catch (IOException | IllegalArgumentException e) {
+            return Item.rejected("invalid item: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private JsonToken nextItemToken() throws IOException {
+        if (finished) {
+            return null;
+        }
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                array = true;
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || (array && token == JsonToken.END_ARRAY)) {
+            finished = true;
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * 限制单条条目期间可读取的字节数，防止超大字段被解析器整体读入内存
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining = Long.MAX_VALUE;
+
+        private LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        private void limit(long bytes) {
+            remaining = bytes;
+        }
+
+        private void unlimit() {
+            remaining = Long.MAX_VALUE;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkRemaining();
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkRemaining();
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkRemaining();
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        private void checkRemaining() throws ItemTooLargeException {
+            if (remaining <= 0) {
+                throw new ItemTooLargeException("item exceeds max size");
+            }
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.config.SfChainIngestionProperties;
+import com.suifeng.sfchain.core.logging.AICallLogLatencyBuckets;
+import com.suifeng.sfchain.core.logging.AICallLogManager;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 接入日志统计汇总
+ * 写入时按分钟、操作类型、模型与状态累加调用数、错误数、耗时分布与token用量，定期合并进按分钟/小时/天三级的列式汇总文件；
+ * 任意时间窗口的统计拆成整天、整小时与零散分钟三段读取，读取量与窗口长度基本无关。
+ * 汇总只覆盖启用后写入的日志，不回填历史数据
+ */
+@Slf4j
+public class AICallLogRollupStore implements AutoCloseable {
+
+    private static final String FILE_SUFFIX = ".sfr";
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private final SfChainIngestionProperties properties;
+    private final Path baseDir;
+    private final Object pendingLock = new Object();
+    /** 尚未落盘的分钟汇总：应用目录 -> 汇总行 */
+    private Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> pending = new HashMap<>();
+    /** 正在落盘的分钟汇总，落盘完成前仍参与统计 */
+    private Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> inFlight = new HashMap<>();
+    /** 落盘失败待重试的汇总：目标文件 -> 汇总行（已按文件级别对齐时间桶） */
+    private final Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> retry = new HashMap<>();
+    /** 落盘持写锁，统计持读锁，保证统计看到的文件与内存汇总不重不漏 */
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+    private LocalDateTime lastRetentionAt;
+
+    public AICallLogRollupStore(SfChainIngestionProperties properties) {
+        this.properties = properties;
+        this.baseDir = Path.of(properties.getRollupDir()).toAbsolutePath().normalize();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sf-chain-ingestion-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalSeconds = Math.max(properties.getRollupFlushIntervalSeconds(), 1);
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 累加一批已落盘的接入日志
+     */
+    public void record(List<AICallLogIngestionRecord> records) {
+        synchronized (pendingLock) {
+            for (AICallLogIngestionRecord record : records) {
+                AICallLogUploadItem item = record.getItem();
+                if (item == null) {
+                    continue;
+                }
+                LocalDateTime callTime = item.getCallTime() == null ? record.getIngestedAt() : item.getCallTime();
+                if (callTime == null) {
+                    continue;
+                }
+                IngestionRollupRow row = new IngestionRollupRow(
+                        minuteOf(callTime),
+                        defaultString(item.getOperationType()),
+                        defaultString(item.getModelName()),
+                        defaultString(item.getStatus()));
+                pending.computeIfAbsent(appDir(record.getTenantId(), record.getAppId()), key -> new HashMap<>())
+                        .computeIfAbsent(row.key(), key -> row)
+                        .add(item.getDuration(), item.getPromptTokens(), item.getCompletionTokens(),
+                                item.getTotalTokens(), item.getCost());
+            }
+        }
+    }
+
+    /**
+     * 将内存中的分钟汇总合并进分钟、小时、天三级汇总文件
+     */
+    public void flush() {
+        fileLock.writeLock().lock();
+        try {
+            Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> batch;
+            synchronized (pendingLock) {
+                inFlight = pending;
+                pending = new HashMap<>();
+                batch = inFlight;
+            }
+            Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> units = new HashMap<>(retry);
+            retry.clear();
+            batch.forEach((appDir, rows) -> {
+                for (IngestionRollupRow row : rows.values()) {
+                    LocalDateTime time = timeOf(row.bucket);
+                    for (Resolution resolution : Resolution.values()) {
+                        Path file = appDir.resolve(resolution.fileName(resolution.fileStart(time)));
+                        mergeRow(units.computeIfAbsent(file, key -> new HashMap<>()),
+                                row.rebucket(minuteOf(resolution.bucketStart(time))));
+                    }
+                }
+            });
+            units.forEach((file, rows) -> {
+                try {
+                    mergeInto(file, rows.values());
+                } catch (IOException | RuntimeException e) {
+                    // 按文件重试，已写成功的级别不会重复累加
+                    retry.put(file, rows);
+                    log.warn("写入接入日志汇总失败，将在下次落盘时重试: file={}, error={}", file, e.getMessage());
+                }
+            });
+            synchronized (pendingLock) {
+                inFlight = new HashMap<>();
+            }
+            purgeExpired();
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 统计时间窗口[from, to)内的调用，租户应用任一为空时统计全部应用；from为空表示天汇总保留期起点，to为空表示当前时刻。
+     * 窗口按分钟对齐；窗口边界早于分钟（小时）汇总保留期时按小时（天）对齐
+     */
+    public AICallLogManager.LogStatistics statistics(String tenantId, String appId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = from == null
+                ? now.minusDays(properties.getRollupDayRetentionDays()).truncatedTo(ChronoUnit.DAYS)
+                : from.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime end = Resolution.MINUTE.ceil(to == null ? now : to);
+        LocalDateTime minuteFrom = Resolution.MINUTE.fileStart(now.minusDays(properties.getRollupMinuteRetentionDays()));
+        LocalDateTime hourFrom = Resolution.HOUR.fileStart(now.minusDays(properties.getRollupHourRetentionDays()));
+        if (start.isBefore(minuteFrom)) {
+            start = Resolution.HOUR.bucketStart(start);
+        }
+        if (start.isBefore(hourFrom)) {
+            start = Resolution.DAY.bucketStart(start);
+        }
+        if (Resolution.HOUR.bucketStart(end).isBefore(minuteFrom)) {
+            end = Resolution.HOUR.ceil(end);
+        }
+        if (Resolution.DAY.bucketStart(end).isBefore(hourFrom)) {
+            end = Resolution.DAY.ceil(end);
+        }
+
+        Totals totals = new Totals();
+        Map<String, Totals> byOperation = new LinkedHashMap<>();
+        Map<String, Totals> byModel = new LinkedHashMap<>();
+        if (start.isBefore(end)) {
+            List<Range> ranges = ranges(start, end);
+            boolean scoped = hasText(tenantId) && hasText(appId);
+            Path scopeDir = scoped ? appDir(tenantId, appId) : null;
+            long startMinute = minuteOf(start);
+            long endMinute = minuteOf(end);
+            fileLock.readLock().lock();
+            try {
+                List<IngestionRollupRow> rows = new ArrayList<>();
+                for (Path appDir : scoped ? List.of(scopeDir) : appDirs()) {
+                    for (Range range : ranges) {
+                        readRange(appDir, range, rows);
+                    }
+                }
+                synchronized (pendingLock) {
+                    collectPending(pending, scopeDir, startMinute, endMinute, rows);
+                    collectPending(inFlight, scopeDir, startMinute, endMinute, rows);
+                }
+                for (IngestionRollupRow row : rows) {
+                    totals.add(row);
+                    byOperation.computeIfAbsent(row.operationType, key -> new Totals()).add(row);
+                    byModel.computeIfAbsent(row.modelName, key -> new Totals()).add(row);
+                }
+            } finally {
+                fileLock.readLock().unlock();
+            }
+        }
+        long successCalls = totals.count - totals.errorCount;
+        return AICallLogManager.LogStatistics.builder()
+                .totalCalls(totals.count)
+                .successCalls(successCalls)
+                .failedCalls(totals.errorCount)
+                .successRate(totals.count > 0 ? (double) successCalls / totals.count : 0.0)
+                .averageDuration(totals.averageDuration())
+                .operationCounts(counts(byOperation))
+                .modelCounts(counts(byModel))
+                .latencyHistogram(totals.histogram())
+                .totalPromptTokens(totals.promptTokens)
+                .totalCompletionTokens(totals.completionTokens)
+                .totalTokens(totals.totalTokens)
+                .totalCost(totals.cost)
+                .operationStatistics(groupStatistics(byOperation))
+                .modelStatistics(groupStatistics(byModel))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("接入日志汇总落盘异常: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 将窗口拆成整天、整小时与零散分钟区间，区间互不重叠
+     */
+    private static List<Range> ranges(LocalDateTime start, LocalDateTime end) {
+        List<Range> ranges = new ArrayList<>();
+        LocalDateTime dayStart = Resolution.DAY.ceil(start);
+        LocalDateTime dayEnd = Resolution.DAY.bucketStart(end);
+        if (dayStart.isBefore(dayEnd)) {
+            ranges.add(new Range(Resolution.DAY, dayStart, dayEnd));
+            addHourRanges(ranges, start, dayStart);
+            addHourRanges(ranges, dayEnd, end);
+        } else {
+            addHourRanges(ranges, start, end);
+        }
+        return ranges;
+    }
+
+    private static void addHourRanges(List<Range> ranges, LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        LocalDateTime hourStart = Resolution.HOUR.ceil(start);
+        LocalDateTime hourEnd = Resolution.HOUR.bucketStart(end);
+        if (!hourStart.isBefore(hourEnd)) {
+            ranges.add(new Range(Resolution.MINUTE, start, end));
+            return;
+        }
+        ranges.add(new Range(Resolution.HOUR, hourStart, hourEnd));
+        if (start.isBefore(hourStart)) {
+            ranges.add(new Range(Resolution.MINUTE, start, hourStart));
+        }
+        if (hourEnd.isBefore(end)) {
+            ranges.add(new Range(Resolution.MINUTE, hourEnd, end));
+        }
+    }
+
+    private void readRange(Path appDir, Range range, List<IngestionRollupRow> rows) {
+        long startMinute = minuteOf(range.start());
+        long endMinute = minuteOf(range.end());
+        for (LocalDateTime fileStart = range.resolution().fileStart(range.start());
+             fileStart.isBefore(range.end());
+             fileStart = range.resolution().nextFile(fileStart)) {
+            Path file = appDir.resolve(range.resolution().fileName(fileStart));
+            try {
+                for (IngestionRollupRow row : IngestionRollupFile.read(file)) {
+                    if (row.bucket >= startMinute && row.bucket < endMinute) {
+                        rows.add(row);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("读取接入日志汇总失败: file={}, error={}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static void collectPending(Map<Path, Map<IngestionRollupRow.Key, IngestionRollupRow>> source,
+                                       Path scopeDir, long startMinute, long endMinute, List<IngestionRollupRow> rows) {
+        source.forEach((appDir, appRows) -> {
+            if (scopeDir != null && !scopeDir.equals(appDir)) {
+                return;
+            }
+            for (IngestionRollupRow row : appRows.values()) {
+                if (row.bucket >= startMinute && row.bucket < endMinute) {
+                    rows.add(row.rebucket(row.bucket));
+                }
+            }
+        });
+    }
+
+    private void mergeInto(Path file, Collection<IngestionRollupRow> rows) throws IOException {
+        Map<IngestionRollupRow.Key, IngestionRollupRow> merged = new HashMap<>();
+        try {
+            for (IngestionRollupRow row : IngestionRollupFile.read(file)) {
+                mergeRow(merged, row);
+            }
+        } catch (IOException e) {
+            // 损坏的汇总文件移到一旁，避免每次落盘都失败
+            Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+            Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            log.warn("接入日志汇总文件损坏，已移至: {}", corrupt);
+        }
+        for (IngestionRollupRow row : rows) {
+            mergeRow(merged, row);
+        }
+        IngestionRollupFile.write(file, merged.values());
+    }
+
+    private static void mergeRow(Map<IngestionRollupRow.Key, IngestionRollupRow> rows, IngestionRollupRow row) {
+        IngestionRollupRow existing = rows.putIfAbsent(row.key(), row);
+        if (existing != null) {
+            existing.merge(row);
+        }
+    }
+
+    /**
+     * 删除超出各级保留期的汇总文件，每小时最多执行一次
+     */
+    private void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastRetentionAt != null && lastRetentionAt.plusHours(1).isAfter(now)) {
+            return;
+        }
+        lastRetentionAt = now;
+        for (Path appDir : appDirs()) {
+            try (Stream<Path> files = Files.list(appDir)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    String name = file.getFileName().toString();
+                    for (Resolution resolution : Resolution.values()) {
+                        LocalDateTime fileStart = resolution.parseFileStart(name);
+                        if (fileStart != null && resolution.nextFile(fileStart)
+                                .isBefore(now.minusDays(resolution.retentionDays(properties)))) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("清理接入日志汇总失败: dir={}, error={}", appDir, e.getMessage());
+            }
+        }
+    }
+
+    private List<Path> appDirs() {
+        if (!Files.isDirectory(baseDir)) {
+            return List.of();
+        }
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> tenants = Files.list(baseDir)) {
+            for (Path tenantDir : tenants.filter(Files::isDirectory).collect(Collectors.toList())) {
+                try (Stream<Path> apps = Files.list(tenantDir)) {
+                    apps.filter(Files::isDirectory).forEach(result::add);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("列出接入日志汇总目录失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    private Path appDir(String tenantId, String appId) {
+        return baseDir.resolve(IngestionSegmentManager.sanitize(tenantId))
+                .resolve(IngestionSegmentManager.sanitize(appId));
+    }
+
+    private static Map<String, Long> counts(Map<String, Totals> groups) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        groups.forEach((key, value) -> result.put(key, value.count));
+        return result;
+    }
+
+    private static Map<String, AICallLogManager.GroupStatistics> groupStatistics(Map<String, Totals> groups) {
+        Map<String, AICallLogManager.GroupStatistics> result = new LinkedHashMap<>();
+        groups.forEach((key, value) -> result.put(key, value.snapshot()));
+        return result;
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    private static LocalDateTime timeOf(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    private static String defaultString(String value) {
+        return hasText(value) ? value : UNKNOWN;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * 汇总级别：时间桶粒度与单个文件覆盖的时间跨度
+     */
+    private enum Resolution {
+        /** 分钟桶，每小时一个文件 */
+        MINUTE("minute-", "yyyyMMddHH"),
+        /** 小时桶，每天一个文件 */
+        HOUR("hour-", "yyyyMMdd"),
+        /** 天桶，每月一个文件 */
+        DAY("day-", "yyyyMM");
+
+        private final String prefix;
+        private final DateTimeFormatter formatter;
+
+        Resolution(String prefix, String pattern) {
+            this.prefix = prefix;
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+        }
+
+        LocalDateTime bucketStart(LocalDateTime time) {
+            switch (this) {
+                case MINUTE:
+                    return time.truncatedTo(ChronoUnit.MINUTES);
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                default:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+            }
+        }
+
+        /**
+         * 不早于time的首个桶起点
+         */
+        LocalDateTime ceil(LocalDateTime time) {
+            LocalDateTime start = bucketStart(time);
+            if (start.equals(time)) {
+                return start;
+            }
+            switch (this) {
+                case MINUTE:
+                    return start.plusMinutes(1);
+                case HOUR:
+                    return start.plusHours(1);
+                default:
+                    return start.plusDays(1);
+            }
+        }
+
+        LocalDateTime fileStart(LocalDateTime time) {
+            switch (this) {
+                case MINUTE:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+                default:
+                    return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            }
+        }
+
+        LocalDateTime nextFile(LocalDateTime fileStart) {
+            switch (this) {
+                case MINUTE:
+                    return fileStart.plusHours(1);
+                case HOUR:
+                    return fileStart.plusDays(1);
+                default:
+                    return fileStart.plusMonths(1);
+            }
+        }
+
+        String fileName(LocalDateTime fileStart) {
+            return prefix + formatter.format(fileStart) + FILE_SUFFIX;
+        }
+
+        LocalDateTime parseFileStart(String fileName) {
+            if (!fileName.startsWith(prefix) || !fileName.endsWith(FILE_SUFFIX)) {
+                return null;
+            }
+            String value = fileName.substring(prefix.length(), fileName.length() - FILE_SUFFIX.length());
+            try {
+                switch (this) {
+                    case MINUTE:
+                        return LocalDateTime.parse(value + "00", DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
+                    case HOUR:
+                        return LocalDateTime.parse(value + "0000", DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
+                    default:
+                        return LocalDateTime.parse(value + "010000", DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
+                }
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        int retentionDays(SfChainIngestionProperties properties) {
+            switch (this) {
+                case MINUTE:
+                    return properties.getRollupMinuteRetentionDays();
+                case HOUR:
+                    return properties.getRollupHourRetentionDays();
+                default:
+                    return properties.getRollupDayRetentionDays();
+            }
+        }
+    }
+
+    private record Range(Resolution resolution, LocalDateTime start, LocalDateTime end) {
+    }
+
+    /**
+     * 统计累加器
+     */
+    private static final class Totals {
+        private long count;
+        private long errorCount;
+        private long durationSum;
+        private long promptTokens;
+        private long completionTokens;
+        private long totalTokens;
+        private double cost;
+        private final long[] latency = new long[AICallLogLatencyBuckets.COUNT];
+
+        private void add(IngestionRollupRow row) {
+            count += row.count;
+            errorCount += row.errorCount;
+            durationSum += row.durationSum;
+            promptTokens += row.promptTokens;
+            completionTokens += row.completionTokens;
+            totalTokens += row.totalTokens;
+            cost += row.cost;
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] += row.latency[i];
+            }
+        }
+
+        private double averageDuration() {
+            return count > 0 ? (double) durationSum / count : 0.0;
+        }
+
+        private Map<String, Long> histogram() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < latency.length; i++) {
+                histogram.put(AICallLogLatencyBuckets.label(i), latency[i]);
+            }
+            return histogram;
+        }
+
+        private AICallLogManager.GroupStatistics snapshot() {
+            return AICallLogManager.GroupStatistics.builder()
+                    .totalCalls(count)
+                    .successCalls(count - errorCount)
+                    .failedCalls(errorCount)
+                    .averageDuration(averageDuration())
+                    .latencyHistogram(histogram())
+                    .totalPromptTokens(promptTokens)
+                    .totalCompletionTokens(completionTokens)
+                    .totalTokens(totalTokens)
+                    .totalCost(cost)
+                    .build();
+        }
+    }
+}
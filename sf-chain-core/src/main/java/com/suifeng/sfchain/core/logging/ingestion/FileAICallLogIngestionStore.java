@@ -5,58 +5,305 @@ import com.suifeng.sfchain.config.SfChainIngestionProperties;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.FileTime;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * 接入日志文件持久化（jsonl）
+ * 启用组提交时写入由后台线程批量完成，请求线程只入队；
+ * 数据按租户应用分段存储，磁盘占用与查询成本随保留窗口而不是应用存续时间增长
  */
 @Slf4j
-public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
+public class FileAICallLogIngestionStore implements AICallLogIngestionStore, AutoCloseable {
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int SEGMENT_INDEX_CACHE_SIZE = 64;
+    private static final int SEARCH_BATCH_LINES = 64;
+    private static final byte[] RAW_ITEM_FIELD = "\"item\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RAW_NEXT_ITEM_FIELD = ",\"item\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RAW_ITEM_NULL = "null".getBytes(StandardCharsets.UTF_8);
 
     private final ObjectMapper objectMapper;
     private final SfChainIngestionProperties properties;
     private final Path baseDir;
+    private final IngestionGroupCommitWriter writer;
+    private final IngestionSegmentManager segmentManager;
+    /** 统计汇总，未启用时为null */
+    private final AICallLogRollupStore rollupStore;
+    private final Map<Path, IngestionLineIndex> lineIndexes = new ConcurrentHashMap<>();
+    /** 活跃分段的二级索引，随写入增量维护 */
+    private final Map<Path, IngestionSegmentIndex> activeSegmentIndexes = new ConcurrentHashMap<>();
+    /** 已封存分段的二级索引（只读），按访问顺序淘汰 */
+    private final Map<Path, IngestionSegmentIndex> sealedSegmentIndexes = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, IngestionSegmentIndex> eldest) {
+                    return size() > SEGMENT_INDEX_CACHE_SIZE;
+                }
+            });
 
     public FileAICallLogIngestionStore(ObjectMapper objectMapper, SfChainIngestionProperties properties) {
+        this(objectMapper, properties, null);
+    }
+
+    public FileAICallLogIngestionStore(ObjectMapper objectMapper, SfChainIngestionProperties properties,
+                                       AICallLogRollupStore rollupStore) {
+        this.rollupStore = rollupStore;
         this.objectMapper = objectMapper.copy().findAndRegisterModules();
         this.properties = properties;
         this.baseDir = Path.of(properties.getFilePersistenceDir()).toAbsolutePath().normalize();
+        this.writer = properties.isGroupCommitEnabled()
+                ? new IngestionGroupCommitWriter(properties, this::serializeLine, this::route, this::afterWrite)
+                : null;
+        this.segmentManager = new IngestionSegmentManager(baseDir, this.objectMapper, properties,
+                new IngestionSegmentManager.Listener() {
+                    @Override
+                    public void beforeSeal(Path file) {
+                        if (writer != null) {
+                            writer.closeFile(file);
+                        }
+                        sealSegmentIndex(file);
+                    }
+
+                    @Override
+                    public void afterRemove(Path file) {
+                        dropLineIndex(file);
+                    }
+
+                    @Override
+                    public void afterPurge(Path file) {
+                        dropLineIndex(file);
+                        dropSegmentIndex(file);
+                    }
+                });
     }
 
     @Override
-    public synchronized void saveBatch(String tenantId, String appId, List<AICallLogUploadItem> items) {
+    public void saveBatch(String tenantId, String appId, List<AICallLogUploadItem> items) {
+        if (writer == null) {
+            saveBatchDirect(tenantId, appId, items);
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<AICallLogIngestionRecord> records = new ArrayList<>(items.size());
+        for (AICallLogUploadItem item : items) {
+            records.add(new AICallLogIngestionRecord(tenantId, appId, now, item));
+        }
+        int accepted = writer.enqueueAll(records);
+        if (accepted < records.size()) {
+            log.warn("接入日志写入队列持续饱和或已关闭，丢弃记录: tenantId={}, appId={}, dropped={}",
+                    tenantId, appId, records.size() - accepted);
+        }
+    }
+
+    @Override
+    public boolean saveRaw(String tenantId, String appId, byte[] itemJson, AICallLogUploadItem metadata) {
+        LocalDateTime now = LocalDateTime.now();
+        AICallLogIngestionRecord record = new AICallLogIngestionRecord(tenantId, appId, now, metadata);
+        byte[] line = rawLine(new AICallLogIngestionRecord(tenantId, appId, now, null), itemJson);
+        if (writer == null) {
+            writeDirect(tenantId, appId, List.of(record), List.of(line));
+            return true;
+        }
+        return writer.enqueue(record, line);
+    }
+
+    /**
+     * 组提交写入指标，未启用组提交时返回null
+     */
+    public IngestionWriterMetrics writerMetrics() {
+        return writer == null ? null : writer.metrics();
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+        segmentManager.close();
+        activeSegmentIndexes.forEach((file, index) -> persistSegmentIndex(file, index));
+    }
+
+    private byte[] serializeLine(AICallLogIngestionRecord record) {
         try {
-            Files.createDirectories(baseDir);
-            Path file = baseDir.resolve(toFileName(tenantId, appId));
-            List<String> lines = new ArrayList<>(items.size());
-            LocalDateTime now = LocalDateTime.now();
-            for (AICallLogUploadItem item : items) {
-                lines.add(objectMapper.writeValueAsString(new AICallLogIngestionRecord(tenantId, appId, now, item)));
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 以记录信封（item为空）的序列化结果为前缀拼接条目原始JSON，得到与serializeLine格式一致的一行
+     */
+    private byte[] rawLine(AICallLogIngestionRecord envelope, byte[] itemJson) {
+        try {
+            byte[] head = objectMapper.writeValueAsBytes(envelope);
+            int end = head.length - 1;
+            if (end < 1 || head[end] != '}') {
+                throw new IllegalStateException("无法识别的接入日志序列化格式");
             }
-            Files.write(file, lines, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
-            if (properties.isIndexEnabled()) {
-                Files.deleteIfExists(indexPath(file));
+            // item为最后一个字段，null值可能被序列化为"item":null，也可能被配置省略
+            if (endsWith(head, end, RAW_ITEM_NULL)) {
+                end -= RAW_ITEM_NULL.length;
+            } else {
+                head = concat(Arrays.copyOf(head, end), head[end - 1] == '{' ? RAW_ITEM_FIELD : RAW_NEXT_ITEM_FIELD);
+                end = head.length;
             }
+            byte[] line = new byte[end + itemJson.length + 2];
+            System.arraycopy(head, 0, line, 0, end);
+            System.arraycopy(itemJson, 0, line, end, itemJson.length);
+            line[line.length - 2] = '}';
+            line[line.length - 1] = '\n';
+            return line;
         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean endsWith(byte[] value, int end, byte[] suffix) {
+        if (end < suffix.length) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (value[end - suffix.length + i] != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * 为一组记录确定写入的活跃分段（必要时滚动）
+     */
+    private Path route(String tenantId, String appId, long bytes) throws IOException {
+        return segmentManager.open(tenantId, appId).route(bytes);
+    }
+
+    /**
+     * 分段追加后更新分段清单与统计汇总，并按新写入的行扩展行偏移索引
+     */
+    private void afterWrite(Path file, long startOffset, List<byte[]> lines, List<AICallLogIngestionRecord> records) {
+        try {
+            AICallLogIngestionRecord first = records.get(0);
+            segmentManager.open(first.getTenantId(), first.getAppId()).recordWrite(file, lines, records);
+        } catch (IOException | RuntimeException e) {
+            log.debug("更新接入日志分段清单失败: {}", e.getMessage());
+        }
+        if (rollupStore != null) {
+            rollupStore.record(records);
+        }
+        updateSegmentIndex(file, startOffset, lines, records);
+        if (!properties.isIndexEnabled()) {
+            return;
+        }
+        try {
+            long written = 0L;
+            for (byte[] line : lines) {
+                written += line.length;
+            }
+            lineIndex(file).append(startOffset, lines, resolveStride(startOffset + written));
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("更新接入日志索引失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入位置与索引已覆盖长度连续时直接追加本批记录，否则从已覆盖长度补扫文件
+     */
+    private void updateSegmentIndex(Path file, long startOffset, List<byte[]> lines, List<AICallLogIngestionRecord> records) {
+        try {
+            IngestionSegmentIndex index = activeSegmentIndex(file);
+            synchronized (index) {
+                if (index.indexedBytes() != startOffset) {
+                    catchUp(index, file);
+                    return;
+                }
+                for (int i = 0; i < lines.size(); i++) {
+                    byte[] line = lines.get(i);
+                    if (line.length == 0 || line[line.length - 1] != '\n') {
+                        break;
+                    }
+                    index.add(records.get(i), line.length);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("更新接入日志二级索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void saveBatchDirect(String tenantId, String appId, List<AICallLogUploadItem> items) {
+        List<byte[]> lines = new ArrayList<>(items.size());
+        List<AICallLogIngestionRecord> records = new ArrayList<>(items.size());
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (AICallLogUploadItem item : items) {
+                AICallLogIngestionRecord record = new AICallLogIngestionRecord(tenantId, appId, now, item);
+                lines.add(serializeLine(record));
+                records.add(record);
+            }
+        } catch (UncheckedIOException e) {
+            log.debug("序列化接入日志失败: {}", e.getMessage());
+            return;
+        }
+        writeDirect(tenantId, appId, records, lines);
+    }
+
+    private synchronized void writeDirect(String tenantId, String appId,
+                                          List<AICallLogIngestionRecord> records, List<byte[]> lines) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            int length = 0;
+            for (byte[] line : lines) {
+                length += line.length;
+            }
+            Path file = route(tenantId, appId, length);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            lines.forEach(buffer::put);
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long startOffset = channel.size();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                afterWrite(file, startOffset, lines, records);
+            }
+        } catch (IOException | UncheckedIOException e) {
             // 持久化失败不影响主流程
             log.debug("持久化接入日志失败: {}", e.getMessage());
         }
@@ -64,74 +311,85 @@ public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
 
     @Override
     public List<AICallLogIngestionRecord> query(String tenantId, String appId, int limit) {
-        Path file = baseDir.resolve(toFileName(tenantId, appId));
-        if (!Files.exists(file)) {
-            return Collections.emptyList();
-        }
+        int safeLimit = Math.max(limit, 1);
         try {
-            List<String> lines = readLastLines(file, Math.max(limit, 1));
+            IngestionSegmentManager.AppSegments segments = segmentManager.find(tenantId, appId);
+            if (segments == null) {
+                return Collections.emptyList();
+            }
+            List<String> lines;
+            try {
+                lines = readLastLines(segments.snapshot(), safeLimit);
+            } catch (NoSuchFileException e) {
+                // 读取期间分段被压缩替换，按新快照重试一次
+                lines = readLastLines(segments.snapshot(), safeLimit);
+            }
             return lines.stream()
                     .map(this::toRecord)
                     .filter(java.util.Objects::nonNull)
                     .collect(Collectors.toList());
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             log.debug("查询接入日志失败: {}", e.getMessage());
             return Collections.emptyList();
         }
     }
 
+    /**
+     * 游标为全局行号，分段清理后仍然有效；早于最早保留分段的游标从最早分段开始
+     */
     @Override
     public AICallLogIngestionPage queryPage(String tenantId, String appId, int cursor, int limit) {
-        Path file = baseDir.resolve(toFileName(tenantId, appId));
-        if (!Files.exists(file)) {
-            return new AICallLogIngestionPage(Collections.emptyList(), null, false);
-        }
         int safeCursor = Math.max(cursor, 0);
         int safeLimit = Math.max(limit, 1);
         try {
-            LineIndex index = loadOrBuildIndex(file);
-            long offset = 0L;
-            int checkpointLine = 0;
-            if (index != null && !index.offsets.isEmpty()) {
-                if (safeCursor >= index.totalLines) {
-                    return new AICallLogIngestionPage(Collections.emptyList(), null, false);
-                }
-                int stride = Math.max(index.stride, 1);
-                checkpointLine = (safeCursor / stride) * stride;
-                int checkpointPos = Math.max(checkpointLine / stride, 0);
-                if (checkpointPos >= index.offsets.size()) {
-                    checkpointPos = index.offsets.size() - 1;
-                    checkpointLine = checkpointPos * stride;
-                }
-                offset = index.offsets.get(checkpointPos);
+            IngestionSegmentManager.AppSegments segments = segmentManager.find(tenantId, appId);
+            if (segments == null) {
+                return new AICallLogIngestionPage(Collections.emptyList(), null, false);
             }
-            int skip = safeCursor - checkpointLine;
-            return readPage(file, offset, skip, safeLimit, safeCursor);
-        } catch (IOException e) {
+            try {
+                return readPage(segments.snapshot(), safeCursor, safeLimit);
+            } catch (NoSuchFileException e) {
+                return readPage(segments.snapshot(), safeCursor, safeLimit);
+            }
+        } catch (IOException | UncheckedIOException e) {
             log.debug("分页查询接入日志失败: {}", e.getMessage());
             return new AICallLogIngestionPage(Collections.emptyList(), null, false);
         }
     }
 
+    /**
+     * 逐个分段由新到旧使用二级索引筛选候选行，只读取并解析候选行；
+     * 游标为上一页最后一条记录的全局行号，下一页只返回更早写入的记录
+     */
     @Override
-    public int purgeExpired() {
-        if (!Files.exists(baseDir)) {
-            return 0;
+    public AICallLogIngestionSearchPage search(String tenantId, String appId, AICallLogIngestionQuery query) {
+        try {
+            IngestionSegmentManager.AppSegments segments = segmentManager.find(tenantId, appId);
+            if (segments == null) {
+                return new AICallLogIngestionSearchPage(Collections.emptyList(), null, false);
+            }
+            try {
+                return search(segments.snapshot(), query);
+            } catch (NoSuchFileException e) {
+                return search(segments.snapshot(), query);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("索引查询接入日志失败: {}", e.getMessage());
+            return new AICallLogIngestionSearchPage(Collections.emptyList(), null, false);
         }
-        int deleted = 0;
+    }
+
+    /**
+     * 按分段清理：删除最后写入时间超出保留期的已封存分段，返回删除的分段数
+     */
+    @Override
+    public int purgeExpired() {
         long retentionDays = Math.max(properties.getRetentionDays(), 1);
-        Instant cutoff = Instant.now().minusSeconds(retentionDays * 24L * 3600L);
-        try (var stream = Files.list(baseDir)) {
-            for (Path file : stream.collect(Collectors.toList())) {
-                if (!Files.isRegularFile(file) || !isDataFile(file)) {
-                    continue;
-                }
-                FileTime time = Files.getLastModifiedTime(file);
-                if (time.toInstant().isBefore(cutoff)) {
-                    Files.deleteIfExists(file);
-                    Files.deleteIfExists(indexPath(file));
-                    deleted++;
-                }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int deleted = 0;
+        try {
+            for (IngestionSegmentManager.AppSegments segments : segmentManager.all()) {
+                deleted += segments.purge(cutoff);
             }
         } catch (IOException e) {
             log.debug("清理过期接入日志失败: {}", e.getMessage());
@@ -139,26 +397,59 @@ public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
         return deleted;
     }
 
+    /**
+     * 后台维护：封存跨小时的空闲分段、补做压缩、落盘分段清单与活跃分段的二级索引，
+     * 为缺少二级索引的已封存分段重建索引，并补齐行偏移索引
+     */
     @Override
     public int rebuildIndexes() {
-        if (!properties.isIndexEnabled() || !Files.exists(baseDir)) {
-            return 0;
-        }
         int rebuilt = 0;
-        try (var stream = Files.list(baseDir)) {
-            for (Path file : stream.collect(Collectors.toList())) {
-                if (!Files.isRegularFile(file) || !isDataFile(file)) {
+        try {
+            for (IngestionSegmentManager.AppSegments segments : segmentManager.all()) {
+                sealIdle(segments);
+                segments.flush();
+                if (!properties.isIndexEnabled()) {
                     continue;
                 }
-                loadOrBuildIndex(file);
-                rebuilt++;
+                for (IngestionSegmentManager.SegmentView view : segments.snapshot()) {
+                    if (!view.sealed()) {
+                        persistSegmentIndex(view.plainFile(), segmentIndex(view));
+                    } else if (!Files.exists(segmentIndexPath(view.plainFile()))) {
+                        segmentIndex(view);
+                    }
+                    if (view.compressed() || !Files.exists(view.file())) {
+                        continue;
+                    }
+                    lineIndex(view.file()).refresh(resolveStride(Files.size(view.file())));
+                    rebuilt++;
+                }
             }
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             log.debug("后台索引维护失败: {}", e.getMessage());
         }
         return rebuilt;
     }
 
+    /**
+     * 封存需与写入串行：组提交时交给写线程执行，否则在写锁内执行
+     */
+    private void sealIdle(IngestionSegmentManager.AppSegments segments) {
+        Runnable task = () -> {
+            try {
+                segments.sealIdle();
+            } catch (IOException e) {
+                log.debug("封存接入日志分段失败: {}", e.getMessage());
+            }
+        };
+        if (writer != null) {
+            writer.execute(task);
+            return;
+        }
+        synchronized (this) {
+            task.run();
+        }
+    }
+
     private AICallLogIngestionRecord toRecord(String line) {
         try {
             return objectMapper.readValue(line, AICallLogIngestionRecord.class);
@@ -167,9 +458,29 @@ public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
         }
     }
 
-    private static List<String> readLastLines(Path file, int limit) throws IOException {
+    /**
+     * 从最新分段向前收集最后limit行，返回按写入顺序排列
+     */
+    private List<String> readLastLines(List<IngestionSegmentManager.SegmentView> views, int limit) throws IOException {
+        Deque<String> collected = new ArrayDeque<>(limit);
+        for (int i = views.size() - 1; i >= 0 && collected.size() < limit; i--) {
+            List<String> lines = readLastLines(views.get(i), limit - collected.size());
+            for (int j = lines.size() - 1; j >= 0; j--) {
+                collected.addFirst(lines.get(j));
+            }
+        }
+        return new ArrayList<>(collected);
+    }
+
+    /**
+     * 未压缩分段从尾部倒序按块读取；gzip无法倒序定位，压缩分段顺序解压（单个分段大小有上限）
+     */
+    private static List<String> readLastLines(IngestionSegmentManager.SegmentView view, int limit) throws IOException {
+        if (!view.compressed()) {
+            return IngestionTailReader.readLastLines(view.file(), limit);
+        }
         Deque<String> queue = new ArrayDeque<>(limit);
-        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        try (BufferedReader reader = openReader(view.file(), view.compressed())) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (queue.size() == limit) {
@@ -182,68 +493,304 @@ public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
     }
 
     private AICallLogIngestionPage readPage(
-            Path file,
-            long offset,
-            int skipLines,
-            int limit,
-            int cursor) throws IOException {
-        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
-            channel.position(Math.max(offset, 0L));
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8))) {
-                for (int i = 0; i < skipLines; i++) {
-                    if (reader.readLine() == null) {
-                        return new AICallLogIngestionPage(Collections.emptyList(), null, false);
-                    }
+            List<IngestionSegmentManager.SegmentView> views,
+            int cursor,
+            int limit) throws IOException {
+        if (views.isEmpty()) {
+            return new AICallLogIngestionPage(Collections.emptyList(), null, false);
+        }
+        long position = Math.max(cursor, views.get(0).startLine());
+        int first = views.size() - 1;
+        for (int i = 0; i < views.size(); i++) {
+            IngestionSegmentManager.SegmentView view = views.get(i);
+            if (view.startLine() + view.lines() > position) {
+                first = i;
+                break;
+            }
+        }
+        List<AICallLogIngestionRecord> page = new ArrayList<>(limit);
+        for (int i = first; i < views.size(); i++) {
+            IngestionSegmentManager.SegmentView view = views.get(i);
+            boolean last = i == views.size() - 1;
+            long localLine = Math.max(position - view.startLine(), 0L);
+            if (!last && localLine >= view.lines()) {
+                continue;
+            }
+            position = view.startLine() + localLine;
+            try (BufferedReader reader = openSegment(view, localLine)) {
+                if (reader == null) {
+                    continue;
                 }
-                List<AICallLogIngestionRecord> page = new ArrayList<>(limit);
-                boolean hasMore = false;
-                for (int i = 0; i < limit + 1; i++) {
-                    String line = reader.readLine();
-                    if (line == null) {
+                long remaining = last ? Long.MAX_VALUE : view.lines() - localLine;
+                String line = remaining > 0 ? reader.readLine() : null;
+                while (line != null && remaining > 0) {
+                    String next = remaining > 1 ? reader.readLine() : null;
+                    AICallLogIngestionRecord record = toRecord(line);
+                    if (record == null && next == null && !view.sealed()) {
+                        // 活跃分段末尾可能是尚未写完的行，留给下一次查询
                         break;
                     }
-                    AICallLogIngestionRecord record = toRecord(line);
-                    if (record == null) {
+                    if (record != null) {
+                        if (page.size() == limit) {
+                            return new AICallLogIngestionPage(page, Math.toIntExact(position), true);
+                        }
+                        page.add(record);
+                    }
+                    position++;
+                    remaining--;
+                    line = next;
+                }
+            }
+        }
+        return new AICallLogIngestionPage(page, null, false);
+    }
+
+    /**
+     * 打开分段并定位到分段内第localLine行：未压缩分段借助行偏移索引跳转，压缩分段顺序跳过；
+     * 定位超出文件末尾时返回null
+     */
+    private BufferedReader openSegment(IngestionSegmentManager.SegmentView view, long localLine) throws IOException {
+        long offset = 0L;
+        long skip = localLine;
+        if (!view.compressed() && properties.isIndexEnabled()) {
+            IngestionLineIndex.Checkpoint checkpoint = lineIndex(view.file())
+                    .locate(localLine, resolveStride(Files.size(view.file())));
+            if (localLine >= checkpoint.totalLines()) {
+                return null;
+            }
+            offset = checkpoint.offset();
+            skip = localLine - checkpoint.line();
+        }
+        BufferedReader reader;
+        if (view.compressed()) {
+            reader = openReader(view.file(), true);
+        } else {
+            FileChannel channel = FileChannel.open(view.file(), StandardOpenOption.READ);
+            channel.position(offset);
+            reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        }
+        for (long i = 0; i < skip; i++) {
+            if (reader.readLine() == null) {
+                reader.close();
+                return null;
+            }
+        }
+        return reader;
+    }
+
+    private static BufferedReader openReader(Path file, boolean compressed) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (compressed) {
+            in = new GZIPInputStream(in, READ_BUFFER_BYTES);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER_BYTES);
+    }
+
+    private AICallLogIngestionSearchPage search(
+            List<IngestionSegmentManager.SegmentView> views,
+            AICallLogIngestionQuery query) throws IOException {
+        int limit = Math.max(query.getLimit(), 1);
+        long below = query.getCursor() == null ? Long.MAX_VALUE : query.getCursor();
+        List<AICallLogIngestionRecord> records = new ArrayList<>(Math.min(limit, 1024));
+        long lastLine = -1L;
+        for (int i = views.size() - 1; i >= 0; i--) {
+            IngestionSegmentManager.SegmentView view = views.get(i);
+            if (view.startLine() >= below || !overlaps(view, query)) {
+                continue;
+            }
+            IngestionSegmentIndex index = segmentIndex(view);
+            long localBelow = Math.min(below - view.startLine(), index.lines());
+            while (localBelow > 0) {
+                int batch = Math.max(limit + 1 - records.size(), SEARCH_BATCH_LINES);
+                int[] candidates = index.candidates(query, (int) localBelow, batch);
+                if (candidates.length == 0) {
+                    break;
+                }
+                Map<Integer, AICallLogIngestionRecord> fetched = fetch(view, candidates);
+                for (int line : candidates) {
+                    AICallLogIngestionRecord record = fetched.get(line);
+                    if (!IngestionSegmentIndex.matches(record, query)) {
                         continue;
                     }
-                    if (page.size() < limit) {
-                        page.add(record);
-                    } else {
-                        hasMore = true;
+                    if (records.size() == limit) {
+                        return new AICallLogIngestionSearchPage(records, lastLine, true);
+                    }
+                    records.add(record);
+                    lastLine = view.startLine() + line;
+                }
+                localBelow = candidates[candidates.length - 1];
+            }
+        }
+        return new AICallLogIngestionSearchPage(records, null, false);
+    }
+
+    /**
+     * 按分段清单中的调用时间范围裁剪整个分段
+     */
+    private static boolean overlaps(IngestionSegmentManager.SegmentView view, AICallLogIngestionQuery query) {
+        if (query.getTo() != null && view.minCallTime() != null && !view.minCallTime().isBefore(query.getTo())) {
+            return false;
+        }
+        return query.getFrom() == null || view.maxCallTime() == null || !view.maxCallTime().isBefore(query.getFrom());
+    }
+
+    /**
+     * 按行号升序读取候选行；未压缩分段相距较远的候选借助行偏移索引重新定位
+     */
+    private Map<Integer, AICallLogIngestionRecord> fetch(IngestionSegmentManager.SegmentView view, int[] candidates) throws IOException {
+        int[] lines = candidates.clone();
+        Arrays.sort(lines);
+        Map<Integer, AICallLogIngestionRecord> fetched = new HashMap<>(lines.length * 2);
+        int seekGap = Math.max(properties.getIndexStride(), 1) * 2;
+        boolean seekable = !view.compressed() && properties.isIndexEnabled();
+        BufferedReader reader = null;
+        long current = 0L;
+        try {
+            for (int line : lines) {
+                if (reader == null || (seekable && line - current > seekGap)) {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                    reader = openSegment(view, line);
+                    if (reader == null) {
                         break;
                     }
+                    current = line;
+                }
+                while (current < line && reader.readLine() != null) {
+                    current++;
+                }
+                String text = current == line ? reader.readLine() : null;
+                if (text == null) {
+                    break;
                 }
-                Integer nextCursor = hasMore ? cursor + page.size() : null;
-                return new AICallLogIngestionPage(page, nextCursor, hasMore);
+                current++;
+                AICallLogIngestionRecord record = toRecord(text);
+                if (record != null) {
+                    fetched.put(line, record);
+                }
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
             }
         }
+        return fetched;
     }
 
-    private LineIndex loadOrBuildIndex(Path file) throws IOException {
-        if (!properties.isIndexEnabled()) {
-            return null;
+    /**
+     * 活跃分段先补齐写入后新增的行；已封存分段从 .sidx 加载，缺失时扫描分段重建并落盘
+     */
+    private IngestionSegmentIndex segmentIndex(IngestionSegmentManager.SegmentView view) throws IOException {
+        Path plain = view.plainFile();
+        IngestionSegmentIndex active = activeSegmentIndexes.get(plain);
+        if (active != null || !view.sealed()) {
+            IngestionSegmentIndex index = active != null ? active : activeSegmentIndex(plain);
+            catchUp(index, plain);
+            return index;
+        }
+        IngestionSegmentIndex cached = sealedSegmentIndexes.get(plain);
+        if (cached != null) {
+            return cached;
+        }
+        IngestionSegmentIndex index = IngestionSegmentIndex.load(segmentIndexPath(plain));
+        if (index == null || index.lines() < view.lines()) {
+            index = new IngestionSegmentIndex();
+            try (InputStream in = view.compressed()
+                    ? new GZIPInputStream(Files.newInputStream(view.file()), READ_BUFFER_BYTES)
+                    : Files.newInputStream(view.file())) {
+                index.scan(in, this::toRecord);
+            }
+            persistSegmentIndex(plain, index);
         }
-        Path idxPath = indexPath(file);
-        long fileSize = Files.size(file);
-        long lastModified = Files.getLastModifiedTime(file).toMillis();
-        int stride = resolveStride(fileSize);
-        if (Files.exists(idxPath)) {
+        sealedSegmentIndexes.put(plain, index);
+        return index;
+    }
+
+    private IngestionSegmentIndex activeSegmentIndex(Path file) {
+        return activeSegmentIndexes.computeIfAbsent(file, key -> {
+            IngestionSegmentIndex loaded = IngestionSegmentIndex.load(segmentIndexPath(key));
             try {
-                LineIndex loaded = objectMapper.readValue(Files.readString(idxPath, StandardCharsets.UTF_8), LineIndex.class);
-                if (loaded != null
-                        && loaded.fileSize == fileSize
-                        && loaded.lastModifiedMillis == lastModified
-                        && loaded.stride == stride) {
+                if (loaded != null && Files.exists(key) && loaded.indexedBytes() <= Files.size(key)) {
                     return loaded;
                 }
-            } catch (Exception ignored) {
+            } catch (IOException ignored) {
+                // 按空索引重新扫描
             }
+            return new IngestionSegmentIndex();
+        });
+    }
+
+    /**
+     * 从索引已覆盖的长度继续扫描未压缩分段
+     */
+    private void catchUp(IngestionSegmentIndex index, Path file) throws IOException {
+        synchronized (index) {
+            if (!Files.exists(file) || Files.size(file) <= index.indexedBytes()) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.position(index.indexedBytes());
+                index.scan(Channels.newInputStream(channel), this::toRecord);
+            }
+        }
+    }
+
+    /**
+     * 分段封存时补齐并落盘二级索引，之后作为只读索引使用
+     */
+    private void sealSegmentIndex(Path file) {
+        try {
+            IngestionSegmentIndex index = activeSegmentIndexes.remove(file);
+            if (index == null) {
+                index = IngestionSegmentIndex.load(segmentIndexPath(file));
+            }
+            if (index == null) {
+                index = new IngestionSegmentIndex();
+            }
+            catchUp(index, file);
+            index.persist(segmentIndexPath(file));
+            sealedSegmentIndexes.put(file, index);
+        } catch (IOException e) {
+            log.debug("封存接入日志二级索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void persistSegmentIndex(Path file, IngestionSegmentIndex index) {
+        try {
+            index.persist(segmentIndexPath(file));
+        } catch (IOException e) {
+            log.debug("保存接入日志二级索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void dropSegmentIndex(Path file) {
+        activeSegmentIndexes.remove(file);
+        sealedSegmentIndexes.remove(file);
+        try {
+            Files.deleteIfExists(segmentIndexPath(file));
+        } catch (IOException e) {
+            log.debug("删除接入日志二级索引失败: {}", e.getMessage());
+        }
+    }
+
+    private void dropLineIndex(Path file) {
+        lineIndexes.remove(file);
+        try {
+            Files.deleteIfExists(indexPath(file));
+        } catch (IOException e) {
+            log.debug("删除接入日志索引失败: {}", e.getMessage());
         }
-        LineIndex built = buildIndex(file, stride, fileSize, lastModified);
-        Files.writeString(idxPath, objectMapper.writeValueAsString(built), StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
-        return built;
+    }
+
+    private IngestionLineIndex lineIndex(Path file) {
+        return lineIndexes.computeIfAbsent(file, key -> {
+            try {
+                return IngestionLineIndex.open(key, indexPath(key), resolveStride(Files.exists(key) ? Files.size(key) : 0L));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     private int resolveStride(long fileSize) {
@@ -267,62 +814,11 @@ public class FileAICallLogIngestionStore implements AICallLogIngestionStore {
         return base;
     }
 
-    private static LineIndex buildIndex(Path file, int stride, long fileSize, long lastModifiedMillis) throws IOException {
-        List<Long> offsets = new ArrayList<>();
-        int totalLines = 0;
-        long offset = 0L;
-        boolean hasData = false;
-        int prev = -1;
-        offsets.add(0L);
-        try (BufferedInputStream inputStream = new BufferedInputStream(Files.newInputStream(file, StandardOpenOption.READ))) {
-            int b;
-            while ((b = inputStream.read()) != -1) {
-                hasData = true;
-                if (b == '\n') {
-                    totalLines++;
-                    if (totalLines % stride == 0) {
-                        offsets.add(offset + 1);
-                    }
-                }
-                prev = b;
-                offset++;
-            }
-        }
-        if (hasData && prev != '\n') {
-            totalLines++;
-        }
-        return new LineIndex(fileSize, lastModifiedMillis, stride, totalLines, offsets);
-    }
-
     private static Path indexPath(Path dataFile) {
-        return dataFile.resolveSibling(dataFile.getFileName() + ".idx.json");
-    }
-
-    private static boolean isDataFile(Path path) {
-        return path.getFileName().toString().endsWith(".jsonl");
-    }
-
-    private static String toFileName(String tenantId, String appId) {
-        String tenant = sanitize(tenantId);
-        String app = sanitize(appId);
-        return tenant + "__" + app + ".jsonl";
-    }
-
-    private static String sanitize(String value) {
-        if (value == null || value.isBlank()) {
-            return "unknown";
-        }
-        return value.replaceAll("[^a-zA-Z0-9._-]", "_");
+        return dataFile.resolveSibling(dataFile.getFileName() + ".idx");
     }
 
-    @lombok.NoArgsConstructor
-    @lombok.AllArgsConstructor
-    @lombok.Data
-    private static class LineIndex {
-        private long fileSize;
-        private long lastModifiedMillis;
-        private int stride;
-        private int totalLines;
-        private List<Long> offsets;
+    private static Path segmentIndexPath(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".sidx");
     }
 }
@@ -0,0 +1,430 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.config.SfChainIngestionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 接入日志组提交写入器
+ * 请求线程只入队；单个后台线程批量取出，按租户应用合并并由路由器确定目标分段文件，
+ * 通过常驻的追加通道一次写入，并按策略刷盘
+ */
+@Slf4j
+public class IngestionGroupCommitWriter implements AutoCloseable {
+
+    private static final long POLL_TIMEOUT_MS = 200L;
+    private static final long DROP_LOG_EVERY = 1000L;
+    private static final long PRESERIALIZED_OFFER_TIMEOUT_MS = 1000L;
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final int maxOpenFiles;
+    private final SfChainIngestionProperties.FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final Function<AICallLogIngestionRecord, byte[]> serializer;
+    private final Router router;
+    private final Listener listener;
+
+    /** 常驻追加通道，访问顺序用于超出上限时关闭最久未写的文件；仅在channelLock内访问 */
+    private final Map<Path, FileChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Boolean> dirty = new LinkedHashMap<>();
+    private final Object channelLock = new Object();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private long lastFsyncMillis = System.currentTimeMillis();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+
+    /**
+     * 为一组同租户应用的记录确定写入文件（在写线程中执行，可在此滚动分段）
+     */
+    public interface Router {
+        Path route(String tenantId, String appId, long bytes) throws IOException;
+    }
+
+    /**
+     * 每批写入某个文件后回调（在写线程中执行）
+     */
+    public interface Listener {
+        void afterWrite(Path file, long startOffset, List<byte[]> lines, List<AICallLogIngestionRecord> records);
+
+        Listener NO_OP = (file, startOffset, lines, records) -> {
+        };
+    }
+
+    public IngestionGroupCommitWriter(
+            SfChainIngestionProperties properties,
+            Function<AICallLogIngestionRecord, byte[]> serializer,
+            Router router,
+            Listener listener) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(properties.getGroupCommitQueueCapacity(), 1));
+        this.maxBatchSize = Math.max(properties.getGroupCommitMaxBatchSize(), 1);
+        this.maxOpenFiles = Math.max(properties.getGroupCommitMaxOpenFiles(), 1);
+        this.fsyncPolicy = properties.getGroupCommitFsyncPolicy() == null
+                ? SfChainIngestionProperties.FsyncPolicy.INTERVAL : properties.getGroupCommitFsyncPolicy();
+        this.fsyncIntervalMs = Math.max(properties.getGroupCommitFsyncIntervalMs(), 1L);
+        this.serializer = serializer;
+        this.router = router;
+        this.listener = listener == null ? Listener.NO_OP : listener;
+        this.writerThread = new Thread(this::runLoop, "sf-chain-ingestion-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 入队一条记录，不等待磁盘；队列满或已关闭时返回false
+     */
+    public boolean enqueue(AICallLogIngestionRecord record) {
+        if (running && queue.offer(new PendingWrite(record, null, null))) {
+            enqueued.increment();
+            return true;
+        }
+        return drop();
+    }
+
+    /**
+     * 按顺序入队一批记录，队列满时整批共用一个等待时限（与单条预序列化入队相同），而不是每条各等一次；
+     * 超时仍无法入队（队列持续饱和或已关闭）时其后的记录一并计为丢弃，返回已入队条数
+     */
+    public int enqueueAll(List<AICallLogIngestionRecord> records) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PRESERIALIZED_OFFER_TIMEOUT_MS);
+        for (int i = 0; i < records.size(); i++) {
+            long remainingNanos = Math.max(0L, deadlineNanos - System.nanoTime());
+            if (!offer(new PendingWrite(records.get(i), null, null), remainingNanos)) {
+                dropped.add(records.size() - i - 1L);
+                return i;
+            }
+        }
+        return records.size();
+    }
+
+    /**
+     * 入队一条已序列化的行（以换行结尾），record只用于路由与回调；
+     * 队列满时最多等待一小段时间，使流式接入的请求线程随写入速度放缓而不是直接丢弃
+     */
+    public boolean enqueue(AICallLogIngestionRecord record, byte[] line) {
+        return offer(new PendingWrite(record, line, null), TimeUnit.MILLISECONDS.toNanos(PRESERIALIZED_OFFER_TIMEOUT_MS));
+    }
+
+    private boolean offer(PendingWrite pending, long timeoutNanos) {
+        try {
+            if (running && queue.offer(pending, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                enqueued.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return drop();
+    }
+
+    private boolean drop() {
+        dropped.increment();
+        if (dropped.sum() % DROP_LOG_EVERY == 1) {
+            log.warn("接入日志写入队列已满或已关闭，丢弃记录, dropped={}", dropped.sum());
+        }
+        return false;
+    }
+
+    /**
+     * 在写线程中按入队顺序执行任务（用于封存分段等需要与写入串行的操作）；队列满或已关闭时返回false
+     */
+    public boolean execute(Runnable task) {
+        try {
+            return running && queue.offer(new PendingWrite(null, null, task), POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 关闭指定文件的追加通道（删除或改名文件前调用）
+     */
+    public void closeFile(Path file) {
+        synchronized (channelLock) {
+            FileChannel channel = channels.remove(file);
+            dirty.remove(file);
+            closeQuietly(channel);
+        }
+    }
+
+    public IngestionWriterMetrics metrics() {
+        long batchCount = batches.sum();
+        int openFiles;
+        synchronized (channelLock) {
+            openFiles = channels.size();
+        }
+        return IngestionWriterMetrics.builder()
+                .enqueued(enqueued.sum())
+                .written(written.sum())
+                .dropped(dropped.sum())
+                .failed(failed.sum())
+                .batches(batchCount)
+                .fsyncs(fsyncs.sum())
+                .queueDepth(queue.size())
+                .openFiles(openFiles)
+                .averageBatchSize(batchCount == 0 ? 0.0 : (double) written.sum() / batchCount)
+                .build();
+    }
+
+    /**
+     * 停止接收新记录，写完队列中剩余记录后刷盘并关闭全部通道
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    process(batch);
+                    batch.clear();
+                }
+                if (fsyncPolicy == SfChainIngestionProperties.FsyncPolicy.INTERVAL
+                        && System.currentTimeMillis() - lastFsyncMillis >= fsyncIntervalMs) {
+                    forceDirty();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                batch.clear();
+                log.debug("接入日志组提交写入异常: {}", e.getMessage());
+            }
+        }
+        synchronized (channelLock) {
+            if (fsyncPolicy != SfChainIngestionProperties.FsyncPolicy.NONE) {
+                forceDirty();
+            }
+            channels.values().forEach(IngestionGroupCommitWriter::closeQuietly);
+            channels.clear();
+            dirty.clear();
+        }
+    }
+
+    /**
+     * 记录按批写入，遇到任务时先写完之前的记录再执行任务
+     */
+    private void process(List<PendingWrite> batch) {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Runnable task = batch.get(i).task;
+            if (task == null) {
+                continue;
+            }
+            writeBatch(batch.subList(from, i));
+            from = i + 1;
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.debug("接入日志写线程任务执行失败: {}", e.getMessage());
+            }
+        }
+        writeBatch(batch.subList(from, batch.size()));
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Stream, Group> grouped = new LinkedHashMap<>();
+        for (PendingWrite pending : batch) {
+            try {
+                byte[] line = pending.line != null ? pending.line : serializer.apply(pending.record);
+                grouped.computeIfAbsent(new Stream(pending.record.getTenantId(), pending.record.getAppId()),
+                        key -> new Group()).add(pending.record, line);
+            } catch (Exception e) {
+                failed.increment();
+                log.debug("序列化接入日志失败: {}", e.getMessage());
+            }
+        }
+        synchronized (channelLock) {
+            for (Map.Entry<Stream, Group> entry : grouped.entrySet()) {
+                Group group = entry.getValue();
+                List<byte[]> lines = group.lines;
+                Path file = null;
+                FileChannel channel = null;
+                long startOffset = -1;
+                try {
+                    file = router.route(entry.getKey().tenantId, entry.getKey().appId, group.bytes);
+                    channel = channel(file);
+                    startOffset = channel.size();
+                    writeFully(channel, lines);
+                    if (fsyncPolicy == SfChainIngestionProperties.FsyncPolicy.BATCH) {
+                        channel.force(false);
+                        fsyncs.increment();
+                    } else {
+                        dirty.put(file, Boolean.TRUE);
+                    }
+                    written.add(lines.size());
+                } catch (IOException | RuntimeException e) {
+                    failed.add(lines.size());
+                    if (channel != null && startOffset >= 0) {
+                        discardTornWrite(file, channel, startOffset);
+                    }
+                    if (file != null) {
+                        FileChannel broken = channels.remove(file);
+                        dirty.remove(file);
+                        closeQuietly(broken);
+                    }
+                    log.debug("持久化接入日志失败: {}", e.getMessage());
+                    continue;
+                }
+                // 记录已写入（按策略已落盘），回调失败只影响索引，不能再按写入失败截断
+                notifyAfterWrite(file, startOffset, lines, group.records);
+            }
+            batches.increment();
+        }
+    }
+
+    private void notifyAfterWrite(Path file, long startOffset, List<byte[]> lines, List<AICallLogIngestionRecord> records) {
+        try {
+            listener.afterWrite(file, startOffset, lines, records);
+        } catch (RuntimeException e) {
+            log.warn("接入日志写入后回调失败，索引可能缺少该批记录（可重建索引）: file={}, records={}, error={}",
+                    file, lines.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 写入中途失败时截断回本批起始位置，避免残缺的半行留在文件中与后续追加的行粘连；
+     * 截断也失败时补一个换行，让残行自成一行，读取时按单行解析失败跳过
+     */
+    private void discardTornWrite(Path file, FileChannel channel, long startOffset) {
+        try {
+            if (channel.isOpen() && channel.size() > startOffset) {
+                channel.truncate(startOffset);
+            }
+            return;
+        } catch (IOException | RuntimeException e) {
+            log.debug("截断写入失败的接入日志文件失败: file={}, error={}", file, e.getMessage());
+        }
+        try {
+            channel.write(ByteBuffer.wrap(NEWLINE));
+        } catch (IOException | RuntimeException e) {
+            log.warn("接入日志文件可能残留不完整的行: file={}, offset={}", file, startOffset);
+        }
+    }
+
+    private FileChannel channel(Path file) throws IOException {
+        FileChannel channel = channels.get(file);
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channels.put(file, channel);
+        evictIfNeeded();
+        return channel;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Path, FileChannel>> iterator = channels.entrySet().iterator();
+        while (channels.size() > maxOpenFiles && iterator.hasNext()) {
+            Map.Entry<Path, FileChannel> eldest = iterator.next();
+            iterator.remove();
+            if (dirty.remove(eldest.getKey()) != null && fsyncPolicy != SfChainIngestionProperties.FsyncPolicy.NONE) {
+                force(eldest.getValue());
+            }
+            closeQuietly(eldest.getValue());
+        }
+    }
+
+    private void forceDirty() {
+        synchronized (channelLock) {
+            for (Path file : dirty.keySet()) {
+                FileChannel channel = channels.get(file);
+                if (channel != null) {
+                    force(channel);
+                }
+            }
+            dirty.clear();
+            lastFsyncMillis = System.currentTimeMillis();
+        }
+    }
+
+    private void force(FileChannel channel) {
+        try {
+            channel.force(false);
+            fsyncs.increment();
+        } catch (IOException e) {
+            log.debug("接入日志刷盘失败: {}", e.getMessage());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, List<byte[]> lines) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[lines.size()];
+        long remaining = 0L;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(lines.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private record PendingWrite(AICallLogIngestionRecord record, byte[] line, Runnable task) {
+    }
+
+    private record Stream(String tenantId, String appId) {
+    }
+
+    private static final class Group {
+        private final List<AICallLogIngestionRecord> records = new ArrayList<>();
+        private final List<byte[]> lines = new ArrayList<>();
+        private long bytes;
+
+        private void add(AICallLogIngestionRecord record, byte[] line) {
+            records.add(record);
+            lines.add(line);
+            bytes += line.length;
+        }
+    }
+}
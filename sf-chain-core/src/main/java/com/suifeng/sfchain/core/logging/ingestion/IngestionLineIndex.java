@@ -0,0 +1,271 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 接入日志行偏移索引（增量维护）
+ * 每stride行记录一个行首偏移；追加写入时只扩展尾部，落盘为二进制long[]并以已索引长度校验，
+ * 只索引以换行结束的完整行，文件增长后从已索引长度继续扫描
+ */
+final class IngestionLineIndex {
+
+    /** "SFIX" */
+    private static final int MAGIC = 0x53464958;
+    private static final int VERSION = 1;
+    /** magic(4) + version(4) + stride(4) + count(4) + completeLines(8) + indexedLength(8) */
+    private static final int HEADER_BYTES = 32;
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private int stride;
+    private long completeLines;
+    private long indexedLength;
+    private long[] offsets = new long[16];
+    private int size;
+    /** 已落盘的偏移数，-1表示需要整体重写 */
+    private int persistedSize = -1;
+    /** 已落盘索引头中的已索引长度，未变化时跳过写入 */
+    private long persistedLength = -1L;
+
+    private IngestionLineIndex(Path dataFile, Path indexFile, int stride) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        reset(stride);
+    }
+
+    /**
+     * 分页定位结果
+     */
+    record Checkpoint(long line, long offset, long totalLines) {
+    }
+
+    /**
+     * 打开索引，磁盘上的索引头校验失败时从空索引开始
+     */
+    static IngestionLineIndex open(Path dataFile, Path indexFile, int stride) {
+        IngestionLineIndex index = new IngestionLineIndex(dataFile, indexFile, stride);
+        index.load();
+        return index;
+    }
+
+    /**
+     * 追加写入后扩展索引；写入位置与已索引长度不连续时退化为从已索引长度扫描
+     */
+    synchronized void append(long startOffset, List<byte[]> lines, int desiredStride) throws IOException {
+        if (startOffset != indexedLength) {
+            refresh(desiredStride);
+            return;
+        }
+        long position = startOffset;
+        for (byte[] line : lines) {
+            position += line.length;
+            if (line.length > 0 && line[line.length - 1] == '\n') {
+                completeLines++;
+                indexedLength = position;
+                if (completeLines % stride == 0) {
+                    add(position);
+                }
+            } else {
+                // 不完整的行留给下次扫描
+                break;
+            }
+        }
+        restride(desiredStride);
+        persist();
+    }
+
+    /**
+     * 定位指定行所在的检查点（先补齐文件新增部分）
+     */
+    synchronized Checkpoint locate(long line, int desiredStride) throws IOException {
+        refresh(desiredStride);
+        long fileSize = Files.size(dataFile);
+        long totalLines = completeLines + (fileSize > indexedLength ? 1 : 0);
+        int position = (int) Math.min(Math.max(line, 0L) / stride, size - 1);
+        return new Checkpoint((long) position * stride, offsets[position], totalLines);
+    }
+
+    /**
+     * 按文件长度校验并补齐索引
+     */
+    synchronized void refresh(int desiredStride) throws IOException {
+        long fileSize = Files.exists(dataFile) ? Files.size(dataFile) : 0L;
+        if (fileSize < indexedLength || desiredStride < stride || desiredStride % stride != 0) {
+            reset(desiredStride);
+        }
+        if (fileSize > indexedLength) {
+            scan(fileSize);
+        }
+        restride(desiredStride);
+        persist();
+    }
+
+    synchronized int getStride() {
+        return stride;
+    }
+
+    private void reset(int newStride) {
+        stride = Math.max(newStride, 1);
+        completeLines = 0L;
+        indexedLength = 0L;
+        offsets = new long[16];
+        offsets[0] = 0L;
+        size = 1;
+        persistedSize = -1;
+    }
+
+    private void add(long offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * 步长按倍数放大时抽稀已有偏移，不重新扫描
+     */
+    private void restride(int desiredStride) {
+        if (desiredStride <= stride || desiredStride % stride != 0) {
+            return;
+        }
+        int factor = desiredStride / stride;
+        int kept = 0;
+        for (int i = 0; i < size; i += factor) {
+            offsets[kept++] = offsets[i];
+        }
+        size = kept;
+        stride = desiredStride;
+        persistedSize = -1;
+    }
+
+    private void scan(long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        byte[] bytes = buffer.array();
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long position = indexedLength;
+            while (position < fileSize) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        completeLines++;
+                        indexedLength = position + i + 1;
+                        if (completeLines % stride == 0) {
+                            add(indexedLength);
+                        }
+                    }
+                }
+                position += read;
+            }
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(indexFile) || !Files.exists(dataFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES) {
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION) {
+                return;
+            }
+            int storedStride = mapped.getInt();
+            int count = mapped.getInt();
+            long storedLines = mapped.getLong();
+            long storedLength = mapped.getLong();
+            if (storedStride <= 0 || count <= 0 || length < HEADER_BYTES + (long) count * Long.BYTES
+                    || !endsWithNewline(storedLength)) {
+                return;
+            }
+            long[] loaded = new long[Math.max(count, 16)];
+            mapped.asLongBuffer().get(loaded, 0, count);
+            stride = storedStride;
+            completeLines = storedLines;
+            indexedLength = storedLength;
+            offsets = loaded;
+            size = count;
+            persistedSize = count;
+            persistedLength = storedLength;
+        } catch (IOException | RuntimeException ignored) {
+            reset(stride);
+        }
+    }
+
+    /**
+     * 已索引长度必须落在数据文件的行尾，否则视为文件已被替换
+     */
+    private boolean endsWithNewline(long length) throws IOException {
+        if (length == 0L) {
+            return true;
+        }
+        if (Files.size(dataFile) < length) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return channel.read(last, length - 1) == 1 && last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * 先写新增偏移再写索引头，索引头记录的数量不会超过已写入的偏移
+     */
+    private void persist() throws IOException {
+        if (persistedSize == size && persistedLength == indexedLength) {
+            return;
+        }
+        if (persistedSize == size) {
+            writeHeader();
+            persistedLength = indexedLength;
+            return;
+        }
+        boolean rewrite = persistedSize < 0;
+        try (FileChannel channel = FileChannel.open(indexFile, rewrite
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING}
+                : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.WRITE})) {
+            int from = rewrite ? 0 : persistedSize;
+            ByteBuffer body = ByteBuffer.allocate((size - from) * Long.BYTES);
+            body.asLongBuffer().put(offsets, from, size - from);
+            writeFully(channel, body, HEADER_BYTES + (long) from * Long.BYTES);
+            writeFully(channel, header(), 0L);
+        }
+        persistedSize = size;
+        persistedLength = indexedLength;
+    }
+
+    private void writeHeader() throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            writeFully(channel, header(), 0L);
+        }
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(stride).putInt(size).putLong(completeLines).putLong(indexedLength);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.core.logging.AICallLogLatencyBuckets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 汇总文件（.sfr）读写
+ * 按列存储：操作类型、模型、状态编码为字典下标，时间桶按差值、计数类列按变长整数写出，整体gzip压缩；
+ * 写入先落临时文件再原子替换，读到半截文件时视为损坏
+ */
+final class IngestionRollupFile {
+
+    private static final int MAGIC = 0x53465255; // SFRU
+    private static final int VERSION = 1;
+    private static final Comparator<IngestionRollupRow> ORDER = Comparator
+            .comparingLong((IngestionRollupRow row) -> row.bucket)
+            .thenComparing(row -> row.operationType)
+            .thenComparing(row -> row.modelName)
+            .thenComparing(row -> row.status);
+
+    private IngestionRollupFile() {
+    }
+
+    /**
+     * 读取文件中的全部汇总行，文件不存在时返回空列表
+     */
+    static List<IngestionRollupRow> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 8192)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("汇总文件格式不正确: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("不支持的汇总文件版本: " + version);
+            }
+            int latencyBuckets = in.readUnsignedByte();
+            if (latencyBuckets != AICallLogLatencyBuckets.COUNT) {
+                throw new IOException("汇总文件耗时分桶数不一致: " + latencyBuckets);
+            }
+            int rows = in.readInt();
+            String[] dictionary = new String[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readUTF();
+            }
+            long[] buckets = new long[rows];
+            long previous = 0L;
+            for (int i = 0; i < rows; i++) {
+                previous += readLong(in);
+                buckets[i] = previous;
+            }
+            String[] operations = readStrings(in, dictionary, rows);
+            String[] models = readStrings(in, dictionary, rows);
+            String[] statuses = readStrings(in, dictionary, rows);
+            List<IngestionRollupRow> result = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                result.add(new IngestionRollupRow(buckets[i], operations[i], models[i], statuses[i]));
+            }
+            for (IngestionRollupRow row : result) {
+                row.count = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.errorCount = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.durationSum = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.promptTokens = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.completionTokens = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.totalTokens = readLong(in);
+            }
+            for (IngestionRollupRow row : result) {
+                row.cost = in.readDouble();
+            }
+            for (int bucket = 0; bucket < latencyBuckets; bucket++) {
+                for (IngestionRollupRow row : result) {
+                    row.latency[bucket] = readLong(in);
+                }
+            }
+            return result;
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 将汇总行写入文件（整体替换）
+     */
+    static void write(Path file, Collection<IngestionRollupRow> rows) throws IOException {
+        List<IngestionRollupRow> sorted = new ArrayList<>(rows);
+        sorted.sort(ORDER);
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (IngestionRollupRow row : sorted) {
+            dictionary.putIfAbsent(row.operationType, dictionary.size());
+            dictionary.putIfAbsent(row.modelName, dictionary.size());
+            dictionary.putIfAbsent(row.status, dictionary.size());
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp), 8192)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(AICallLogLatencyBuckets.COUNT);
+            out.writeInt(sorted.size());
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                out.writeUTF(value);
+            }
+            long previous = 0L;
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.bucket - previous);
+                previous = row.bucket;
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, dictionary.get(row.operationType));
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, dictionary.get(row.modelName));
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, dictionary.get(row.status));
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.count);
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.errorCount);
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.durationSum);
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.promptTokens);
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.completionTokens);
+            }
+            for (IngestionRollupRow row : sorted) {
+                writeLong(out, row.totalTokens);
+            }
+            for (IngestionRollupRow row : sorted) {
+                out.writeDouble(row.cost);
+            }
+            for (int bucket = 0; bucket < AICallLogLatencyBuckets.COUNT; bucket++) {
+                for (IngestionRollupRow row : sorted) {
+                    writeLong(out, row.latency[bucket]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String[] readStrings(DataInputStream in, String[] dictionary, int rows) throws IOException {
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            long index = readLong(in);
+            if (index < 0 || index >= dictionary.length) {
+                throw new IOException("汇总文件字典下标越界: " + index);
+            }
+            values[i] = dictionary[(int) index];
+        }
+        return values;
+    }
+
+    /**
+     * zigzag变长整数，小数值与负差值都只占少量字节
+     */
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long zigzag = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("汇总文件被截断");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("汇总文件变长整数过长");
+    }
+}
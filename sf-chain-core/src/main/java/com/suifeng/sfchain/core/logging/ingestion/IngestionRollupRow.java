@@ -0,0 +1,75 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.core.logging.AICallLogLatencyBuckets;
+
+/**
+ * 日志汇总行：某个时间桶内同一操作类型、模型与状态的调用聚合
+ * bucket为桶起始时刻的纪元分钟数（按调用时间的本地时钟计）
+ */
+final class IngestionRollupRow {
+
+    static final String SUCCESS = "SUCCESS";
+
+    final long bucket;
+    final String operationType;
+    final String modelName;
+    final String status;
+    long count;
+    long errorCount;
+    long durationSum;
+    long promptTokens;
+    long completionTokens;
+    long totalTokens;
+    double cost;
+    final long[] latency;
+
+    IngestionRollupRow(long bucket, String operationType, String modelName, String status) {
+        this.bucket = bucket;
+        this.operationType = operationType;
+        this.modelName = modelName;
+        this.status = status;
+        this.latency = new long[AICallLogLatencyBuckets.COUNT];
+    }
+
+    Key key() {
+        return new Key(bucket, operationType, modelName, status);
+    }
+
+    void add(long duration, Integer prompt, Integer completion, Integer total, Double callCost) {
+        count++;
+        if (!SUCCESS.equals(status)) {
+            errorCount++;
+        }
+        durationSum += duration;
+        promptTokens += prompt == null ? 0 : prompt;
+        completionTokens += completion == null ? 0 : completion;
+        totalTokens += total == null ? 0 : total;
+        cost += callCost == null ? 0D : callCost;
+        latency[AICallLogLatencyBuckets.indexOf(duration)]++;
+    }
+
+    void merge(IngestionRollupRow other) {
+        count += other.count;
+        errorCount += other.errorCount;
+        durationSum += other.durationSum;
+        promptTokens += other.promptTokens;
+        completionTokens += other.completionTokens;
+        totalTokens += other.totalTokens;
+        cost += other.cost;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] += other.latency[i];
+        }
+    }
+
+    /**
+     * 以新的时间桶复制本行，用于将分钟行并入小时、天汇总
+     */
+    IngestionRollupRow rebucket(long newBucket) {
+        IngestionRollupRow copy = new IngestionRollupRow(newBucket, operationType, modelName, status);
+        copy.merge(this);
+        return copy;
+    }
+
+    record Key(long bucket, String operationType, String modelName, String status) {
+    }
+}
@@ -0,0 +1,420 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 单个分段的二级索引（行号均为分段内行号）
+ * callId哈希索引、operationType/modelName/status倒排表、每256行一个块的调用时间范围（稀疏时间索引）；
+ * 活跃分段在写入时增量维护，封存后落盘为 .sidx 并只读使用
+ */
+final class IngestionSegmentIndex {
+
+    /** "SFSX" */
+    private static final int MAGIC = 0x53465358;
+    private static final int VERSION = 1;
+    static final int TIME_BLOCK_LINES = 256;
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_TERM_LENGTH = 512;
+
+    private int lines;
+    private long indexedBytes;
+    private long[] callIdHashes = new long[64];
+    private int[] callIdLines = new int[64];
+    private int callIdCount;
+    private boolean callIdSorted = true;
+    private final Map<String, IntList> operationTypes = new HashMap<>();
+    private final Map<String, IntList> modelNames = new HashMap<>();
+    private final Map<String, IntList> statuses = new HashMap<>();
+    private long[] blockMinMillis = new long[16];
+    private long[] blockMaxMillis = new long[16];
+    private int blocks;
+
+    /**
+     * 加载落盘的索引，文件缺失或校验失败时返回null
+     */
+    static IngestionSegmentIndex load(Path indexFile) {
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), SCAN_BUFFER_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != TIME_BLOCK_LINES) {
+                return null;
+            }
+            IngestionSegmentIndex index = new IngestionSegmentIndex();
+            index.lines = in.readInt();
+            index.indexedBytes = in.readLong();
+            int callIds = in.readInt();
+            index.callIdHashes = new long[Math.max(callIds, 1)];
+            index.callIdLines = new int[Math.max(callIds, 1)];
+            for (int i = 0; i < callIds; i++) {
+                index.callIdHashes[i] = in.readLong();
+                index.callIdLines[i] = in.readInt();
+            }
+            index.callIdCount = callIds;
+            index.callIdSorted = true;
+            readPostings(in, index.operationTypes);
+            readPostings(in, index.modelNames);
+            readPostings(in, index.statuses);
+            index.blocks = in.readInt();
+            index.blockMinMillis = new long[Math.max(index.blocks, 1)];
+            index.blockMaxMillis = new long[Math.max(index.blocks, 1)];
+            for (int i = 0; i < index.blocks; i++) {
+                index.blockMinMillis[i] = in.readLong();
+                index.blockMaxMillis[i] = in.readLong();
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    synchronized int lines() {
+        return lines;
+    }
+
+    synchronized long indexedBytes() {
+        return indexedBytes;
+    }
+
+    /**
+     * 追加一行（无法解析的行传null，只占用行号）
+     */
+    synchronized void add(AICallLogIngestionRecord record, int lineBytes) {
+        int line = lines++;
+        indexedBytes += lineBytes;
+        int block = line / TIME_BLOCK_LINES;
+        if (block == blocks) {
+            if (blocks == blockMinMillis.length) {
+                blockMinMillis = Arrays.copyOf(blockMinMillis, blocks * 2);
+                blockMaxMillis = Arrays.copyOf(blockMaxMillis, blocks * 2);
+            }
+            blockMinMillis[blocks] = Long.MAX_VALUE;
+            blockMaxMillis[blocks] = Long.MIN_VALUE;
+            blocks++;
+        }
+        AICallLogUploadItem item = record == null ? null : record.getItem();
+        Long millis = record == null ? null : callTimeMillis(record);
+        if (millis == null) {
+            // 时间未知的块不参与时间裁剪
+            blockMinMillis[block] = Long.MIN_VALUE;
+            blockMaxMillis[block] = Long.MAX_VALUE;
+        } else {
+            blockMinMillis[block] = Math.min(blockMinMillis[block], millis);
+            blockMaxMillis[block] = Math.max(blockMaxMillis[block], millis);
+        }
+        if (item == null) {
+            return;
+        }
+        if (item.getCallId() != null) {
+            if (callIdCount == callIdHashes.length) {
+                callIdHashes = Arrays.copyOf(callIdHashes, callIdCount * 2);
+                callIdLines = Arrays.copyOf(callIdLines, callIdCount * 2);
+            }
+            long hash = hash(item.getCallId());
+            if (callIdCount > 0 && hash < callIdHashes[callIdCount - 1]) {
+                callIdSorted = false;
+            }
+            callIdHashes[callIdCount] = hash;
+            callIdLines[callIdCount++] = line;
+        }
+        post(operationTypes, item.getOperationType(), line);
+        post(modelNames, item.getModelName(), line);
+        post(statuses, item.getStatus(), line);
+    }
+
+    /**
+     * 从输入流读取完整行并追加到索引，末尾不完整的行不处理
+     */
+    synchronized void scan(InputStream in, Function<String, AICallLogIngestionRecord> parser) throws IOException {
+        byte[] buffer = new byte[SCAN_BUFFER_BYTES];
+        byte[] pending = new byte[0];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                byte[] line;
+                if (pending.length > 0) {
+                    line = Arrays.copyOf(pending, pending.length + i - lineStart);
+                    System.arraycopy(buffer, lineStart, line, pending.length, i - lineStart);
+                    pending = new byte[0];
+                } else {
+                    line = Arrays.copyOfRange(buffer, lineStart, i);
+                }
+                add(line.length == 0 ? null : parser.apply(new String(line, StandardCharsets.UTF_8)), line.length + 1);
+                lineStart = i + 1;
+            }
+            if (lineStart < read) {
+                byte[] merged = Arrays.copyOf(pending, pending.length + read - lineStart);
+                System.arraycopy(buffer, lineStart, merged, pending.length, read - lineStart);
+                pending = merged;
+            }
+        }
+    }
+
+    /**
+     * 按条件返回行号小于below的候选行，按行号倒序，最多max个；
+     * 候选只经过索引过滤，调用方需对读取的记录做精确校验（哈希冲突、块内时间）
+     */
+    synchronized int[] candidates(AICallLogIngestionQuery query, int below, int max) {
+        int upper = Math.min(below, lines);
+        if (upper <= 0 || max <= 0) {
+            return new int[0];
+        }
+        List<IntList> lists = new ArrayList<>(4);
+        if (query.getCallId() != null) {
+            lists.add(callIdLines(hash(query.getCallId())));
+        }
+        if (!addPostings(lists, operationTypes, query.getOperationType())
+                || !addPostings(lists, modelNames, query.getModelName())
+                || !addPostings(lists, statuses, query.getStatus())) {
+            return new int[0];
+        }
+        long fromMillis = query.getFrom() == null ? Long.MIN_VALUE : toMillis(query.getFrom());
+        long toMillis = query.getTo() == null ? Long.MAX_VALUE : toMillis(query.getTo());
+        IntList result = new IntList();
+        if (lists.isEmpty()) {
+            for (int line = upper - 1; line >= 0 && result.size < max; line--) {
+                int block = line / TIME_BLOCK_LINES;
+                if (!blockOverlaps(block, fromMillis, toMillis)) {
+                    line = block * TIME_BLOCK_LINES;
+                    continue;
+                }
+                result.add(line);
+            }
+            return result.toArray();
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        IntList driver = lists.get(0);
+        int position = driver.search(upper);
+        position = position >= 0 ? position - 1 : -position - 2;
+        for (int i = position; i >= 0 && result.size < max; i--) {
+            int line = driver.values[i];
+            if (!blockOverlaps(line / TIME_BLOCK_LINES, fromMillis, toMillis)) {
+                continue;
+            }
+            boolean matched = true;
+            for (int j = 1; j < lists.size() && matched; j++) {
+                matched = lists.get(j).search(line) >= 0;
+            }
+            if (matched) {
+                result.add(line);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * 先写临时文件再原子替换；callId按哈希排序落盘，加载后可二分查找
+     */
+    synchronized void persist(Path indexFile) throws IOException {
+        Integer[] order = new Integer[callIdCount];
+        for (int i = 0; i < callIdCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(callIdHashes[a], callIdHashes[b]));
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), SCAN_BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(TIME_BLOCK_LINES);
+            out.writeInt(lines);
+            out.writeLong(indexedBytes);
+            out.writeInt(callIdCount);
+            for (Integer i : order) {
+                out.writeLong(callIdHashes[i]);
+                out.writeInt(callIdLines[i]);
+            }
+            writePostings(out, operationTypes);
+            writePostings(out, modelNames);
+            writePostings(out, statuses);
+            out.writeInt(blocks);
+            for (int i = 0; i < blocks; i++) {
+                out.writeLong(blockMinMillis[i]);
+                out.writeLong(blockMaxMillis[i]);
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 记录是否精确满足查询条件
+     */
+    static boolean matches(AICallLogIngestionRecord record, AICallLogIngestionQuery query) {
+        if (record == null || record.getItem() == null) {
+            return false;
+        }
+        AICallLogUploadItem item = record.getItem();
+        if (!matchesTerm(query.getCallId(), item.getCallId())
+                || !matchesTerm(query.getOperationType(), item.getOperationType())
+                || !matchesTerm(query.getModelName(), item.getModelName())
+                || !matchesTerm(query.getStatus(), item.getStatus())) {
+            return false;
+        }
+        LocalDateTime callTime = item.getCallTime() != null ? item.getCallTime() : record.getIngestedAt();
+        if (query.getFrom() == null && query.getTo() == null) {
+            return true;
+        }
+        if (callTime == null) {
+            return false;
+        }
+        return (query.getFrom() == null || !callTime.isBefore(query.getFrom()))
+                && (query.getTo() == null || callTime.isBefore(query.getTo()));
+    }
+
+    private static boolean matchesTerm(String expected, String actual) {
+        return expected == null || expected.equals(actual);
+    }
+
+    private IntList callIdLines(long hash) {
+        IntList matched = new IntList();
+        if (callIdSorted) {
+            int position = Arrays.binarySearch(callIdHashes, 0, callIdCount, hash);
+            if (position < 0) {
+                return new IntList();
+            }
+            while (position > 0 && callIdHashes[position - 1] == hash) {
+                position--;
+            }
+            for (int i = position; i < callIdCount && callIdHashes[i] == hash; i++) {
+                matched.add(callIdLines[i]);
+            }
+        } else {
+            for (int i = 0; i < callIdCount; i++) {
+                if (callIdHashes[i] == hash) {
+                    matched.add(callIdLines[i]);
+                }
+            }
+        }
+        Arrays.sort(matched.values, 0, matched.size);
+        return matched;
+    }
+
+    private boolean blockOverlaps(int block, long fromMillis, long toMillis) {
+        if (block >= blocks) {
+            return true;
+        }
+        return blockMaxMillis[block] >= fromMillis && blockMinMillis[block] < toMillis;
+    }
+
+    /**
+     * 条件值不存在于该分段时返回false（整段无匹配）
+     */
+    private static boolean addPostings(List<IntList> lists, Map<String, IntList> postings, String term) {
+        if (term == null) {
+            return true;
+        }
+        IntList list = postings.get(term);
+        if (list == null) {
+            return false;
+        }
+        lists.add(list);
+        return true;
+    }
+
+    private static void post(Map<String, IntList> postings, String term, int line) {
+        if (term == null || term.length() > MAX_TERM_LENGTH) {
+            return;
+        }
+        postings.computeIfAbsent(term, key -> new IntList()).add(line);
+    }
+
+    private static void writePostings(DataOutputStream out, Map<String, IntList> postings) throws IOException {
+        out.writeInt(postings.size());
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            out.writeUTF(entry.getKey());
+            IntList list = entry.getValue();
+            out.writeInt(list.size);
+            for (int i = 0; i < list.size; i++) {
+                out.writeInt(list.values[i]);
+            }
+        }
+    }
+
+    private static void readPostings(DataInputStream in, Map<String, IntList> postings) throws IOException {
+        int terms = in.readInt();
+        for (int i = 0; i < terms; i++) {
+            String term = in.readUTF();
+            int size = in.readInt();
+            IntList list = new IntList(size);
+            for (int j = 0; j < size; j++) {
+                list.add(in.readInt());
+            }
+            postings.put(term, list);
+        }
+    }
+
+    private static Long callTimeMillis(AICallLogIngestionRecord record) {
+        LocalDateTime callTime = record.getItem() != null && record.getItem().getCallTime() != null
+                ? record.getItem().getCallTime() : record.getIngestedAt();
+        return callTime == null ? null : toMillis(callTime);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 64位FNV-1a
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class IntList {
+        private int[] values;
+        private int size;
+
+        private IntList() {
+            this(8);
+        }
+
+        private IntList(int capacity) {
+            values = new int[Math.max(capacity, 1)];
+        }
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * 行号递增写入，可直接二分查找
+         */
+        private int search(int value) {
+            return Arrays.binarySearch(values, 0, size, value);
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,648 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suifeng.sfchain.config.SfChainIngestionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 接入日志分段管理
+ * 每个租户应用一个目录 tenant/app/，按小时或大小滚动为 yyyyMMddHH-N.jsonl 分段（关闭按小时滚动时分段最长使用一天），
+ * 封存的分段在后台压缩为 .jsonl.gz；manifest.json 记录各分段的全局行号区间与调用时间范围，清理以分段为粒度
+ */
+@Slf4j
+final class IngestionSegmentManager implements AutoCloseable {
+
+    static final String MANIFEST_FILE = "manifest.json";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String LEGACY_SEPARATOR = "__";
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    /** 关闭按小时滚动时活跃分段的最长使用时间，保证低流量应用的分段也会封存并随保留期清理 */
+    private static final Duration MAX_SEGMENT_AGE = Duration.ofDays(1);
+
+    private final Path baseDir;
+    private final ObjectMapper objectMapper;
+    private final SfChainIngestionProperties properties;
+    private final Listener listener;
+    private final Map<Path, AppSegments> apps = new ConcurrentHashMap<>();
+    private final ExecutorService compressor;
+
+    /**
+     * 分段状态变化回调
+     */
+    interface Listener {
+        /** 分段封存前调用，需关闭该文件的追加通道 */
+        void beforeSeal(Path file);
+
+        /** 未压缩分段文件被压缩替换后调用 */
+        void afterRemove(Path file);
+
+        /** 分段被清理后调用，file为未压缩分段路径 */
+        void afterPurge(Path file);
+    }
+
+    /**
+     * 查询用的分段快照，file为当前可读的文件（压缩或未压缩），plainFile为未压缩分段路径（索引以此命名）
+     */
+    record SegmentView(
+            Path file,
+            Path plainFile,
+            boolean compressed,
+            boolean sealed,
+            long startLine,
+            long lines,
+            LocalDateTime minCallTime,
+            LocalDateTime maxCallTime) {
+    }
+
+    IngestionSegmentManager(
+            Path baseDir,
+            ObjectMapper objectMapper,
+            SfChainIngestionProperties properties,
+            Listener listener) {
+        this.baseDir = baseDir;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.listener = listener;
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sf-chain-ingestion-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 写入时获取租户应用的分段（不存在时创建目录并迁移旧版单文件）
+     */
+    AppSegments open(String tenantId, String appId) throws IOException {
+        Path dir = appDir(tenantId, appId);
+        AppSegments segments = apps.get(dir);
+        if (segments != null) {
+            return segments;
+        }
+        synchronized (apps) {
+            segments = apps.get(dir);
+            if (segments == null) {
+                segments = load(dir, tenantId, appId);
+                apps.put(dir, segments);
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * 查询时获取租户应用的分段，不存在任何数据时返回null
+     */
+    AppSegments find(String tenantId, String appId) throws IOException {
+        Path dir = appDir(tenantId, appId);
+        AppSegments segments = apps.get(dir);
+        if (segments != null) {
+            return segments;
+        }
+        if (!Files.exists(dir.resolve(MANIFEST_FILE)) && !Files.exists(legacyFile(dir))) {
+            return null;
+        }
+        return open(tenantId, appId);
+    }
+
+    /**
+     * 加载磁盘上所有租户应用的分段（含未迁移的旧版单文件）
+     */
+    List<AppSegments> all() throws IOException {
+        if (!Files.exists(baseDir)) {
+            return Collections.emptyList();
+        }
+        List<Path> manifests;
+        try (var stream = Files.find(baseDir, 3, (path, attrs) -> attrs.isRegularFile()
+                && path.getFileName().toString().equals(MANIFEST_FILE))) {
+            manifests = stream.collect(Collectors.toList());
+        }
+        for (Path manifest : manifests) {
+            Path dir = manifest.getParent();
+            open(dir.getParent().getFileName().toString(), dir.getFileName().toString());
+        }
+        List<Path> legacyFiles;
+        try (var stream = Files.list(baseDir)) {
+            legacyFiles = stream.filter(path -> Files.isRegularFile(path)
+                    && path.getFileName().toString().endsWith(SEGMENT_SUFFIX)
+                    && path.getFileName().toString().contains(LEGACY_SEPARATOR)).collect(Collectors.toList());
+        }
+        for (Path legacy : legacyFiles) {
+            String name = legacy.getFileName().toString();
+            name = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+            int separator = name.indexOf(LEGACY_SEPARATOR);
+            open(name.substring(0, separator), name.substring(separator + LEGACY_SEPARATOR.length()));
+        }
+        return new ArrayList<>(apps.values());
+    }
+
+    /**
+     * 停止压缩线程，等待进行中的压缩完成并落盘全部清单
+     */
+    @Override
+    public void close() {
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (AppSegments segments : apps.values()) {
+            segments.flush();
+        }
+    }
+
+    private AppSegments load(Path dir, String tenantId, String appId) throws IOException {
+        Files.createDirectories(dir);
+        Path manifestFile = dir.resolve(MANIFEST_FILE);
+        IngestionSegmentManifest manifest = null;
+        if (Files.exists(manifestFile)) {
+            try {
+                manifest = objectMapper.readValue(manifestFile.toFile(), IngestionSegmentManifest.class);
+            } catch (IOException e) {
+                log.warn("接入日志分段清单损坏，按目录内文件重建: {}", manifestFile);
+            }
+        }
+        if (manifest == null) {
+            manifest = new IngestionSegmentManifest();
+            manifest.setTenantId(tenantId);
+            manifest.setAppId(appId);
+            recoverFromDirectory(dir, manifest);
+        }
+        AppSegments segments = new AppSegments(dir, manifest);
+        segments.reconcile();
+        return segments;
+    }
+
+    /**
+     * 清单缺失时按文件名顺序重建分段列表，并迁移旧版 tenant__app.jsonl 为首个已封存分段
+     */
+    private void recoverFromDirectory(Path dir, IngestionSegmentManifest manifest) throws IOException {
+        List<IngestionSegmentManifest.Segment> recovered = new ArrayList<>();
+        Path legacy = legacyFile(dir);
+        if (Files.isRegularFile(legacy)) {
+            LocalDateTime modified = lastModified(legacy);
+            IngestionSegmentManifest.Segment segment = newSegment(HOUR_FORMAT.format(modified), 0);
+            Files.move(legacy, dir.resolve(segment.getName()), StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(legacy.resolveSibling(legacy.getFileName() + ".idx"));
+            Files.deleteIfExists(legacy.resolveSibling(legacy.getFileName() + ".idx.json"));
+            segment.setSealed(true);
+            segment.setLastWriteAt(modified);
+            recovered.add(segment);
+            log.info("旧版接入日志文件已迁移为分段: {} -> {}", legacy, dir.resolve(segment.getName()));
+        }
+        try (var stream = Files.list(dir)) {
+            stream.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX) || name.endsWith(SEGMENT_SUFFIX + COMPRESSED_SUFFIX))
+                    .map(name -> name.endsWith(COMPRESSED_SUFFIX)
+                            ? name.substring(0, name.length() - COMPRESSED_SUFFIX.length()) : name)
+                    .distinct()
+                    .filter(name -> recovered.stream().noneMatch(segment -> segment.getName().equals(name)))
+                    .map(IngestionSegmentManager::parseSegment)
+                    .filter(Objects::nonNull)
+                    .sorted((a, b) -> a.getHour().equals(b.getHour())
+                            ? Integer.compare(a.getSequence(), b.getSequence()) : a.getHour().compareTo(b.getHour()))
+                    .forEach(recovered::add);
+        }
+        long nextLine = 0L;
+        for (IngestionSegmentManifest.Segment segment : recovered) {
+            Path compressed = dir.resolve(segment.getName() + COMPRESSED_SUFFIX);
+            segment.setCompressed(Files.exists(compressed) && !Files.exists(dir.resolve(segment.getName())));
+            segment.setStartLine(nextLine);
+            segment.setLines(segment.isCompressed() ? countLines(compressed, true) : countLines(dir.resolve(segment.getName()), false));
+            if (segment.getLastWriteAt() == null) {
+                segment.setLastWriteAt(lastModified(segment.isCompressed() ? compressed : dir.resolve(segment.getName())));
+            }
+            nextLine += segment.getLines();
+        }
+        for (int i = 0; i < recovered.size() - 1; i++) {
+            recovered.get(i).setSealed(true);
+        }
+        manifest.setSegments(recovered);
+    }
+
+    private static IngestionSegmentManifest.Segment parseSegment(String name) {
+        String base = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+        int dash = base.lastIndexOf('-');
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            IngestionSegmentManifest.Segment segment = newSegment(base.substring(0, dash), Integer.parseInt(base.substring(dash + 1)));
+            HOUR_FORMAT.parse(segment.getHour());
+            return segment;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static IngestionSegmentManifest.Segment newSegment(String hour, int sequence) {
+        IngestionSegmentManifest.Segment segment = new IngestionSegmentManifest.Segment();
+        segment.setHour(hour);
+        segment.setSequence(sequence);
+        segment.setName(hour + "-" + sequence + SEGMENT_SUFFIX);
+        segment.setCreatedAt(LocalDateTime.now());
+        return segment;
+    }
+
+    private static long countLines(Path file, boolean compressed) throws IOException {
+        if (!Files.exists(file)) {
+            return 0L;
+        }
+        long lines = 0L;
+        try (InputStream in = compressed
+                ? new GZIPInputStream(Files.newInputStream(file), COPY_BUFFER_BYTES)
+                : Files.newInputStream(file)) {
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static LocalDateTime lastModified(Path file) throws IOException {
+        return LocalDateTime.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+    }
+
+    private Path appDir(String tenantId, String appId) {
+        return baseDir.resolve(sanitize(tenantId)).resolve(sanitize(appId));
+    }
+
+    private Path legacyFile(Path appDir) {
+        return baseDir.resolve(appDir.getParent().getFileName() + LEGACY_SEPARATOR + appDir.getFileName() + SEGMENT_SUFFIX);
+    }
+
+    static String sanitize(String value) {
+        if (value == null || value.isBlank()) {
+            return "unknown";
+        }
+        return value.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * 单个租户应用的分段集合，所有状态变更在对象锁内完成
+     */
+    final class AppSegments {
+
+        private final Path dir;
+        private final IngestionSegmentManifest manifest;
+        private boolean dirty;
+
+        private AppSegments(Path dir, IngestionSegmentManifest manifest) {
+            this.dir = dir;
+            this.manifest = manifest;
+        }
+
+        Path dir() {
+            return dir;
+        }
+
+        /**
+         * 确定本次写入的分段文件，跨小时或超过大小上限时封存当前分段并创建新分段
+         */
+        synchronized Path route(long bytes) throws IOException {
+            LocalDateTime now = LocalDateTime.now();
+            String hour = HOUR_FORMAT.format(now);
+            IngestionSegmentManifest.Segment active = active();
+            if (active != null && needsRollover(active, now, hour, bytes)) {
+                seal(active);
+                active = null;
+            }
+            if (active == null) {
+                active = create(hour);
+            }
+            return dir.resolve(active.getName());
+        }
+
+        /**
+         * 写入完成后更新分段的行数、字节数与调用时间范围（清单在状态变化或维护时落盘）
+         */
+        synchronized void recordWrite(Path file, List<byte[]> lines, List<AICallLogIngestionRecord> records) {
+            IngestionSegmentManifest.Segment segment = segment(file.getFileName().toString());
+            if (segment == null) {
+                return;
+            }
+            long bytes = 0L;
+            long complete = 0L;
+            for (byte[] line : lines) {
+                bytes += line.length;
+                if (line.length > 0 && line[line.length - 1] == '\n') {
+                    complete++;
+                }
+            }
+            segment.setBytes(segment.getBytes() + bytes);
+            segment.setLines(segment.getLines() + complete);
+            segment.setLastWriteAt(LocalDateTime.now());
+            for (AICallLogIngestionRecord record : records) {
+                LocalDateTime callTime = record.getItem() == null ? null : record.getItem().getCallTime();
+                if (callTime == null) {
+                    callTime = record.getIngestedAt();
+                }
+                if (callTime == null) {
+                    continue;
+                }
+                if (segment.getMinCallTime() == null || callTime.isBefore(segment.getMinCallTime())) {
+                    segment.setMinCallTime(callTime);
+                }
+                if (segment.getMaxCallTime() == null || callTime.isAfter(segment.getMaxCallTime())) {
+                    segment.setMaxCallTime(callTime);
+                }
+            }
+            dirty = true;
+        }
+
+        /**
+         * 按全局行号从旧到新的分段快照
+         */
+        synchronized List<SegmentView> snapshot() {
+            List<SegmentView> views = new ArrayList<>(manifest.getSegments().size());
+            for (IngestionSegmentManifest.Segment segment : manifest.getSegments()) {
+                Path file = dir.resolve(segment.isCompressed() ? segment.getName() + COMPRESSED_SUFFIX : segment.getName());
+                views.add(new SegmentView(file, dir.resolve(segment.getName()), segment.isCompressed(), segment.isSealed(), segment.getStartLine(),
+                        segment.getLines(), segment.getMinCallTime(), segment.getMaxCallTime()));
+            }
+            return views;
+        }
+
+        /**
+         * 封存已跨小时（关闭按小时滚动时为超过最长使用时间）的空闲活跃分段，并补做未完成的压缩（需与写入串行调用）
+         */
+        synchronized int sealIdle() throws IOException {
+            int sealed = 0;
+            IngestionSegmentManifest.Segment active = active();
+            LocalDateTime now = LocalDateTime.now();
+            if (active != null && (agedOut(active, now) || properties.isSegmentHourlyRollover()
+                    && !HOUR_FORMAT.format(now).equals(active.getHour()))) {
+                seal(active);
+                sealed++;
+            }
+            for (IngestionSegmentManifest.Segment segment : manifest.getSegments()) {
+                if (segment.isSealed() && !segment.isCompressed() && properties.isSegmentCompressionEnabled()) {
+                    scheduleCompression(segment);
+                }
+            }
+            return sealed;
+        }
+
+        /**
+         * 删除最后写入时间早于截止时间的已封存分段
+         */
+        int purge(LocalDateTime cutoff) throws IOException {
+            List<IngestionSegmentManifest.Segment> removed = new ArrayList<>();
+            synchronized (this) {
+                Iterator<IngestionSegmentManifest.Segment> iterator = manifest.getSegments().iterator();
+                while (iterator.hasNext()) {
+                    IngestionSegmentManifest.Segment segment = iterator.next();
+                    if (!segment.isSealed() || segment.getLastWriteAt() == null || !segment.getLastWriteAt().isBefore(cutoff)) {
+                        // 分段按时间顺序排列，遇到未过期分段即停止，保证行号区间连续
+                        break;
+                    }
+                    iterator.remove();
+                    manifest.setBaseLine(segment.getStartLine() + segment.getLines());
+                    removed.add(segment);
+                }
+                if (removed.isEmpty()) {
+                    return 0;
+                }
+                persist();
+            }
+            for (IngestionSegmentManifest.Segment segment : removed) {
+                Path plain = dir.resolve(segment.getName());
+                try {
+                    Files.deleteIfExists(plain);
+                    Files.deleteIfExists(dir.resolve(segment.getName() + COMPRESSED_SUFFIX));
+                } catch (IOException e) {
+                    log.debug("删除过期接入日志分段失败: {}", e.getMessage());
+                }
+                listener.afterPurge(plain);
+            }
+            return removed.size();
+        }
+
+        synchronized void flush() {
+            if (!dirty) {
+                return;
+            }
+            try {
+                persist();
+            } catch (IOException e) {
+                log.debug("保存接入日志分段清单失败: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * 启动时校正活跃分段的行数与字节数，清理中断的压缩
+         */
+        private synchronized void reconcile() throws IOException {
+            Iterator<IngestionSegmentManifest.Segment> iterator = manifest.getSegments().iterator();
+            while (iterator.hasNext()) {
+                IngestionSegmentManifest.Segment segment = iterator.next();
+                Path plain = dir.resolve(segment.getName());
+                Path compressed = dir.resolve(segment.getName() + COMPRESSED_SUFFIX);
+                Files.deleteIfExists(dir.resolve(segment.getName() + COMPRESSED_SUFFIX + ".tmp"));
+                if (Files.exists(compressed) && (segment.isCompressed() || segment.isSealed())) {
+                    if (!segment.isCompressed()) {
+                        segment.setCompressed(true);
+                    }
+                    if (Files.deleteIfExists(plain)) {
+                        listener.afterRemove(plain);
+                    }
+                } else if (!Files.exists(plain)) {
+                    iterator.remove();
+                    continue;
+                }
+                if (!segment.isCompressed()) {
+                    long size = Files.size(plain);
+                    if (size != segment.getBytes()) {
+                        segment.setBytes(size);
+                        segment.setLines(countLines(plain, false));
+                        segment.setLastWriteAt(lastModified(plain));
+                    }
+                }
+            }
+            List<IngestionSegmentManifest.Segment> segments = manifest.getSegments();
+            long nextLine = segments.isEmpty() ? manifest.getBaseLine() : segments.get(0).getStartLine();
+            for (int i = 0; i < segments.size(); i++) {
+                IngestionSegmentManifest.Segment segment = segments.get(i);
+                segment.setStartLine(Math.max(segment.getStartLine(), nextLine));
+                nextLine = segment.getStartLine() + segment.getLines();
+                if (i < segments.size() - 1) {
+                    segment.setSealed(true);
+                }
+            }
+            persist();
+            if (properties.isSegmentCompressionEnabled()) {
+                for (IngestionSegmentManifest.Segment segment : segments) {
+                    if (segment.isSealed() && !segment.isCompressed()) {
+                        scheduleCompression(segment);
+                    }
+                }
+            }
+        }
+
+        private boolean needsRollover(IngestionSegmentManifest.Segment active, LocalDateTime now, String hour, long bytes) {
+            if (properties.isSegmentHourlyRollover() && !hour.equals(active.getHour())) {
+                return true;
+            }
+            if (agedOut(active, now)) {
+                return true;
+            }
+            long maxBytes = properties.getSegmentMaxBytes();
+            return maxBytes > 0 && active.getBytes() > 0 && active.getBytes() + bytes > maxBytes;
+        }
+
+        /**
+         * 关闭按小时滚动时，活跃分段创建超过最长使用时间即需滚动；否则只按大小滚动的低流量分段永远不会封存，保留期清理也就无从删除
+         */
+        private boolean agedOut(IngestionSegmentManifest.Segment active, LocalDateTime now) {
+            return !properties.isSegmentHourlyRollover() && active.getCreatedAt() != null
+                    && !active.getCreatedAt().plus(MAX_SEGMENT_AGE).isAfter(now);
+        }
+
+        private IngestionSegmentManifest.Segment active() {
+            List<IngestionSegmentManifest.Segment> segments = manifest.getSegments();
+            if (segments.isEmpty()) {
+                return null;
+            }
+            IngestionSegmentManifest.Segment last = segments.get(segments.size() - 1);
+            return last.isSealed() ? null : last;
+        }
+
+        private IngestionSegmentManifest.Segment segment(String name) {
+            List<IngestionSegmentManifest.Segment> segments = manifest.getSegments();
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                if (segments.get(i).getName().equals(name)) {
+                    return segments.get(i);
+                }
+            }
+            return null;
+        }
+
+        private IngestionSegmentManifest.Segment create(String hour) throws IOException {
+            List<IngestionSegmentManifest.Segment> segments = manifest.getSegments();
+            int sequence = 0;
+            long startLine = manifest.getBaseLine();
+            if (!segments.isEmpty()) {
+                IngestionSegmentManifest.Segment last = segments.get(segments.size() - 1);
+                startLine = last.getStartLine() + last.getLines();
+                if (last.getHour().equals(hour)) {
+                    sequence = last.getSequence() + 1;
+                }
+            }
+            IngestionSegmentManifest.Segment segment = newSegment(hour, sequence);
+            while (Files.exists(dir.resolve(segment.getName()))
+                    || Files.exists(dir.resolve(segment.getName() + COMPRESSED_SUFFIX))) {
+                segment = newSegment(hour, ++sequence);
+            }
+            segment.setStartLine(startLine);
+            segment.setLastWriteAt(segment.getCreatedAt());
+            segments.add(segment);
+            persist();
+            return segment;
+        }
+
+        private void seal(IngestionSegmentManifest.Segment segment) throws IOException {
+            listener.beforeSeal(dir.resolve(segment.getName()));
+            segment.setSealed(true);
+            persist();
+            if (properties.isSegmentCompressionEnabled()) {
+                scheduleCompression(segment);
+            }
+        }
+
+        private void scheduleCompression(IngestionSegmentManifest.Segment segment) {
+            String name = segment.getName();
+            try {
+                compressor.execute(() -> compress(name));
+            } catch (RejectedExecutionException ignored) {
+                // 关闭中，下次启动时补做
+            }
+        }
+
+        /**
+         * 压缩到临时文件后原子替换，清单更新后再删除未压缩文件，读取方最多看到一次文件切换
+         */
+        private void compress(String name) {
+            Path plain = dir.resolve(name);
+            Path compressed = dir.resolve(name + COMPRESSED_SUFFIX);
+            Path temp = dir.resolve(name + COMPRESSED_SUFFIX + ".tmp");
+            try {
+                synchronized (this) {
+                    IngestionSegmentManifest.Segment segment = segment(name);
+                    if (segment == null || segment.isCompressed() || !Files.exists(plain)) {
+                        return;
+                    }
+                }
+                try (FileChannel in = FileChannel.open(plain, StandardOpenOption.READ);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), COPY_BUFFER_BYTES)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+                    while (in.read(buffer) > 0) {
+                        out.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                    }
+                }
+                Files.move(temp, compressed, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                synchronized (this) {
+                    IngestionSegmentManifest.Segment segment = segment(name);
+                    if (segment == null) {
+                        Files.deleteIfExists(compressed);
+                        return;
+                    }
+                    segment.setCompressed(true);
+                    persist();
+                }
+                Files.deleteIfExists(plain);
+                listener.afterRemove(plain);
+            } catch (IOException e) {
+                log.debug("压缩接入日志分段失败: {}", e.getMessage());
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void persist() throws IOException {
+            Path target = dir.resolve(MANIFEST_FILE);
+            Path temp = dir.resolve(MANIFEST_FILE + ".tmp");
+            objectMapper.writeValue(temp.toFile(), manifest);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        }
+    }
+}
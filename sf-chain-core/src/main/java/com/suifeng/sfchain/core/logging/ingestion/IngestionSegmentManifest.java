@@ -0,0 +1,51 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个租户应用的分段清单（manifest.json）
+ * 分段按创建顺序排列，startLine为全局行号，分段清理后游标仍保持稳定
+ */
+@Data
+@NoArgsConstructor
+class IngestionSegmentManifest {
+
+    private String tenantId;
+    private String appId;
+    /** 已清理分段之后的首个全局行号，分段全部清理后新分段从此处续号 */
+    private long baseLine;
+    private List<Segment> segments = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    static class Segment {
+        /** 文件名（不含压缩后缀），格式 yyyyMMddHH-N.jsonl */
+        private String name;
+        /** 分段小时 yyyyMMddHH */
+        private String hour;
+        /** 同一小时内的序号 */
+        private int sequence;
+        /** 首行的全局行号 */
+        private long startLine;
+        /** 完整行数 */
+        private long lines;
+        /** 未压缩字节数 */
+        private long bytes;
+        /** 分段内最早调用时间 */
+        private LocalDateTime minCallTime;
+        /** 分段内最晚调用时间 */
+        private LocalDateTime maxCallTime;
+        private LocalDateTime createdAt;
+        /** 最后写入时间，清理按此判断是否超出保留期 */
+        private LocalDateTime lastWriteAt;
+        /** 是否已封存（不再写入） */
+        private boolean sealed;
+        /** 是否已压缩为 .gz */
+        private boolean compressed;
+    }
+}
@@ -0,0 +1,110 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 接入日志倒序尾部读取
+ * 从文件末尾按固定大小的块做定位读取，在字节层面倒序切分行，只解码需要返回的行；
+ * 末尾未以换行结束的行（写入中）不返回
+ */
+final class IngestionTailReader {
+
+    private static final int BLOCK_BYTES = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private IngestionTailReader() {
+    }
+
+    /**
+     * 读取最后limit个完整的非空行，按写入顺序返回
+     */
+    static List<String> readLastLines(Path file, int limit) throws IOException {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        Deque<String> lines = new ArrayDeque<>(limit);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+            byte[] block = buffer.array();
+            // 跨块的行尾部分（位于当前块之后）
+            byte[] carry = EMPTY;
+            boolean seenNewline = false;
+            long end = channel.size();
+            while (end > 0 && lines.size() < limit) {
+                long start = Math.max(0L, end - BLOCK_BYTES);
+                int length = (int) (end - start);
+                readFully(channel, buffer, start, length);
+                int lineEnd = length;
+                for (int i = length - 1; i >= 0 && lines.size() < limit; i--) {
+                    if (block[i] != '\n') {
+                        continue;
+                    }
+                    if (seenNewline) {
+                        addLine(lines, block, i + 1, lineEnd, carry);
+                    }
+                    seenNewline = true;
+                    carry = EMPTY;
+                    lineEnd = i;
+                }
+                if (lines.size() >= limit) {
+                    break;
+                }
+                carry = seenNewline ? concat(block, lineEnd, carry) : EMPTY;
+                end = start;
+            }
+            if (end == 0 && lines.size() < limit && carry.length > 0) {
+                // 文件首行前没有换行
+                lines.addFirst(new String(carry, StandardCharsets.UTF_8));
+            }
+        }
+        return new ArrayList<>(lines);
+    }
+
+    private static void addLine(Deque<String> lines, byte[] block, int from, int to, byte[] carry) {
+        int length = to - from + carry.length;
+        if (length == 0) {
+            return;
+        }
+        if (carry.length == 0) {
+            lines.addFirst(new String(block, from, to - from, StandardCharsets.UTF_8));
+            return;
+        }
+        byte[] line = new byte[length];
+        System.arraycopy(block, from, line, 0, to - from);
+        System.arraycopy(carry, 0, line, to - from, carry.length);
+        lines.addFirst(new String(line, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] concat(byte[] block, int prefixLength, byte[] carry) {
+        if (prefixLength == 0) {
+            return carry;
+        }
+        byte[] merged = new byte[prefixLength + carry.length];
+        System.arraycopy(block, 0, merged, 0, prefixLength);
+        System.arraycopy(carry, 0, merged, prefixLength, carry.length);
+        return merged;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("文件在读取期间被截断");
+            }
+            current += read;
+        }
+    }
+}
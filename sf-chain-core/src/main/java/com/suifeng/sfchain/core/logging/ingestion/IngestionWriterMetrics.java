@@ -0,0 +1,21 @@
+package com.suifeng.sfchain.core.logging.ingestion;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 组提交写入指标快照
+ */
+@Value
+@Builder
+public class IngestionWriterMetrics {
+    long enqueued;
+    long written;
+    long dropped;
+    long failed;
+    long batches;
+    long fsyncs;
+    int queueDepth;
+    int openFiles;
+    double averageBatchSize;
+}
@@ -20,14 +20,7 @@ public class MinuteWindowQuotaService {
 
     public boolean tryAcquire(String tenantId, String appId, int size) {
         int limit = Math.max(properties.getPerTenantAppPerMinuteLimit(), 1);
-        long minute = Instant.now().getEpochSecond() / 60;
-        String key = (tenantId == null ? "" : tenantId) + "|" + (appId == null ? "" : appId);
-        CounterWindow window = windows.compute(key, (k, old) -> {
-            if (old == null || old.epochMinute != minute) {
-                return new CounterWindow(minute);
-            }
-            return old;
-        });
+        CounterWindow window = currentWindow(tenantId, appId);
         while (true) {
             int current = window.count.get();
             int next = current + size;
@@ -40,6 +33,25 @@ public class MinuteWindowQuotaService {
         }
     }
 
+    /**
+     * 当前窗口是否还能容纳size条，只检查不扣减
+     */
+    public boolean hasCapacity(String tenantId, String appId, int size) {
+        int limit = Math.max(properties.getPerTenantAppPerMinuteLimit(), 1);
+        return currentWindow(tenantId, appId).count.get() + (long) size <= limit;
+    }
+
+    private CounterWindow currentWindow(String tenantId, String appId) {
+        long minute = Instant.now().getEpochSecond() / 60;
+        String key = (tenantId == null ? "" : tenantId) + "|" + (appId == null ? "" : appId);
+        return windows.compute(key, (k, old) -> {
+            if (old == null || old.epochMinute != minute) {
+                return new CounterWindow(minute);
+            }
+            return old;
+        });
+    }
+
     private static class CounterWindow {
         private final long epochMinute;
         private final AtomicInteger count = new AtomicInteger(0);
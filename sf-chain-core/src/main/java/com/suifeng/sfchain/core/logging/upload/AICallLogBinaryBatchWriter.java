@@ -0,0 +1,203 @@
+package com.suifeng.sfchain.core.logging.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 日志批量上报的二进制格式写入（Content-Type: application/x-sf-log-batch，整体gzip压缩）
+ * 格式：魔数与版本之后是逐条记录，每条以变长整数长度开头，长度0表示结束；
+ * operationType、modelName、status按出现顺序编入字典，重复出现只写下标；
+ * prompt与同一操作类型的上一条prompt做前缀共享，只写共享长度与剩余部分；
+ * input/output写为紧凑JSON。逐条编码，内存占用只与单条大小有关
+ */
+public class AICallLogBinaryBatchWriter implements Closeable {
+
+    public static final String CONTENT_TYPE = "application/x-sf-log-batch";
+    public static final int MAGIC = 0x53464C42; // SFLB
+    public static final int VERSION = 1;
+    /** 字典最大条数，超出后的字符串直接写出不再入字典 */
+    public static final int MAX_DICTIONARY_SIZE = 1024;
+    /** prompt前缀共享的最大字符数 */
+    public static final int MAX_SHARED_PROMPT_CHARS = 4096;
+
+    /** 可空字段的存在标记位 */
+    public static final int HAS_MAX_TOKENS = 1;
+    public static final int HAS_TEMPERATURE = 1 << 1;
+    public static final int HAS_JSON_OUTPUT = 1 << 2;
+    public static final int HAS_THINKING = 1 << 3;
+    public static final int HAS_PROMPT_TOKENS = 1 << 4;
+    public static final int HAS_COMPLETION_TOKENS = 1 << 5;
+    public static final int HAS_TOTAL_TOKENS = 1 << 6;
+    public static final int HAS_COST = 1 << 7;
+    public static final int JSON_OUTPUT_TRUE = 1 << 8;
+    public static final int THINKING_TRUE = 1 << 9;
+
+    private final ObjectMapper objectMapper;
+    private final OutputStream out;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    /** 操作类型 -> 上一条prompt的前缀（最多MAX_SHARED_PROMPT_CHARS字符） */
+    private final Map<String, String> lastPrompts = new HashMap<>();
+
+    public AICallLogBinaryBatchWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.objectMapper = objectMapper;
+        this.out = new GZIPOutputStream(out, 8192);
+        DataOutputStream header = new DataOutputStream(this.out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+    }
+
+    public void write(AICallLogUploadItem item) throws IOException {
+        record.reset();
+        writeString(recordOut, item.getCallId());
+        writeDictionary(item.getOperationType());
+        writeDictionary(item.getModelName());
+        writeDictionary(item.getStatus());
+        LocalDateTime callTime = item.getCallTime();
+        writeVarLong(recordOut, callTime == null ? 0L : callTime.toInstant(ZoneOffset.UTC).toEpochMilli() + 1);
+        writeVarLong(recordOut, zigzag(item.getDuration()));
+        int flags = 0;
+        flags |= item.getMaxTokens() != null ? HAS_MAX_TOKENS : 0;
+        flags |= item.getTemperature() != null ? HAS_TEMPERATURE : 0;
+        flags |= item.getJsonOutput() != null ? HAS_JSON_OUTPUT : 0;
+        flags |= item.getThinking() != null ? HAS_THINKING : 0;
+        flags |= item.getPromptTokens() != null ? HAS_PROMPT_TOKENS : 0;
+        flags |= item.getCompletionTokens() != null ? HAS_COMPLETION_TOKENS : 0;
+        flags |= item.getTotalTokens() != null ? HAS_TOTAL_TOKENS : 0;
+        flags |= item.getCost() != null ? HAS_COST : 0;
+        flags |= Boolean.TRUE.equals(item.getJsonOutput()) ? JSON_OUTPUT_TRUE : 0;
+        flags |= Boolean.TRUE.equals(item.getThinking()) ? THINKING_TRUE : 0;
+        writeVarLong(recordOut, flags);
+        if (item.getMaxTokens() != null) {
+            writeVarLong(recordOut, zigzag(item.getMaxTokens()));
+        }
+        if (item.getTemperature() != null) {
+            recordOut.writeDouble(item.getTemperature());
+        }
+        if (item.getPromptTokens() != null) {
+            writeVarLong(recordOut, zigzag(item.getPromptTokens()));
+        }
+        if (item.getCompletionTokens() != null) {
+            writeVarLong(recordOut, zigzag(item.getCompletionTokens()));
+        }
+        if (item.getTotalTokens() != null) {
+            writeVarLong(recordOut, zigzag(item.getTotalTokens()));
+        }
+        if (item.getCost() != null) {
+            recordOut.writeDouble(item.getCost());
+        }
+        writeString(recordOut, item.getErrorMessage());
+        writePrompt(item.getOperationType(), item.getPrompt());
+        writeString(recordOut, item.getRawResponse());
+        writeJson(item.getInput());
+        writeJson(item.getOutput());
+        writeVarLong(out, record.size());
+        record.writeTo(out);
+    }
+
+    /**
+     * 写入结束标记并完成压缩，同时关闭底层输出流
+     */
+    @Override
+    public void close() throws IOException {
+        writeVarLong(out, 0L);
+        out.close();
+    }
+
+    /**
+     * 0为null，1表示新字符串（随后写出并编入字典），k>=2为字典下标k-2
+     */
+    private void writeDictionary(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(recordOut, 0L);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarLong(recordOut, index + 2L);
+            return;
+        }
+        writeVarLong(recordOut, 1L);
+        writeString(recordOut, value);
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(value, dictionary.size());
+        }
+    }
+
+    /**
+     * 0为null，否则为1+共享前缀字符数，随后写出剩余部分
+     */
+    private void writePrompt(String operationType, String prompt) throws IOException {
+        if (prompt == null) {
+            writeVarLong(recordOut, 0L);
+            return;
+        }
+        String key = operationType == null ? "" : operationType;
+        String previous = lastPrompts.get(key);
+        int shared = 0;
+        if (previous != null) {
+            int max = Math.min(previous.length(), prompt.length());
+            while (shared < max && previous.charAt(shared) == prompt.charAt(shared)) {
+                shared++;
+            }
+            // 不拆开代理对，保证剩余部分是合法的UTF-16
+            if (shared > 0 && shared < prompt.length() && Character.isHighSurrogate(prompt.charAt(shared - 1))) {
+                shared--;
+            }
+        }
+        writeVarLong(recordOut, shared + 1L);
+        writeString(recordOut, prompt.substring(shared));
+        if (previous != null || lastPrompts.size() < MAX_DICTIONARY_SIZE) {
+            lastPrompts.put(key, prompt.length() > MAX_SHARED_PROMPT_CHARS
+                    ? prompt.substring(0, MAX_SHARED_PROMPT_CHARS) : prompt);
+        }
+    }
+
+    private void writeJson(Object value) throws IOException {
+        if (value == null) {
+            writeVarLong(recordOut, 0L);
+            return;
+        }
+        byte[] json = objectMapper.writeValueAsBytes(value);
+        writeVarLong(recordOut, json.length + 1L);
+        recordOut.write(json);
+    }
+
+    /**
+     * 0为null，否则为1+UTF-8字节数
+     */
+    private static void writeString(OutputStream target, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(target, 0L);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(target, bytes.length + 1L);
+        target.write(bytes);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(OutputStream target, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            target.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        target.write((int) remaining);
+    }
+}
@@ -0,0 +1,361 @@
+package com.suifeng.sfchain.core.logging.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 日志上报本地落盘队列（分段追加日志）
+ * 活跃分段预分配后内存映射写入，进程崩溃时已写入的记录由页缓存保留；
+ * 记录格式：长度(int) + CRC32(int) + 入队时间(long) + 条目JSON，长度0表示分段内数据结束；
+ * 读取游标独立于确认位置，允许多个批次同时在途；批次须按读取顺序确认，
+ * 确认位置（ack文件）之前的分段整体删除，重启后从确认位置按序重放
+ */
+@Slf4j
+final class AICallLogSpillLog implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACK_FILE = "ack.pos";
+    private static final int HEADER_BYTES = 16;
+
+    private final Path dir;
+    private final ObjectMapper objectMapper;
+    private final long segmentBytes;
+    private final long maxBytes;
+    /** 分段序号 -> 分段容量 */
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private final FileChannel ackChannel;
+
+    private long writeSeq;
+    private MappedByteBuffer writeBuffer;
+    private long ackSeq;
+    private long ackOffset;
+    private long pendingCount;
+    private long oldestPendingMillis;
+    private long cursorSeq;
+    private long cursorOffset;
+    private long unreadCount;
+
+    private long mappedSeq = -1;
+    private MappedByteBuffer mappedBuffer;
+
+    AICallLogSpillLog(Path dir, ObjectMapper objectMapper, long segmentBytes, long maxBytes) throws IOException {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.objectMapper = objectMapper;
+        this.segmentBytes = Math.max(segmentBytes, 64 * 1024);
+        this.maxBytes = Math.max(maxBytes, this.segmentBytes);
+        Files.createDirectories(this.dir);
+        this.ackChannel = FileChannel.open(this.dir.resolve(ACK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * 追加一条记录；超出磁盘上限时返回false
+     */
+    synchronized boolean append(AICallLogUploadItem item) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(item);
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (writeBuffer.remaining() < recordBytes) {
+            // 分段末尾剩余空间保持为0，读取时视为分段结束
+            long capacity = Math.max(segmentBytes, recordBytes + HEADER_BYTES);
+            if (diskBytes() + capacity > maxBytes) {
+                return false;
+            }
+            openWriteSegment(writeSeq + 1, capacity);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long now = System.currentTimeMillis();
+        int position = writeBuffer.position();
+        // 先写内容再写长度，长度可见时记录已完整
+        writeBuffer.position(position + 4);
+        writeBuffer.putInt((int) crc.getValue());
+        writeBuffer.putLong(now);
+        writeBuffer.put(payload);
+        writeBuffer.putInt(position, payload.length);
+        if (pendingCount++ == 0) {
+            oldestPendingMillis = now;
+        }
+        unreadCount++;
+        return true;
+    }
+
+    /**
+     * 从读取游标起按序读取最多max条并推进游标，不推进确认位置
+     */
+    synchronized Batch read(int max) throws IOException {
+        List<AICallLogUploadItem> items = new ArrayList<>(Math.min(max, 1024));
+        long seq = cursorSeq;
+        long offset = cursorOffset;
+        int records = 0;
+        while (records < max) {
+            ByteBuffer buffer = buffer(seq);
+            if (buffer == null) {
+                break;
+            }
+            Record record = readRecord(buffer, offset);
+            if (record == null) {
+                if (seq >= writeSeq) {
+                    break;
+                }
+                seq = segments.higherKey(seq);
+                offset = 0;
+                continue;
+            }
+            offset = record.nextOffset;
+            records++;
+            try {
+                items.add(objectMapper.readValue(record.payload, AICallLogUploadItem.class));
+            } catch (IOException e) {
+                log.warn("落盘日志记录无法解析，已跳过: {}", e.getMessage());
+            }
+        }
+        cursorSeq = seq;
+        cursorOffset = offset;
+        unreadCount = Math.max(0L, unreadCount - records);
+        return new Batch(items, records, seq, offset);
+    }
+
+    /**
+     * 确认一批已上报的记录（须按读取顺序调用），删除已全部确认的分段
+     */
+    synchronized void ack(Batch batch) throws IOException {
+        long acked = batch.records;
+        ackSeq = batch.endSeq;
+        ackOffset = batch.endOffset;
+        ByteBuffer position = ByteBuffer.allocate(16);
+        position.putLong(0, ackSeq).putLong(8, ackOffset);
+        ackChannel.write(position, 0);
+        ackChannel.force(false);
+        pendingCount = Math.max(0L, pendingCount - acked);
+        for (Long seq : new ArrayList<>(segments.headMap(ackSeq).keySet())) {
+            segments.remove(seq);
+            if (seq == mappedSeq) {
+                mappedSeq = -1;
+                mappedBuffer = null;
+            }
+            Files.deleteIfExists(segmentFile(seq));
+        }
+        oldestPendingMillis = pendingCount == 0 ? 0L : headTimestamp();
+    }
+
+    synchronized long diskBytes() {
+        return segments.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    synchronized long pendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * 已落盘但尚未被读取的条数
+     */
+    synchronized long unreadCount() {
+        return unreadCount;
+    }
+
+    synchronized long oldestPendingAgeMs() {
+        return pendingCount == 0 ? 0L : Math.max(0L, System.currentTimeMillis() - oldestPendingMillis);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+        try {
+            ackChannel.close();
+        } catch (IOException e) {
+            log.debug("关闭落盘队列确认文件失败: {}", e.getMessage());
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        long seq = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(seq, Files.size(file));
+                    } catch (NumberFormatException e) {
+                        log.debug("忽略无法识别的落盘文件: {}", name);
+                    }
+                }
+            }
+        }
+        if (ackChannel.size() >= 16) {
+            ByteBuffer position = ByteBuffer.allocate(16);
+            ackChannel.read(position, 0);
+            ackSeq = position.getLong(0);
+            ackOffset = position.getLong(8);
+        }
+        // 确认位置之前的分段是上次删除未完成的残留
+        for (Long seq : new ArrayList<>(segments.headMap(ackSeq).keySet())) {
+            segments.remove(seq);
+            Files.deleteIfExists(segmentFile(seq));
+        }
+        if (segments.isEmpty()) {
+            ackSeq = Math.max(ackSeq, 0L);
+            ackOffset = 0;
+            cursorSeq = ackSeq;
+            openWriteSegment(ackSeq, segmentBytes);
+            return;
+        }
+        if (!segments.containsKey(ackSeq)) {
+            ackSeq = segments.firstKey();
+            ackOffset = 0;
+        }
+        cursorSeq = ackSeq;
+        cursorOffset = ackOffset;
+        long lastSeq = segments.lastKey();
+        long lastEnd = 0;
+        for (Map.Entry<Long, Long> entry : segments.entrySet()) {
+            ByteBuffer buffer = buffer(entry.getKey());
+            long offset = entry.getKey() == ackSeq ? ackOffset : 0;
+            Record record;
+            while ((record = readRecord(buffer, offset)) != null) {
+                if (pendingCount++ == 0) {
+                    oldestPendingMillis = record.timestamp;
+                }
+                offset = record.nextOffset;
+            }
+            lastEnd = offset;
+        }
+        writeSeq = lastSeq;
+        writeBuffer = map(lastSeq, segments.get(lastSeq));
+        // 清掉崩溃时写了一半的记录，之后从有效末尾继续追加
+        for (int i = (int) lastEnd; i < writeBuffer.capacity(); i++) {
+            writeBuffer.put(i, (byte) 0);
+        }
+        writeBuffer.position((int) lastEnd);
+        unreadCount = pendingCount;
+        if (pendingCount > 0) {
+            log.info("恢复未上报的落盘日志: count={}, segments={}", pendingCount, segments.size());
+        }
+    }
+
+    private void openWriteSegment(long seq, long capacity) throws IOException {
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+        writeSeq = seq;
+        writeBuffer = map(seq, capacity);
+        segments.put(seq, capacity);
+    }
+
+    private ByteBuffer buffer(long seq) throws IOException {
+        if (seq == writeSeq && writeBuffer != null) {
+            return writeBuffer.duplicate();
+        }
+        if (!segments.containsKey(seq)) {
+            return null;
+        }
+        if (seq != mappedSeq) {
+            mappedBuffer = map(seq, segments.get(seq));
+            mappedSeq = seq;
+        }
+        return mappedBuffer.duplicate();
+    }
+
+    private MappedByteBuffer map(long seq, long capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(seq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        }
+    }
+
+    /**
+     * 读取offset处的记录，到达分段末尾或记录不完整（校验失败）时返回null
+     */
+    private static Record readRecord(ByteBuffer buffer, long offset) {
+        if (offset + HEADER_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int position = (int) offset;
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_BYTES + (long) length > buffer.capacity()) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 4);
+        long timestamp = buffer.getLong(position + 8);
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return new Record(payload, timestamp, position + HEADER_BYTES + (long) length);
+    }
+
+    private long headTimestamp() throws IOException {
+        long seq = ackSeq;
+        long offset = ackOffset;
+        while (true) {
+            ByteBuffer buffer = buffer(seq);
+            if (buffer == null) {
+                return System.currentTimeMillis();
+            }
+            Record record = readRecord(buffer, offset);
+            if (record != null) {
+                return record.timestamp;
+            }
+            Long next = segments.higherKey(seq);
+            if (next == null) {
+                return System.currentTimeMillis();
+            }
+            seq = next;
+            offset = 0;
+        }
+    }
+
+    private Path segmentFile(long seq) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    private record Record(byte[] payload, long timestamp, long nextOffset) {
+    }
+
+    /**
+     * 一次读取的结果与读取结束位置（确认时写入）
+     */
+    static final class Batch {
+        private final List<AICallLogUploadItem> items;
+        private final int records;
+        private final long endSeq;
+        private final long endOffset;
+
+        private Batch(List<AICallLogUploadItem> items, int records, long endSeq, long endOffset) {
+            this.items = items;
+            this.records = records;
+            this.endSeq = endSeq;
+            this.endOffset = endOffset;
+        }
+
+        List<AICallLogUploadItem> items() {
+            return items;
+        }
+
+        boolean isEmpty() {
+            return records == 0;
+        }
+    }
+}
@@ -8,4 +8,12 @@ import java.util.List;
 public interface AICallLogUploadClient {
 
     boolean upload(List<AICallLogUploadItem> items);
+
+    /**
+     * 上报并返回区分限流的结果与已处理的前缀条数，供上报器调整速率并只重试未处理的条目
+     */
+    default AICallLogUploadOutcome send(List<AICallLogUploadItem> items) {
+        return AICallLogUploadOutcome.of(
+                upload(items) ? AICallLogUploadResult.SUCCESS : AICallLogUploadResult.FAILED, items.size());
+    }
 }
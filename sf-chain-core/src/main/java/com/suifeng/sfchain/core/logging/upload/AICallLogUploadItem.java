@@ -23,6 +23,10 @@ public class AICallLogUploadItem {
     private Double temperature;
     private Boolean jsonOutput;
     private Boolean thinking;
+    private Integer promptTokens;
+    private Integer completionTokens;
+    private Integer totalTokens;
+    private Double cost;
     private Object input;
     private String prompt;
     private String rawResponse;
@@ -42,6 +46,10 @@ public class AICallLogUploadItem {
                 .temperature(params == null ? null : params.getTemperature())
                 .jsonOutput(params == null ? null : params.getJsonOutput())
                 .thinking(params == null ? null : params.getThinking())
+                .promptTokens(callLog.getPromptTokens())
+                .completionTokens(callLog.getCompletionTokens())
+                .totalTokens(callLog.getTotalTokens())
+                .cost(callLog.getCost())
                 .input(uploadContent ? callLog.getInput() : null)
                 .prompt(uploadContent ? callLog.getPrompt() : null)
                 .rawResponse(uploadContent ? callLog.getRawResponse() : null)
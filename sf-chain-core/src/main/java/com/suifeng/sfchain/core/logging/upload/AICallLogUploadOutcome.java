@@ -0,0 +1,26 @@
+package com.suifeng.sfchain.core.logging.upload;
+
+import lombok.Value;
+
+/**
+ * 单次批量上报的结果与已被配置中心处理的前缀条数
+ * 配置中心中途停止读取（限流、存储繁忙、单条过大）时，前processed条已写入或已被校验拒绝，只需重试其后的条目
+ */
+@Value
+public class AICallLogUploadOutcome {
+    AICallLogUploadResult result;
+    /** 已处理的前缀条数；SUCCESS时为整批条数 */
+    int processed;
+
+    public static AICallLogUploadOutcome success(int size) {
+        return new AICallLogUploadOutcome(AICallLogUploadResult.SUCCESS, size);
+    }
+
+    public static AICallLogUploadOutcome of(AICallLogUploadResult result, int size) {
+        return new AICallLogUploadOutcome(result, result == AICallLogUploadResult.SUCCESS ? size : 0);
+    }
+
+    public static AICallLogUploadOutcome partial(AICallLogUploadResult result, int processed) {
+        return new AICallLogUploadOutcome(result, Math.max(processed, 0));
+    }
+}
@@ -0,0 +1,15 @@
+package com.suifeng.sfchain.core.logging.upload;
+
+/**
+ * 单次批量上报结果
+ */
+public enum AICallLogUploadResult {
+    /** 上报成功 */
+    SUCCESS,
+    /** 配置中心限流或过载（429/503），需要降速 */
+    THROTTLED,
+    /** 配置中心拒绝该批次（400/401/413），重试不会成功，按毒批次跳过 */
+    REJECTED,
+    /** 其他失败 */
+    FAILED
+}
@@ -14,6 +14,20 @@ public class AICallLogUploadStats {
     long droppedCount;
     long successCount;
     long failedCount;
+    /** 被配置中心拒绝（400/401/413）而跳过的条数 */
+    long rejectedCount;
+    /** 在途批次数 */
+    int inFlightBatches;
+    /** 当前自适应批量大小 */
+    int batchSize;
+    /** 当前自适应并发数 */
+    int concurrency;
+    /** 落盘缓冲占用的磁盘字节数 */
+    long spillBytes;
+    /** 落盘缓冲中待重放的条数 */
+    long spillPendingCount;
+    /** 落盘缓冲中最早一条待重放日志的等待时长 */
+    long spillOldestAgeMs;
 
     public static AICallLogUploadStats empty() {
         return AICallLogUploadStats.builder().build();
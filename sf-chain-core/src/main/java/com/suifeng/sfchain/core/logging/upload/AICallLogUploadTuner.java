@@ -0,0 +1,96 @@
+package com.suifeng.sfchain.core.logging.upload;
+
+import com.suifeng.sfchain.config.SfChainLoggingProperties;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 上报批量大小与并发数的AIMD调节
+ * 响应及时的成功上报按加法增大批量，连续成功满一轮并发后并发数加一；
+ * 响应变慢时批量乘法减小；限流（429/503）时批量与并发同时减半，并让所有批次暂停一段抖动退避时间
+ */
+final class AICallLogUploadTuner {
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxConcurrency;
+    private final long targetLatencyMs;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+
+    /** 热路径只读取volatile字段，修改在同步块内进行 */
+    private volatile int batchSize;
+    private volatile int concurrency;
+    private volatile long resumeAtNanos = System.nanoTime();
+    private int successesSinceIncrease;
+    private int consecutiveThrottles;
+
+    AICallLogUploadTuner(SfChainLoggingProperties properties) {
+        this.minBatchSize = Math.max(properties.getUploadMinBatchSize(), 1);
+        this.maxBatchSize = Math.max(properties.getUploadMaxBatchSize(), minBatchSize);
+        this.maxConcurrency = Math.max(properties.getUploadMaxConcurrency(), 1);
+        this.targetLatencyMs = Math.max(properties.getUploadTargetLatencyMs(), 1);
+        this.backoffBaseMs = Math.max(properties.getUploadBackoffBaseMs(), 1);
+        this.backoffMaxMs = Math.max(properties.getUploadBackoffMaxMs(), backoffBaseMs);
+        this.batchSize = Math.min(Math.max(properties.getBatchSize(), minBatchSize), maxBatchSize);
+        this.concurrency = 1;
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    int concurrency() {
+        return concurrency;
+    }
+
+    int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 限流退避结束的时间点（System.nanoTime）
+     */
+    long resumeAtNanos() {
+        return resumeAtNanos;
+    }
+
+    synchronized void onSuccess(long latencyMs) {
+        consecutiveThrottles = 0;
+        if (latencyMs > targetLatencyMs) {
+            batchSize = Math.max(minBatchSize, batchSize * 3 / 4);
+            successesSinceIncrease = 0;
+            return;
+        }
+        batchSize = Math.min(maxBatchSize, batchSize + minBatchSize);
+        if (++successesSinceIncrease >= concurrency) {
+            concurrency = Math.min(maxConcurrency, concurrency + 1);
+            successesSinceIncrease = 0;
+        }
+    }
+
+    synchronized void onThrottled() {
+        batchSize = Math.max(minBatchSize, batchSize / 2);
+        concurrency = Math.max(1, concurrency / 2);
+        successesSinceIncrease = 0;
+        long pause = backoffMillis(++consecutiveThrottles);
+        long resumeAt = System.nanoTime() + pause * 1_000_000L;
+        if (resumeAt - resumeAtNanos > 0) {
+            resumeAtNanos = resumeAt;
+        }
+    }
+
+    /**
+     * 第attempt次重试前的等待时间：指数上限内取一半固定加一半随机，避免多实例同时重试
+     */
+    long backoffMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 20);
+        long cap = Math.min(backoffMaxMs, backoffBaseMs << shift);
+        long half = cap / 2;
+        return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+    }
+}
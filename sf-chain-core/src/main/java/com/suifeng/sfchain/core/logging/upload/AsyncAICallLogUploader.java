@@ -1,55 +1,124 @@
 package com.suifeng.sfchain.core.logging.upload;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suifeng.sfchain.config.SfChainLoggingProperties;
 import com.suifeng.sfchain.core.logging.AICallLog;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * AI调用日志异步批量上报器
+ * publish只做无锁入队；调度线程在攒满一批或最早的日志等待超过上报周期时发出批次，
+ * 最多同时有若干批次在途，批量大小与并发数按响应时间和限流自适应调整（见AICallLogUploadTuner），失败按抖动退避重试。
+ * 启用落盘缓冲时，内存队列由调度线程持续转存到本地分段日志，上报从磁盘按序读取，
+ * 批次按读取顺序确认；上报失败的批次保留在磁盘上持续重试，重启后从确认位置重放。
+ * 被配置中心拒绝（400/401/413）的批次重试不会成功，按毒批次跳过并计数
  */
 @Slf4j
 public class AsyncAICallLogUploader implements AICallLogUploadGateway {
 
-    private static final int MAX_BATCHES_PER_CYCLE = 8;
+    private static final long SPOOL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
     private final SfChainLoggingProperties loggingProperties;
     private final AICallLogUploadClient uploadClient;
-    private final LinkedBlockingQueue<AICallLogUploadItem> queue;
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentLinkedQueue<AICallLogUploadItem> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int queueCapacity;
+    private final AICallLogUploadTuner tuner;
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean running;
+    /** 调度线程私有：当前未发出日志中最早被看到的时间 */
+    private long oldestSeenNanos;
+    private final AICallLogSpillLog spillLog;
+    private final Object spoolLock = new Object();
+    /** 落盘模式下按读取顺序排列的在途批次，只有队首完成才推进确认位置 */
+    private final Deque<SpilledBatch> ackOrder = new ArrayDeque<>();
     private final AtomicLong sampledOutCount = new AtomicLong();
     private final AtomicLong droppedCount = new AtomicLong();
     private final AtomicLong successCount = new AtomicLong();
     private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
 
     public AsyncAICallLogUploader(
             SfChainLoggingProperties loggingProperties,
             AICallLogUploadClient uploadClient) {
+        this(loggingProperties, uploadClient, new ObjectMapper().findAndRegisterModules());
+    }
+
+    public AsyncAICallLogUploader(
+            SfChainLoggingProperties loggingProperties,
+            AICallLogUploadClient uploadClient,
+            ObjectMapper objectMapper) {
         this.loggingProperties = loggingProperties;
         this.uploadClient = uploadClient;
-        this.queue = new LinkedBlockingQueue<>(Math.max(loggingProperties.getQueueCapacity(), 100));
+        this.queueCapacity = Math.max(loggingProperties.getQueueCapacity(), 100);
+        this.tuner = new AICallLogUploadTuner(loggingProperties);
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(tuner.maxConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "sf-chain-log-upload-" + workerIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "sf-chain-log-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.spillLog = loggingProperties.isSpillEnabled() ? openSpillLog(objectMapper) : null;
     }
 
     @PostConstruct
     public void start() {
-        long interval = Math.max(loggingProperties.getUploadIntervalSeconds(), 1) * 1000L;
-        scheduler.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
-        log.info("AI调用日志异步上报已启动, interval={}ms, batchSize={}", interval, loggingProperties.getBatchSize());
+        running = true;
+        dispatcher.start();
+        log.info("AI调用日志异步上报已启动, interval={}ms, batchSize={}, maxConcurrency={}, spill={}",
+                lingerNanos() / 1_000_000L, tuner.batchSize(), tuner.maxConcurrency(), spillLog != null);
     }
 
     @PreDestroy
     public void stop() {
-        flushSafely();
-        scheduler.shutdownNow();
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_WAIT_SECONDS));
+            if (spillLog != null) {
+                spool(null);
+            }
+            // 不受并发上限约束发出剩余日志，尽量在退出前完成上报
+            while (dispatchOne(tuner.maxBatchSize())) {
+                // 继续发出
+            }
+            workers.shutdown();
+            if (!workers.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+                workers.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (spillLog != null) {
+            synchronized (spoolLock) {
+                spillLog.close();
+            }
+        }
     }
 
     @Override
@@ -60,8 +129,17 @@ public class AsyncAICallLogUploader implements AICallLogUploadGateway {
         }
 
         AICallLogUploadItem item = AICallLogUploadItem.from(callLog, loggingProperties.isUploadContent());
-        boolean offered = queue.offer(item);
-        if (!offered) {
+        int size = queued.incrementAndGet();
+        if (size <= queueCapacity) {
+            queue.offer(item);
+            if (size >= tuner.batchSize()) {
+                wakeDispatcher();
+            }
+            return;
+        }
+        queued.decrementAndGet();
+        // 突发流量超出内存队列时直接落盘，先转存队列中已有的日志以保持顺序
+        if (spillLog == null || !spool(item)) {
             droppedCount.incrementAndGet();
             log.debug("AI调用日志队列已满，丢弃 callId={}", callLog.getCallId());
         }
@@ -69,48 +147,261 @@ public class AsyncAICallLogUploader implements AICallLogUploadGateway {
 
     @Override
     public AICallLogUploadStats stats() {
-        return AICallLogUploadStats.builder()
-                .queueSize(queue.size())
+        AICallLogUploadStats.AICallLogUploadStatsBuilder builder = AICallLogUploadStats.builder()
+                .queueSize(queued.get())
                 .sampledOutCount(sampledOutCount.get())
                 .droppedCount(droppedCount.get())
                 .successCount(successCount.get())
                 .failedCount(failedCount.get())
-                .build();
+                .rejectedCount(rejectedCount.get())
+                .inFlightBatches(inFlight.get())
+                .batchSize(tuner.batchSize())
+                .concurrency(tuner.concurrency());
+        if (spillLog != null) {
+            builder.spillBytes(spillLog.diskBytes())
+                    .spillPendingCount(spillLog.pendingCount())
+                    .spillOldestAgeMs(spillLog.oldestPendingAgeMs());
+        }
+        return builder.build();
     }
 
-    private void flushSafely() {
+    private AICallLogSpillLog openSpillLog(ObjectMapper objectMapper) {
         try {
-            flushBatch();
-        } catch (Exception e) {
-            log.warn("AI调用日志批量上报失败: {}", e.getMessage());
+            return new AICallLogSpillLog(
+                    Paths.get(loggingProperties.getSpillDir()),
+                    objectMapper,
+                    loggingProperties.getSpillSegmentBytes(),
+                    loggingProperties.getSpillMaxBytes());
+        } catch (IOException e) {
+            log.warn("AI调用日志落盘缓冲初始化失败，仅使用内存队列: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void wakeDispatcher() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            wakeRequested.set(false);
+            long parkNanos;
+            try {
+                parkNanos = dispatchReady();
+            } catch (Exception e) {
+                log.warn("AI调用日志批量上报调度失败: {}", e.getMessage());
+                parkNanos = lingerNanos();
+            }
+            if (running && !wakeRequested.get()) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+        }
+    }
+
+    /**
+     * 发出所有已满足条件的批次，返回下次检查前的等待时间
+     */
+    private long dispatchReady() {
+        long idleNanos = spillLog != null ? SPOOL_INTERVAL_NANOS : lingerNanos();
+        if (spillLog != null) {
+            spool(null);
+        }
+        long now = System.nanoTime();
+        long resumeAt = tuner.resumeAtNanos();
+        if (now - resumeAt < 0) {
+            return Math.min(resumeAt - now, idleNanos);
+        }
+        while (true) {
+            long pending = pendingCount();
+            if (pending == 0) {
+                oldestSeenNanos = 0;
+                return idleNanos;
+            }
+            if (oldestSeenNanos == 0) {
+                oldestSeenNanos = now;
+            }
+            int batchSize = tuner.batchSize();
+            long lingerLeft = lingerNanos() - (now - oldestSeenNanos);
+            if (pending < batchSize && lingerLeft > 0) {
+                return Math.min(lingerLeft, idleNanos);
+            }
+            // 并发已满时由完成的批次唤醒
+            if (inFlight.get() >= tuner.concurrency() || !dispatchOne(batchSize)) {
+                return idleNanos;
+            }
+            if (pending <= batchSize) {
+                oldestSeenNanos = 0;
+            }
         }
     }
 
-    private void flushBatch() {
-        int batchSize = Math.max(loggingProperties.getBatchSize(), 1);
-        for (int i = 0; i < MAX_BATCHES_PER_CYCLE; i++) {
-            List<AICallLogUploadItem> batch = new ArrayList<>(batchSize);
-            queue.drainTo(batch, batchSize);
+    private long pendingCount() {
+        return spillLog != null ? spillLog.unreadCount() : queued.get();
+    }
+
+    private boolean dispatchOne(int batchSize) {
+        if (spillLog != null) {
+            AICallLogSpillLog.Batch batch;
+            try {
+                batch = spillLog.read(batchSize);
+            } catch (IOException e) {
+                log.warn("读取落盘日志失败: {}", e.getMessage());
+                return false;
+            }
             if (batch.isEmpty()) {
-                return;
+                return false;
             }
-            if (uploadWithRetry(batch)) {
-                successCount.addAndGet(batch.size());
-                continue;
+            SpilledBatch spilled = new SpilledBatch(batch);
+            synchronized (ackOrder) {
+                ackOrder.addLast(spilled);
             }
-            failedCount.addAndGet(batch.size());
-            log.warn("AI调用日志上报失败且超过重试次数，丢弃 {} 条", batch.size());
+            return submit(batch.items(), spilled);
         }
+        List<AICallLogUploadItem> items = new ArrayList<>(Math.min(batchSize, queued.get()));
+        AICallLogUploadItem item;
+        while (items.size() < batchSize && (item = queue.poll()) != null) {
+            items.add(item);
+        }
+        if (items.isEmpty()) {
+            return false;
+        }
+        queued.addAndGet(-items.size());
+        return submit(items, null);
     }
 
-    private boolean uploadWithRetry(List<AICallLogUploadItem> batch) {
+    private boolean submit(List<AICallLogUploadItem> items, SpilledBatch spilled) {
+        inFlight.incrementAndGet();
+        try {
+            workers.execute(() -> upload(items, spilled));
+            return true;
+        } catch (RuntimeException e) {
+            // 关闭后提交被拒绝：内存日志计为失败，落盘日志留待重启后重放
+            inFlight.decrementAndGet();
+            if (spilled == null) {
+                failedCount.addAndGet(items.size());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 上报一个批次；配置中心只处理了前缀时只重试剩余条目。内存批次超过重试次数后丢弃，落盘批次一直重试直到成功或关闭；
+     * 被拒绝的批次直接跳过。落盘批次因异常中途退出时重新提交，保证确认队列的队首最终完成
+     */
+    private void upload(List<AICallLogUploadItem> batchItems, SpilledBatch spilled) {
         int maxRetry = Math.max(loggingProperties.getMaxRetry(), 0);
-        for (int attempt = 0; attempt <= maxRetry; attempt++) {
-            if (uploadClient.upload(batch)) {
-                return true;
+        List<AICallLogUploadItem> items = batchItems;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                AICallLogUploadOutcome outcome = AICallLogUploadOutcome.success(0);
+                long started = System.nanoTime();
+                if (!items.isEmpty()) {
+                    try {
+                        outcome = uploadClient.send(items);
+                    } catch (RuntimeException e) {
+                        log.warn("AI调用日志批量上报失败: {}", e.getMessage());
+                        outcome = AICallLogUploadOutcome.of(AICallLogUploadResult.FAILED, items.size());
+                    }
+                }
+                AICallLogUploadResult result = outcome.getResult();
+                if (result == AICallLogUploadResult.SUCCESS) {
+                    tuner.onSuccess((System.nanoTime() - started) / 1_000_000L);
+                    successCount.addAndGet(items.size());
+                    if (spilled != null) {
+                        acknowledge(spilled);
+                    }
+                    return;
+                }
+                int processed = Math.min(outcome.getProcessed(), items.size());
+                if (processed > 0) {
+                    successCount.addAndGet(processed);
+                    items = items.subList(processed, items.size());
+                }
+                if (result == AICallLogUploadResult.REJECTED) {
+                    rejectedCount.addAndGet(items.size());
+                    log.warn("AI调用日志批次被配置中心拒绝，跳过 {} 条", items.size());
+                    if (spilled != null) {
+                        acknowledge(spilled);
+                    }
+                    return;
+                }
+                if (result == AICallLogUploadResult.THROTTLED) {
+                    tuner.onThrottled();
+                }
+                if (spilled == null && attempt >= maxRetry) {
+                    failedCount.addAndGet(items.size());
+                    log.warn("AI调用日志上报失败且超过重试次数，丢弃 {} 条", items.size());
+                    return;
+                }
+                Thread.sleep(tuner.backoffMillis(attempt + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (spilled == null) {
+                failedCount.addAndGet(items.size());
+            }
+            requeue(items, spilled);
+        } catch (RuntimeException e) {
+            log.warn("AI调用日志批量上报失败: {}", e.getMessage());
+            if (spilled == null) {
+                failedCount.addAndGet(items.size());
+            }
+            requeue(items, spilled);
+        } finally {
+            inFlight.decrementAndGet();
+            wakeDispatcher();
+        }
+    }
+
+    /**
+     * 落盘批次未完成就退出时重新提交，否则它会一直停在确认队列队首，阻塞之后所有批次的确认；
+     * 关闭过程中不再提交，未确认的日志在重启后从确认位置重放
+     */
+    private void requeue(List<AICallLogUploadItem> remaining, SpilledBatch spilled) {
+        if (spilled == null || !running) {
+            return;
+        }
+        submit(remaining, spilled);
+    }
+
+    private void acknowledge(SpilledBatch completed) {
+        synchronized (ackOrder) {
+            completed.done = true;
+            try {
+                while (!ackOrder.isEmpty() && ackOrder.peekFirst().done) {
+                    spillLog.ack(ackOrder.pollFirst().batch);
+                }
+            } catch (IOException e) {
+                log.warn("更新落盘日志确认位置失败: {}", e.getMessage());
             }
         }
-        return false;
+    }
+
+    /**
+     * 把内存队列转存到磁盘，随后追加overflow（可为null）；返回overflow是否写入
+     */
+    private boolean spool(AICallLogUploadItem overflow) {
+        synchronized (spoolLock) {
+            try {
+                AICallLogUploadItem item;
+                while ((item = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    if (!spillLog.append(item)) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                return overflow != null && spillLog.append(overflow);
+            } catch (IOException e) {
+                log.warn("AI调用日志落盘失败: {}", e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private long lingerNanos() {
+        return TimeUnit.SECONDS.toNanos(Math.max(loggingProperties.getUploadIntervalSeconds(), 1));
     }
 
     private static double clampSampleRate(double sampleRate) {
@@ -119,4 +410,13 @@ public class AsyncAICallLogUploader implements AICallLogUploadGateway {
         }
         return Math.min(sampleRate, 1.0);
     }
+
+    private static final class SpilledBatch {
+        private final AICallLogSpillLog.Batch batch;
+        private boolean done;
+
+        private SpilledBatch(AICallLogSpillLog.Batch batch) {
+            this.batch = batch;
+        }
+    }
 }
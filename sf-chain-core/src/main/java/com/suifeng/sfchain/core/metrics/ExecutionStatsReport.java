@@ -0,0 +1,26 @@
+package com.suifeng.sfchain.core.metrics;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 描述: 单实例执行统计上报内容
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Data
+@NoArgsConstructor
+public class ExecutionStatsReport {
+
+    /** 快照生成时间(毫秒时间戳) */
+    private long capturedAt;
+
+    /** 按操作类型的统计快照 */
+    private Map<String, ExecutionStatsSnapshot> operations = new LinkedHashMap<>();
+
+    /** 按模型的统计快照 */
+    private Map<String, ExecutionStatsSnapshot> models = new LinkedHashMap<>();
+}
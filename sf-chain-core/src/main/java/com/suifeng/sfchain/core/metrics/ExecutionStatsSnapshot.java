@@ -0,0 +1,51 @@
+package com.suifeng.sfchain.core.metrics;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 描述: 单个操作或模型的执行统计快照
+ * 计数与直方图均可累加，配置中心按实例保存最新快照后合并
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Data
+@NoArgsConstructor
+public class ExecutionStatsSnapshot {
+
+    private long totalExecutions;
+
+    private long successfulExecutions;
+
+    private long failedExecutions;
+
+    /** 累计耗时直方图 */
+    private LatencyHistogramSnapshot histogram = LatencyHistogramSnapshot.empty();
+
+    /** 滑动窗口耗时直方图 - 窗口名(1m/5m/1h) -> 快照 */
+    private Map<String, LatencyHistogramSnapshot> windows = new LinkedHashMap<>();
+
+    /**
+     * 合并两个快照，返回新快照
+     */
+    public static ExecutionStatsSnapshot merge(ExecutionStatsSnapshot left, ExecutionStatsSnapshot right) {
+        ExecutionStatsSnapshot merged = new ExecutionStatsSnapshot();
+        for (ExecutionStatsSnapshot source : new ExecutionStatsSnapshot[]{left, right}) {
+            if (source == null) {
+                continue;
+            }
+            merged.totalExecutions += source.totalExecutions;
+            merged.successfulExecutions += source.successfulExecutions;
+            merged.failedExecutions += source.failedExecutions;
+            merged.histogram = LatencyHistogramSnapshot.merge(merged.histogram, source.histogram);
+            if (source.windows != null) {
+                source.windows.forEach((window, snapshot) ->
+                        merged.windows.merge(window, snapshot, LatencyHistogramSnapshot::merge));
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,120 @@
+package com.suifeng.sfchain.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 描述: 无锁的对数线性耗时直方图（HDR风格）
+ * 每个2的幂区间划分16个子桶，相对误差不超过1/16；记录只做原子自增，可与其他实例的快照合并
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** 可记录的最大值(毫秒)，超出按最大值记录 */
+    static final long MAX_TRACKABLE_VALUE = (1L << 32) - 1;
+    static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator minValue = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    /**
+     * 记录一个耗时值(毫秒)
+     */
+    public void record(long value) {
+        long normalized = Math.min(Math.max(value, 0L), MAX_TRACKABLE_VALUE);
+        counts.incrementAndGet(bucketIndex(normalized));
+        totalCount.increment();
+        totalValue.add(normalized);
+        minValue.accumulate(normalized);
+        maxValue.accumulate(normalized);
+    }
+
+    /**
+     * 合并其他直方图的快照
+     */
+    public void add(LatencyHistogramSnapshot snapshot) {
+        if (snapshot == null || snapshot.getCount() <= 0) {
+            return;
+        }
+        int[] indexes = snapshot.getBucketIndexes();
+        long[] bucketCounts = snapshot.getBucketCounts();
+        int length = indexes == null || bucketCounts == null ? 0 : Math.min(indexes.length, bucketCounts.length);
+        for (int i = 0; i < length; i++) {
+            if (indexes[i] >= 0 && indexes[i] < BUCKET_COUNT) {
+                counts.addAndGet(indexes[i], bucketCounts[i]);
+            }
+        }
+        totalCount.add(snapshot.getCount());
+        totalValue.add(snapshot.getSum());
+        minValue.accumulate(snapshot.getMin());
+        maxValue.accumulate(snapshot.getMax());
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getSum() {
+        return totalValue.sum();
+    }
+
+    public long getMin() {
+        long min = minValue.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMax() {
+        long max = maxValue.get();
+        return max == Long.MIN_VALUE ? 0 : max;
+    }
+
+    /**
+     * 生成快照（弱一致，只保存非空桶）
+     */
+    public LatencyHistogramSnapshot snapshot() {
+        int nonEmpty = 0;
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            if (copy[i] > 0) {
+                nonEmpty++;
+            }
+        }
+        int[] indexes = new int[nonEmpty];
+        long[] bucketCounts = new long[nonEmpty];
+        long count = 0;
+        for (int i = 0, j = 0; i < BUCKET_COUNT; i++) {
+            if (copy[i] > 0) {
+                indexes[j] = i;
+                bucketCounts[j++] = copy[i];
+                count += copy[i];
+            }
+        }
+        if (count == 0) {
+            return LatencyHistogramSnapshot.empty();
+        }
+        return new LatencyHistogramSnapshot(count, getSum(), getMin(), getMax(), indexes, bucketCounts);
+    }
+
+    static int bucketIndex(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1L);
+        int shift = Math.max(0, msb - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * 桶内可表示的最大值
+     */
+    static long bucketUpperBound(int index) {
+        int shift = index < 2 * SUB_BUCKET_COUNT ? 0 : (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
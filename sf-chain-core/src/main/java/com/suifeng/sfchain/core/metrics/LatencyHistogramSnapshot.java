@@ -0,0 +1,131 @@
+package com.suifeng.sfchain.core.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * 描述: 耗时直方图快照
+ * 以稀疏桶形式保存，可序列化上报并在配置中心跨实例合并
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencyHistogramSnapshot {
+
+    /** 记录次数 */
+    private long count;
+
+    /** 耗时总和(毫秒) */
+    private long sum;
+
+    /** 最小耗时(毫秒) */
+    private long min;
+
+    /** 最大耗时(毫秒) */
+    private long max;
+
+    /** 非空桶下标，升序 */
+    private int[] bucketIndexes = new int[0];
+
+    /** 与下标一一对应的桶计数 */
+    private long[] bucketCounts = new long[0];
+
+    public static LatencyHistogramSnapshot empty() {
+        return new LatencyHistogramSnapshot();
+    }
+
+    /**
+     * 合并两个快照，返回新快照
+     */
+    public static LatencyHistogramSnapshot merge(LatencyHistogramSnapshot left, LatencyHistogramSnapshot right) {
+        if (left == null || left.count <= 0) {
+            return right == null ? empty() : right;
+        }
+        if (right == null || right.count <= 0) {
+            return left;
+        }
+        int leftLength = left.bucketLength();
+        int rightLength = right.bucketLength();
+        int[] indexes = new int[leftLength + rightLength];
+        long[] counts = new long[indexes.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < leftLength || j < rightLength) {
+            int leftIndex = i < leftLength ? left.bucketIndexes[i] : Integer.MAX_VALUE;
+            int rightIndex = j < rightLength ? right.bucketIndexes[j] : Integer.MAX_VALUE;
+            if (leftIndex == rightIndex) {
+                indexes[n] = leftIndex;
+                counts[n++] = left.bucketCounts[i++] + right.bucketCounts[j++];
+            } else if (leftIndex < rightIndex) {
+                indexes[n] = leftIndex;
+                counts[n++] = left.bucketCounts[i++];
+            } else {
+                indexes[n] = rightIndex;
+                counts[n++] = right.bucketCounts[j++];
+            }
+        }
+        if (n < indexes.length) {
+            indexes = Arrays.copyOf(indexes, n);
+            counts = Arrays.copyOf(counts, n);
+        }
+        return new LatencyHistogramSnapshot(left.count + right.count, left.sum + right.sum,
+                Math.min(left.min, right.min), Math.max(left.max, right.max), indexes, counts);
+    }
+
+    /**
+     * 分位耗时(毫秒)，quantile取值0~1
+     */
+    public long valueAtQuantile(double quantile) {
+        if (count <= 0) {
+            return 0;
+        }
+        double q = Math.min(Math.max(quantile, 0.0), 1.0);
+        long rank = Math.max(1L, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < bucketLength(); i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(Math.max(LatencyHistogram.bucketUpperBound(bucketIndexes[i]), min), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 有效桶数量（容忍反序列化得到的缺失或长度不一致的数组）
+     */
+    private int bucketLength() {
+        if (bucketIndexes == null || bucketCounts == null) {
+            return 0;
+        }
+        return Math.min(bucketIndexes.length, bucketCounts.length);
+    }
+
+    /**
+     * 平均耗时(毫秒)
+     */
+    public double mean() {
+        return count > 0 ? (double) sum / count : 0.0;
+    }
+
+    /**
+     * 汇总为分位摘要
+     */
+    public LatencySummary summarize() {
+        return LatencySummary.builder()
+                .count(count)
+                .averageDuration(mean())
+                .minDuration(min)
+                .maxDuration(max)
+                .p50Duration(valueAtQuantile(0.50))
+                .p95Duration(valueAtQuantile(0.95))
+                .p99Duration(valueAtQuantile(0.99))
+                .build();
+    }
+}
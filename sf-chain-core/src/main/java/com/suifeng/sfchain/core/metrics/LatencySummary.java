@@ -0,0 +1,22 @@
+package com.suifeng.sfchain.core.metrics;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 耗时分位摘要
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class LatencySummary {
+    /** 样本数 */
+    long count;
+    double averageDuration;
+    long minDuration;
+    long maxDuration;
+    long p50Duration;
+    long p95Duration;
+    long p99Duration;
+}
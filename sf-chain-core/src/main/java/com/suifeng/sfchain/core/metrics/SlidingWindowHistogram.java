@@ -0,0 +1,72 @@
+package com.suifeng.sfchain.core.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 描述: 滑动时间窗口耗时直方图
+ * 按固定时长分槽的环形数组，槽过期时整体替换为新槽（无锁）；
+ * 窗口统计包含当前未满的槽，覆盖范围在 slots*slotMillis 到 (slots+1)*slotMillis 之间
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class SlidingWindowHistogram {
+
+    private final long slotMillis;
+    private final int windowSlots;
+    private final AtomicReferenceArray<Slot> ring;
+
+    /**
+     * @param slotMillis  每槽时长(毫秒)
+     * @param windowSlots 窗口包含的完整槽数
+     */
+    public SlidingWindowHistogram(long slotMillis, int windowSlots) {
+        this.slotMillis = Math.max(1L, slotMillis);
+        this.windowSlots = Math.max(1, windowSlots);
+        this.ring = new AtomicReferenceArray<>(this.windowSlots + 1);
+    }
+
+    public void record(long value, long nowMillis) {
+        long epoch = nowMillis / slotMillis;
+        int index = (int) (epoch % ring.length());
+        while (true) {
+            Slot slot = ring.get(index);
+            if (slot != null && slot.epoch == epoch) {
+                slot.histogram.record(value);
+                return;
+            }
+            if (slot != null && slot.epoch > epoch) {
+                // 记录时间落后于已轮转的槽，丢弃
+                return;
+            }
+            Slot fresh = new Slot(epoch);
+            if (ring.compareAndSet(index, slot, fresh)) {
+                fresh.histogram.record(value);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 当前窗口内的快照
+     */
+    public LatencyHistogramSnapshot snapshot(long nowMillis) {
+        long currentEpoch = nowMillis / slotMillis;
+        LatencyHistogramSnapshot merged = LatencyHistogramSnapshot.empty();
+        for (int i = 0; i < ring.length(); i++) {
+            Slot slot = ring.get(i);
+            if (slot != null && slot.epoch <= currentEpoch && slot.epoch > currentEpoch - ring.length()) {
+                merged = LatencyHistogramSnapshot.merge(merged, slot.histogram.snapshot());
+            }
+        }
+        return merged;
+    }
+
+    private static final class Slot {
+        private final long epoch;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Slot(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
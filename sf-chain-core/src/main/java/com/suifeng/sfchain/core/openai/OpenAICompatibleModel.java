@@ -1,13 +1,23 @@
 package com.suifeng.sfchain.core.openai;
 
 import com.alibaba.fastjson2.JSON;
+import com.suifeng.sfchain.core.AIGenerationResult;
 import com.suifeng.sfchain.core.AIModel;
+import com.suifeng.sfchain.core.TokenUsage;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimiter;
+import com.suifeng.sfchain.core.openai.transport.JdkOpenAIHttpTransport;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpTransport;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * 描述: OpenAI兼容的通用模型实现
@@ -17,19 +27,35 @@ import java.util.Map;
 @Slf4j
 public class OpenAICompatibleModel implements AIModel {
 
-    /**
-     * -- GETTER --
-     *  获取模型配置
-     */
     @Getter
     private final OpenAIModelConfig config;
     private final OpenAIHttpClient httpClient;
+    /**
+     * 本地RPM/TPM限流器，未配置限额时为null
+     */
+    private final ModelRateLimiter rateLimiter;
     
     public OpenAICompatibleModel(OpenAIModelConfig config) {
         this(config, 30000, 300000);
     }
     
     public OpenAICompatibleModel(OpenAIModelConfig config, int connectTimeoutMs, int readTimeoutMs) {
+        this(config, connectTimeoutMs, readTimeoutMs, null);
+    }
+    
+    /**
+     * 使用指定传输层创建模型，连接超时以传输层配置为准；transport为null时使用按连接超时共享的默认传输层
+     */
+    public OpenAICompatibleModel(OpenAIModelConfig config, int connectTimeoutMs, int readTimeoutMs, OpenAIHttpTransport transport) {
+        this(config, readTimeoutMs, transport != null ? transport : JdkOpenAIHttpTransport.shared(connectTimeoutMs),
+                ModelRateLimiter.isConfigured(config) ? new ModelRateLimiter(config) : null);
+    }
+    
+    /**
+     * 使用指定传输层与限流器创建模型（限流器可在模型配置更新后复用，保留已积累的额度与排队状态）
+     */
+    public OpenAICompatibleModel(OpenAIModelConfig config, int readTimeoutMs, OpenAIHttpTransport transport,
+                                 ModelRateLimiter rateLimiter) {
         if (!config.isValid()) {
             throw new IllegalArgumentException("模型配置无效: " + config);
         }
@@ -39,9 +65,10 @@ public class OpenAICompatibleModel implements AIModel {
             config.getBaseUrl(), 
             config.getApiKey(), 
             config.getAdditionalHeaders(),
-            connectTimeoutMs,
-            readTimeoutMs
+            readTimeoutMs,
+            transport
         );
+        this.rateLimiter = rateLimiter;
         
         log.info("初始化OpenAI兼容模型: {} ({})", config.getModelName(), config.getProvider());
     }
@@ -62,6 +89,11 @@ public class OpenAICompatibleModel implements AIModel {
         return generate(prompt, null, null, null);
     }
     
+    @Override
+    public AIGenerationResult generateWithUsage(String prompt) {
+        return generateResult(prompt, null, null, null, null);
+    }
+    
     @Override
     public <T> T generate(String prompt, Class<T> responseType) {
         String result = generate(prompt);
@@ -81,10 +113,31 @@ public class OpenAICompatibleModel implements AIModel {
      * 生成响应 - 支持自定义参数
      */
     public String generate(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput) {
+        return generate(prompt, maxTokens, temperature, jsonOutput, null);
+    }
+
+    /**
+     * 生成响应 - 支持自定义参数与单次调用超时
+     */
+    public String generate(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput, Duration timeout) {
+        return generateResult(prompt, maxTokens, temperature, jsonOutput, timeout).getContent();
+    }
+    
+    /**
+     * 生成响应并返回token用量 - 支持自定义参数与单次调用超时
+     */
+    public AIGenerationResult generateResult(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput, Duration timeout) {
+        return generateResult(prompt, maxTokens, temperature, jsonOutput, timeout, null);
+    }
+    
+    /**
+     * 生成响应并返回token用量 - operationType用于限流排队时的操作间公平分配
+     */
+    public AIGenerationResult generateResult(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput,
+                                             Duration timeout, String operationType) {
         try {
             OpenAIRequest request = buildRequest(prompt, maxTokens, temperature, jsonOutput);
-            OpenAIResponse response = httpClient.chatCompletion(request);
-            return httpClient.extractContent(response);
+            return complete(request, timeout, operationType);
         } catch (Exception e) {
             log.error("模型{}生成失败", config.getModelName(), e);
             throw new RuntimeException("模型生成失败: " + e.getMessage(), e);
@@ -95,21 +148,99 @@ public class OpenAICompatibleModel implements AIModel {
      * 生成响应 - 支持思考模式
      */
     public String generateWithThinking(String prompt, Integer maxTokens, Double temperature) {
+        return generateWithThinking(prompt, maxTokens, temperature, null);
+    }
+    
+    /**
+     * 生成响应 - 支持思考模式与单次调用超时
+     */
+    public String generateWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout) {
+        return generateResultWithThinking(prompt, maxTokens, temperature, timeout).getContent();
+    }
+    
+    /**
+     * 生成响应并返回token用量 - 支持思考模式与单次调用超时
+     */
+    public AIGenerationResult generateResultWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout) {
+        return generateResultWithThinking(prompt, maxTokens, temperature, timeout, null);
+    }
+    
+    /**
+     * 生成响应并返回token用量 - 支持思考模式，operationType用于限流排队时的操作间公平分配
+     */
+    public AIGenerationResult generateResultWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout,
+                                                         String operationType) {
         if (!Boolean.TRUE.equals(config.getSupportThinking())) {
             log.warn("模型{}不支持思考模式，使用普通模式", config.getModelName());
-            return generate(prompt, maxTokens, temperature, null);
+            return generateResult(prompt, maxTokens, temperature, null, timeout, operationType);
         }
         
         try {
             OpenAIRequest request = buildRequestWithThinking(prompt, maxTokens, temperature);
-            OpenAIResponse response = httpClient.chatCompletion(request);
-            return httpClient.extractContent(response);
+            return complete(request, timeout, operationType);
         } catch (Exception e) {
             log.error("模型{}思考模式生成失败", config.getModelName(), e);
             throw new RuntimeException("思考模式生成失败: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * 取得限流额度后发送请求，结果中带上排队时间
+     */
+    private AIGenerationResult complete(OpenAIRequest request, Duration timeout, String operationType) throws InterruptedException {
+        ModelRateLimiter.Permit permit = rateLimiter == null ? null
+                : rateLimiter.acquire(operationType, estimateTokens(request), timeout);
+        OpenAIResponse response = httpClient.chatCompletion(request, timeout);
+        TokenUsage usage = OpenAIHttpClient.toTokenUsage(response == null ? null : response.getUsage());
+        if (permit == null) {
+            return AIGenerationResult.of(httpClient.extractContent(response), usage);
+        }
+        permit.settle(usage);
+        return AIGenerationResult.of(httpClient.extractContent(response), usage, permit.getQueueWaitMs());
+    }
+    
+    /**
+     * 流式请求在取得限流额度后再发出，异步排队不占用线程，取消订阅时退出队列
+     */
+    private Flux<String> stream(OpenAIRequest request, Duration timeout, Consumer<TokenUsage> usageConsumer,
+                                String operationType, LongConsumer queueWaitConsumer) {
+        if (rateLimiter == null) {
+            return httpClient.chatCompletionStream(request, timeout, usageConsumer);
+        }
+        long estimatedTokens = estimateTokens(request);
+        return Mono.defer(() -> {
+                    CompletableFuture<ModelRateLimiter.Permit> future =
+                            rateLimiter.acquireAsync(operationType, estimatedTokens, timeout);
+                    return Mono.fromFuture(future).doOnCancel(() -> rateLimiter.cancel(future));
+                })
+                .flatMapMany(permit -> {
+                    if (queueWaitConsumer != null && permit.getQueueWaitMs() > 0) {
+                        queueWaitConsumer.accept(permit.getQueueWaitMs());
+                    }
+                    return httpClient.chatCompletionStream(request, timeout, usage -> {
+                        permit.settle(usage);
+                        if (usageConsumer != null) {
+                            usageConsumer.accept(usage);
+                        }
+                    });
+                });
+    }
+    
+    private static long estimateTokens(OpenAIRequest request) {
+        StringBuilder prompt = new StringBuilder();
+        if (request.getMessages() != null) {
+            request.getMessages().forEach(message -> prompt.append(message.getContent()));
+        }
+        return ModelRateLimiter.estimateTokens(prompt.toString(), request.getMax_tokens());
+    }
+    
+    /**
+     * 获取本地限流器，未配置限额时为null
+     */
+    public ModelRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+    
     /**
      * 构建请求对象
      */
@@ -171,9 +302,41 @@ public class OpenAICompatibleModel implements AIModel {
      * 流式生成响应 - 支持自定义参数
      */
     public Flux<String> generateStream(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput) {
+        return generateStream(prompt, maxTokens, temperature, jsonOutput, null);
+    }
+    
+    /**
+     * 流式生成响应 - 支持自定义参数与响应等待超时
+     */
+    public Flux<String> generateStream(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput, Duration timeout) {
+        return generateStream(prompt, maxTokens, temperature, jsonOutput, timeout, null);
+    }
+    
+    /**
+     * 流式生成响应 - 最后一个分片返回的token用量交给usageConsumer
+     */
+    public Flux<String> generateStream(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput,
+                                       Duration timeout, Consumer<TokenUsage> usageConsumer) {
+        return generateStream(prompt, maxTokens, temperature, jsonOutput, timeout, usageConsumer, null);
+    }
+    
+    /**
+     * 流式生成响应 - operationType用于限流排队时的操作间公平分配
+     */
+    public Flux<String> generateStream(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput,
+                                       Duration timeout, Consumer<TokenUsage> usageConsumer, String operationType) {
+        return generateStream(prompt, maxTokens, temperature, jsonOutput, timeout, usageConsumer, operationType, null);
+    }
+    
+    /**
+     * 流式生成响应 - 取得限流额度时把排队时间（毫秒）交给queueWaitConsumer
+     */
+    public Flux<String> generateStream(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput,
+                                       Duration timeout, Consumer<TokenUsage> usageConsumer, String operationType,
+                                       LongConsumer queueWaitConsumer) {
         try {
-            OpenAIRequest request = buildStreamRequest(prompt, maxTokens, temperature, jsonOutput);
-            return httpClient.chatCompletionStream(request);
+            OpenAIRequest request = buildStreamRequest(prompt, maxTokens, temperature, jsonOutput, usageConsumer != null);
+            return stream(request, timeout, usageConsumer, operationType, queueWaitConsumer);
         } catch (Exception e) {
             log.error("模型{}流式生成失败", config.getModelName(), e);
             return Flux.error(new RuntimeException("模型流式生成失败: " + e.getMessage(), e));
@@ -184,14 +347,46 @@ public class OpenAICompatibleModel implements AIModel {
      * 流式生成响应 - 支持思考模式
      */
     public Flux<String> generateStreamWithThinking(String prompt, Integer maxTokens, Double temperature) {
+        return generateStreamWithThinking(prompt, maxTokens, temperature, null);
+    }
+    
+    /**
+     * 流式生成响应 - 支持思考模式与响应等待超时
+     */
+    public Flux<String> generateStreamWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout) {
+        return generateStreamWithThinking(prompt, maxTokens, temperature, timeout, null);
+    }
+    
+    /**
+     * 流式生成响应 - 支持思考模式，最后一个分片返回的token用量交给usageConsumer
+     */
+    public Flux<String> generateStreamWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout,
+                                                   Consumer<TokenUsage> usageConsumer) {
+        return generateStreamWithThinking(prompt, maxTokens, temperature, timeout, usageConsumer, null);
+    }
+    
+    /**
+     * 流式生成响应 - 支持思考模式，operationType用于限流排队时的操作间公平分配
+     */
+    public Flux<String> generateStreamWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout,
+                                                   Consumer<TokenUsage> usageConsumer, String operationType) {
+        return generateStreamWithThinking(prompt, maxTokens, temperature, timeout, usageConsumer, operationType, null);
+    }
+    
+    /**
+     * 流式生成响应 - 支持思考模式，取得限流额度时把排队时间（毫秒）交给queueWaitConsumer
+     */
+    public Flux<String> generateStreamWithThinking(String prompt, Integer maxTokens, Double temperature, Duration timeout,
+                                                   Consumer<TokenUsage> usageConsumer, String operationType,
+                                                   LongConsumer queueWaitConsumer) {
         if (!Boolean.TRUE.equals(config.getSupportThinking())) {
             log.warn("模型{}不支持思考模式，使用普通流式模式", config.getModelName());
-            return generateStream(prompt, maxTokens, temperature, null);
+            return generateStream(prompt, maxTokens, temperature, null, timeout, usageConsumer, operationType, queueWaitConsumer);
         }
         
         try {
-            OpenAIRequest request = buildStreamRequestWithThinking(prompt, maxTokens, temperature);
-            return httpClient.chatCompletionStream(request);
+            OpenAIRequest request = buildStreamRequestWithThinking(prompt, maxTokens, temperature, usageConsumer != null);
+            return stream(request, timeout, usageConsumer, operationType, queueWaitConsumer);
         } catch (Exception e) {
             log.error("模型{}思考模式流式生成失败", config.getModelName(), e);
             return Flux.error(new RuntimeException("思考模式流式生成失败: " + e.getMessage(), e));
@@ -201,7 +396,8 @@ public class OpenAICompatibleModel implements AIModel {
     /**
      * 构建流式请求对象
      */
-    private OpenAIRequest buildStreamRequest(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput) {
+    private OpenAIRequest buildStreamRequest(String prompt, Integer maxTokens, Double temperature, Boolean jsonOutput,
+                                             boolean includeUsage) {
         var builder = OpenAIRequest.builder()
             .model(config.getModelName())
             .messages(List.of(
@@ -212,7 +408,8 @@ public class OpenAICompatibleModel implements AIModel {
             ))
             .max_tokens(maxTokens != null ? maxTokens : config.getDefaultMaxTokens())
             .temperature(temperature != null ? temperature : config.getDefaultTemperature())
-            .stream(true);  // 设置为true以启用流式输出
+            .stream(true)  // 设置为true以启用流式输出
+            .stream_options(streamOptions(includeUsage));
         
         // 设置JSON输出格式
         if (Boolean.TRUE.equals(jsonOutput) && Boolean.TRUE.equals(config.getSupportJsonOutput())) {
@@ -225,7 +422,8 @@ public class OpenAICompatibleModel implements AIModel {
     /**
      * 构建带思考模式的流式请求对象
      */
-    private OpenAIRequest buildStreamRequestWithThinking(String prompt, Integer maxTokens, Double temperature) {
+    private OpenAIRequest buildStreamRequestWithThinking(String prompt, Integer maxTokens, Double temperature,
+                                                         boolean includeUsage) {
         return OpenAIRequest.builder()
             .model(config.getModelName())
             .messages(List.of(
@@ -237,7 +435,15 @@ public class OpenAICompatibleModel implements AIModel {
             .max_tokens(maxTokens != null ? maxTokens : config.getDefaultMaxTokens())
             .temperature(temperature != null ? temperature : config.getDefaultTemperature())
             .stream(true)
+            .stream_options(streamOptions(includeUsage))
             .enable_thinking(true)
             .build();
     }
+    
+    /**
+     * 需要用量且模型未关闭时请求在流末尾返回usage
+     */
+    private Map<String, Object> streamOptions(boolean includeUsage) {
+        return includeUsage && config.isStreamUsageEnabled() ? Map.of("include_usage", true) : null;
+    }
 }
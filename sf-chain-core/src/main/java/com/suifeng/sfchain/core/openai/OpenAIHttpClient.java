@@ -1,19 +1,19 @@
 package com.suifeng.sfchain.core.openai;
 
 import com.alibaba.fastjson2.JSON;
+import com.suifeng.sfchain.core.TokenUsage;
+import com.suifeng.sfchain.core.openai.transport.JdkOpenAIHttpTransport;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpResponse;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpStatusException;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpTransport;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 描述: OpenAI兼容的HTTP客户端
@@ -26,23 +26,31 @@ public class OpenAIHttpClient {
     private final String baseUrl;
     private final String apiKey;
     private final Map<String, String> defaultHeaders;
-    private final int connectTimeoutMs;
     private final int readTimeoutMs;
+    private final OpenAIHttpTransport transport;
     
     public OpenAIHttpClient(String baseUrl, String apiKey) {
-        this(baseUrl, apiKey, null, null, null);
+        this(baseUrl, apiKey, null, (Integer) null, (Integer) null);
     }
     
     public OpenAIHttpClient(String baseUrl, String apiKey, Map<String, String> additionalHeaders) {
-        this(baseUrl, apiKey, additionalHeaders, null, null);
+        this(baseUrl, apiKey, additionalHeaders, (Integer) null, (Integer) null);
     }
     
+    /**
+     * 使用进程内共享传输层，连接超时不同于默认值时使用按该超时共享的传输层
+     */
     public OpenAIHttpClient(String baseUrl, String apiKey, Map<String, String> additionalHeaders,
                             Integer connectTimeoutMs, Integer readTimeoutMs) {
+        this(baseUrl, apiKey, additionalHeaders, readTimeoutMs, JdkOpenAIHttpTransport.shared(connectTimeoutMs));
+    }
+    
+    public OpenAIHttpClient(String baseUrl, String apiKey, Map<String, String> additionalHeaders,
+                            Integer readTimeoutMs, OpenAIHttpTransport transport) {
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
         this.apiKey = apiKey;
-        this.connectTimeoutMs = connectTimeoutMs != null ? connectTimeoutMs : 30000;
         this.readTimeoutMs = readTimeoutMs != null ? readTimeoutMs : 300000;
+        this.transport = transport != null ? transport : JdkOpenAIHttpTransport.shared();
         this.defaultHeaders = new HashMap<>();
         this.defaultHeaders.put("Content-Type", "application/json");
         this.defaultHeaders.put("Authorization", "Bearer " + apiKey);
@@ -55,72 +63,57 @@ public class OpenAIHttpClient {
      * 发送聊天完成请求
      */
     public OpenAIResponse chatCompletion(OpenAIRequest request) {
+        return chatCompletion(request, null);
+    }
+
+    /**
+     * 发送聊天完成请求（指定本次调用超时，为null时使用默认读取超时）
+     */
+    public OpenAIResponse chatCompletion(OpenAIRequest request, Duration timeout) {
         try {
-            String requestBody = JSON.toJSONString(request);
-            log.debug("发送请求到: {}", baseUrl);
-            log.debug("请求体: {}", requestBody);
-            log.info("构建的API端点: {}", baseUrl);
-            
-             HttpURLConnection connection = createConnection(baseUrl);
-            
-            // 发送请求体
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+            byte[] requestBody = JSON.toJSONBytes(request);
+            if (log.isDebugEnabled()) {
+                log.debug("发送请求到: {}", baseUrl);
+                log.debug("请求体: {}", new String(requestBody, StandardCharsets.UTF_8));
             }
 
-            // 读取响应
-            StringBuilder response = new StringBuilder();
-            int responseCode = connection.getResponseCode();
+            OpenAIHttpResponse<byte[]> response = transport.post(
+                    baseUrl, defaultHeaders, requestBody, resolveTimeout(timeout));
 
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                }
-            } else {
-                // 读取错误响应
-                try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                }
-                throw new RuntimeException("HTTP请求失败，状态码: " + responseCode + ", 响应: " + response.toString());
+            if (!response.isSuccess()) {
+                String errorBody = response.getBody() == null ? "" : new String(response.getBody(), StandardCharsets.UTF_8);
+                throw new OpenAIHttpStatusException(response.getStatusCode(), response.getHeaders(), errorBody);
             }
 
-            String responseBody = response.toString();
-            log.debug("响应体: {}", responseBody);
+            if (log.isDebugEnabled()) {
+                log.debug("响应体: {}", new String(response.getBody(), StandardCharsets.UTF_8));
+            }
             
-            return JSON.parseObject(responseBody, OpenAIResponse.class);
+            return JSON.parseObject(response.getBody(), OpenAIResponse.class);
             
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                // 被取消（如对冲落败）时恢复中断标记，调用方据此区分取消与上游故障
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("OpenAI API调用被中断", e);
+            }
             log.error("OpenAI API调用失败", e);
             throw new RuntimeException("OpenAI API调用失败: " + e.getMessage(), e);
         }
     }
 
+    private Duration resolveTimeout(Duration timeout) {
+        if (timeout == null || timeout.isZero() || timeout.isNegative()) {
+            return Duration.ofMillis(readTimeoutMs);
+        }
+        return timeout;
+    }
+
     /**
-     * 创建HTTP连接
+     * 获取传输层
      */
-    private HttpURLConnection createConnection(String endpoint) throws Exception {
-        URL url = new URL(endpoint);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        connection.setConnectTimeout(connectTimeoutMs);
-        connection.setReadTimeout(readTimeoutMs);
-
-
-        // 设置请求头
-        defaultHeaders.forEach(connection::setRequestProperty);
-        
-        return connection;
+    public OpenAIHttpTransport getTransport() {
+        return transport;
     }
     
     /**
@@ -139,89 +132,75 @@ public class OpenAIHttpClient {
         return "";
     }
     
+    /**
+     * 转换响应中的用量统计，无用量时返回null
+     */
+    public static TokenUsage toTokenUsage(OpenAIResponse.Usage usage) {
+        if (usage == null) {
+            return null;
+        }
+        return TokenUsage.builder()
+                .promptTokens(usage.getPrompt_tokens())
+                .completionTokens(usage.getCompletion_tokens())
+                .totalTokens(usage.getTotal_tokens())
+                .build();
+    }
+    
     /**
      * 发送流式聊天完成请求
+     * 基于非阻塞传输层，不占用专用线程，消费端背压直接传导到网络读取
      */
     public Flux<String> chatCompletionStream(OpenAIRequest request) {
-        return Flux.create(sink -> {
-            // 在新线程中异步处理流式响应
-            CompletableFuture.runAsync(() -> {
-                try {
-                    // 设置流式请求
-                    OpenAIRequest streamRequest = request.toBuilder().stream(true).build();
-                    String requestBody = JSON.toJSONString(streamRequest);
-                    log.debug("发送流式请求到: {}", baseUrl);
-                    log.debug("请求体: {}", requestBody);
-                    
-                    HttpURLConnection connection = createConnection(baseUrl);
-                    
-                    // 发送请求体
-                    try (OutputStream os = connection.getOutputStream()) {
-                        byte[] input = requestBody.getBytes(StandardCharsets.UTF_8);
-                        os.write(input, 0, input.length);
-                    }
-                    
-                    // 读取流式响应
-                    int responseCode = connection.getResponseCode();
-                    if (responseCode == HttpURLConnection.HTTP_OK) {
-                        try (BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                            
-                            String line;
-                            while ((line = reader.readLine()) != null && !sink.isCancelled()) {
-                                if (line.trim().isEmpty()) {
-                                    continue;
-                                }
-                                
-                                // 处理SSE格式的数据
-                                if (line.startsWith("data: ")) {
-                                    String data = line.substring(6).trim();
-                                    
-                                    // 检查是否为结束标记
-                                    if ("[DONE]".equals(data)) {
-                                        sink.complete();
-                                        break;
-                                    }
-                                    
-                                    try {
-                                        // 解析流式响应
-                                        OpenAIStreamResponse streamResponse = JSON.parseObject(data, OpenAIStreamResponse.class);
-                                        String content = extractStreamContent(streamResponse);
-                                        if (content != null && !content.isEmpty()) {
-                                            // 立即发送内容，而不是缓存
-                                            sink.next(content);
-                                            // 添加小延迟以确保流式效果
-                                            Thread.sleep(10);
-                                        }
-                                    } catch (Exception e) {
-                                        log.warn("解析流式响应失败: {}", data, e);
-                                    }
-                                }
-                            }
-                            
-                            if (!sink.isCancelled()) {
-                                sink.complete();
-                            }
+        return chatCompletionStream(request, null);
+    }
+
+    /**
+     * 发送流式聊天完成请求（指定等待响应的超时，为null时使用默认读取超时）
+     */
+    public Flux<String> chatCompletionStream(OpenAIRequest request, Duration timeout) {
+        return chatCompletionStream(request, timeout, null);
+    }
+
+    /**
+     * 发送流式聊天完成请求，分片中携带的用量统计交给usageConsumer
+     */
+    public Flux<String> chatCompletionStream(OpenAIRequest request, Duration timeout, Consumer<TokenUsage> usageConsumer) {
+        return Flux.defer(() -> {
+            OpenAIRequest streamRequest = request.toBuilder().stream(true).build();
+            byte[] requestBody = JSON.toJSONBytes(streamRequest);
+            log.debug("发送流式请求到: {}", baseUrl);
+
+            SseEventDecoder decoder = new SseEventDecoder();
+            return transport.postStreaming(baseUrl, defaultHeaders, requestBody, resolveTimeout(timeout))
+                    .concatMapIterable(decoder::decode)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.flush())))
+                    .takeWhile(data -> !"[DONE]".equals(data))
+                    .<String>handle((data, sink) -> {
+                        OpenAIStreamResponse chunk = parseStreamChunk(data);
+                        if (chunk == null) {
+                            return;
                         }
-                    } else {
-                        // 读取错误响应
-                        StringBuilder errorResponse = new StringBuilder();
-                        try (BufferedReader br = new BufferedReader(
-                            new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = br.readLine()) != null) {
-                                errorResponse.append(line);
-                            }
+                        if (usageConsumer != null && chunk.getUsage() != null) {
+                            usageConsumer.accept(toTokenUsage(chunk.getUsage()));
                         }
-                        sink.error(new RuntimeException("HTTP请求失败，状态码: " + responseCode + ", 响应: " + errorResponse.toString()));
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("流式OpenAI API调用失败", e);
-                    sink.error(new RuntimeException("流式OpenAI API调用失败: " + e.getMessage(), e));
-                }
-            });
-        }, FluxSink.OverflowStrategy.BUFFER);
+                        String content = extractStreamContent(chunk);
+                        if (content != null && !content.isEmpty()) {
+                            sink.next(content);
+                        }
+                    });
+        }).onErrorMap(e -> {
+            log.error("流式OpenAI API调用失败", e);
+            return new RuntimeException("流式OpenAI API调用失败: " + e.getMessage(), e);
+        });
+    }
+
+    private OpenAIStreamResponse parseStreamChunk(String data) {
+        try {
+            return JSON.parseObject(data, OpenAIStreamResponse.class);
+        } catch (Exception e) {
+            log.warn("解析流式响应失败: {}", data, e);
+            return null;
+        }
     }
     
     /**
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import com.suifeng.sfchain.core.TokenUsage;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -80,6 +81,46 @@ public class OpenAIModelConfig {
      */
     private Boolean enabled;
     
+    /**
+     * 流式输出时是否请求用量统计(stream_options.include_usage)，为null时视为开启
+     */
+    private Boolean streamUsage;
+    
+    /**
+     * 提示词单价(每1000 token)
+     */
+    private Double promptPricePer1kTokens;
+    
+    /**
+     * 生成内容单价(每1000 token)
+     */
+    private Double completionPricePer1kTokens;
+    
+    /**
+     * 每分钟请求数上限(RPM)，为空或不大于0时不限制
+     */
+    private Integer requestsPerMinute;
+    
+    /**
+     * 每分钟token数上限(TPM)，按提示词估算值加最大生成token数计，调用结束后按实际用量修正
+     */
+    private Integer tokensPerMinute;
+    
+    /**
+     * 限流等待队列长度，为空时为100
+     */
+    private Integer rateLimitQueueSize;
+    
+    /**
+     * 限流最大排队时间(毫秒)，为空时为30000，同时不超过单次调用超时
+     */
+    private Integer rateLimitMaxWaitMs;
+    
+    /**
+     * 限流排队时各操作的权重(操作类型 -> 权重)，未配置的操作权重为1
+     */
+    private Map<String, Integer> operationWeights;
+    
     /**
      * 获取额外请求头，如果为null则返回空Map
      */
@@ -97,6 +138,30 @@ public class OpenAIModelConfig {
         additionalHeaders.put(key, value);
     }
     
+    /**
+     * 流式输出时是否请求用量统计
+     */
+    public boolean isStreamUsageEnabled() {
+        return !Boolean.FALSE.equals(streamUsage);
+    }
+    
+    /**
+     * 按配置单价估算调用费用，未配置单价或无用量时返回null
+     */
+    public Double estimateCost(TokenUsage usage) {
+        if (usage == null || (promptPricePer1kTokens == null && completionPricePer1kTokens == null)) {
+            return null;
+        }
+        double cost = 0.0;
+        if (promptPricePer1kTokens != null && usage.getPromptTokens() != null) {
+            cost += usage.getPromptTokens() * promptPricePer1kTokens / 1000.0;
+        }
+        if (completionPricePer1kTokens != null && usage.getCompletionTokens() != null) {
+            cost += usage.getCompletionTokens() * completionPricePer1kTokens / 1000.0;
+        }
+        return cost;
+    }
+    
     /**
      * 检查配置是否有效
      */
@@ -1,9 +1,15 @@
 package com.suifeng.sfchain.core.openai;
 
 import com.suifeng.sfchain.core.AIModel;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimitStats;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimiter;
+import com.suifeng.sfchain.core.openai.transport.JdkOpenAIHttpTransport;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpTransport;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -14,18 +20,30 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class OpenAIModelFactory {
     
-    private final int connectTimeoutMs;
     private final int readTimeoutMs;
+    /**
+     * 所有模型共享的HTTP传输层
+     */
+    @Getter
+    private final OpenAIHttpTransport transport;
     private final Map<String, OpenAIModelConfig> modelConfigs = new ConcurrentHashMap<>();
     private final Map<String, AIModel> modelInstances = new ConcurrentHashMap<>();
+    private final Map<String, ModelRateLimiter> rateLimiters = new ConcurrentHashMap<>();
 
     public OpenAIModelFactory() {
         this(30000, 300000);
     }
 
     public OpenAIModelFactory(int connectTimeoutMs, int readTimeoutMs) {
-        this.connectTimeoutMs = connectTimeoutMs;
+        this(connectTimeoutMs, readTimeoutMs, null);
+    }
+
+    /**
+     * 使用指定传输层创建工厂，连接超时以传输层配置为准；transport为null时使用按连接超时共享的默认传输层
+     */
+    public OpenAIModelFactory(int connectTimeoutMs, int readTimeoutMs, OpenAIHttpTransport transport) {
         this.readTimeoutMs = readTimeoutMs;
+        this.transport = transport != null ? transport : JdkOpenAIHttpTransport.shared(connectTimeoutMs);
     }
     
     /**
@@ -55,10 +73,35 @@ public class OpenAIModelFactory {
                 throw new IllegalStateException("模型已禁用: " + name);
             }
             
-            return new OpenAICompatibleModel(config, connectTimeoutMs, readTimeoutMs);
+            return new OpenAICompatibleModel(config, readTimeoutMs, transport, rateLimiterFor(config));
         });
     }
     
+    /**
+     * 同名模型重新注册时复用限流器，只更新限额，避免配置同步清空已消耗的额度
+     */
+    private ModelRateLimiter rateLimiterFor(OpenAIModelConfig config) {
+        if (!ModelRateLimiter.isConfigured(config)) {
+            rateLimiters.remove(config.getModelName());
+            return null;
+        }
+        ModelRateLimiter existing = rateLimiters.get(config.getModelName());
+        if (existing != null) {
+            existing.update(config);
+            return existing;
+        }
+        return rateLimiters.computeIfAbsent(config.getModelName(), name -> new ModelRateLimiter(config));
+    }
+    
+    /**
+     * 获取所有配置了限额的模型的限流统计
+     */
+    public Map<String, ModelRateLimitStats> getRateLimitStats() {
+        Map<String, ModelRateLimitStats> snapshot = new TreeMap<>();
+        rateLimiters.forEach((modelName, limiter) -> snapshot.put(modelName, limiter.getStats()));
+        return snapshot;
+    }
+    
     /**
      * 获取所有已注册的模型名称
      */
@@ -86,6 +129,7 @@ public class OpenAIModelFactory {
     public void removeModel(String modelName) {
         modelConfigs.remove(modelName);
         modelInstances.remove(modelName);
+        rateLimiters.remove(modelName);
         log.info("移除模型: {}", modelName);
     }
 }
@@ -79,6 +79,11 @@ public class OpenAIRequest {
      */
     private String user;
     
+    /**
+     * 流式选项，如 {"include_usage": true} 用于在最后一个分片中返回用量
+     */
+    private Map<String, Object> stream_options;
+    
     @Data
     @Builder(toBuilder = true)
     @AllArgsConstructor
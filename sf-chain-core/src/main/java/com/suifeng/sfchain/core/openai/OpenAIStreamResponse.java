@@ -46,6 +46,11 @@ public class OpenAIStreamResponse {
      */
     private String system_fingerprint;
     
+    /**
+     * 用量统计（仅在开启stream_options.include_usage时由最后一个分片返回）
+     */
+    private OpenAIResponse.Usage usage;
+    
     @Data
     @AllArgsConstructor
     @NoArgsConstructor
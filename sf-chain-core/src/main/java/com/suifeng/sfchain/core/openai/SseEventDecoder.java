@@ -0,0 +1,86 @@
+package com.suifeng.sfchain.core.openai;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 描述: 增量SSE事件解码器
+ * 直接在字节块上按行切分，只对完整行做UTF-8解码，避免多字节字符被网络分包截断；
+ * 每个订阅持有一个实例，非线程安全
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+final class SseEventDecoder {
+
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+    private final StringBuilder data = new StringBuilder();
+    private boolean hasData;
+
+    /**
+     * 解码一批字节块，返回其中已完整的事件data
+     */
+    List<String> decode(List<ByteBuffer> buffers) {
+        List<String> events = new ArrayList<>(2);
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    onLine(events);
+                } else {
+                    lineBuffer.write(b);
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 流结束时输出残留事件
+     */
+    List<String> flush() {
+        List<String> events = new ArrayList<>(1);
+        if (lineBuffer.size() > 0) {
+            onLine(events);
+        }
+        dispatch(events);
+        return events;
+    }
+
+    private void onLine(List<String> events) {
+        int length = lineBuffer.size();
+        byte[] bytes = lineBuffer.toByteArray();
+        lineBuffer.reset();
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            dispatch(events);
+            return;
+        }
+        String line = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        if (!line.startsWith("data:")) {
+            // 忽略注释、event、id、retry等字段
+            return;
+        }
+        String value = line.substring(5);
+        if (value.startsWith(" ")) {
+            value = value.substring(1);
+        }
+        if (hasData) {
+            data.append('\n');
+        }
+        data.append(value);
+        hasData = true;
+    }
+
+    private void dispatch(List<String> events) {
+        if (hasData) {
+            events.add(data.toString().trim());
+            data.setLength(0);
+            hasData = false;
+        }
+    }
+}
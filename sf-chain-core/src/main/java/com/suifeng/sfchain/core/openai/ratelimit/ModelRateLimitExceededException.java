@@ -0,0 +1,19 @@
+package com.suifeng.sfchain.core.openai.ratelimit;
+
+import lombok.Getter;
+
+/**
+ * 描述: 本地限流等待队列已满或等待超时
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Getter
+public class ModelRateLimitExceededException extends RuntimeException {
+
+    private final String modelName;
+
+    public ModelRateLimitExceededException(String modelName, String message) {
+        super("模型限流: " + modelName + " - " + message);
+        this.modelName = modelName;
+    }
+}
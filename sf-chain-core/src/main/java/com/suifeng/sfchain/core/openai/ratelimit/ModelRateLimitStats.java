@@ -0,0 +1,38 @@
+package com.suifeng.sfchain.core.openai.ratelimit;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个模型的本地限流统计快照
+ * 排队等待时间单独统计，不计入上游响应时延
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class ModelRateLimitStats {
+    String modelName;
+    /** 每分钟请求数上限（0表示不限） */
+    int requestsPerMinute;
+    /** 每分钟token数上限（0表示不限） */
+    int tokensPerMinute;
+    /** 当前可用的请求额度 */
+    double availableRequests;
+    /** 当前可用的token额度 */
+    double availableTokens;
+    /** 获得额度放行的请求数 */
+    long acquired;
+    /** 其中进入等待队列的请求数 */
+    long queued;
+    /** 队列已满或等待超时被拒绝的请求数 */
+    long rejected;
+    /** 当前等待队列长度 */
+    int queueDepth;
+    /** 等待队列历史最大长度 */
+    int maxQueueDepth;
+    /** 放行请求的平均排队时间（毫秒） */
+    double averageQueueWaitMs;
+    /** 放行请求的最大排队时间（毫秒） */
+    long maxQueueWaitMs;
+}
@@ -0,0 +1,458 @@
+package com.suifeng.sfchain.core.openai.ratelimit;
+
+import com.suifeng.sfchain.core.TokenUsage;
+import com.suifeng.sfchain.core.openai.OpenAIModelConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 描述: 模型端点的客户端RPM/TPM限流器
+ * 请求数与估算token数各一个令牌桶（容量为每分钟额度，按时间匀速补充），两个桶都足够时才放行；
+ * 额度不足时调用进入有界等待队列，按操作加权公平排队：每个操作按 估算开销/权重 累加虚拟完成时间，
+ * 虚拟完成时间最小的等待者优先放行，繁忙操作不会挤占其他操作的份额。
+ * 队列已满或等待超过上限时抛出ModelRateLimitExceededException；调用结束后按实际token用量修正估算值。
+ * 等待者以CompletableFuture排队，额度补足时由定时唤醒放行，排队期间不占用线程（流式调用据此异步等待）
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class ModelRateLimiter {
+
+    private static final String DEFAULT_LANE = "default";
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final long DEFAULT_MAX_WAIT_MS = 30000;
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final String modelName;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparingDouble((Waiter waiter) -> waiter.finishTag).thenComparingLong(waiter -> waiter.sequence));
+    private final Map<String, Double> laneFinishTags = new HashMap<>();
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    private int requestsPerMinute;
+    private int tokensPerMinute;
+    private int queueSize;
+    private long maxWaitNanos;
+    private Map<String, Integer> operationWeights = Map.of();
+
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos = System.nanoTime();
+    private double virtualTime;
+    private long sequence;
+    /** 已安排的下一次唤醒时间，0表示没有 */
+    private long wakeAtNanos;
+
+    public ModelRateLimiter(OpenAIModelConfig config) {
+        this.modelName = config.getModelName();
+        update(config);
+        this.availableRequests = requestsPerMinute;
+        this.availableTokens = tokensPerMinute;
+    }
+
+    /**
+     * 是否配置了RPM或TPM限制
+     */
+    public static boolean isConfigured(OpenAIModelConfig config) {
+        return positive(config.getRequestsPerMinute()) > 0 || positive(config.getTokensPerMinute()) > 0;
+    }
+
+    /**
+     * 估算请求的token数：英文约4个字符1个token，中文等非ASCII字符按1个字符1个token，再加上最大生成token数
+     */
+    public static long estimateTokens(String prompt, Integer maxTokens) {
+        long ascii = 0;
+        long other = 0;
+        if (prompt != null) {
+            for (int i = 0; i < prompt.length(); i++) {
+                if (prompt.charAt(i) < 0x80) {
+                    ascii++;
+                } else {
+                    other++;
+                }
+            }
+        }
+        return (ascii + 3) / 4 + other + (maxTokens != null ? Math.max(0, maxTokens) : 0);
+    }
+
+    /**
+     * 模型配置更新后调整额度，已积累的额度不超过新的容量
+     */
+    public void update(OpenAIModelConfig config) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            requestsPerMinute = positive(config.getRequestsPerMinute());
+            tokensPerMinute = positive(config.getTokensPerMinute());
+            queueSize = config.getRateLimitQueueSize() != null ? Math.max(0, config.getRateLimitQueueSize()) : DEFAULT_QUEUE_SIZE;
+            maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMs() != null
+                    ? Math.max(0, config.getRateLimitMaxWaitMs()) : DEFAULT_MAX_WAIT_MS);
+            operationWeights = config.getOperationWeights() != null ? Map.copyOf(config.getOperationWeights()) : Map.of();
+            availableRequests = Math.min(availableRequests, requestsPerMinute);
+            availableTokens = Math.min(availableTokens, tokensPerMinute);
+            granted = drain(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * 获取一次请求的额度，额度不足时阻塞排队等待
+     *
+     * @param operationType   发起调用的操作类型，为null时归入默认队列
+     * @param estimatedTokens 估算的token数
+     * @param timeout         本次调用的超时，排队时间不超过它与配置的最大等待时间中的较小者
+     * @return 放行凭证，调用结束后通过settle修正token用量
+     */
+    public Permit acquire(String operationType, long estimatedTokens, Duration timeout) throws InterruptedException {
+        CompletableFuture<Permit> future = acquireAsync(operationType, estimatedTokens, timeout);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            cancel(future);
+            throw e;
+        }
+    }
+
+    /**
+     * 异步获取一次请求的额度：额度充足时返回已完成的future，否则排队，放行时完成；
+     * 队列已满或等待超时时以ModelRateLimitExceededException异常完成。放弃等待时调用cancel
+     */
+    public CompletableFuture<Permit> acquireAsync(String operationType, long estimatedTokens, Duration timeout) {
+        String lane = operationType != null ? operationType : DEFAULT_LANE;
+        long startNanos = System.nanoTime();
+        Waiter waiter;
+        long waitLimit;
+        lock.lock();
+        try {
+            long tokens = tokensPerMinute > 0 ? Math.min(Math.max(1, estimatedTokens), tokensPerMinute) : 0;
+            refill(startNanos);
+            if (waiters.isEmpty() && fits(tokens)) {
+                consume(tokens);
+                acquired.increment();
+                return CompletableFuture.completedFuture(new Permit(tokens, 0));
+            }
+            if (waiters.size() >= queueSize) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new ModelRateLimitExceededException(modelName, "等待队列已满(" + queueSize + ")"));
+            }
+            waiter = enqueue(lane, tokens, startNanos);
+            waitLimit = maxWaitNanos;
+            if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+                waitLimit = Math.min(waitLimit, timeout.toNanos());
+            }
+            scheduleWake(startNanos, nanosUntilFits(tokens));
+        } finally {
+            lock.unlock();
+        }
+        long limit = waitLimit;
+        CompletableFuture.delayedExecutor(Math.max(limit, 1), TimeUnit.NANOSECONDS).execute(() -> expire(waiter, limit));
+        // 放弃等待（取消future）时移出队列，让后面的等待者前进
+        waiter.future.whenComplete((permit, error) -> {
+            if (waiter.future.isCancelled()) {
+                withdraw(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * 放弃等待：仍在排队时移出队列，额度已交付时退回
+     */
+    public void cancel(CompletableFuture<Permit> future) {
+        if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+            future.thenAccept(Permit::abandon);
+        }
+    }
+
+    /**
+     * 获取限流统计
+     */
+    public ModelRateLimitStats getStats() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            long acquiredCount = acquired.sum();
+            return ModelRateLimitStats.builder()
+                    .modelName(modelName)
+                    .requestsPerMinute(requestsPerMinute)
+                    .tokensPerMinute(tokensPerMinute)
+                    .availableRequests(availableRequests)
+                    .availableTokens(availableTokens)
+                    .acquired(acquiredCount)
+                    .queued(queued.sum())
+                    .rejected(rejected.sum())
+                    .queueDepth(waiters.size())
+                    .maxQueueDepth((int) maxQueueDepth.get())
+                    .averageQueueWaitMs(acquiredCount > 0 ? queueWaitNanos.sum() / 1_000_000.0 / acquiredCount : 0.0)
+                    .maxQueueWaitMs(TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()))
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(Waiter waiter, long waitLimit) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            rejected.increment();
+            granted = drain(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        waiter.future.completeExceptionally(new ModelRateLimitExceededException(modelName,
+                "排队超过" + TimeUnit.NANOSECONDS.toMillis(waitLimit) + "ms"));
+        complete(granted);
+    }
+
+    private void withdraw(Waiter waiter) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            granted = drain(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    private void wake() {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (wakeAtNanos != 0 && now - wakeAtNanos >= 0) {
+                wakeAtNanos = 0;
+            }
+            granted = drain(now);
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * 按虚拟完成时间依次放行额度足够的等待者（持锁调用），队首额度不足时安排在补足时唤醒；
+     * 返回需要在锁外完成的等待者，避免在持锁时执行下游回调
+     */
+    private List<Waiter> drain(long now) {
+        refill(now);
+        List<Waiter> granted = null;
+        Waiter head;
+        while ((head = waiters.peek()) != null) {
+            if (head.future.isDone()) {
+                waiters.poll();
+                continue;
+            }
+            if (!fits(head.tokens)) {
+                scheduleWake(now, nanosUntilFits(head.tokens));
+                break;
+            }
+            waiters.poll();
+            consume(head.tokens);
+            virtualTime = Math.max(virtualTime, head.finishTag);
+            head.waitedNanos = now - head.startNanos;
+            acquired.increment();
+            queueWaitNanos.add(head.waitedNanos);
+            maxQueueWaitNanos.accumulate(head.waitedNanos);
+            if (granted == null) {
+                granted = new ArrayList<>();
+            }
+            granted.add(head);
+        }
+        return granted;
+    }
+
+    private void scheduleWake(long now, long delayNanos) {
+        long at = now + Math.max(delayNanos, 1);
+        if (wakeAtNanos != 0 && at - wakeAtNanos >= 0) {
+            return;
+        }
+        wakeAtNanos = at;
+        CompletableFuture.delayedExecutor(Math.max(delayNanos, 1), TimeUnit.NANOSECONDS).execute(this::wake);
+    }
+
+    private void complete(List<Waiter> granted) {
+        if (granted == null) {
+            return;
+        }
+        for (Waiter waiter : granted) {
+            Permit permit = new Permit(waiter.tokens, waiter.waitedNanos);
+            // 等待方已放弃时退回额度
+            if (!waiter.future.complete(permit)) {
+                permit.abandon();
+            }
+        }
+    }
+
+    private Waiter enqueue(String lane, long tokens, long startNanos) {
+        // 开销按token计（未限制TPM时按请求计），权重越大虚拟时间推进越慢、获得份额越多
+        double cost = tokensPerMinute > 0 ? Math.max(1, tokens) : 1;
+        int weight = Math.max(1, operationWeights.getOrDefault(lane, 1));
+        double start = Math.max(virtualTime, laneFinishTags.getOrDefault(lane, 0.0));
+        Waiter waiter = new Waiter(start + cost / weight, sequence++, tokens, startNanos);
+        laneFinishTags.put(lane, waiter.finishTag);
+        waiters.add(waiter);
+        queued.increment();
+        maxQueueDepth.accumulate(waiters.size());
+        return waiter;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastRefillNanos = now;
+        if (requestsPerMinute > 0) {
+            availableRequests = Math.min(requestsPerMinute, availableRequests + elapsed * requestsPerMinute / NANOS_PER_MINUTE);
+        }
+        if (tokensPerMinute > 0) {
+            availableTokens = Math.min(tokensPerMinute, availableTokens + elapsed * tokensPerMinute / NANOS_PER_MINUTE);
+        }
+    }
+
+    private boolean fits(long tokens) {
+        return (requestsPerMinute <= 0 || availableRequests >= 1) && (tokensPerMinute <= 0 || availableTokens >= tokens);
+    }
+
+    private void consume(long tokens) {
+        if (requestsPerMinute > 0) {
+            availableRequests -= 1;
+        }
+        if (tokensPerMinute > 0) {
+            availableTokens -= tokens;
+        }
+    }
+
+    private long nanosUntilFits(long tokens) {
+        double nanos = 0;
+        if (requestsPerMinute > 0 && availableRequests < 1) {
+            nanos = (1 - availableRequests) * NANOS_PER_MINUTE / requestsPerMinute;
+        }
+        if (tokensPerMinute > 0 && availableTokens < tokens) {
+            nanos = Math.max(nanos, (tokens - availableTokens) * NANOS_PER_MINUTE / tokensPerMinute);
+        }
+        return (long) Math.ceil(nanos);
+    }
+
+    private void refund(double requests, double tokens) {
+        if ((requestsPerMinute <= 0 || requests == 0) && (tokensPerMinute <= 0 || tokens == 0)) {
+            return;
+        }
+        List<Waiter> granted = null;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            if (requestsPerMinute > 0) {
+                availableRequests = Math.min(requestsPerMinute, availableRequests + requests);
+            }
+            if (tokensPerMinute > 0) {
+                availableTokens = Math.min(tokensPerMinute, availableTokens + tokens);
+            }
+            if (requests > 0 || tokens > 0) {
+                granted = drain(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    private static int positive(Integer value) {
+        return value != null && value > 0 ? value : 0;
+    }
+
+    private static final class Waiter {
+        private final double finishTag;
+        private final long sequence;
+        private final long tokens;
+        private final long startNanos;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private long waitedNanos;
+
+        private Waiter(double finishTag, long sequence, long tokens, long startNanos) {
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.tokens = tokens;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * 放行凭证
+     */
+    public final class Permit {
+        private final long estimatedTokens;
+        private final long queueWaitNanos;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Permit(long estimatedTokens, long queueWaitNanos) {
+            this.estimatedTokens = estimatedTokens;
+            this.queueWaitNanos = queueWaitNanos;
+        }
+
+        /**
+         * 排队等待时间（毫秒）
+         */
+        public long getQueueWaitMs() {
+            return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos);
+        }
+
+        /**
+         * 按实际用量修正token额度：多估的退回，少估的补扣（额度可暂时为负，推迟后续请求）
+         */
+        public void settle(TokenUsage usage) {
+            Integer actual = usage == null ? null : usage.resolveTotalTokens();
+            if (actual == null || !settled.compareAndSet(false, true)) {
+                return;
+            }
+            refund(0, estimatedTokens - (double) actual);
+        }
+
+        /**
+         * 放行后未发出请求（等待方已放弃）时退回请求与token额度
+         */
+        private void abandon() {
+            if (settled.compareAndSet(false, true)) {
+                refund(1, estimatedTokens);
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 描述: 基于JDK HttpClient的传输层实现
+ * 按端点(scheme://host:port)共享一个HttpClient，复用长连接并在服务端支持时通过HTTP/2多路复用
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+public class JdkOpenAIHttpTransport implements OpenAIHttpTransport {
+
+    /** JDK HttpClient 禁止手动设置的请求头 */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private static volatile JdkOpenAIHttpTransport sharedInstance;
+    /** 连接超时不同于默认配置时按超时值共享的传输层 */
+    private static final Map<Integer, JdkOpenAIHttpTransport> SHARED_BY_CONNECT_TIMEOUT = new ConcurrentHashMap<>();
+
+    private final OpenAIHttpTransportConfig config;
+    private final Map<String, EndpointPool> pools = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepMillis = new AtomicLong(System.currentTimeMillis());
+    private final Executor ioExecutor;
+
+    public JdkOpenAIHttpTransport() {
+        this(OpenAIHttpTransportConfig.defaultConfig().build());
+    }
+
+    public JdkOpenAIHttpTransport(OpenAIHttpTransportConfig config) {
+        this.config = config;
+        this.ioExecutor = config.getIoThreads() > 0 ? createIoExecutor(config.getIoThreads()) : null;
+        applyKeepAlive(config.getKeepAliveSeconds());
+        log.info("初始化OpenAI HTTP传输层: http2={}, poolSize={}, keepAlive={}s, idleEvict={}s",
+                config.isHttp2Enabled(), config.getPoolSize(), config.getKeepAliveSeconds(), config.getIdleEvictSeconds());
+    }
+
+    /**
+     * 获取进程内共享的默认传输层（未显式注入传输层时使用）
+     */
+    public static JdkOpenAIHttpTransport shared() {
+        JdkOpenAIHttpTransport instance = sharedInstance;
+        if (instance == null) {
+            synchronized (JdkOpenAIHttpTransport.class) {
+                instance = sharedInstance;
+                if (instance == null) {
+                    instance = new JdkOpenAIHttpTransport();
+                    sharedInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 获取使用指定连接超时的共享传输层，为null或与默认配置相同时返回默认共享实例
+     */
+    public static JdkOpenAIHttpTransport shared(Integer connectTimeoutMs) {
+        JdkOpenAIHttpTransport defaultInstance = shared();
+        if (connectTimeoutMs == null || connectTimeoutMs == defaultInstance.config.getConnectTimeoutMs()) {
+            return defaultInstance;
+        }
+        return SHARED_BY_CONNECT_TIMEOUT.computeIfAbsent(connectTimeoutMs, timeout -> new JdkOpenAIHttpTransport(
+                OpenAIHttpTransportConfig.defaultConfig().connectTimeoutMs(timeout).build()));
+    }
+
+    @Override
+    public OpenAIHttpResponse<byte[]> post(String endpoint, Map<String, String> headers, byte[] body, Duration timeout)
+            throws IOException, InterruptedException {
+        EndpointPool pool = poolFor(endpoint);
+        Permit permit = pool.acquire();
+        try {
+            HttpRequest request = buildRequest(endpoint, headers, body, timeout);
+            if (!hasTimeout(timeout)) {
+                HttpResponse<byte[]> response = pool.client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                return new OpenAIHttpResponse<>(response.statusCode(), response.headers().map(), response.body());
+            }
+            // HttpRequest.timeout 只约束到响应头到达，这里对整个交换（含响应体）施加硬截止时间
+            CompletableFuture<HttpResponse<byte[]>> future =
+                    pool.client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<byte[]> response = awaitResponse(future, timeout);
+            return new OpenAIHttpResponse<>(response.statusCode(), response.headers().map(), response.body());
+        } finally {
+            permit.release();
+        }
+    }
+
+    private static <T> HttpResponse<T> awaitResponse(CompletableFuture<HttpResponse<T>> future, Duration timeout)
+            throws IOException, InterruptedException {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("request timed out after " + timeout.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static boolean hasTimeout(Duration timeout) {
+        return timeout != null && !timeout.isZero() && !timeout.isNegative();
+    }
+
+    @Override
+    public Flux<List<ByteBuffer>> postStreaming(String endpoint, Map<String, String> headers, byte[] body, Duration timeout) {
+        return Flux.defer(() -> {
+            EndpointPool pool = poolFor(endpoint);
+            HttpRequest request = buildRequest(endpoint, headers, body, timeout);
+            return Flux.usingWhen(
+                    pool.acquireAsync(),
+                    permit -> Mono.fromFuture(pool.client.sendAsync(request, HttpResponse.BodyHandlers.ofPublisher()))
+                            .flatMapMany(JdkOpenAIHttpTransport::toBodyFlux),
+                    permit -> Mono.fromRunnable(permit::release),
+                    (permit, error) -> Mono.fromRunnable(permit::release),
+                    permit -> Mono.fromRunnable(permit::release));
+        });
+    }
+
+    private static Flux<List<ByteBuffer>> toBodyFlux(HttpResponse<java.util.concurrent.Flow.Publisher<List<ByteBuffer>>> response) {
+        Flux<List<ByteBuffer>> body = JdkFlowAdapter.flowPublisherToFlux(response.body());
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return body;
+        }
+        Map<String, List<String>> responseHeaders = response.headers().map();
+        return body.collect(java.io.ByteArrayOutputStream::new, (out, buffers) -> {
+                    for (ByteBuffer buffer : buffers) {
+                        byte[] bytes = new byte[buffer.remaining()];
+                        buffer.get(bytes);
+                        out.writeBytes(bytes);
+                    }
+                })
+                .flatMapMany(out -> Flux.error(new OpenAIHttpStatusException(
+                        status, responseHeaders, out.toString(StandardCharsets.UTF_8))));
+    }
+
+    @Override
+    public Map<String, OpenAIHttpPoolMetrics> poolMetrics() {
+        Map<String, OpenAIHttpPoolMetrics> metrics = new LinkedHashMap<>();
+        pools.forEach((key, pool) -> metrics.put(key, pool.metrics()));
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        pools.clear();
+        if (ioExecutor instanceof java.util.concurrent.ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private static Executor createIoExecutor(int threads) {
+        AtomicInteger sequence = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sf-chain-openai-io-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private HttpRequest buildRequest(String endpoint, Map<String, String> headers, byte[] body, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (hasTimeout(timeout)) {
+            builder.timeout(timeout);
+        }
+        if (headers != null) {
+            headers.forEach((name, value) -> {
+                if (name == null || value == null || RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    return;
+                }
+                builder.header(name, value);
+            });
+        }
+        return builder.build();
+    }
+
+    private EndpointPool poolFor(String endpoint) {
+        sweepIdlePools();
+        // 在映射锁内刷新使用时间，与按键淘汰互斥，避免刚取得的连接池被同时判定为空闲移除
+        return pools.compute(endpointKey(endpoint), (key, existing) -> {
+            EndpointPool pool = existing != null ? existing : createPool(key);
+            pool.touch();
+            return pool;
+        });
+    }
+
+    private EndpointPool createPool(String key) {
+        LongAdder handshakes = new LongAdder();
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(config.isHttp2Enabled() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.max(config.getConnectTimeoutMs(), 1)))
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (ioExecutor != null) {
+            builder.executor(ioExecutor);
+        }
+        try {
+            builder.sslContext(new HandshakeCountingSSLContext(SSLContext.getDefault(), handshakes));
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("无法获取默认SSLContext，握手次数将不被统计: {}", e.getMessage());
+        }
+        log.info("创建OpenAI端点连接池: {}", key);
+        return new EndpointPool(key, builder.build(), Math.max(config.getPoolSize(), 1),
+                Math.max(config.getAcquireTimeoutMs(), 0L), handshakes,
+                config.isHttp2Enabled() ? "HTTP/2" : "HTTP/1.1");
+    }
+
+    private void sweepIdlePools() {
+        long idleMillis = Math.max(config.getIdleEvictSeconds(), 0) * 1000L;
+        if (idleMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastSweepMillis.get();
+        if (now - last < idleMillis / 2 || !lastSweepMillis.compareAndSet(last, now)) {
+            return;
+        }
+        for (String key : pools.keySet()) {
+            pools.computeIfPresent(key, (endpointKey, pool) -> {
+                boolean idle = pool.activeCount() == 0 && pool.pendingCount() == 0
+                        && now - pool.lastUsedMillis > idleMillis;
+                if (idle) {
+                    log.info("淘汰空闲OpenAI端点连接池: {}", endpointKey);
+                }
+                return idle ? null : pool;
+            });
+        }
+    }
+
+    private static String endpointKey(String endpoint) {
+        URI uri = URI.create(endpoint);
+        String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equals(scheme) ? 443 : 80;
+        }
+        return scheme + "://" + uri.getHost() + ":" + port;
+    }
+
+    /**
+     * JDK HttpClient 通过系统属性控制空闲连接保活时间，仅在首个HttpClient创建前设置才生效
+     */
+    private static void applyKeepAlive(int keepAliveSeconds) {
+        if (keepAliveSeconds <= 0) {
+            return;
+        }
+        String value = String.valueOf(keepAliveSeconds);
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", value);
+        }
+        if (System.getProperty("jdk.httpclient.keepalive.timeout.h2") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout.h2", value);
+        }
+    }
+
+    /**
+     * 单个端点的连接池
+     * 使用异步许可队列控制并发，阻塞调用与流式调用共享同一组许可，流式等待许可时不占用线程
+     */
+    private static final class EndpointPool {
+        private final String endpoint;
+        private final HttpClient client;
+        private final int maxSize;
+        private final long acquireTimeoutMs;
+        private final LongAdder handshakes;
+        private final String protocol;
+        private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private final AtomicLong totalRequests = new AtomicLong();
+        private final AtomicLong acquireTimeouts = new AtomicLong();
+        private int available;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+
+        private EndpointPool(String endpoint, HttpClient client, int maxSize, long acquireTimeoutMs,
+                             LongAdder handshakes, String protocol) {
+            this.endpoint = endpoint;
+            this.client = client;
+            this.maxSize = maxSize;
+            this.available = maxSize;
+            this.acquireTimeoutMs = acquireTimeoutMs;
+            this.handshakes = handshakes;
+            this.protocol = protocol;
+        }
+
+        private void touch() {
+            lastUsedMillis = System.currentTimeMillis();
+        }
+
+        private Permit acquire() throws IOException, InterruptedException {
+            CompletableFuture<Permit> future = requestPermit();
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw acquireFailure(e.getCause());
+            } catch (InterruptedException e) {
+                cancelWaiter(future);
+                throw e;
+            }
+        }
+
+        private Mono<Permit> acquireAsync() {
+            return Mono.defer(() -> {
+                CompletableFuture<Permit> future = requestPermit();
+                return Mono.fromFuture(future)
+                        .onErrorMap(TimeoutException.class, this::acquireFailure)
+                        .doOnCancel(() -> cancelWaiter(future));
+            });
+        }
+
+        private CompletableFuture<Permit> requestPermit() {
+            CompletableFuture<Permit> future;
+            synchronized (this) {
+                if (available > 0) {
+                    available--;
+                    totalRequests.incrementAndGet();
+                    return CompletableFuture.completedFuture(new Permit(this));
+                }
+                future = new CompletableFuture<>();
+                waiters.addLast(future);
+            }
+            future.orTimeout(acquireTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((permit, error) -> {
+                if (error instanceof TimeoutException) {
+                    acquireTimeouts.incrementAndGet();
+                }
+            });
+            return future;
+        }
+
+        private IOException acquireFailure(Throwable cause) {
+            if (cause instanceof TimeoutException) {
+                return new IOException("获取连接超时, endpoint=" + endpoint + ", poolSize=" + maxSize, cause);
+            }
+            return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+
+        /**
+         * 放弃等待：若许可已被交付则直接归还
+         */
+        private void cancelWaiter(CompletableFuture<Permit> future) {
+            if (!future.cancel(false)) {
+                future.thenAccept(Permit::release);
+            }
+        }
+
+        private void release() {
+            while (true) {
+                CompletableFuture<Permit> next;
+                synchronized (this) {
+                    next = waiters.pollFirst();
+                    while (next != null && next.isDone()) {
+                        next = waiters.pollFirst();
+                    }
+                    if (next == null) {
+                        available++;
+                        break;
+                    }
+                }
+                // 交付失败说明等待方已超时或取消，继续交给下一个等待方
+                if (next.complete(new Permit(this))) {
+                    totalRequests.incrementAndGet();
+                    break;
+                }
+            }
+            touch();
+        }
+
+        private synchronized int activeCount() {
+            return maxSize - available;
+        }
+
+        private synchronized int pendingCount() {
+            int pending = 0;
+            for (CompletableFuture<Permit> waiter : waiters) {
+                if (!waiter.isDone()) {
+                    pending++;
+                }
+            }
+            return pending;
+        }
+
+        private OpenAIHttpPoolMetrics metrics() {
+            int active = activeCount();
+            return OpenAIHttpPoolMetrics.builder()
+                    .endpoint(endpoint)
+                    .protocol(protocol)
+                    .maxSize(maxSize)
+                    .active(active)
+                    .availablePermits(maxSize - active)
+                    .pending(pendingCount())
+                    .handshakeCount(handshakes.sum())
+                    .totalRequests(totalRequests.get())
+                    .acquireTimeoutCount(acquireTimeouts.get())
+                    .build();
+        }
+    }
+
+    /**
+     * 连接许可，重复归还是安全的
+     */
+    private static final class Permit {
+        private final EndpointPool pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(EndpointPool pool) {
+            this.pool = pool;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                pool.release();
+            }
+        }
+    }
+
+    /**
+     * 统计SSLEngine创建次数的SSLContext，每个新建TLS连接对应一次握手
+     */
+    private static final class HandshakeCountingSSLContext extends SSLContext {
+        private HandshakeCountingSSLContext(SSLContext delegate, LongAdder counter) {
+            super(new CountingSpi(delegate, counter), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final LongAdder counter;
+
+        private CountingSpi(SSLContext delegate, LongAdder counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void engineInit(javax.net.ssl.KeyManager[] km, javax.net.ssl.TrustManager[] tm, SecureRandom sr)
+                throws KeyManagementException {
+            delegate.init(km, tm, sr);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            counter.increment();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            counter.increment();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个端点的连接池指标快照
+ * 连接数由JDK HttpClient内部管理且不对外暴露，这里的active/availablePermits/maxSize统计的是本层的并发许可，
+ * 不是已建立的TCP连接；空闲连接数无法获取，新建连接情况以handshakeCount（仅HTTPS）为准
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class OpenAIHttpPoolMetrics {
+    String endpoint;
+    /** 首选协议（服务端不支持HTTP/2时实际降级为HTTP/1.1） */
+    String protocol;
+    int maxSize;
+    /** 正在使用的连接（HTTP/2下为并发流） */
+    int active;
+    /** 剩余可用的并发许可（maxSize - active），不是空闲连接数：未建立的连接也计入，HTTP/2下多个许可共用一条连接 */
+    int availablePermits;
+    /** 等待获取连接的请求数 */
+    int pending;
+    /** TLS握手次数（新建连接数） */
+    long handshakeCount;
+    long totalRequests;
+    long acquireTimeoutCount;
+}
@@ -0,0 +1,37 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 描述: 传输层响应
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+public class OpenAIHttpResponse<T> {
+    int statusCode;
+    Map<String, List<String>> headers;
+    T body;
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * 获取首个响应头值（忽略大小写）
+     */
+    public String firstHeader(String name) {
+        if (headers == null || name == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
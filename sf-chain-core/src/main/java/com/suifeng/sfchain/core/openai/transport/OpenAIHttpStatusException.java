@@ -0,0 +1,33 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 描述: 上游返回非2xx状态码
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Getter
+public class OpenAIHttpStatusException extends RuntimeException {
+
+    private final int statusCode;
+    private final transient Map<String, List<String>> headers;
+    private final String responseBody;
+
+    public OpenAIHttpStatusException(int statusCode, Map<String, List<String>> headers, String responseBody) {
+        super("HTTP请求失败，状态码: " + statusCode + ", 响应: " + responseBody);
+        this.statusCode = statusCode;
+        this.headers = headers == null ? Map.of() : headers;
+        this.responseBody = responseBody;
+    }
+
+    /**
+     * 获取首个响应头值（忽略大小写）
+     */
+    public String firstHeader(String name) {
+        return new OpenAIHttpResponse<>(statusCode, headers, null).firstHeader(name);
+    }
+}
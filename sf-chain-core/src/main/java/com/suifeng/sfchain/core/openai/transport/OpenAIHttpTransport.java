@@ -0,0 +1,47 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 描述: OpenAI兼容接口的HTTP传输层
+ * 负责连接复用、并发控制与连接池指标，{@link com.suifeng.sfchain.core.openai.OpenAIHttpClient} 只负责协议编解码
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public interface OpenAIHttpTransport extends AutoCloseable {
+
+    /**
+     * 发送POST请求并读取完整响应体
+     *
+     * @param endpoint 完整请求地址
+     * @param headers 请求头
+     * @param body 请求体
+     * @param timeout 等待响应的超时时间
+     * @return 响应
+     */
+    OpenAIHttpResponse<byte[]> post(String endpoint, Map<String, String> headers, byte[] body, Duration timeout)
+            throws IOException, InterruptedException;
+
+    /**
+     * 非阻塞发送POST请求，以支持背压的字节块流返回响应体
+     * 订阅时才发起请求；取消订阅会关闭上游连接；非2xx状态码以 {@link OpenAIHttpStatusException} 结束
+     */
+    Flux<List<ByteBuffer>> postStreaming(String endpoint, Map<String, String> headers, byte[] body, Duration timeout);
+
+    /**
+     * 获取各端点连接池指标（并发许可与握手次数，不含空闲连接数，见 {@link OpenAIHttpPoolMetrics}）
+     *
+     * @return key: 端点(scheme://host:port)
+     */
+    Map<String, OpenAIHttpPoolMetrics> poolMetrics();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,67 @@
+package com.suifeng.sfchain.core.openai.transport;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 描述: HTTP传输层连接池配置
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class OpenAIHttpTransportConfig {
+
+    /**
+     * 连接超时（毫秒）
+     */
+    private int connectTimeoutMs;
+
+    /**
+     * 是否优先使用HTTP/2（服务端不支持时自动降级为HTTP/1.1）
+     */
+    private boolean http2Enabled;
+
+    /**
+     * 每个端点最大并发连接数（HTTP/2下为最大并发流数）
+     */
+    private int poolSize;
+
+    /**
+     * 获取连接的最大等待时间（毫秒）
+     */
+    private long acquireTimeoutMs;
+
+    /**
+     * 空闲连接保活时间（秒），超过后连接被关闭
+     */
+    private int keepAliveSeconds;
+
+    /**
+     * 端点连接池空闲淘汰时间（秒），无请求超过该时间后释放整个端点连接池
+     */
+    private int idleEvictSeconds;
+
+    /**
+     * 异步I/O线程数，0表示使用JDK HttpClient默认执行器
+     */
+    private int ioThreads;
+
+    /**
+     * 获取默认配置的构建器
+     */
+    public static OpenAIHttpTransportConfigBuilder defaultConfig() {
+        return OpenAIHttpTransportConfig.builder()
+                .connectTimeoutMs(30000)
+                .http2Enabled(true)
+                .poolSize(64)
+                .acquireTimeoutMs(30000)
+                .keepAliveSeconds(300)
+                .idleEvictSeconds(1800)
+                .ioThreads(0);
+    }
+}
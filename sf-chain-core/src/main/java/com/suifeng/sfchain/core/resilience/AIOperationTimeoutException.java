@@ -0,0 +1,21 @@
+package com.suifeng.sfchain.core.resilience;
+
+import lombok.Getter;
+
+/**
+ * 描述: AI操作超过截止时间
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Getter
+public class AIOperationTimeoutException extends RuntimeException {
+
+    private final String operationType;
+    private final long timeoutMs;
+
+    public AIOperationTimeoutException(String operationType, long timeoutMs, Throwable cause) {
+        super("AI操作超时: " + operationType + ", 超时时间: " + timeoutMs + "ms", cause);
+        this.operationType = operationType;
+        this.timeoutMs = timeoutMs;
+    }
+}
@@ -0,0 +1,251 @@
+package com.suifeng.sfchain.core.resilience;
+
+import com.suifeng.sfchain.config.SfChainResilienceProperties;
+import com.suifeng.sfchain.core.metrics.LatencySummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 描述: 对冲请求执行器
+ * 调用超过操作近期耗时的p95仍未返回时，再发出一个相同的请求（同一模型或指定的对冲模型），
+ * 先成功返回的结果生效，另一个请求被取消（中断执行线程，传输层随之取消HTTP请求）。
+ * 对冲请求受预算限制：每次调用积累 budgetPercent% 个额度，每发出一次对冲消耗1个，
+ * 因此额外请求数长期不超过调用数的 budgetPercent%
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+public class AIRequestHedger {
+
+    /** 对冲延迟的刷新间隔，避免每次调用都汇总耗时直方图 */
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** 每发出多少次对冲输出一次胜出率日志 */
+    private static final long WIN_RATE_LOG_INTERVAL = 100;
+    /** 预算额度计量：1个对冲请求记为10000，每1%预算每次调用积累100 */
+    private static final long CREDIT_PER_HEDGE = 10_000;
+
+    private final SfChainResilienceProperties properties;
+    private final Function<String, LatencySummary> latencySource;
+    private final ExecutorService executor;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param latencySource 按操作类型获取近期上游请求耗时分位（不含缓存命中与限流排队），无数据时返回null
+     */
+    public AIRequestHedger(SfChainResilienceProperties properties, Function<String, LatencySummary> latencySource) {
+        this.properties = properties != null ? properties : new SfChainResilienceProperties();
+        this.latencySource = latencySource;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(threadFactory());
+    }
+
+    /**
+     * 执行调用，超过对冲延迟时发出对冲请求
+     *
+     * @param budgetPercent 对冲预算（额外请求占调用数的百分比）
+     * @param attempt       发起一次请求，参数为true表示对冲请求；必须响应线程中断
+     */
+    public <T> T execute(String operationType, int budgetPercent, Function<Boolean, T> attempt) {
+        Counters stats = counters(operationType);
+        stats.calls.increment();
+        stats.deposit(budgetPercent, properties.getHedgeMaxBurst());
+        long delayMs = hedgeDelayMs(operationType, stats);
+        if (delayMs < 0) {
+            stats.insufficientSamples.increment();
+            return attempt.apply(false);
+        }
+
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primary = completion.submit(() -> attempt.apply(false));
+        Future<T> hedge = null;
+        try {
+            Future<T> first = completion.poll(delayMs, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                if (stats.tryWithdraw()) {
+                    hedge = completion.submit(() -> attempt.apply(true));
+                    stats.hedged.increment();
+                    log.debug("AI操作发出对冲请求: {} - 已等待{}ms", operationType, delayMs);
+                } else {
+                    stats.budgetExhausted.increment();
+                }
+                first = completion.take();
+            }
+            if (hedge == null) {
+                return await(first);
+            }
+            Future<T> second = first == primary ? hedge : primary;
+            try {
+                T result = await(first);
+                second.cancel(true);
+                recordWinner(operationType, stats, first == hedge);
+                return result;
+            } catch (RuntimeException | Error e) {
+                // 先返回的请求失败时等待另一个请求，两者都失败时抛出先到的异常
+                completion.take();
+                try {
+                    T result = await(second);
+                    recordWinner(operationType, stats, second == hedge);
+                    return result;
+                } catch (RuntimeException | Error ignored) {
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待对冲的AI调用时被中断", e);
+        }
+    }
+
+    /**
+     * 获取所有操作的对冲统计
+     */
+    public Map<String, AIRequestHedgingStats> getStats() {
+        Map<String, AIRequestHedgingStats> snapshot = new LinkedHashMap<>();
+        counters.forEach((operationType, stats) -> snapshot.put(operationType, stats.snapshot(operationType)));
+        return snapshot;
+    }
+
+    /**
+     * 获取单个操作的对冲统计
+     */
+    public AIRequestHedgingStats getStats(String operationType) {
+        Counters stats = counters.get(operationType);
+        return stats == null ? new Counters().snapshot(operationType) : stats.snapshot(operationType);
+    }
+
+    /**
+     * 关闭执行器，取消仍在进行的请求
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 对冲延迟：近期耗时样本足够时取其p95（不低于下限），不足时返回-1（不对冲）
+     */
+    private long hedgeDelayMs(String operationType, Counters stats) {
+        long now = System.nanoTime();
+        if (now - stats.delayRefreshedNanos < DELAY_REFRESH_NANOS && stats.delayRefreshedNanos != 0) {
+            return stats.delayMs;
+        }
+        LatencySummary latency = latencySource == null ? null : latencySource.apply(operationType);
+        long delayMs = latency == null || latency.getCount() < properties.getHedgeMinSamples()
+                ? -1 : Math.max(properties.getHedgeMinDelayMs(), latency.getP95Duration());
+        stats.delayMs = delayMs;
+        stats.delayRefreshedNanos = now;
+        return delayMs;
+    }
+
+    private void recordWinner(String operationType, Counters stats, boolean hedgeWon) {
+        if (hedgeWon) {
+            stats.hedgeWins.increment();
+        }
+        long decided = stats.decided.incrementAndGet();
+        if (decided % WIN_RATE_LOG_INTERVAL == 0) {
+            log.info("AI操作对冲统计: {} - 对冲{}次, 对冲胜出率{}%", operationType, decided,
+                    String.format("%.1f", stats.hedgeWins.sum() * 100.0 / decided));
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private Counters counters(String operationType) {
+        return counters.computeIfAbsent(operationType, key -> new Counters());
+    }
+
+    /**
+     * JDK21及以上通过反射创建虚拟线程执行器（编译目标为17）
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "sf-chain-hedge-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder insufficientSamples = new LongAdder();
+        private final LongAdder hedged = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder budgetExhausted = new LongAdder();
+        private final AtomicLong decided = new AtomicLong();
+        private final AtomicLong credits = new AtomicLong();
+        private volatile long delayMs = -1;
+        private volatile long delayRefreshedNanos;
+
+        private void deposit(int budgetPercent, int maxBurst) {
+            long amount = Math.max(0, Math.min(100, budgetPercent)) * (CREDIT_PER_HEDGE / 100);
+            long cap = Math.max(1, maxBurst) * CREDIT_PER_HEDGE;
+            credits.accumulateAndGet(amount, (current, add) -> Math.min(cap, current + add));
+        }
+
+        private boolean tryWithdraw() {
+            while (true) {
+                long current = credits.get();
+                if (current < CREDIT_PER_HEDGE) {
+                    return false;
+                }
+                if (credits.compareAndSet(current, current - CREDIT_PER_HEDGE)) {
+                    return true;
+                }
+            }
+        }
+
+        private AIRequestHedgingStats snapshot(String operationType) {
+            long hedgedCount = hedged.sum();
+            long wins = hedgeWins.sum();
+            return AIRequestHedgingStats.builder()
+                    .operationType(operationType)
+                    .calls(calls.sum())
+                    .insufficientSamples(insufficientSamples.sum())
+                    .hedged(hedgedCount)
+                    .hedgeWins(wins)
+                    .budgetExhausted(budgetExhausted.sum())
+                    .hedgeWinRate(hedgedCount > 0 ? (double) wins / hedgedCount : 0.0)
+                    .delayMs(delayMs)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.suifeng.sfchain.core.resilience;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个操作的对冲请求统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class AIRequestHedgingStats {
+    String operationType;
+    /** 启用对冲策略的调用次数 */
+    long calls;
+    /** 耗时样本不足、未启用对冲直接调用的次数 */
+    long insufficientSamples;
+    /** 超过对冲延迟后实际发出对冲请求的次数 */
+    long hedged;
+    /** 对冲请求先返回结果的次数 */
+    long hedgeWins;
+    /** 超过对冲延迟但对冲预算不足、未发出对冲请求的次数 */
+    long budgetExhausted;
+    /** 对冲胜出率（hedgeWins / hedged） */
+    double hedgeWinRate;
+    /** 当前使用的对冲延迟（毫秒，-1表示尚无足够样本） */
+    long delayMs;
+}
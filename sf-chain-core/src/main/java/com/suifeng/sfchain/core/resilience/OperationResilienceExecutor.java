@@ -0,0 +1,341 @@
+package com.suifeng.sfchain.core.resilience;
+
+import com.suifeng.sfchain.config.SfChainResilienceProperties;
+import com.suifeng.sfchain.core.AIOperationRegistry;
+import com.suifeng.sfchain.core.openai.ratelimit.ModelRateLimitExceededException;
+import com.suifeng.sfchain.core.openai.transport.OpenAIHttpStatusException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 描述: AI操作容错执行器
+ * 按操作配置施加截止时间，并对429/5xx与连接错误做带抖动的指数退避重试（遵循Retry-After）
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Slf4j
+public class OperationResilienceExecutor {
+
+    private final SfChainResilienceProperties properties;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public OperationResilienceExecutor(SfChainResilienceProperties properties) {
+        this.properties = properties != null ? properties : new SfChainResilienceProperties();
+    }
+
+    /**
+     * 同步执行，调用方收到的超时参数为本次尝试剩余可用时间（未配置超时时为null）
+     */
+    public <T> T execute(String operationType, AIOperationRegistry.OperationConfig config, Function<Duration, T> call) {
+        if (!properties.isEnabled()) {
+            return call.apply(null);
+        }
+        Counters stats = counters(operationType);
+        stats.calls.increment();
+        long timeoutMs = timeoutMs(config);
+        long deadlineNanos = deadlineNanos(timeoutMs);
+        int maxRetries = Math.max(0, config.getRetryCount());
+
+        for (int attempt = 0; ; attempt++) {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (timeoutMs > 0 && remainingNanos <= 0) {
+                stats.timeouts.increment();
+                throw new AIOperationTimeoutException(operationType, timeoutMs, null);
+            }
+            stats.attempts.increment();
+            try {
+                return call.apply(timeoutMs > 0 ? Duration.ofNanos(remainingNanos) : null);
+            } catch (RuntimeException e) {
+                if (isTimeout(e)) {
+                    stats.timeouts.increment();
+                    throw new AIOperationTimeoutException(operationType, timeoutMs, e);
+                }
+                long delayMs = nextDelayMs(operationType, e, attempt, maxRetries, deadlineNanos, stats);
+                if (delayMs < 0) {
+                    throw e;
+                }
+                log.warn("AI操作第{}次重试: {} - {}ms后重试, 原因: {}", attempt + 1, operationType, delayMs, e.getMessage());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式执行
+     * 首个数据块须在截止时间内到达，之后相邻数据块间隔不超过操作超时时间；
+     * 只有在尚未输出任何数据时才会重试，避免向下游重复输出
+     */
+    public <T> Flux<T> executeStream(String operationType, AIOperationRegistry.OperationConfig config,
+                                     Function<Duration, Flux<T>> call) {
+        if (!properties.isEnabled()) {
+            return Flux.defer(() -> call.apply(null));
+        }
+        return Flux.defer(() -> {
+            Counters stats = counters(operationType);
+            stats.calls.increment();
+            long timeoutMs = timeoutMs(config);
+            return attemptStream(operationType, call, 0, Math.max(0, config.getRetryCount()),
+                    timeoutMs, deadlineNanos(timeoutMs), stats);
+        });
+    }
+
+    private <T> Flux<T> attemptStream(String operationType, Function<Duration, Flux<T>> call, int attempt,
+                                      int maxRetries, long timeoutMs, long deadlineNanos, Counters stats) {
+        return Flux.defer(() -> {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (timeoutMs > 0 && remainingNanos <= 0) {
+                stats.timeouts.increment();
+                return Flux.error(new AIOperationTimeoutException(operationType, timeoutMs, null));
+            }
+            stats.attempts.increment();
+            AtomicBoolean emitted = new AtomicBoolean();
+            Flux<T> flux = call.apply(timeoutMs > 0 ? Duration.ofNanos(remainingNanos) : null)
+                    .doOnNext(item -> emitted.set(true));
+            if (timeoutMs > 0) {
+                Duration idleTimeout = Duration.ofMillis(timeoutMs);
+                flux = flux.timeout(Mono.delay(Duration.ofNanos(remainingNanos)), item -> Mono.delay(idleTimeout));
+            }
+            return flux.onErrorResume(e -> {
+                if (isTimeout(e)) {
+                    stats.timeouts.increment();
+                    return Flux.error(new AIOperationTimeoutException(operationType, timeoutMs, e));
+                }
+                if (emitted.get()) {
+                    return Flux.error(e);
+                }
+                long delayMs = nextDelayMs(operationType, e, attempt, maxRetries, deadlineNanos, stats);
+                if (delayMs < 0) {
+                    return Flux.error(e);
+                }
+                log.warn("流式AI操作第{}次重试: {} - {}ms后重试, 原因: {}", attempt + 1, operationType, delayMs, e.getMessage());
+                return Mono.delay(Duration.ofMillis(delayMs))
+                        .thenMany(attemptStream(operationType, call, attempt + 1, maxRetries, timeoutMs, deadlineNanos, stats));
+            });
+        });
+    }
+
+    /**
+     * 计算下一次重试的等待时间，返回负数表示不再重试
+     */
+    private long nextDelayMs(String operationType, Throwable error, int attempt, int maxRetries,
+                             long deadlineNanos, Counters stats) {
+        if (!isRetryable(error)) {
+            return -1;
+        }
+        if (attempt >= maxRetries) {
+            stats.retriesExhausted.increment();
+            return -1;
+        }
+        long delayMs = backoffMs(attempt);
+        long retryAfterMs = properties.isHonorRetryAfter() ? retryAfterMs(error) : -1;
+        if (retryAfterMs >= 0) {
+            if (deadlineNanos == Long.MAX_VALUE && retryAfterMs > properties.getRetryMaxDelayMs()) {
+                // 未配置截止时间时不为过长的Retry-After阻塞调用线程
+                stats.retriesExhausted.increment();
+                return -1;
+            }
+            delayMs = Math.max(delayMs, retryAfterMs);
+            stats.retryAfterHonored.increment();
+        }
+        if (deadlineNanos != Long.MAX_VALUE
+                && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs) >= deadlineNanos) {
+            log.debug("AI操作剩余时间不足以等待重试: {} - delay={}ms", operationType, delayMs);
+            stats.retriesExhausted.increment();
+            return -1;
+        }
+        stats.retries.increment();
+        return delayMs;
+    }
+
+    /**
+     * 全抖动指数退避: random(0, min(max, base * 2^attempt))
+     */
+    private long backoffMs(int attempt) {
+        long base = Math.max(1, properties.getRetryBaseDelayMs());
+        long cap = Math.max(base, properties.getRetryMaxDelayMs());
+        long exp = attempt >= 30 ? cap : Math.min(cap, base << attempt);
+        return ThreadLocalRandom.current().nextLong(exp + 1);
+    }
+
+    /**
+     * 是否为可重试错误：429、5xx（501/505除外）、连接失败、本地限流排队失败
+     */
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OpenAIHttpStatusException) {
+                int status = ((OpenAIHttpStatusException) t).getStatusCode();
+                return status == 429 || (status >= 500 && status != 501 && status != 505);
+            }
+            if (t instanceof ConnectException || t instanceof NoRouteToHostException
+                    || t instanceof HttpConnectTimeoutException || t instanceof ModelRateLimitExceededException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为调用被取消：当前线程已中断，或异常链中有中断/取消异常（如对冲落败的请求被取消）
+     */
+    public static boolean isCancellation(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException
+                    || t instanceof CancellationException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为请求超时（连接超时除外，连接超时按可重试错误处理）
+     */
+    static boolean isTimeout(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof HttpConnectTimeoutException) {
+                return false;
+            }
+            if (t instanceof HttpTimeoutException || t instanceof TimeoutException
+                    || t instanceof AIOperationTimeoutException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析 retry-after-ms / Retry-After（秒数或HTTP日期），未提供时返回-1
+     */
+    static long retryAfterMs(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OpenAIHttpStatusException) {
+                OpenAIHttpStatusException statusException = (OpenAIHttpStatusException) t;
+                String millis = statusException.firstHeader("retry-after-ms");
+                if (millis != null) {
+                    try {
+                        return Math.max(0, (long) Double.parseDouble(millis.trim()));
+                    } catch (NumberFormatException ignored) {
+                        // 回退到 Retry-After
+                    }
+                }
+                return parseRetryAfter(statusException.firstHeader("Retry-After"));
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException ignored) {
+            // HTTP日期格式
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (Exception ignored) {
+            return -1;
+        }
+    }
+
+    private long timeoutMs(AIOperationRegistry.OperationConfig config) {
+        return config.getTimeoutSeconds() > 0 ? config.getTimeoutSeconds() * 1000L : 0;
+    }
+
+    private long deadlineNanos(long timeoutMs) {
+        return timeoutMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : Long.MAX_VALUE;
+    }
+
+    private Counters counters(String operationType) {
+        return counters.computeIfAbsent(operationType, key -> new Counters());
+    }
+
+    /**
+     * 获取所有操作的容错统计
+     */
+    public Map<String, OperationResilienceStats> getStats() {
+        Map<String, OperationResilienceStats> snapshot = new LinkedHashMap<>();
+        counters.forEach((operationType, stats) -> snapshot.put(operationType, stats.snapshot(operationType)));
+        return snapshot;
+    }
+
+    /**
+     * 获取单个操作的容错统计
+     */
+    public OperationResilienceStats getStats(String operationType) {
+        Counters stats = counters.get(operationType);
+        return stats == null ? new Counters().snapshot(operationType) : stats.snapshot(operationType);
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetStats() {
+        counters.clear();
+    }
+
+    private static final class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder retriesExhausted = new LongAdder();
+        private final LongAdder retryAfterHonored = new LongAdder();
+
+        private OperationResilienceStats snapshot(String operationType) {
+            return OperationResilienceStats.builder()
+                    .operationType(operationType)
+                    .calls(calls.sum())
+                    .attempts(attempts.sum())
+                    .retries(retries.sum())
+                    .timeouts(timeouts.sum())
+                    .retriesExhausted(retriesExhausted.sum())
+                    .retryAfterHonored(retryAfterHonored.sum())
+                    .build();
+        }
+    }
+}
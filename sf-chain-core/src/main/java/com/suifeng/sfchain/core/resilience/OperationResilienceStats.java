@@ -0,0 +1,27 @@
+package com.suifeng.sfchain.core.resilience;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个操作的超时与重试统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class OperationResilienceStats {
+    String operationType;
+    /** 调用次数（一次调用可能包含多次尝试） */
+    long calls;
+    /** 实际发出的请求次数 */
+    long attempts;
+    /** 重试次数 */
+    long retries;
+    /** 超过截止时间的调用次数 */
+    long timeouts;
+    /** 重试次数耗尽仍失败的调用次数 */
+    long retriesExhausted;
+    /** 因 Retry-After 响应头延后重试的次数 */
+    long retryAfterHonored;
+}
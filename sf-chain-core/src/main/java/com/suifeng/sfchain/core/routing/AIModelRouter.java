@@ -0,0 +1,220 @@
+package com.suifeng.sfchain.core.routing;
+
+import com.suifeng.sfchain.core.AIOperationRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 描述: 多模型路由器
+ * 按操作配置的候选模型（OperationConfig.routes）与策略排出本次调用的模型顺序，首个为主选，其余为故障切换的备选：
+ * WEIGHTED 按权重随机选主选；LEAST_OUTSTANDING 选 (在途数+1)/权重 最小者；
+ * EWMA_LATENCY 选 响应时间EWMA×(在途数+1)/权重 最小者（尚无样本的模型优先试探）。
+ * 失败按惩罚时延计入EWMA，使出错或变慢的模型自然让出流量；EWMA自最近一次样本起按半衰期向0衰减，
+ * 被惩罚后不再被选中的模型分数逐渐回落，最终重新获得试探流量，恢复后由新样本刷新
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public class AIModelRouter {
+
+    public static final String WEIGHTED = "WEIGHTED";
+    public static final String LEAST_OUTSTANDING = "LEAST_OUTSTANDING";
+    public static final String EWMA_LATENCY = "EWMA_LATENCY";
+
+    private static final double EWMA_ALPHA = 0.3;
+    /** 失败计入EWMA的惩罚时延：至少5秒或当前EWMA的两倍，最多60秒 */
+    private static final long FAILURE_PENALTY_MS = 5000;
+    private static final long MAX_FAILURE_PENALTY_MS = 60000;
+    /** EWMA的衰减半衰期：最大惩罚时延约一分钟内回落到正常量级 */
+    private static final double DECAY_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Map<String, ModelState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 排出候选模型顺序
+     *
+     * @param routes   候选模型与权重（已过滤掉不可用模型）
+     * @param strategy 路由策略，未识别时按WEIGHTED处理
+     * @return 模型名称列表，首个为主选
+     */
+    public List<String> plan(List<AIOperationRegistry.ModelRoute> routes, String strategy) {
+        List<AIOperationRegistry.ModelRoute> remaining = new ArrayList<>(routes);
+        List<String> ordered = new ArrayList<>(remaining.size());
+        String normalized = normalizeStrategy(strategy);
+        if (WEIGHTED.equals(normalized)) {
+            AIOperationRegistry.ModelRoute primary = pickWeighted(remaining);
+            ordered.add(primary.getModelName());
+            remaining.remove(primary);
+            remaining.sort(Comparator.comparingInt(AIOperationRegistry.ModelRoute::getWeight).reversed());
+        } else {
+            boolean latencyAware = EWMA_LATENCY.equals(normalized);
+            // 先打乱再稳定排序，分数相同的模型随机分摊流量
+            Collections.shuffle(remaining, ThreadLocalRandom.current());
+            remaining.sort(Comparator.comparingDouble(route -> score(route, latencyAware)));
+        }
+        for (AIOperationRegistry.ModelRoute route : remaining) {
+            ordered.add(route.getModelName());
+        }
+        return ordered;
+    }
+
+    /**
+     * 开始一次发往模型的请求
+     */
+    public Ticket begin(String modelName) {
+        ModelState state = state(modelName);
+        state.outstanding.incrementAndGet();
+        state.requests.increment();
+        return new Ticket(state);
+    }
+
+    public static String normalizeStrategy(String strategy) {
+        if (strategy == null || strategy.isBlank()) {
+            return WEIGHTED;
+        }
+        String normalized = strategy.trim().toUpperCase(Locale.ROOT);
+        return LEAST_OUTSTANDING.equals(normalized) || EWMA_LATENCY.equals(normalized) ? normalized : WEIGHTED;
+    }
+
+    /**
+     * 获取所有模型的路由统计
+     */
+    public Map<String, ModelRouteStats> getStats() {
+        Map<String, ModelRouteStats> snapshot = new LinkedHashMap<>();
+        states.forEach((modelName, state) -> snapshot.put(modelName, state.snapshot(modelName)));
+        return snapshot;
+    }
+
+    private double score(AIOperationRegistry.ModelRoute route, boolean latencyAware) {
+        ModelState state = states.get(route.getModelName());
+        double weight = Math.max(route.getWeight(), 1);
+        int outstanding = state == null ? 0 : state.outstanding.get();
+        if (!latencyAware) {
+            return (outstanding + 1) / weight;
+        }
+        double ewma = state == null ? -1 : state.ewma(System.nanoTime());
+        return ewma < 0 ? 0 : ewma * (outstanding + 1) / weight;
+    }
+
+    private static AIOperationRegistry.ModelRoute pickWeighted(List<AIOperationRegistry.ModelRoute> routes) {
+        long total = 0;
+        for (AIOperationRegistry.ModelRoute route : routes) {
+            total += Math.max(route.getWeight(), 0);
+        }
+        if (total <= 0) {
+            return routes.get(ThreadLocalRandom.current().nextInt(routes.size()));
+        }
+        long point = ThreadLocalRandom.current().nextLong(total);
+        for (AIOperationRegistry.ModelRoute route : routes) {
+            point -= Math.max(route.getWeight(), 0);
+            if (point < 0) {
+                return route;
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    private ModelState state(String modelName) {
+        return states.computeIfAbsent(modelName, key -> new ModelState());
+    }
+
+    /**
+     * 一次在途请求，结束时必须调用success/failure/release之一（可重复调用，只生效一次）
+     */
+    public static final class Ticket {
+        private final ModelState state;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(ModelState state) {
+            this.state = state;
+        }
+
+        /**
+         * 记录一次成功响应的时延（流式调用在首个数据块到达时记录）
+         */
+        public void observeLatency() {
+            state.observe((System.nanoTime() - startNanos) / 1_000_000.0);
+        }
+
+        public void success() {
+            if (released.compareAndSet(false, true)) {
+                observeLatency();
+                state.outstanding.decrementAndGet();
+            }
+        }
+
+        public void failure(boolean failover) {
+            if (released.compareAndSet(false, true)) {
+                state.failures.increment();
+                if (failover) {
+                    state.failovers.increment();
+                }
+                double elapsed = (System.nanoTime() - startNanos) / 1_000_000.0;
+                double penalty = Math.min(MAX_FAILURE_PENALTY_MS,
+                        Math.max(FAILURE_PENALTY_MS, state.ewma(System.nanoTime()) * 2));
+                state.observe(Math.max(elapsed, penalty));
+                state.outstanding.decrementAndGet();
+            }
+        }
+
+        /**
+         * 不计时延地结束（取消或已通过observeLatency记录）
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                state.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class ModelState {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder failovers = new LongAdder();
+        private volatile double ewmaMs = -1;
+        private volatile long observedNanos;
+
+        private synchronized void observe(double latencyMs) {
+            long now = System.nanoTime();
+            double current = ewma(now);
+            ewmaMs = current < 0 ? latencyMs : current + EWMA_ALPHA * (latencyMs - current);
+            observedNanos = now;
+        }
+
+        /**
+         * 按距最近一次样本的时间衰减后的EWMA，尚无样本时为-1
+         */
+        private double ewma(long now) {
+            double value = ewmaMs;
+            if (value <= 0) {
+                return value;
+            }
+            long idle = now - observedNanos;
+            return idle <= 0 ? value : value * Math.pow(0.5, idle / DECAY_HALF_LIFE_NANOS);
+        }
+
+        private ModelRouteStats snapshot(String modelName) {
+            return ModelRouteStats.builder()
+                    .modelName(modelName)
+                    .outstanding(outstanding.get())
+                    .ewmaLatencyMs(ewma(System.nanoTime()))
+                    .requests(requests.sum())
+                    .failures(failures.sum())
+                    .failovers(failovers.sum())
+                    .build();
+        }
+    }
+}
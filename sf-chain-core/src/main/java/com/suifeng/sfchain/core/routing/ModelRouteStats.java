@@ -0,0 +1,25 @@
+package com.suifeng.sfchain.core.routing;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 描述: 单个模型的路由统计快照
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+@Value
+@Builder
+public class ModelRouteStats {
+    String modelName;
+    /** 当前在途请求数 */
+    int outstanding;
+    /** 响应时间的指数加权移动平均（毫秒，已按空闲时间衰减），尚无样本时为-1 */
+    double ewmaLatencyMs;
+    /** 发往该模型的请求次数 */
+    long requests;
+    /** 失败次数 */
+    long failures;
+    /** 因该模型失败而切换到下一个模型的次数 */
+    long failovers;
+}
@@ -0,0 +1,209 @@
+package com.suifeng.sfchain.core.logging;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 描述: 日志存储写入竞争基准
+ * 多线程并发写入日志（每4次写入穿插1次读取），对比分段LFU缓存与原先全局读写锁的LFU存储的吞吐；
+ * 手动运行（不属于单元测试）：mvn -pl sf-chain-core test-compile 后以测试类路径执行本类的main方法，
+ * 可选参数：每轮总写入次数、缓存容量、线程数列表（逗号分隔）。需在多核机器上运行，单核下结果只反映调度噪声
+ * @author suifeng
+ * 日期: 2025/8/11
+ */
+public final class AICallLogLfuCacheContentionBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURE_ROUNDS = 3;
+
+    private AICallLogLfuCacheContentionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int[] threadCounts = args.length > 2 ? parseThreads(args[2]) : new int[]{1, 2, 4, 8, 16, 32};
+        System.out.printf("cpus=%d operations=%d capacity=%d%n",
+                Runtime.getRuntime().availableProcessors(), operations, capacity);
+        System.out.printf("%-8s %18s %18s %8s%n", "threads", "global-lock op/s", "segmented op/s", "ratio");
+        for (int threads : threadCounts) {
+            double globalLock = measure(() -> new GlobalLockStore(capacity), threads, operations);
+            double segmented = measure(() -> new SegmentedStore(capacity), threads, operations);
+            System.out.printf("%-8d %18.0f %18.0f %8.2f%n", threads, globalLock, segmented, segmented / globalLock);
+        }
+    }
+
+    private static double measure(StoreFactory factory, int threads, int operations) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(factory.create(), threads, operations);
+        }
+        double best = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            best = Math.max(best, run(factory.create(), threads, operations));
+        }
+        return best;
+    }
+
+    private static double run(Store store, int threads, int operations) throws Exception {
+        int perThread = Math.max(1, operations / threads);
+        AtomicLong sequence = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        long id = sequence.incrementAndGet();
+                        store.add(newLog(id));
+                        if ((i & 3) == 0) {
+                            store.get("call-" + Math.max(1, id - 16));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            return (double) perThread * threads / (elapsedNanos / 1_000_000_000.0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AICallLog newLog(long id) {
+        return AICallLog.builder()
+                .callId("call-" + id)
+                .operationType("op-" + (id % 8))
+                .modelName("model-" + (id % 4))
+                .callTime(LocalDateTime.now())
+                .duration(5)
+                .status(AICallLog.CallStatus.SUCCESS)
+                .build();
+    }
+
+    private static int[] parseThreads(String value) {
+        String[] parts = value.split(",");
+        int[] threads = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            threads[i] = Math.max(1, Integer.parseInt(parts[i].trim()));
+        }
+        return threads;
+    }
+
+    private interface Store {
+        void add(AICallLog callLog);
+
+        AICallLog get(String callId);
+    }
+
+    private interface StoreFactory {
+        Store create();
+    }
+
+    private static final class SegmentedStore implements Store {
+        private final AICallLogLfuCache cache;
+
+        private SegmentedStore(int capacity) {
+            this.cache = new AICallLogLfuCache(capacity);
+        }
+
+        @Override
+        public void add(AICallLog callLog) {
+            cache.put(callLog);
+        }
+
+        @Override
+        public AICallLog get(String callId) {
+            return cache.get(callId);
+        }
+    }
+
+    /**
+     * 原AICallLogManager的存储方式：单把读写锁保护存储与频次分组，写入和命中都要独占锁
+     */
+    private static final class GlobalLockStore implements Store {
+        private final int capacity;
+        private final Map<String, AICallLog> storage = new HashMap<>();
+        private final Map<String, Integer> frequencies = new HashMap<>();
+        private final Map<Integer, LinkedHashSet<String>> frequencyGroups = new HashMap<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int minFrequency = 1;
+
+        private GlobalLockStore(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void add(AICallLog callLog) {
+            lock.writeLock().lock();
+            try {
+                String callId = callLog.getCallId();
+                if (storage.size() >= capacity && !storage.containsKey(callId)) {
+                    evict();
+                }
+                storage.put(callId, callLog);
+                touch(callId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public AICallLog get(String callId) {
+            // 原实现在读锁内修改频次分组，并发读取时并不安全；这里用写锁保证基准本身正确
+            lock.writeLock().lock();
+            try {
+                AICallLog callLog = storage.get(callId);
+                if (callLog != null) {
+                    touch(callId);
+                }
+                return callLog;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void touch(String callId) {
+            int oldFrequency = frequencies.getOrDefault(callId, 0);
+            int newFrequency = oldFrequency + 1;
+            frequencies.put(callId, newFrequency);
+            if (oldFrequency > 0) {
+                LinkedHashSet<String> group = frequencyGroups.get(oldFrequency);
+                group.remove(callId);
+                if (group.isEmpty() && oldFrequency == minFrequency) {
+                    minFrequency++;
+                }
+            }
+            frequencyGroups.computeIfAbsent(newFrequency, key -> new LinkedHashSet<>()).add(callId);
+            if (newFrequency < minFrequency) {
+                minFrequency = newFrequency;
+            }
+        }
+
+        private void evict() {
+            LinkedHashSet<String> group = frequencyGroups.get(minFrequency);
+            if (group != null && !group.isEmpty()) {
+                String callId = group.iterator().next();
+                group.remove(callId);
+                storage.remove(callId);
+                frequencies.remove(callId);
+            }
+        }
+    }
+}
@@ -36,8 +36,9 @@ public class SfChainLogUploadAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean
     public AICallLogUploadGateway aiCallLogUploadGateway(
+            ObjectMapper objectMapper,
             SfChainLoggingProperties loggingProperties,
             AICallLogUploadClient uploadClient) {
-        return new AsyncAICallLogUploader(loggingProperties, uploadClient);
+        return new AsyncAICallLogUploader(loggingProperties, uploadClient, objectMapper);
     }
 }
@@ -0,0 +1,173 @@
+package com.suifeng.sfchain.starter.lite.logging.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suifeng.sfchain.core.logging.upload.AICallLogBinaryBatchWriter;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * 二进制批量请求体发布者
+ * 按HTTP客户端的需求逐条编码并压缩，每次只产出一个小块，批量不会整体物化在内存中
+ */
+final class BinaryBatchBodyPublisher implements HttpRequest.BodyPublisher {
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final List<AICallLogUploadItem> items;
+
+    BinaryBatchBodyPublisher(ObjectMapper objectMapper, List<AICallLogUploadItem> items) {
+        this.objectMapper = objectMapper;
+        this.items = items;
+    }
+
+    @Override
+    public long contentLength() {
+        // 分块传输
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new BatchSubscription(subscriber));
+    }
+
+    private final class BatchSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Iterator<AICallLogUploadItem> iterator = items.iterator();
+        private final ChunkOutputStream chunks = new ChunkOutputStream();
+        private AICallLogBinaryBatchWriter writer;
+        private long demand;
+        private boolean draining;
+        private boolean encoded;
+        private boolean terminated;
+
+        private BatchSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (terminated) {
+                return;
+            }
+            if (n <= 0) {
+                terminated = true;
+                subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            drain();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            terminated = true;
+            chunks.ready.clear();
+        }
+
+        /**
+         * onNext中可能重入request，由draining标记保证只有最外层循环在发送
+         */
+        private void drain() {
+            if (draining) {
+                return;
+            }
+            draining = true;
+            try {
+                while (!terminated && demand > 0) {
+                    ByteBuffer chunk = chunks.ready.poll();
+                    if (chunk != null) {
+                        demand--;
+                        subscriber.onNext(chunk);
+                        continue;
+                    }
+                    if (encoded) {
+                        terminated = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    encodeMore();
+                }
+            } catch (IOException | RuntimeException e) {
+                terminated = true;
+                subscriber.onError(e);
+            } finally {
+                draining = false;
+            }
+        }
+
+        /**
+         * 编码条目直到至少产出一个块或全部编码完成
+         */
+        private void encodeMore() throws IOException {
+            if (writer == null) {
+                writer = new AICallLogBinaryBatchWriter(objectMapper, chunks);
+            }
+            while (chunks.ready.isEmpty() && iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+            if (!iterator.hasNext() && chunks.ready.isEmpty()) {
+                writer.close();
+                encoded = true;
+            }
+        }
+    }
+
+    /**
+     * 把压缩输出切成固定大小的块
+     */
+    private static final class ChunkOutputStream extends OutputStream {
+        private final Deque<ByteBuffer> ready = new ArrayDeque<>();
+        private byte[] current = new byte[CHUNK_BYTES];
+        private int position;
+
+        @Override
+        public void write(int b) {
+            current[position++] = (byte) b;
+            if (position == current.length) {
+                emit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                int count = Math.min(remaining, current.length - position);
+                System.arraycopy(b, offset, current, position, count);
+                position += count;
+                offset += count;
+                remaining -= count;
+                if (position == current.length) {
+                    emit();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (position > 0) {
+                ready.add(ByteBuffer.wrap(Arrays.copyOf(current, position)));
+                position = 0;
+            }
+        }
+
+        private void emit() {
+            ready.add(ByteBuffer.wrap(current));
+            current = new byte[CHUNK_BYTES];
+            position = 0;
+        }
+    }
+}
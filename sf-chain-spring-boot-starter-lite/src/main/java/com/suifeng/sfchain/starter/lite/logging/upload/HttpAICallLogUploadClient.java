@@ -1,13 +1,18 @@
 package com.suifeng.sfchain.starter.lite.logging.upload;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.suifeng.sfchain.config.SfChainLoggingProperties;
 import com.suifeng.sfchain.config.SfChainServerProperties;
+import com.suifeng.sfchain.core.logging.upload.AICallLogBinaryBatchWriter;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadClient;
 import com.suifeng.sfchain.core.logging.upload.AICallLogUploadItem;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadOutcome;
+import com.suifeng.sfchain.core.logging.upload.AICallLogUploadResult;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -17,6 +22,8 @@ import java.util.List;
 
 /**
  * 基于HTTP的日志上报客户端
+ * 默认使用二进制批量格式流式上报；配置中心不支持流式接口时自动回退为JSON批量请求。
+ * 流式接口中途停止读取时按响应中的processed返回已处理的前缀条数，上报器只重试剩余条目
  */
 @Slf4j
 public class HttpAICallLogUploadClient implements AICallLogUploadClient {
@@ -25,6 +32,8 @@ public class HttpAICallLogUploadClient implements AICallLogUploadClient {
     private final SfChainServerProperties serverProperties;
     private final SfChainLoggingProperties loggingProperties;
     private final HttpClient httpClient;
+    /** 配置中心是否支持二进制批量格式，首次被拒绝后不再尝试 */
+    private volatile boolean binarySupported;
 
     public HttpAICallLogUploadClient(
             ObjectMapper objectMapper,
@@ -36,12 +45,80 @@ public class HttpAICallLogUploadClient implements AICallLogUploadClient {
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofMillis(serverProperties.getConnectTimeoutMs()))
                 .build();
+        this.binarySupported = loggingProperties.getUploadFormat() == SfChainLoggingProperties.UploadFormat.BINARY;
     }
 
     @Override
     public boolean upload(List<AICallLogUploadItem> items) {
+        return send(items).getResult() == AICallLogUploadResult.SUCCESS;
+    }
+
+    @Override
+    public AICallLogUploadOutcome send(List<AICallLogUploadItem> items) {
+        if (binarySupported) {
+            AICallLogUploadOutcome result = uploadBinary(items);
+            if (result != null) {
+                return result;
+            }
+            binarySupported = false;
+            log.info("配置中心不支持二进制批量上报，回退为JSON格式");
+        }
+        return AICallLogUploadOutcome.of(uploadJson(items), items.size());
+    }
+
+    /**
+     * 以二进制批量格式上报；配置中心不支持该格式时返回null
+     */
+    private AICallLogUploadOutcome uploadBinary(List<AICallLogUploadItem> items) {
         try {
-            String endpoint = buildEndpointUrl();
+            String endpoint = buildEndpointUrl(loggingProperties.getUploadStreamEndpoint())
+                    + "?tenantId=" + URLEncoder.encode(serverProperties.getTenantId(), StandardCharsets.UTF_8)
+                    + "&appId=" + URLEncoder.encode(serverProperties.getAppId(), StandardCharsets.UTF_8);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(endpoint))
+                    .header("Content-Type", AICallLogBinaryBatchWriter.CONTENT_TYPE)
+                    .header("Accept", "application/json")
+                    .header("X-SF-API-KEY", serverProperties.getApiKey())
+                    .header("X-SF-CONTRACT-VERSION", "v1")
+                    .header("X-SF-BATCH-SIZE", String.valueOf(items.size()))
+                    .timeout(Duration.ofMillis(serverProperties.getReadTimeoutMs()))
+                    .POST(new BinaryBatchBodyPublisher(objectMapper, items))
+                    .build();
+
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            int code = response.statusCode();
+            if (code == 404 || code == 405 || code == 415) {
+                return null;
+            }
+            AICallLogUploadResult result = toResult(code);
+            if (result == AICallLogUploadResult.SUCCESS) {
+                return AICallLogUploadOutcome.success(items.size());
+            }
+            return AICallLogUploadOutcome.partial(result, processedCount(response.body()));
+        } catch (Exception e) {
+            log.warn("AI调用日志上报异常: {}", e.getMessage());
+            return AICallLogUploadOutcome.of(AICallLogUploadResult.FAILED, items.size());
+        }
+    }
+
+    /**
+     * 读取流式接口响应中已处理的前缀条数，响应不含该字段时视为整批未处理
+     */
+    private int processedCount(String body) {
+        if (body == null || body.isEmpty()) {
+            return 0;
+        }
+        try {
+            JsonNode processed = objectMapper.readTree(body).path("processed");
+            return processed.canConvertToInt() ? Math.max(processed.intValue(), 0) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private AICallLogUploadResult uploadJson(List<AICallLogUploadItem> items) {
+        try {
+            String endpoint = buildEndpointUrl(loggingProperties.getUploadEndpoint());
             String body = objectMapper.writeValueAsString(new UploadRequest(
                     "v1",
                     serverProperties.getTenantId(),
@@ -59,21 +136,30 @@ public class HttpAICallLogUploadClient implements AICallLogUploadClient {
                     .build();
 
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            int code = response.statusCode();
-            if (code >= 200 && code < 300) {
-                return true;
-            }
-            log.warn("AI调用日志上报失败, status={}", code);
-            return false;
+            return toResult(response.statusCode());
         } catch (Exception e) {
             log.warn("AI调用日志上报异常: {}", e.getMessage());
-            return false;
+            return AICallLogUploadResult.FAILED;
+        }
+    }
+
+    private static AICallLogUploadResult toResult(int code) {
+        if (code >= 200 && code < 300) {
+            return AICallLogUploadResult.SUCCESS;
+        }
+        log.warn("AI调用日志上报失败, status={}", code);
+        if (code == 429 || code == 503) {
+            return AICallLogUploadResult.THROTTLED;
+        }
+        // 请求体非法、鉴权失败或条目过大，原样重试不会成功
+        if (code == 400 || code == 401 || code == 413) {
+            return AICallLogUploadResult.REJECTED;
         }
+        return AICallLogUploadResult.FAILED;
     }
 
-    private String buildEndpointUrl() {
+    private String buildEndpointUrl(String endpoint) {
         String baseUrl = serverProperties.getBaseUrl();
-        String endpoint = loggingProperties.getUploadEndpoint();
         if (baseUrl.endsWith("/") && endpoint.startsWith("/")) {
             return baseUrl.substring(0, baseUrl.length() - 1) + endpoint;
         }